@@ -321,6 +321,20 @@ public class ConfigurationManager {
         return getProperty("app.export.directory", "exports");
     }
     
+    /**
+     * Get the directory of the scan counting journals
+     */
+    public String getScanJournalDirectory() {
+        return getProperty("app.scan.journal.directory", "scan-journal");
+    }
+    
+    /**
+     * Get the number of rows read per page by the paged tables
+     */
+    public int getTableRowsPerPage() {
+        return getIntProperty("ui.table.rows.per.page", 50);
+    }
+    
     /**
      * Get low stock threshold for automatic inventory scheduling
      */
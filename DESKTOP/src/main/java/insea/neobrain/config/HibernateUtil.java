@@ -4,6 +4,8 @@ import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +35,7 @@ public class HibernateUtil {
             configuration.addAnnotatedClass(CommandeVente.class);
             configuration.addAnnotatedClass(LigneCommande.class);
             configuration.addAnnotatedClass(Reclamation.class);
+            configuration.addAnnotatedClass(MouvementStock.class);
             
             ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
                     .applySettings(configuration.getProperties())
@@ -41,6 +44,9 @@ public class HibernateUtil {
             sessionFactory = configuration.buildSessionFactory(serviceRegistry);
             logger.info("Hibernate SessionFactory created successfully");
             
+            // Apply the schema changes hbm2ddl cannot express
+            SchemaUpgrader.applyUpgrades(sessionFactory);
+            
         } catch (Throwable ex) {
             logger.error("Initial SessionFactory creation failed", ex);
             throw new ExceptionInInitializerError(ex);
@@ -55,12 +61,55 @@ public class HibernateUtil {
         return sessionFactory;
     }
     
+    /**
+     * Get the Hibernate statistics (enabled by hibernate.generate_statistics)
+     * @return Statistics instance
+     */
+    public static Statistics getStatistics() {
+        return sessionFactory.getStatistics();
+    }
+    
+    /**
+     * Get the hit/miss counts of a second-level cache region
+     * @param regionName region name, e.g. "produit" or "default-query-results-region"
+     * @return region statistics, or null if the region does not exist
+     */
+    public static CacheRegionStatistics getCacheRegionStatistics(String regionName) {
+        return sessionFactory.getStatistics().getCacheRegionStatistics(regionName);
+    }
+    
+    /**
+     * Log the second-level and query cache hit/miss counts
+     */
+    public static void logCacheStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        logger.info("Second-level cache: {} hits, {} misses, {} puts",
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount());
+        logger.info("Query cache: {} hits, {} misses, {} puts",
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount());
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                logger.info("Cache region {}: {} hits, {} misses, {} elements in memory",
+                        region,
+                        regionStatistics.getHitCount(),
+                        regionStatistics.getMissCount(),
+                        regionStatistics.getElementCountInMemory());
+            }
+        }
+    }
+    
     /**
      * Close the SessionFactory
      */
     public static void shutdown() {
         if (sessionFactory != null) {
             try {
+                logCacheStatistics();
                 sessionFactory.close();
                 logger.info("Hibernate SessionFactory closed successfully");
             } catch (Exception e) {
@@ -0,0 +1,121 @@
+package insea.neobrain.config;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies the schema changes that hbm2ddl cannot express (sequence alignment,
+ * specialised indexes, ...). Statements are read from db/schema_upgrades.sql,
+ * must be idempotent, and are executed one by one at startup. A failing
+ * statement is logged and skipped so the application can still start.
+ */
+public class SchemaUpgrader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaUpgrader.class);
+    private static final String UPGRADE_SCRIPT = "db/schema_upgrades.sql";
+
+    private SchemaUpgrader() {
+    }
+
+    /**
+     * Execute every statement of the upgrade script
+     * @param sessionFactory the session factory to use
+     * @return number of statements executed successfully
+     */
+    public static int applyUpgrades(SessionFactory sessionFactory) {
+        String script = loadScript();
+        if (script == null) {
+            logger.warn("Schema upgrade script not found: {}", UPGRADE_SCRIPT);
+            return 0;
+        }
+
+        List<String> statements = parseStatements(script);
+        int applied = 0;
+        for (String sql : statements) {
+            if (execute(sessionFactory, sql)) {
+                applied++;
+            }
+        }
+        logger.info("Schema upgrades applied: {}/{} statements", applied, statements.size());
+        return applied;
+    }
+
+    /**
+     * Split a script into statements. Lines starting with "--" are comments and
+     * a statement ends with a semicolon at the end of a line.
+     * @param script the script content
+     * @return the statements, without their trailing semicolon
+     */
+    static List<String> parseStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (current.length() > 0) {
+                current.append('\n');
+            }
+            current.append(line);
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1).trim());
+                current.setLength(0);
+            }
+        }
+
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static boolean execute(SessionFactory sessionFactory, String sql) {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(sql);
+                }
+            });
+            transaction.commit();
+            logger.debug("Schema upgrade applied: {}", sql);
+            return true;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                try {
+                    transaction.rollback();
+                } catch (Exception rollbackEx) {
+                    logger.error("Error during transaction rollback", rollbackEx);
+                }
+            }
+            logger.warn("Schema upgrade skipped: {} ({})", sql, e.getMessage());
+            return false;
+        }
+    }
+
+    private static String loadScript() {
+        try (InputStream is = SchemaUpgrader.class.getClassLoader().getResourceAsStream(UPGRADE_SCRIPT)) {
+            if (is == null) {
+                return null;
+            }
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Error reading schema upgrade script: {}", UPGRADE_SCRIPT, e);
+            return null;
+        }
+    }
+}
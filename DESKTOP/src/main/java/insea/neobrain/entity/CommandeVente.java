@@ -17,7 +17,8 @@ import java.util.Objects;
 public class CommandeVente {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "commande_vente_seq")
+    @SequenceGenerator(name = "commande_vente_seq", sequenceName = "commande_vente_seq", allocationSize = 50)
     @Column(name = "id_commande_vente")
     private Long idCommandeVente;
     
@@ -82,6 +83,10 @@ public class CommandeVente {
     @Column(name = "statut", length = 50)
     private String statut = "BROUILLON";
     
+    @Enumerated(EnumType.STRING)
+    @Column(name = "mode_paiement", length = 20)
+    private ModePaiement modePaiement;
+    
     @Column(name = "date_creation", nullable = false)
     private LocalDateTime dateCreation;
     
@@ -94,8 +99,13 @@ public class CommandeVente {
     @NotNull(message = "Le client est obligatoire")
     private Client client;
     
+    // Employee who took the order
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_personnel")
+    private Personnel personnel;
+    
     // One-to-many relationship with LigneCommande
-    @OneToMany(mappedBy = "commandeVente", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "commandeVente", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<LigneCommande> lignesCommande = new ArrayList<>();
     
     // Constructors
@@ -115,27 +125,16 @@ public class CommandeVente {
     public CommandeVente(Client client) {
         this();
         this.client = client;
-        this.generateNumeroCommande();
         if (client != null && client.getAdresseComplete() != null) {
             this.adresseLivraison = client.getAdresseComplete();
         }
     }
     
-    // Generate order number
-    private void generateNumeroCommande() {
-        String year = String.valueOf(LocalDate.now().getYear());
-        String month = String.format("%02d", LocalDate.now().getMonthValue());
-        long timestamp = System.currentTimeMillis() % 100000;
-        this.numeroCommande = "CMD" + year + month + timestamp;
-    }
-    
     // Lifecycle callbacks
     @PrePersist
     protected void onCreate() {
         this.dateCreation = LocalDateTime.now();
-        if (this.numeroCommande == null) {
-            generateNumeroCommande();
-        }
+        // numeroCommande is assigned by the service before persist (see NumberGenerator)
         calculerTotaux();
     }
     
@@ -319,6 +318,14 @@ public class CommandeVente {
         this.statut = statut;
     }
     
+    public ModePaiement getModePaiement() {
+        return modePaiement;
+    }
+    
+    public void setModePaiement(ModePaiement modePaiement) {
+        this.modePaiement = modePaiement;
+    }
+    
     public LocalDateTime getDateCreation() {
         return dateCreation;
     }
@@ -343,6 +350,14 @@ public class CommandeVente {
         this.client = client;
     }
     
+    public Personnel getPersonnel() {
+        return personnel;
+    }
+    
+    public void setPersonnel(Personnel personnel) {
+        this.personnel = personnel;
+    }
+    
     public List<LigneCommande> getLignesCommande() {
         return lignesCommande;
     }
@@ -12,7 +12,9 @@ import java.util.Objects;
  * Entity class for Inventaire (Inventory)
  */
 @Entity
-@Table(name = "inventaire")
+@Table(name = "inventaire", indexes = {
+    @Index(name = "idx_inventaire_date_debut", columnList = "date_debut")
+})
 public class Inventaire {
     
     @Id
@@ -48,10 +50,11 @@ public class Inventaire {
     @Column(name = "nombre_produits_total")
     private Integer nombreProduitsTotal;
     
-    @Column(name = "nombre_produits_comptes")
+    // Counters maintained by InventaireRepository.incrementStatistics: a merge of a stale copy must not overwrite them
+    @Column(name = "nombre_produits_comptes", updatable = false)
     private Integer nombreProduitsComptes = 0;
     
-    @Column(name = "ecarts_detectes")
+    @Column(name = "ecarts_detectes", updatable = false)
     private Integer ecartsDetectes = 0;
     
     @Column(name = "date_creation", nullable = false)
@@ -78,47 +81,20 @@ public class Inventaire {
         this.dateDebut = dateDebut;
         this.description = description;
         this.responsable = responsable;
-        this.generateNumeroInventaire();
-    }
-    
-    // Generate inventory number
-    private void generateNumeroInventaire() {
-        String year = String.valueOf(LocalDate.now().getYear());
-        String month = String.format("%02d", LocalDate.now().getMonthValue());
-        long timestamp = System.currentTimeMillis() % 10000;
-        this.numeroInventaire = "INV" + year + month + timestamp;
     }
     
     // Lifecycle callbacks
     @PrePersist
     protected void onCreate() {
         this.dateCreation = LocalDateTime.now();
-        if (this.numeroInventaire == null) {
-            generateNumeroInventaire();
-        }
+        // numeroInventaire is assigned by the service before persist (see NumberGenerator)
     }
     
     @PreUpdate
     protected void onUpdate() {
         this.dateModification = LocalDateTime.now();
-        updateStatistics();
-    }
-    
-    // Update statistics based on tasks
-    private void updateStatistics() {
-        if (taches != null) {
-            this.nombreProduitsComptes = (int) taches.stream()
-                    .filter(t -> EtatTache.TERMINEE.equals(t.getEtatTache()))
-                    .count();
-            
-            this.ecartsDetectes = (int) taches.stream()
-                    .filter(t -> EtatTache.TERMINEE.equals(t.getEtatTache()))
-                    .filter(t -> t.getQuantitePhysique() != null && 
-                                t.getProduit() != null && 
-                                t.getProduit().getQuantiteStock() != null &&
-                                !t.getQuantitePhysique().equals(t.getProduit().getQuantiteStock()))
-                    .count();
-        }
+        // nombreProduitsComptes and ecartsDetectes are maintained when a task is completed
+        // (see InventaireRepository.incrementStatistics), the tasks are never loaded here
     }
     
     // Getters and Setters
@@ -265,7 +241,6 @@ public class Inventaire {
         this.estClos = true;
         this.etatInventaire = "CLOS";
         this.dateFin = LocalDate.now();
-        updateStatistics();
     }
     
     public void ajouterTache(TacheInventaire tache) {
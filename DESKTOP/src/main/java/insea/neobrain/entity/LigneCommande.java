@@ -16,7 +16,8 @@ import java.util.Objects;
 public class LigneCommande {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_commande_seq")
+    @SequenceGenerator(name = "ligne_commande_seq", sequenceName = "ligne_commande_seq", allocationSize = 50)
     @Column(name = "id_ligne_vente")
     private Long idLigneVente;
     
@@ -0,0 +1,155 @@
+package insea.neobrain.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import org.hibernate.annotations.Immutable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Entity class for MouvementStock (Stock movement).
+ * Append-only ledger of every change of a product stock quantity.
+ */
+@Entity
+@Immutable
+@Table(name = "mouvement_stock", indexes = {
+    @Index(name = "idx_mouvement_stock_produit_date", columnList = "id_produit, date_mouvement")
+})
+public class MouvementStock {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mouvement_stock_seq")
+    @SequenceGenerator(name = "mouvement_stock_seq", sequenceName = "mouvement_stock_seq", allocationSize = 50)
+    @Column(name = "id_mouvement_stock")
+    private Long idMouvementStock;
+    
+    // Written as a plain column so movements can be appended without loading the product
+    @Column(name = "id_produit", nullable = false)
+    @NotNull(message = "Le produit est obligatoire")
+    private Long idProduit;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_produit", insertable = false, updatable = false)
+    private Produit produit;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type_mouvement", nullable = false, length = 30)
+    @NotNull(message = "Le type de mouvement est obligatoire")
+    private TypeMouvementStock typeMouvement;
+    
+    @Column(name = "quantite", nullable = false)
+    @NotNull(message = "La quantité est obligatoire")
+    private Integer quantite;
+    
+    @Column(name = "quantite_apres")
+    private Integer quantiteApres;
+    
+    @Column(name = "motif", length = 255)
+    @Size(max = 255, message = "Le motif ne peut pas dépasser 255 caractères")
+    private String motif;
+    
+    @Column(name = "date_mouvement", nullable = false)
+    @NotNull(message = "La date du mouvement est obligatoire")
+    private LocalDateTime dateMouvement;
+    
+    // Constructors
+    public MouvementStock() {
+        this.dateMouvement = LocalDateTime.now();
+    }
+    
+    public MouvementStock(Long idProduit, TypeMouvementStock typeMouvement, Integer quantite,
+                          Integer quantiteApres, String motif) {
+        this();
+        this.idProduit = idProduit;
+        this.typeMouvement = typeMouvement;
+        this.quantite = quantite;
+        this.quantiteApres = quantiteApres;
+        this.motif = motif != null && motif.length() > 255 ? motif.substring(0, 255) : motif;
+    }
+    
+    // Getters and Setters
+    public Long getIdMouvementStock() {
+        return idMouvementStock;
+    }
+    
+    public void setIdMouvementStock(Long idMouvementStock) {
+        this.idMouvementStock = idMouvementStock;
+    }
+    
+    public Long getIdProduit() {
+        return idProduit;
+    }
+    
+    public void setIdProduit(Long idProduit) {
+        this.idProduit = idProduit;
+    }
+    
+    public Produit getProduit() {
+        return produit;
+    }
+    
+    public TypeMouvementStock getTypeMouvement() {
+        return typeMouvement;
+    }
+    
+    public void setTypeMouvement(TypeMouvementStock typeMouvement) {
+        this.typeMouvement = typeMouvement;
+    }
+    
+    public Integer getQuantite() {
+        return quantite;
+    }
+    
+    public void setQuantite(Integer quantite) {
+        this.quantite = quantite;
+    }
+    
+    public Integer getQuantiteApres() {
+        return quantiteApres;
+    }
+    
+    public void setQuantiteApres(Integer quantiteApres) {
+        this.quantiteApres = quantiteApres;
+    }
+    
+    public String getMotif() {
+        return motif;
+    }
+    
+    public void setMotif(String motif) {
+        this.motif = motif;
+    }
+    
+    public LocalDateTime getDateMouvement() {
+        return dateMouvement;
+    }
+    
+    public void setDateMouvement(LocalDateTime dateMouvement) {
+        this.dateMouvement = dateMouvement;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MouvementStock that = (MouvementStock) o;
+        return Objects.equals(idMouvementStock, that.idMouvementStock);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(idMouvementStock);
+    }
+    
+    @Override
+    public String toString() {
+        return "MouvementStock{" +
+                "idMouvementStock=" + idMouvementStock +
+                ", idProduit=" + idProduit +
+                ", typeMouvement=" + typeMouvement +
+                ", quantite=" + quantite +
+                ", quantiteApres=" + quantiteApres +
+                ", dateMouvement=" + dateMouvement +
+                '}';
+    }
+}
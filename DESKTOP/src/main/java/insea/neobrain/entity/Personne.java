@@ -2,6 +2,8 @@ package insea.neobrain.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDate;
 import java.util.Objects;
 
@@ -10,6 +12,8 @@ import java.util.Objects;
  */
 @Entity
 @Table(name = "personne")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "personne")
 @Inheritance(strategy = InheritanceType.JOINED)
 public class Personne {
     
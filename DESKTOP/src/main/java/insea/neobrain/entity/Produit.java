@@ -2,6 +2,8 @@ package insea.neobrain.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -14,10 +16,13 @@ import java.util.Objects;
  */
 @Entity
 @Table(name = "produit")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "produit")
 public class Produit {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "produit_seq")
+    @SequenceGenerator(name = "produit_seq", sequenceName = "produit_seq", allocationSize = 50)
     @Column(name = "id_produit")
     private Long idProduit;
     
@@ -94,6 +99,11 @@ public class Produit {
     @Column(name = "date_modification")
     private LocalDateTime dateModification;
     
+    // Optimistic locking: concurrent updates of the same product fail instead of overwriting each other
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version = 0L;
+    
     // One-to-many relationships
     @OneToMany(mappedBy = "produit", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<TacheInventaire> tachesInventaire = new ArrayList<>();
@@ -130,32 +140,7 @@ public class Produit {
     protected void onCreate() {
         this.dateCreation = LocalDateTime.now();
         this.dateAjout = LocalDate.now();
-        if (this.codeProduit == null) {
-            generateCodeProduit();
-        }
-    }
-    
-    // Generate product code if not provided
-    private void generateCodeProduit() {
-        String prefix;
-        switch (categorie) {
-            case INFORMATIQUE:
-                prefix = "INF";
-                break;
-            case ELECTROMENAGER:
-                prefix = "ELE";
-                break;
-            case VETEMENTS:
-                prefix = "VET";
-                break;
-            case SPORTS:
-                prefix = "SPO";
-                break;
-            default:
-                prefix = "PRD";
-                break;
-        }
-        this.codeProduit = prefix + System.currentTimeMillis() % 1000000;
+        // codeProduit is assigned by the service before persist (see NumberGenerator)
     }
     
     // Getters and Setters
@@ -205,9 +190,6 @@ public class Produit {
     
     public void setCategorie(CategorieProduit categorie) {
         this.categorie = categorie;
-        if (this.codeProduit == null) {
-            generateCodeProduit();
-        }
     }
     
     public Integer getQuantiteStock() {
@@ -324,6 +306,14 @@ public class Produit {
         this.dateModification = dateModification;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     public void setDerniereModification(LocalDateTime derniereModification) {
         this.dateModification = derniereModification;
     }
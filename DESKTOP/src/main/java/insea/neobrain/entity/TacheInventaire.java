@@ -13,7 +13,8 @@ import java.util.Objects;
 public class TacheInventaire {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tache_inventaire_seq")
+    @SequenceGenerator(name = "tache_inventaire_seq", sequenceName = "tache_inventaire_seq", allocationSize = 50)
     @Column(name = "id_tache_inventaire")
     private Long idTacheInventaire;
     
@@ -57,8 +58,8 @@ public class TacheInventaire {
     
     // Many-to-one relationships
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "id_personnel", nullable = false)
-    @NotNull(message = "Le personnel assigné est obligatoire")
+    // Null while the task waits in the shared pool, see TacheInventaireRepository.claimNextTasks
+    @JoinColumn(name = "id_personnel")
     private Personnel personnel;
     
     @ManyToOne(fetch = FetchType.LAZY)
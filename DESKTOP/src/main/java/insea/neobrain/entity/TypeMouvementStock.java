@@ -0,0 +1,26 @@
+package insea.neobrain.entity;
+
+/**
+ * Enumeration for the causes of a stock quantity change
+ */
+public enum TypeMouvementStock {
+    VENTE("Vente"),
+    CORRECTION_INVENTAIRE("Correction d'inventaire"),
+    RETOUR("Retour"),
+    AJUSTEMENT_MANUEL("Ajustement manuel");
+    
+    private final String label;
+    
+    TypeMouvementStock(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
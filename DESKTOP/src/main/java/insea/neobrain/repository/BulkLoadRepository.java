@@ -0,0 +1,64 @@
+package insea.neobrain.repository;
+
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.Produit;
+
+import java.util.Iterator;
+
+/**
+ * Bulk loading of large data sets with PostgreSQL COPY.
+ * Rows are streamed with COPY FROM STDIN into a temporary staging table, then merged
+ * into the live table with a single set-based statement, all in one transaction.
+ * The entities are only used as row holders: they are not attached to a session and
+ * their generated ids are not filled in.
+ */
+public interface BulkLoadRepository {
+
+    /**
+     * What to do with a staged row whose natural key already exists in the live table
+     */
+    enum ConflictMode {
+        /** Keep the existing row and ignore the staged one */
+        SKIP,
+        /** Overwrite the existing row with the staged values */
+        UPDATE
+    }
+
+    /**
+     * Load products, matched on their product code (code_produit).
+     * Products whose barcode is already used by another product are skipped.
+     * @param produits products to load, consumed once
+     * @param mode conflict handling for existing product codes
+     * @return number of products inserted or updated
+     */
+    long loadProduits(Iterator<Produit> produits, ConflictMode mode);
+
+    /**
+     * Load clients (personne and client rows). Clients whose email or user name
+     * already exists are skipped, as are duplicates within the loaded rows.
+     * @param clients clients to load, consumed once
+     * @return number of clients inserted
+     */
+    long loadClients(Iterator<Client> clients);
+
+    /**
+     * Load sales orders, matched on their order number.
+     * The client is referenced by id; orders of unknown clients are skipped.
+     * The daily sales rollup is not updated: rebuild it once the orders and their lines are loaded.
+     * @param commandes orders to load, consumed once
+     * @param mode conflict handling for existing order numbers
+     * @return number of orders inserted or updated
+     */
+    long loadCommandes(Iterator<CommandeVente> commandes, ConflictMode mode);
+
+    /**
+     * Load order lines. The order is referenced by its order number and the product by its
+     * product code; lines whose order or product is unknown, or whose order already has a
+     * line for the same product, are skipped.
+     * @param lignes order lines to load, consumed once
+     * @return number of order lines inserted
+     */
+    long loadLignesCommande(Iterator<LigneCommande> lignes);
+}
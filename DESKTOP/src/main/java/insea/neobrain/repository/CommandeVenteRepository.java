@@ -8,6 +8,8 @@ import insea.neobrain.entity.ModePaiement;
 import java.time.LocalDate;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for CommandeVente entity
@@ -15,6 +17,47 @@ import java.util.List;
  */
 public interface CommandeVenteRepository extends GenericRepository<CommandeVente, Long> {
     
+    /**
+     * Save a new order with its lines and take the sold quantities out of stock, in one transaction:
+     * one statement locks the products (in ID order, so concurrent orders cannot deadlock), checks
+     * and decrements their stock and appends the VENTE stock movements, then the order and its
+     * lines are inserted with batched inserts and their totals appended to the daily sales rollup
+     * deltas (no rollup row is locked, so concurrent sales of a day do not wait on each other).
+     * @param commande the new order, with its lines and their products
+     * @return the saved order
+     * @throws IllegalStateException if a product does not have enough stock; nothing is saved
+     */
+    CommandeVente saveOrder(CommandeVente commande);
+    
+    /**
+     * Change a saved order in one transaction: the order is loaded with its lines and products,
+     * changed, its totals computed again, and the stock and daily sales rollup adjusted by the
+     * difference (lines removed with the collection are deleted).
+     * @param commandeId the order ID
+     * @param change the change, applied to the managed order
+     * @return the updated order
+     * @throws IllegalStateException if a product does not have enough stock; nothing is saved
+     */
+    CommandeVente updateOrder(Long commandeId, Consumer<CommandeVente> change);
+    
+    /**
+     * Delete an order with its lines and put the quantities sold back into stock, in one transaction
+     * @param commandeId the order ID
+     */
+    void deleteOrder(Long commandeId);
+    
+    /**
+     * Search orders with multiple criteria, client and personnel fetched
+     * @param clientNom Part of the client name (optional)
+     * @param personnelNom Part of the personnel name (optional)
+     * @param startDate Start date, inclusive (optional)
+     * @param endDate End date, inclusive (optional)
+     * @param modePaiement Payment method (optional)
+     * @return List of matching orders, most recent first
+     */
+    List<CommandeVente> search(String clientNom, String personnelNom, LocalDate startDate,
+                               LocalDate endDate, ModePaiement modePaiement);
+    
     /**
      * Find orders by client
      * @param client The client
@@ -44,6 +87,16 @@ public interface CommandeVenteRepository extends GenericRepository<CommandeVente
      */
     List<CommandeVente> findByDateBetween(LocalDate startDate, LocalDate endDate);
     
+    /**
+     * Stream orders by date range without loading them all in memory.
+     * The stream must be closed, e.g. with try-with-resources.
+     * @param startDate Start date (inclusive)
+     * @param endDate End date (inclusive)
+     * @param fetchSize Number of rows fetched per round trip
+     * @return Stream of orders in the date range, ordered by date
+     */
+    Stream<CommandeVente> streamByDateBetween(LocalDate startDate, LocalDate endDate, int fetchSize);
+    
     /**
      * Find orders by minimum total amount
      * @param minAmount Minimum total amount
@@ -129,4 +182,21 @@ public interface CommandeVenteRepository extends GenericRepository<CommandeVente
      * @return List of [Payment Method, Count, Total Amount] arrays
      */
     List<Object[]> getPaymentMethodDistribution(LocalDate startDate, LocalDate endDate);
+    
+    /**
+     * Get sales per product category for date range
+     * @param startDate Start date (inclusive)
+     * @param endDate End date (inclusive)
+     * @return List of [Category, Quantity Sold, Total Amount] arrays, by descending amount
+     */
+    List<Object[]> getSalesByCategory(LocalDate startDate, LocalDate endDate);
+    
+    /**
+     * Rebuild the daily sales rollup from the orders, e.g. after orders were loaded in bulk.
+     * Orders saved, updated or deleted through this repository keep the rollup current by themselves.
+     * @param startDate First day to rebuild, null for the whole history
+     * @param endDate Last day to rebuild, null for the whole history
+     * @return number of days rebuilt
+     */
+    int rebuildSalesRollup(LocalDate startDate, LocalDate endDate);
 }
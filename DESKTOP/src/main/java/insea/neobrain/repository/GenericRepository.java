@@ -1,7 +1,9 @@
 package insea.neobrain.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Generic repository interface providing basic CRUD operations
@@ -31,6 +33,20 @@ public interface GenericRepository<T, ID> {
      */
     T saveOrUpdate(T entity);
     
+    /**
+     * Save a collection of entities in a single transaction using JDBC batching
+     * @param entities the entities to save
+     * @return the saved entities, in iteration order
+     */
+    List<T> saveAll(Collection<T> entities);
+    
+    /**
+     * Update a collection of entities in a single transaction using JDBC batching
+     * @param entities the entities to update
+     * @return the updated entities, in iteration order
+     */
+    List<T> updateAll(Collection<T> entities);
+    
     /**
      * Delete an entity
      * @param entity the entity to delete
@@ -43,6 +59,13 @@ public interface GenericRepository<T, ID> {
      */
     void deleteById(ID id);
     
+    /**
+     * Delete entities by their IDs in a single transaction
+     * @param ids the IDs of the entities to delete
+     * @return number of entities deleted
+     */
+    int deleteAllById(Collection<ID> ids);
+    
     /**
      * Find an entity by its ID
      * @param id the ID of the entity
@@ -63,6 +86,21 @@ public interface GenericRepository<T, ID> {
      */
     List<T> findAll();
     
+    /**
+     * Stream all entities without loading them all in memory.
+     * The stream holds an open session and must be closed, e.g. with try-with-resources.
+     * @return stream of all entities, ordered by ID
+     */
+    Stream<T> streamAll();
+    
+    /**
+     * Stream all entities without loading them all in memory.
+     * The stream holds an open session and must be closed, e.g. with try-with-resources.
+     * @param fetchSize number of rows fetched from the database per round trip
+     * @return stream of all entities, ordered by ID
+     */
+    Stream<T> streamAll(int fetchSize);
+    
     /**
      * Count total number of entities
      * @return total count
@@ -75,10 +113,59 @@ public interface GenericRepository<T, ID> {
     void deleteAll();
     
     /**
-     * Find entities with pagination
+     * Find entities with pagination, ordered by ID.
+     * The cost grows with the offset; prefer {@link #findPage(String, int)} for large tables.
      * @param offset the offset for pagination
      * @param limit the limit for pagination
      * @return list of entities for the specified page
      */
     List<T> findWithPagination(int offset, int limit);
+    
+    /**
+     * Find the page following a cursor, ordered by ID (keyset pagination)
+     * @param cursor token returned by the previous page, or null for the first page
+     * @param limit maximum number of entities in the page
+     * @return the page and the cursor of the next one
+     */
+    KeysetPage<T> findPage(String cursor, int limit);
+    
+    /**
+     * Find the page following a cursor, ordered by an attribute then by ID (keyset pagination).
+     * The attribute should be non-null and indexed so that each page is a single index range scan.
+     * @param sortAttribute name of the entity attribute to sort on
+     * @param cursor token returned by the previous page, or null for the first page
+     * @param limit maximum number of entities in the page
+     * @param withApproximateTotal whether to fill the approximate total of the page
+     * @return the page and the cursor of the next one
+     */
+    KeysetPage<T> findPage(String sortAttribute, String cursor, int limit, boolean withApproximateTotal);
+    
+    /**
+     * Find the page following a cursor, ordered by an attribute then by ID, in either direction
+     * @param sortAttribute name of the entity attribute to sort on
+     * @param descending whether to sort from the highest value
+     * @param cursor token returned by the previous page in the same direction, or null for the first page
+     * @param limit maximum number of entities in the page
+     * @return the page and the cursor of the next one
+     */
+    KeysetPage<T> findPage(String sortAttribute, boolean descending, String cursor, int limit);
+    
+    /**
+     * Find the page starting at a row position, e.g. when a scrollbar is dragged far from the loaded pages.
+     * The cost grows with the offset like {@link #findWithPagination(int, int)}, but the returned cursor
+     * lets the following pages be read with {@link #findPage(String, boolean, String, int)}.
+     * @param sortAttribute name of the entity attribute to sort on
+     * @param descending whether to sort from the highest value
+     * @param offset position of the first entity of the page
+     * @param limit maximum number of entities in the page
+     * @return the page and the cursor of the next one
+     */
+    KeysetPage<T> findPageAt(String sortAttribute, boolean descending, int offset, int limit);
+    
+    /**
+     * Estimate the number of entities from the database statistics, without scanning the table.
+     * Falls back to {@link #count()} when no estimate is available.
+     * @return approximate count
+     */
+    long approximateCount();
 }
@@ -70,6 +70,52 @@ public interface InventaireRepository extends GenericRepository<Inventaire, Long
      */
     List<Inventaire> findWithDiscrepancies();
     
+    /**
+     * Find inventories with at least the given number of detected discrepancies
+     * @param minEcarts minimum number of discrepancies
+     * @return list of matching inventories, most discrepancies first
+     */
+    List<Inventaire> findByEcartsAtLeast(int minEcarts);
+    
+    /**
+     * Count inventories and their discrepancies in a single aggregate query
+     * @param dateDebut first start date included, or null for no lower bound
+     * @param dateFin last start date included, or null for no upper bound
+     * @return [inventory count (Long), inventories without discrepancies (Long), total discrepancies (Long)]
+     */
+    Object[] getDiscrepancySummary(LocalDate dateDebut, LocalDate dateFin);
+    
+    /**
+     * Open a full inventory: create the inventory header and one pending task per active product,
+     * generating the tasks with a single INSERT ... SELECT so the products are never loaded.
+     * When grouping by location, one inventory is created per product location (emplacement).
+     * @param header inventory header (number, start date, description, responsible); used as a template when grouping,
+     *               the other locations are numbered from the header number with a -2, -3... suffix
+     * @param personnelId personnel assigned to the tasks, or null to leave them in the pool for claimNextTasks
+     * @param groupByEmplacement true to create one inventory per location
+     * @return the created inventories, with their number of products set
+     */
+    List<Inventaire> createFullInventory(Inventaire header, Long personnelId, boolean groupByEmplacement);
+    
+    /**
+     * Close inventories with one bulk update and, optionally, reconcile the stock in the same transaction:
+     * the physical quantity of the latest completed task of each product is written to the product stock
+     * with one set-based statement that also appends the CORRECTION_INVENTAIRE stock movements.
+     * @param inventaireIds the inventories to close
+     * @param updateStock true to apply the counted quantities to the product stock
+     * @return [number of inventories closed, number of products whose stock was corrected]
+     */
+    int[] closeInventories(List<Long> inventaireIds, boolean updateStock);
+    
+    /**
+     * Atomically add a completed count to the statistics of an inventory, without loading it or its tasks
+     * @param inventaireId the inventory ID
+     * @param counted number of products newly counted (0 when a completed task is counted again)
+     * @param discrepancies number of new discrepancies
+     * @return true if the inventory exists
+     */
+    boolean incrementStatistics(Long inventaireId, int counted, int discrepancies);
+    
     /**
      * Find current year inventories
      * @return list of inventories from current year
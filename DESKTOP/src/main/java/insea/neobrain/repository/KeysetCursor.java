@@ -0,0 +1,92 @@
+package insea.neobrain.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position of the last row returned by a keyset page: the sort attribute,
+ * its value and the entity ID used as tie-breaker.
+ * Encoded as an URL-safe Base64 token so callers treat it as opaque.
+ */
+public final class KeysetCursor {
+    
+    private static final char SEPARATOR = '|';
+    
+    private final String sortAttribute;
+    private final String lastValue;
+    private final String lastId;
+    
+    public KeysetCursor(String sortAttribute, String lastValue, String lastId) {
+        if (sortAttribute == null || sortAttribute.isEmpty() || sortAttribute.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Invalid sort attribute: " + sortAttribute);
+        }
+        if (lastId == null || lastId.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Invalid cursor ID: " + lastId);
+        }
+        this.sortAttribute = sortAttribute;
+        this.lastValue = Objects.requireNonNull(lastValue, "lastValue");
+        this.lastId = lastId;
+    }
+    
+    /**
+     * Encode this cursor as an opaque token
+     * @return the token
+     */
+    public String encode() {
+        String raw = sortAttribute + SEPARATOR + lastValue + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a token produced by {@link #encode()}
+     * @param token the token
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Cursor token is empty");
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor token", e);
+        }
+        // The value may contain the separator, the attribute and the ID cannot
+        int first = raw.indexOf(SEPARATOR);
+        int last = raw.lastIndexOf(SEPARATOR);
+        if (first < 0 || first == last) {
+            throw new IllegalArgumentException("Malformed cursor token");
+        }
+        return new KeysetCursor(raw.substring(0, first), raw.substring(first + 1, last), raw.substring(last + 1));
+    }
+    
+    public String getSortAttribute() {
+        return sortAttribute;
+    }
+    
+    public String getLastValue() {
+        return lastValue;
+    }
+    
+    public String getLastId() {
+        return lastId;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        KeysetCursor that = (KeysetCursor) o;
+        return sortAttribute.equals(that.sortAttribute) &&
+                lastValue.equals(that.lastValue) &&
+                lastId.equals(that.lastId);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortAttribute, lastValue, lastId);
+    }
+}
@@ -0,0 +1,64 @@
+package insea.neobrain.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) pagination.
+ * The next page is requested with {@link #getNextCursor()}, which is null on the last page.
+ * @param <T> Entity type
+ */
+public class KeysetPage<T> {
+    
+    /**
+     * Value of {@link #getApproximateTotal()} when no total was requested
+     */
+    public static final long UNKNOWN_TOTAL = -1L;
+    
+    private final List<T> content;
+    private final String nextCursor;
+    private final long approximateTotal;
+    
+    public KeysetPage(List<T> content, String nextCursor, long approximateTotal) {
+        this.content = content != null ? Collections.unmodifiableList(content) : Collections.emptyList();
+        this.nextCursor = nextCursor;
+        this.approximateTotal = approximateTotal;
+    }
+    
+    /**
+     * @return the entities of this page, in sort order
+     */
+    public List<T> getContent() {
+        return content;
+    }
+    
+    /**
+     * @return opaque token for the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    /**
+     * @return true if another page follows this one
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+    
+    /**
+     * @return estimated number of rows in the table, or {@link #UNKNOWN_TOTAL}
+     */
+    public long getApproximateTotal() {
+        return approximateTotal;
+    }
+    
+    @Override
+    public String toString() {
+        return "KeysetPage{" +
+                "size=" + content.size() +
+                ", hasNext=" + hasNext() +
+                ", approximateTotal=" + approximateTotal +
+                '}';
+    }
+}
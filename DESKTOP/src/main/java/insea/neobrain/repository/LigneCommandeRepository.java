@@ -69,6 +69,17 @@ public interface LigneCommandeRepository extends GenericRepository<LigneCommande
      */
     BigDecimal getTotalRevenueInDateRange(Produit produit, LocalDate startDate, LocalDate endDate);
     
+    /**
+     * Get the best sellers from the daily sales per product (ventes_produit_journalieres), without
+     * reading the order lines: the cost depends on the number of days and products, not of lines
+     * @param startDate Start date (inclusive), null for no lower bound
+     * @param endDate End date (inclusive), null for no upper bound
+     * @param byRevenue true to rank by revenue, false by quantity
+     * @param limit Maximum number of products to return
+     * @return List of [Product, Total Quantity (Long), Total Revenue (BigDecimal)] arrays, best first
+     */
+    List<Object[]> getProductSalesTotals(LocalDate startDate, LocalDate endDate, boolean byRevenue, int limit);
+    
     /**
      * Get top selling products by quantity
      * @param limit Maximum number of products to return
@@ -0,0 +1,41 @@
+package insea.neobrain.repository;
+
+import insea.neobrain.entity.MouvementStock;
+import insea.neobrain.entity.TypeMouvementStock;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for MouvementStock entity
+ * Provides data access methods for the stock movement ledger
+ */
+public interface MouvementStockRepository extends GenericRepository<MouvementStock, Long> {
+    
+    /**
+     * Find the latest movements of a product, most recent first
+     * @param produitId The product ID
+     * @param limit Maximum number of movements
+     * @return List of movements
+     */
+    List<MouvementStock> findByProduit(Long produitId, int limit);
+    
+    /**
+     * Find the movements of a product in a period, most recent first
+     * @param produitId The product ID
+     * @param start Start of the period (inclusive)
+     * @param end End of the period (exclusive)
+     * @return List of movements
+     */
+    List<MouvementStock> findByProduitAndDateBetween(Long produitId, LocalDateTime start, LocalDateTime end);
+    
+    /**
+     * Sum the quantities moved for a product by movement type in a period
+     * @param produitId The product ID
+     * @param type The movement type
+     * @param start Start of the period (inclusive)
+     * @param end End of the period (exclusive)
+     * @return Sum of the quantities
+     */
+    long sumQuantiteByType(Long produitId, TypeMouvementStock type, LocalDateTime start, LocalDateTime end);
+}
@@ -4,9 +4,13 @@ import insea.neobrain.entity.CategorieProduit;
 import insea.neobrain.entity.Produit;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for Produit entity
@@ -27,6 +31,37 @@ public interface ProduitRepository extends GenericRepository<Produit, Long> {
      */
     Optional<Produit> findByCodeBarre(String codeBarre);
     
+    /**
+     * Find the barcodes of all products, e.g. to check uniqueness of many rows at once
+     * @return set of the barcodes in use
+     */
+    Set<String> findAllCodesBarre();
+    
+    /**
+     * Read the barcode and ID of every product with a forward-only cursor, without loading the products
+     * @param action called with the barcode and the product ID of each row
+     */
+    void forEachCodeBarre(BiConsumer<String, Long> action);
+    
+    /**
+     * Find the barcodes of the products created or modified after a date
+     * @param since the date
+     * @return list of [codeBarre, idProduit]
+     */
+    List<Object[]> findCodesBarreModifiedSince(LocalDateTime since);
+    
+    /**
+     * Count the products having a barcode
+     * @return number of products with a barcode
+     */
+    long countCodesBarre();
+    
+    /**
+     * Summarize the products having a barcode, to detect changes that leave no modification date
+     * @return [number of products with a barcode, sum of their IDs]
+     */
+    long[] summarizeCodesBarre();
+    
     /**
      * Find products by name (partial match)
      * @param nom the product name or partial name
@@ -44,10 +79,27 @@ public interface ProduitRepository extends GenericRepository<Produit, Long> {
     /**
      * Search products by name or reference
      * @param searchTerm the search term
-     * @return list of products matching the search term
+     * @return list of products matching the search term, most relevant first (see {@link #search})
      */
     List<Produit> searchByNameOrReference(String searchTerm);
     
+    /**
+     * Relevance-ranked product search on the name, the product code and the barcode.
+     * Uses the pg_trgm indexes of schema_upgrades.sql: substring matches on any column,
+     * plus approximate matches on the name (typos). Name prefix matches rank first, then
+     * names by trigram similarity. Without pg_trgm, only substring matches are returned.
+     * @param term the search term
+     * @param limit maximum number of products returned
+     * @return matching products, most relevant first
+     */
+    List<Produit> search(String term, int limit);
+    
+    /**
+     * Same as {@link #search(String, int)}, cancellable from another thread
+     * @param cancellation cancels the running statement; a cancelled search returns an empty list
+     */
+    List<Produit> search(String term, int limit, QueryCancellation cancellation);
+    
     /**
      * Find products by category
      * @param categorie the product category
@@ -55,12 +107,29 @@ public interface ProduitRepository extends GenericRepository<Produit, Long> {
      */
     List<Produit> findByCategorie(CategorieProduit categorie);
     
+    /**
+     * First products of a category by name, cancellable from another thread
+     * @param categorie the product category
+     * @param limit maximum number of products returned
+     * @param cancellation cancels the running statement; a cancelled query returns an empty list
+     * @return the first products of the category, ordered by name
+     */
+    List<Produit> findByCategorie(CategorieProduit categorie, int limit, QueryCancellation cancellation);
+    
     /**
      * Find active products
      * @return list of active products
      */
     List<Produit> findActive();
     
+    /**
+     * Stream active products without loading them all in memory.
+     * The stream must be closed, e.g. with try-with-resources.
+     * @param fetchSize number of rows fetched per round trip
+     * @return stream of active products, ordered by ID
+     */
+    Stream<Produit> streamActive(int fetchSize);
+    
     /**
      * Find available products for sale
      * @return list of available products for sale
@@ -183,4 +252,23 @@ public interface ProduitRepository extends GenericRepository<Produit, Long> {
      * @return list of products with the specified active status
      */
     List<Produit> findByActif(boolean actif);
+    
+    /**
+     * Atomically add a quantity to the stock of a product, in a single statement.
+     * The update is refused if the resulting stock would be negative.
+     * @param produitId the product ID
+     * @param delta quantity to add (negative to remove)
+     * @return the stock before and after the update with the alert threshold,
+     *         or empty if the product does not exist or the stock is insufficient
+     */
+    Optional<StockLevel> adjustStock(Long produitId, int delta);
+    
+    /**
+     * Atomically set the stock of a product, in a single statement
+     * @param produitId the product ID
+     * @param quantity the new stock quantity
+     * @return the stock before and after the update with the alert threshold,
+     *         or empty if the product does not exist
+     */
+    Optional<StockLevel> setStock(Long produitId, int quantity);
 }
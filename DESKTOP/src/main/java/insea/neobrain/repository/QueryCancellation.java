@@ -0,0 +1,60 @@
+package insea.neobrain.repository;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handle to cancel a repository query running in another thread, e.g. a search made
+ * obsolete by the next keystroke. The repository attaches its session while the query runs;
+ * cancelling sends a cancel request for the running JDBC statement, so the database stops
+ * working on it instead of finishing a result nobody reads.
+ */
+public final class QueryCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCancellation.class);
+
+    private Session session;
+    private boolean cancelled;
+
+    /**
+     * Cancel the query; a query not started yet will not run
+     */
+    public synchronized void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        if (session != null) {
+            try {
+                session.cancelQuery();
+            } catch (Exception e) {
+                // The statement may have completed in the meantime
+                logger.debug("Could not cancel query: {}", e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Called by the repository before running the query
+     * @return false if already cancelled, the query must not run
+     */
+    public synchronized boolean attach(Session session) {
+        if (cancelled) {
+            return false;
+        }
+        this.session = session;
+        return true;
+    }
+
+    /**
+     * Called by the repository once the query has completed, before closing the session
+     */
+    public synchronized void detach() {
+        this.session = null;
+    }
+}
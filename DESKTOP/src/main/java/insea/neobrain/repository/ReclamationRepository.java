@@ -190,4 +190,17 @@ public interface ReclamationRepository extends GenericRepository<Reclamation, Lo
      * @return List of overdue complaints
      */
     List<Reclamation> findOverdueComplaints(int days);
+    
+    /**
+     * Search complaints by number, reason, description or client name, most recent first,
+     * with their order line, order and client loaded
+     * @param term text searched (case-insensitive substring), empty to match every complaint
+     * @param etat state of the complaints, or null for all states
+     * @param type type of the complaints, or null for all types
+     * @param limit maximum number of results
+     * @param cancellation cancels the running statement; a cancelled search returns an empty list (may be null)
+     * @return at most limit matching complaints
+     */
+    List<Reclamation> search(String term, EtatReclamation etat, TypeReclamation type, int limit,
+                             QueryCancellation cancellation);
 }
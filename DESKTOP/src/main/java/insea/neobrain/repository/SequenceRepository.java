@@ -0,0 +1,16 @@
+package insea.neobrain.repository;
+
+/**
+ * Access to the database sequences numbering business documents.
+ * Each sequence is incremented by a block size: one nextval reserves a whole block of numbers
+ * for the caller, which hands them out without going back to the database.
+ */
+public interface SequenceRepository {
+
+    /**
+     * Reserve the next block of a sequence
+     * @param sequenceName name of the sequence
+     * @return the first value of the block; the block ends before first value + the sequence increment
+     */
+    long nextBlock(String sequenceName);
+}
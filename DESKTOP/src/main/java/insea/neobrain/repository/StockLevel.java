@@ -0,0 +1,55 @@
+package insea.neobrain.repository;
+
+/**
+ * Stock of a product as returned by an atomic stock update, with its alert threshold,
+ * so the caller can warn about a low stock without reading the product again.
+ */
+public class StockLevel {
+    
+    private final int previousQuantity;
+    private final int quantity;
+    private final int threshold;
+    
+    public StockLevel(int previousQuantity, int quantity, int threshold) {
+        this.previousQuantity = previousQuantity;
+        this.quantity = quantity;
+        this.threshold = threshold;
+    }
+    
+    /**
+     * @return the stock quantity before the update
+     */
+    public int getPreviousQuantity() {
+        return previousQuantity;
+    }
+    
+    /**
+     * @return the stock quantity after the update
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+    
+    /**
+     * @return the alert threshold of the product (stock_minimum, 0 when not set)
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+    
+    /**
+     * @return true if the stock after the update is at or below the alert threshold
+     */
+    public boolean isBelowThreshold() {
+        return quantity <= threshold;
+    }
+    
+    @Override
+    public String toString() {
+        return "StockLevel{" +
+                "previousQuantity=" + previousQuantity +
+                ", quantity=" + quantity +
+                ", threshold=" + threshold +
+                '}';
+    }
+}
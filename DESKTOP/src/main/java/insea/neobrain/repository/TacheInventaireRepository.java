@@ -8,7 +8,9 @@ import insea.neobrain.entity.EtatTache;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Repository interface for TacheInventaire entity
@@ -151,4 +153,42 @@ public interface TacheInventaireRepository extends GenericRepository<TacheInvent
      * @return List of unassigned tasks
      */
     List<TacheInventaire> findUnassigned();
+    
+    /**
+     * Claim the next unassigned pending tasks for a personnel, queue-style.
+     * Candidate rows are locked with FOR UPDATE SKIP LOCKED, so concurrent callers never receive
+     * the same task and never wait for each other. Claimed tasks are assigned, set EN_COURS and
+     * returned with their product, ordered by priority (1 first), then location.
+     * @param personnel The personnel claiming the tasks
+     * @param maxTasks Maximum number of tasks to claim
+     * @return List of claimed tasks, empty when the pool is exhausted
+     */
+    List<TacheInventaire> claimNextTasks(Personnel personnel, int maxTasks);
+    
+    /**
+     * Find the tasks of an inventory that can still be counted (EN_ATTENTE or EN_COURS), with their product
+     * @param inventaireId The inventory ID
+     * @return List of open tasks with the product fetched
+     */
+    List<TacheInventaire> findOpenTasksWithProduit(Long inventaireId);
+    
+    /**
+     * Add scanned quantities to the physical counts with one JDBC batch. Tasks are set EN_COURS;
+     * tasks already completed or cancelled are left unchanged. A lot is applied at most once,
+     * so a lot replayed from a scan journal after a crash is skipped.
+     * @param lotId Unique ID of this lot of counts
+     * @param deltas Quantity to add by task ID, negative to correct a previous scan
+     * @return Number of tasks updated, 0 if the lot was already applied
+     */
+    int addPhysicalCounts(String lotId, Map<Long, Integer> deltas);
+    
+    /**
+     * Complete the counted tasks of an inventory with one statement: the tasks are set TERMINEE,
+     * the inventory counters are incremented and the stock of each product is set to its count,
+     * with a CORRECTION_INVENTAIRE stock movement. Tasks without a count are left open.
+     * @param inventaireId Inventory of the tasks
+     * @param taskIds Tasks to complete
+     * @return Number of tasks completed
+     */
+    int completeCountedTasks(Long inventaireId, Collection<Long> taskIds);
 }
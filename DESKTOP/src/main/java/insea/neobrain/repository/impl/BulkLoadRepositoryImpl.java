@@ -0,0 +1,367 @@
+package insea.neobrain.repository.impl;
+
+import insea.neobrain.config.HibernateUtil;
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.BulkLoadRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * PostgreSQL COPY implementation of the bulk loader.
+ * Each load runs in its own transaction: the staging table is created ON COMMIT DROP,
+ * filled with COPY FROM STDIN, then merged into the live table with INSERT ... SELECT.
+ * Generated ids are taken from the same sequences Hibernate uses: nextval() is called once per
+ * row, so the values handed out never fall inside a block allocated by Hibernate's pooled optimizer.
+ */
+public class BulkLoadRepositoryImpl implements BulkLoadRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoadRepositoryImpl.class);
+
+    // Products
+
+    private static final String PRODUIT_COLUMNS =
+        "code_produit, nom, description, prix, categorie, quantite_stock, stock_minimum, seuil_stock, "
+        + "stock_maximum, disponible, besoin_inventaire, date_ajout, dernier_inventaire, unite_mesure, "
+        + "emplacement, code_barre, actif, date_creation, date_modification";
+
+    private static final String PRODUIT_STAGING =
+        "CREATE TEMP TABLE staging_produit ON COMMIT DROP AS SELECT " + PRODUIT_COLUMNS
+        + " FROM produit WITH NO DATA";
+
+    private static final String PRODUIT_INSERT =
+        "INSERT INTO produit (id_produit, version, code_produit, nom, description, prix, categorie, quantite_stock, "
+        + "stock_minimum, seuil_stock, stock_maximum, disponible, besoin_inventaire, date_ajout, dernier_inventaire, "
+        + "unite_mesure, emplacement, code_barre, actif, date_creation, date_modification) "
+        + "SELECT nextval('produit_seq'), 0, s.code_produit, s.nom, s.description, s.prix, s.categorie, s.quantite_stock, "
+        + "s.stock_minimum, s.seuil_stock, s.stock_maximum, s.disponible, s.besoin_inventaire, "
+        + "COALESCE(s.date_ajout, CURRENT_DATE), s.dernier_inventaire, s.unite_mesure, s.emplacement, s.code_barre, "
+        + "s.actif, COALESCE(s.date_creation, LOCALTIMESTAMP), s.date_modification "
+        + "FROM (SELECT DISTINCT ON (code_produit) * FROM staging_produit ORDER BY code_produit) s "
+        + "WHERE NOT EXISTS (SELECT 1 FROM produit p WHERE p.code_barre = s.code_barre AND p.code_produit <> s.code_produit) "
+        + "ON CONFLICT (code_produit) ";
+
+    private static final String PRODUIT_UPDATE =
+        "DO UPDATE SET nom = EXCLUDED.nom, description = EXCLUDED.description, prix = EXCLUDED.prix, "
+        + "categorie = EXCLUDED.categorie, quantite_stock = EXCLUDED.quantite_stock, "
+        + "stock_minimum = EXCLUDED.stock_minimum, seuil_stock = EXCLUDED.seuil_stock, "
+        + "stock_maximum = EXCLUDED.stock_maximum, disponible = EXCLUDED.disponible, "
+        + "besoin_inventaire = EXCLUDED.besoin_inventaire, unite_mesure = EXCLUDED.unite_mesure, "
+        + "emplacement = EXCLUDED.emplacement, code_barre = EXCLUDED.code_barre, actif = EXCLUDED.actif, "
+        + "date_modification = LOCALTIMESTAMP, version = produit.version + 1";
+
+    // Clients
+
+    private static final String CLIENT_COLUMNS =
+        "civilite, nom, prenom, date_naissance, email, telephone, nationalite, nom_utilisateur, mot_de_passe, "
+        + "actif, date_creation, date_modification, email_secondaire, est_fidele, mode_paiement, adresse_client, "
+        + "code_postal, ville, points_fidelite, limite_credit, credit_utilise, type_client";
+
+    private static final String CLIENT_STAGING =
+        "CREATE TEMP TABLE staging_client ON COMMIT DROP AS SELECT p.id_personne, p.civilite, p.nom, p.prenom, "
+        + "p.date_naissance, p.email, p.telephone, p.nationalite, p.nom_utilisateur, p.mot_de_passe, p.actif, "
+        + "p.date_creation, p.date_modification, c.email_secondaire, c.est_fidele, c.mode_paiement, "
+        + "c.adresse AS adresse_client, c.code_postal, c.ville, c.points_fidelite, c.limite_credit, "
+        + "c.credit_utilise, c.type_client "
+        + "FROM personne p JOIN client c ON c.id_personne = p.id_personne WITH NO DATA";
+
+    private static final String CLIENT_DELETE_EXISTING =
+        "DELETE FROM staging_client s WHERE EXISTS (SELECT 1 FROM personne p WHERE p.email = s.email) "
+        + "OR EXISTS (SELECT 1 FROM personne p WHERE p.nom_utilisateur = s.nom_utilisateur)";
+
+    private static final String CLIENT_DELETE_DUPLICATES =
+        "DELETE FROM staging_client WHERE ctid IN (SELECT ctid FROM ("
+        + "SELECT ctid, row_number() OVER (PARTITION BY %1$s ORDER BY ctid) AS rang "
+        + "FROM staging_client WHERE %1$s IS NOT NULL) d WHERE d.rang > 1)";
+
+    private static final String CLIENT_ASSIGN_IDS =
+        "UPDATE staging_client SET id_personne = nextval(pg_get_serial_sequence('personne', 'id_personne'))";
+
+    private static final String CLIENT_INSERT_PERSONNE =
+        "INSERT INTO personne (id_personne, civilite, nom, prenom, date_naissance, email, telephone, nationalite, "
+        + "nom_utilisateur, mot_de_passe, actif, date_creation, date_modification) "
+        + "SELECT id_personne, civilite, nom, prenom, date_naissance, email, telephone, nationalite, "
+        + "nom_utilisateur, mot_de_passe, actif, COALESCE(date_creation, CURRENT_DATE), date_modification "
+        + "FROM staging_client";
+
+    private static final String CLIENT_INSERT_CLIENT =
+        "INSERT INTO client (id_personne, email_secondaire, est_fidele, mode_paiement, adresse, code_postal, ville, "
+        + "points_fidelite, limite_credit, credit_utilise, type_client) "
+        + "SELECT id_personne, email_secondaire, est_fidele, mode_paiement, adresse_client, code_postal, ville, "
+        + "points_fidelite, limite_credit, credit_utilise, type_client FROM staging_client";
+
+    // Sales orders
+
+    private static final String COMMANDE_COLUMNS =
+        "numero_commande, date_commande_vente, prix_total, est_valide, est_expediee, etat_echec, date_validation, "
+        + "date_expedition, date_livraison_prevue, date_livraison_effective, commentaire, adresse_livraison, "
+        + "frais_livraison, remise, tva, total_ttc, statut, date_creation, date_modification, id_client, mode_paiement, "
+        + "id_personnel";
+
+    private static final String COMMANDE_STAGING =
+        "CREATE TEMP TABLE staging_commande ON COMMIT DROP AS SELECT " + COMMANDE_COLUMNS
+        + " FROM commande_vente WITH NO DATA";
+
+    private static final String COMMANDE_INSERT =
+        "INSERT INTO commande_vente (id_commande_vente, " + COMMANDE_COLUMNS + ") "
+        + "SELECT nextval('commande_vente_seq'), s.numero_commande, s.date_commande_vente, COALESCE(s.prix_total, 0), "
+        + "s.est_valide, s.est_expediee, s.etat_echec, s.date_validation, s.date_expedition, s.date_livraison_prevue, "
+        + "s.date_livraison_effective, s.commentaire, s.adresse_livraison, s.frais_livraison, s.remise, s.tva, "
+        + "s.total_ttc, s.statut, COALESCE(s.date_creation, LOCALTIMESTAMP), s.date_modification, s.id_client, "
+        // An unknown employee is dropped rather than failing the whole load on the foreign key
+        + "s.mode_paiement, (SELECT p.id_personne FROM personnel p WHERE p.id_personne = s.id_personnel) "
+        + "FROM (SELECT DISTINCT ON (numero_commande) * FROM staging_commande ORDER BY numero_commande) s "
+        + "WHERE EXISTS (SELECT 1 FROM client c WHERE c.id_personne = s.id_client) "
+        + "ON CONFLICT (numero_commande) ";
+
+    private static final String COMMANDE_UPDATE =
+        "DO UPDATE SET date_commande_vente = EXCLUDED.date_commande_vente, prix_total = EXCLUDED.prix_total, "
+        + "est_valide = EXCLUDED.est_valide, est_expediee = EXCLUDED.est_expediee, etat_echec = EXCLUDED.etat_echec, "
+        + "date_validation = EXCLUDED.date_validation, date_expedition = EXCLUDED.date_expedition, "
+        + "date_livraison_prevue = EXCLUDED.date_livraison_prevue, "
+        + "date_livraison_effective = EXCLUDED.date_livraison_effective, commentaire = EXCLUDED.commentaire, "
+        + "adresse_livraison = EXCLUDED.adresse_livraison, frais_livraison = EXCLUDED.frais_livraison, "
+        + "remise = EXCLUDED.remise, tva = EXCLUDED.tva, total_ttc = EXCLUDED.total_ttc, statut = EXCLUDED.statut, "
+        + "id_client = EXCLUDED.id_client, mode_paiement = EXCLUDED.mode_paiement, "
+        + "id_personnel = EXCLUDED.id_personnel, date_modification = LOCALTIMESTAMP";
+
+    // Order lines
+
+    private static final String LIGNE_COLUMNS =
+        "numero_commande, code_produit, quantite_vente, prix_unitaire, sous_total, remise_ligne, etat_echec, "
+        + "etat_retour, quantite_livree, quantite_retournee, commentaire, statut, date_creation, date_modification";
+
+    private static final String LIGNE_STAGING =
+        "CREATE TEMP TABLE staging_ligne ON COMMIT DROP AS SELECT cv.numero_commande, p.code_produit, "
+        + "l.quantite_vente, l.prix_unitaire, l.sous_total, l.remise_ligne, l.etat_echec, l.etat_retour, "
+        + "l.quantite_livree, l.quantite_retournee, l.commentaire, l.statut, l.date_creation, l.date_modification "
+        + "FROM ligne_commande l, commande_vente cv, produit p WITH NO DATA";
+
+    private static final String LIGNE_INSERT =
+        "INSERT INTO ligne_commande (id_ligne_vente, id_commande_vente, id_produit, quantite_vente, prix_unitaire, "
+        + "sous_total, remise_ligne, etat_echec, etat_retour, quantite_livree, quantite_retournee, commentaire, "
+        + "statut, date_creation, date_modification) "
+        + "SELECT nextval('ligne_commande_seq'), cv.id_commande_vente, p.id_produit, s.quantite_vente, s.prix_unitaire, "
+        + "COALESCE(s.sous_total, s.prix_unitaire * s.quantite_vente - COALESCE(s.remise_ligne, 0)), s.remise_ligne, "
+        + "s.etat_echec, s.etat_retour, s.quantite_livree, s.quantite_retournee, s.commentaire, s.statut, "
+        + "COALESCE(s.date_creation, LOCALTIMESTAMP), s.date_modification "
+        + "FROM staging_ligne s "
+        + "JOIN commande_vente cv ON cv.numero_commande = s.numero_commande "
+        + "JOIN produit p ON p.code_produit = s.code_produit "
+        + "WHERE NOT EXISTS (SELECT 1 FROM ligne_commande l "
+        + "WHERE l.id_commande_vente = cv.id_commande_vente AND l.id_produit = p.id_produit)";
+
+    private final SessionFactory sessionFactory;
+
+    public BulkLoadRepositoryImpl() {
+        this.sessionFactory = HibernateUtil.getSessionFactory();
+    }
+
+    @Override
+    public long loadProduits(Iterator<Produit> produits, ConflictMode mode) {
+        String merge = PRODUIT_INSERT + (mode == ConflictMode.UPDATE ? PRODUIT_UPDATE : "DO NOTHING");
+        long merged = load("products", PRODUIT_STAGING, "staging_produit", PRODUIT_COLUMNS, produits,
+            (row, p) -> row
+                .value(p.getCodeProduit())
+                .value(p.getNom())
+                .value(p.getDescription())
+                .value(p.getPrix())
+                .value(p.getCategorie())
+                .value(p.getQuantiteStock())
+                .value(p.getStockMinimum())
+                .value(p.getSeuilStock())
+                .value(p.getStockMaximum())
+                .value(p.getDisponible())
+                .value(p.getBesoinInventaire())
+                .value(p.getDateAjout())
+                .value(p.getDernierInventaire())
+                .value(p.getUniteMesure())
+                .value(p.getEmplacement())
+                .value(p.getCodeBarre())
+                .value(p.getActif())
+                .value(p.getDateCreation())
+                .value(p.getDateModification()),
+            Arrays.asList(merge));
+
+        // Rows were written behind Hibernate's back: cached products and query results may be stale
+        if (mode == ConflictMode.UPDATE) {
+            sessionFactory.getCache().evictEntityData(Produit.class);
+        }
+        sessionFactory.getCache().evictQueryRegions();
+        return merged;
+    }
+
+    @Override
+    public long loadClients(Iterator<Client> clients) {
+        long merged = load("clients", CLIENT_STAGING, "staging_client", CLIENT_COLUMNS, clients,
+            (row, c) -> row
+                .value(c.getCivilite())
+                .value(c.getNom())
+                .value(c.getPrenom())
+                .value(c.getDateNaissance())
+                .value(c.getEmail())
+                .value(c.getTelephone())
+                .value(c.getNationalite())
+                .value(c.getNomUtilisateur())
+                .value(c.getMotDePasse())
+                .value(c.getActif())
+                .value(c.getDateCreation())
+                .value(c.getDateModification())
+                .value(c.getEmailSecondaire())
+                .value(c.getEstFidele())
+                .value(c.getModePaiement())
+                .value(c.getAdresse())
+                .value(c.getCodePostal())
+                .value(c.getVille())
+                .value(c.getPointsFidelite())
+                .value(c.getLimiteCredit())
+                .value(c.getCreditUtilise())
+                .value(c.getTypeClient()),
+            Arrays.asList(
+                CLIENT_DELETE_EXISTING,
+                String.format(CLIENT_DELETE_DUPLICATES, "email"),
+                String.format(CLIENT_DELETE_DUPLICATES, "nom_utilisateur"),
+                CLIENT_ASSIGN_IDS,
+                CLIENT_INSERT_PERSONNE,
+                CLIENT_INSERT_CLIENT));
+        sessionFactory.getCache().evictQueryRegions();
+        return merged;
+    }
+
+    @Override
+    public long loadCommandes(Iterator<CommandeVente> commandes, ConflictMode mode) {
+        String merge = COMMANDE_INSERT + (mode == ConflictMode.UPDATE ? COMMANDE_UPDATE : "DO NOTHING");
+        long merged = load("sales orders", COMMANDE_STAGING, "staging_commande", COMMANDE_COLUMNS, commandes,
+            (row, c) -> row
+                .value(c.getNumeroCommande())
+                .value(c.getDateCommandeVente())
+                .value(c.getPrixTotal())
+                .value(c.getEstValide())
+                .value(c.getEstExpediee())
+                .value(c.getEtatEchec())
+                .value(c.getDateValidation())
+                .value(c.getDateExpedition())
+                .value(c.getDateLivraisonPrevue())
+                .value(c.getDateLivraisonEffective())
+                .value(c.getCommentaire())
+                .value(c.getAdresseLivraison())
+                .value(c.getFraisLivraison())
+                .value(c.getRemise())
+                .value(c.getTva())
+                .value(c.getTotalTTC())
+                .value(c.getStatut())
+                .value(c.getDateCreation())
+                .value(c.getDateModification())
+                .value(c.getClient() != null ? c.getClient().getIdPersonne() : null)
+                .value(c.getModePaiement())
+                .value(c.getPersonnel() != null ? c.getPersonnel().getIdPersonne() : null),
+            Arrays.asList(merge));
+        sessionFactory.getCache().evictQueryRegions();
+        return merged;
+    }
+
+    @Override
+    public long loadLignesCommande(Iterator<LigneCommande> lignes) {
+        long merged = load("order lines", LIGNE_STAGING, "staging_ligne", LIGNE_COLUMNS, lignes,
+            (row, l) -> row
+                .value(l.getCommandeVente() != null ? l.getCommandeVente().getNumeroCommande() : null)
+                .value(l.getProduit() != null ? l.getProduit().getCodeProduit() : null)
+                .value(l.getQuantiteVente())
+                .value(l.getPrixUnitaire())
+                .value(l.getSousTotal())
+                .value(l.getRemiseLigne())
+                .value(l.getEtatEchec())
+                .value(l.getEtatRetour())
+                .value(l.getQuantiteLivree())
+                .value(l.getQuantiteRetournee())
+                .value(l.getCommentaire())
+                .value(l.getStatut())
+                .value(l.getDateCreation())
+                .value(l.getDateModification()),
+            Arrays.asList(LIGNE_INSERT));
+        sessionFactory.getCache().evictQueryRegions();
+        return merged;
+    }
+
+    /**
+     * Create the staging table, COPY the rows into it and run the merge statements
+     * @param label name of the loaded data, for logging
+     * @param stagingDdl statement creating the staging table
+     * @param stagingTable staging table name
+     * @param columns staging columns filled by the row writer, in order
+     * @param rows rows to copy
+     * @param rowWriter writes the columns of one row
+     * @param mergeStatements statements run after the COPY; the update count of the last one is returned
+     * @return number of rows merged into the live table
+     */
+    private <T> long load(String label, String stagingDdl, String stagingTable, String columns,
+                          Iterator<T> rows, BiConsumer<CopyRowWriter, T> rowWriter, List<String> mergeStatements) {
+        long start = System.currentTimeMillis();
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            long[] counts = session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(stagingDdl);
+                }
+
+                long copied = copy(connection, "COPY " + stagingTable + " (" + columns + ") FROM STDIN WITH (FORMAT csv)",
+                    rows, rowWriter);
+
+                int merged = 0;
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : mergeStatements) {
+                        merged = statement.executeUpdate(sql);
+                    }
+                }
+                return new long[]{copied, merged};
+            });
+            transaction.commit();
+
+            logger.info("Bulk loaded {}: {} rows copied, {} merged in {} ms",
+                label, counts[0], counts[1], System.currentTimeMillis() - start);
+            return counts[1];
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                try {
+                    transaction.rollback();
+                } catch (Exception rollbackEx) {
+                    logger.error("Error during transaction rollback", rollbackEx);
+                }
+            }
+            logger.error("Error bulk loading {}", label, e);
+            throw new RuntimeException("Error bulk loading " + label, e);
+        }
+    }
+
+    private <T> long copy(Connection connection, String copySql, Iterator<T> rows,
+                          BiConsumer<CopyRowWriter, T> rowWriter) throws SQLException {
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        CopyRowWriter writer = new CopyRowWriter(copyManager.copyIn(copySql));
+        try {
+            while (rows.hasNext()) {
+                rowWriter.accept(writer, rows.next());
+                writer.endRow();
+            }
+            return writer.finish();
+        } catch (SQLException | RuntimeException e) {
+            writer.cancel();
+            throw e;
+        }
+    }
+}
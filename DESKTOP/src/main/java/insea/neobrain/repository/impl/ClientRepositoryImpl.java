@@ -20,7 +20,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public Optional<Client> findByEmail(String email) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE c.email = :email", Client.class);
             query.setParameter("email", email);
@@ -35,7 +35,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findByName(String nom, String prenom) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE c.nom = :nom AND c.prenom = :prenom", Client.class);
             query.setParameter("nom", nom);
@@ -51,7 +51,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> searchByName(String searchTerm) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             String searchPattern = "%" + searchTerm.toLowerCase() + "%";
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE LOWER(CONCAT(c.nom, ' ', c.prenom)) LIKE :searchTerm " +
@@ -69,7 +69,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findLoyalClients() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE c.estFidele = true ORDER BY c.pointsFidelite DESC", Client.class);
             List<Client> clients = query.getResultList();
@@ -83,7 +83,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findByModePaiement(ModePaiement modePaiement) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE c.modePaiement = :modePaiement ORDER BY c.nom, c.prenom", Client.class);
             query.setParameter("modePaiement", modePaiement);
@@ -98,7 +98,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findByVille(String ville) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE c.ville = :ville ORDER BY c.nom, c.prenom", Client.class);
             query.setParameter("ville", ville);
@@ -113,7 +113,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findWithCreditLimitAbove(Double montant) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE c.limiteCredit > :montant ORDER BY c.limiteCredit DESC", Client.class);
             query.setParameter("montant", montant);
@@ -128,7 +128,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findWithAvailableCreditAbove(Double montant) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "FROM Client c WHERE (c.limiteCredit - COALESCE(c.creditUtilise, 0)) > :montant " +
                 "ORDER BY (c.limiteCredit - COALESCE(c.creditUtilise, 0)) DESC", Client.class);
@@ -144,7 +144,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findTopClientsByOrderCount(int limit) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "SELECT c FROM Client c LEFT JOIN c.commandes cmd " +
                 "GROUP BY c ORDER BY COUNT(cmd) DESC", Client.class);
@@ -160,7 +160,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public List<Client> findClientsWithPendingOrders() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Client> query = session.createQuery(
                 "SELECT DISTINCT c FROM Client c JOIN c.commandes cmd " +
                 "WHERE cmd.estValide = false OR (cmd.estValide = true AND cmd.estExpediee = false) " +
@@ -176,7 +176,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public boolean existsByEmail(String email) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(c) FROM Client c WHERE c.email = :email", Long.class);
             query.setParameter("email", email);
@@ -192,7 +192,7 @@ public class ClientRepositoryImpl extends GenericRepositoryImpl<Client, Long> im
     
     @Override
     public long countByVille(String ville) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(c) FROM Client c WHERE c.ville = :ville", Long.class);
             query.setParameter("ville", ville);
@@ -1,18 +1,32 @@
 package insea.neobrain.repository.impl;
 
+import insea.neobrain.entity.CategorieProduit;
 import insea.neobrain.entity.CommandeVente;
 import insea.neobrain.entity.Client;
 import insea.neobrain.entity.Personnel;
+import insea.neobrain.entity.LigneCommande;
 import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Produit;
 import insea.neobrain.repository.CommandeVenteRepository;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDate;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Implementation of CommandeVenteRepository
@@ -23,15 +37,231 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     private static final Logger logger = LoggerFactory.getLogger(CommandeVenteRepositoryImpl.class);
     
+    /**
+     * Lock the products in ID order, apply the quantity changes to the stock of those having enough
+     * (positive quantities are sold, negative ones are returned), and append one stock movement per
+     * product. Returns the IDs of the products changed.
+     */
+    private static final String SELL_STOCK =
+        "WITH sold AS (" +
+        "  SELECT * FROM unnest(?::bigint[], ?::int[]) AS s(id_produit, quantite)" +
+        "), old AS (" +
+        "  SELECT p.id_produit, p.quantite_stock FROM produit p " +
+        "  WHERE p.id_produit IN (SELECT id_produit FROM sold) ORDER BY p.id_produit FOR UPDATE" +
+        "), sold_stock AS (" +
+        "  UPDATE produit p SET quantite_stock = old.quantite_stock - s.quantite, version = p.version + 1, " +
+        "  date_modification = LOCALTIMESTAMP " +
+        "  FROM sold s, old " +
+        "  WHERE p.id_produit = s.id_produit AND old.id_produit = p.id_produit AND old.quantite_stock >= s.quantite " +
+        "  RETURNING p.id_produit, -s.quantite AS quantite, old.quantite_stock - s.quantite AS quantite_apres" +
+        ") " +
+        "INSERT INTO mouvement_stock (id_mouvement_stock, id_produit, type_mouvement, quantite, quantite_apres, motif, date_mouvement) " +
+        "SELECT nextval('mouvement_stock_seq'), id_produit, CASE WHEN quantite < 0 THEN 'VENTE' ELSE 'RETOUR' END, " +
+        "quantite, quantite_apres, ?, LOCALTIMESTAMP FROM sold_stock RETURNING id_produit";
+    
+    /**
+     * Rebuild statements of the rollup for a range of days; the lock keeps folds and orders from
+     * adding to the rollup while it is rebuilt (they wait for the rebuild to commit). The rollup
+     * tables are locked before the deltas, like folds do.
+     */
+    private static final String LOCK_SALES_ROLLUP =
+        "LOCK TABLE ventes_journalieres, ventes_journalieres_categorie, ventes_produit_journalieres, " +
+        "ventes_journalieres_delta IN EXCLUSIVE MODE";
+    private static final String DELETE_SALES_ROLLUP =
+        "DELETE FROM %s WHERE jour BETWEEN :startDate AND :endDate";
+    private static final String REBUILD_SALES_ROLLUP =
+        "INSERT INTO ventes_journalieres (jour, mode_paiement, nombre_commandes, montant_total) " +
+        "SELECT c.date_commande_vente, COALESCE(c.mode_paiement, ''), COUNT(*), COALESCE(SUM(c.total_ttc), 0) " +
+        "FROM commande_vente c WHERE c.date_commande_vente BETWEEN :startDate AND :endDate " +
+        "GROUP BY 1, 2";
+    private static final String REBUILD_SALES_ROLLUP_CATEGORIE =
+        "INSERT INTO ventes_journalieres_categorie (jour, mode_paiement, categorie, quantite_vendue, montant_lignes) " +
+        "SELECT c.date_commande_vente, COALESCE(c.mode_paiement, ''), p.categorie, SUM(l.quantite_vente), " +
+        "COALESCE(SUM(l.sous_total), 0) " +
+        "FROM commande_vente c JOIN ligne_commande l ON l.id_commande_vente = c.id_commande_vente " +
+        "JOIN produit p ON p.id_produit = l.id_produit " +
+        "WHERE c.date_commande_vente BETWEEN :startDate AND :endDate " +
+        "GROUP BY 1, 2, 3";
+    private static final String REBUILD_SALES_ROLLUP_PRODUIT =
+        "INSERT INTO ventes_produit_journalieres (jour, id_produit, quantite_vendue, montant) " +
+        "SELECT c.date_commande_vente, l.id_produit, SUM(l.quantite_vente), COALESCE(SUM(l.sous_total), 0) " +
+        "FROM commande_vente c JOIN ligne_commande l ON l.id_commande_vente = c.id_commande_vente " +
+        "WHERE c.date_commande_vente BETWEEN :startDate AND :endDate " +
+        "GROUP BY 1, 2";
+    
     public CommandeVenteRepositoryImpl() {
         super();
     }
     
+    @Override
+    public CommandeVente saveOrder(CommandeVente commande) {
+        Map<Long, Integer> quantities = soldQuantities(commande);
+        CommandeVente saved = executeInTransaction("saving order", session -> {
+            sellStock(session, quantities, "Commande " + commande.getNumeroCommande());
+            // Cascades to the lines, inserted in JDBC batches
+            session.persist(commande);
+            session.flush();
+            SalesRollup.record(session, commande.getIdCommandeVente(), 1);
+            return commande;
+        });
+        evictCachedProduits(quantities);
+        logger.debug("Saved order {} with {} lines, stock of {} products decremented",
+            saved.getNumeroCommande(), saved.getLignesCommande().size(), quantities.size());
+        return saved;
+    }
+    
+    @Override
+    public CommandeVente updateOrder(Long commandeId, Consumer<CommandeVente> change) {
+        Map<Long, Integer> changed = new TreeMap<>();
+        CommandeVente updated = executeInTransaction("updating order", session -> {
+            CommandeVente commande = findWithLines(session, commandeId);
+            SalesRollup.record(session, commandeId, -1);
+            Map<Long, Integer> before = soldQuantities(commande);
+            change.accept(commande);
+            changed.putAll(soldQuantities(commande));
+            before.forEach((produitId, quantite) -> changed.merge(produitId, -quantite, Integer::sum));
+            changed.values().removeIf(quantite -> quantite == 0);
+            sellStock(session, changed, "Modification de la commande " + commande.getNumeroCommande());
+            commande.calculerTotaux();
+            session.flush();
+            SalesRollup.record(session, commandeId, 1);
+            return commande;
+        });
+        evictCachedProduits(changed);
+        logger.debug("Updated order {}, stock of {} products adjusted", updated.getNumeroCommande(), changed.size());
+        return updated;
+    }
+    
+    @Override
+    public void deleteOrder(Long commandeId) {
+        Map<Long, Integer> returned = new TreeMap<>();
+        executeInTransaction("deleting order", session -> {
+            CommandeVente commande = findWithLines(session, commandeId);
+            soldQuantities(commande).forEach((produitId, quantite) -> returned.put(produitId, -quantite));
+            sellStock(session, returned, "Suppression de la commande " + commande.getNumeroCommande());
+            SalesRollup.record(session, commandeId, -1);
+            session.remove(commande);
+            return null;
+        });
+        evictCachedProduits(returned);
+        logger.debug("Deleted order {}, stock of {} products restored", commandeId, returned.size());
+    }
+    
+    private CommandeVente findWithLines(Session session, Long commandeId) {
+        CommandeVente commande = session.createQuery(
+                "SELECT DISTINCT c FROM CommandeVente c LEFT JOIN FETCH c.lignesCommande l " +
+                "LEFT JOIN FETCH l.produit WHERE c.idCommandeVente = :id", CommandeVente.class)
+            .setParameter("id", commandeId)
+            .uniqueResult();
+        if (commande == null) {
+            throw new IllegalArgumentException("Commande introuvable: " + commandeId);
+        }
+        return commande;
+    }
+    
+    /**
+     * @return quantity sold per product ID: a product may appear on several lines
+     */
+    private static Map<Long, Integer> soldQuantities(CommandeVente commande) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (LigneCommande ligne : commande.getLignesCommande()) {
+            quantities.merge(ligne.getProduit().getIdProduit(), ligne.getQuantiteVente(), Integer::sum);
+        }
+        return quantities;
+    }
+    
+    /**
+     * Apply quantity changes to the stock in a single statement, whatever the number of products
+     * @throws IllegalStateException if a product does not have enough stock, to roll back the transaction
+     */
+    private void sellStock(Session session, Map<Long, Integer> quantities, String motif) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Set<Long> changed = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELL_STOCK)) {
+                statement.setArray(1, connection.createArrayOf("bigint", quantities.keySet().toArray()));
+                statement.setArray(2, connection.createArrayOf("integer", quantities.values().toArray()));
+                statement.setString(3, motif);
+                Set<Long> ids = new HashSet<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+        if (changed.size() < quantities.size()) {
+            List<Long> missing = new ArrayList<>(quantities.keySet());
+            missing.removeAll(changed);
+            throw new IllegalStateException("Stock insuffisant pour les produits: " + missing);
+        }
+    }
+    
+    /**
+     * Drop products from the second-level cache after their stock was changed with native SQL
+     */
+    private void evictCachedProduits(Map<Long, Integer> quantities) {
+        for (Long produitId : quantities.keySet()) {
+            sessionFactory.getCache().evictEntityData(Produit.class, produitId);
+        }
+    }
+    
+    @Override
+    public List<CommandeVente> search(String clientNom, String personnelNom, LocalDate startDate,
+                                      LocalDate endDate, ModePaiement modePaiement) {
+        try (Session session = openReadOnlySession()) {
+            StringBuilder hql = new StringBuilder(
+                "SELECT c FROM CommandeVente c JOIN FETCH c.client cl LEFT JOIN FETCH c.personnel pe WHERE 1=1");
+            if (clientNom != null && !clientNom.trim().isEmpty()) {
+                hql.append(" AND LOWER(CONCAT(cl.prenom, ' ', cl.nom)) LIKE :clientNom");
+            }
+            if (personnelNom != null && !personnelNom.trim().isEmpty()) {
+                hql.append(" AND LOWER(CONCAT(pe.prenom, ' ', pe.nom)) LIKE :personnelNom");
+            }
+            if (startDate != null) {
+                hql.append(" AND c.dateCommandeVente >= :startDate");
+            }
+            if (endDate != null) {
+                hql.append(" AND c.dateCommandeVente <= :endDate");
+            }
+            if (modePaiement != null) {
+                hql.append(" AND c.modePaiement = :modePaiement");
+            }
+            hql.append(" ORDER BY c.dateCommandeVente DESC, c.idCommandeVente DESC");
+            
+            Query<CommandeVente> query = session.createQuery(hql.toString(), CommandeVente.class);
+            if (clientNom != null && !clientNom.trim().isEmpty()) {
+                query.setParameter("clientNom", "%" + clientNom.trim().toLowerCase() + "%");
+            }
+            if (personnelNom != null && !personnelNom.trim().isEmpty()) {
+                query.setParameter("personnelNom", "%" + personnelNom.trim().toLowerCase() + "%");
+            }
+            if (startDate != null) {
+                query.setParameter("startDate", startDate);
+            }
+            if (endDate != null) {
+                query.setParameter("endDate", endDate);
+            }
+            if (modePaiement != null) {
+                query.setParameter("modePaiement", modePaiement);
+            }
+            
+            List<CommandeVente> result = query.getResultList();
+            logger.debug("Found {} orders with search criteria", result.size());
+            return result;
+        } catch (Exception e) {
+            logger.error("Error searching orders", e);
+            throw new RuntimeException("Error searching orders", e);
+        }
+    }
+    
     @Override
     public List<CommandeVente> findByClient(Client client) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.client = :client ORDER BY c.date DESC", 
+                "FROM CommandeVente c WHERE c.client = :client ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("client", client);
             
@@ -46,9 +276,9 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<CommandeVente> findByPersonnel(Personnel personnel) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.personnel = :personnel ORDER BY c.date DESC", 
+                "FROM CommandeVente c WHERE c.personnel = :personnel ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("personnel", personnel);
             
@@ -63,9 +293,9 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<CommandeVente> findByModePaiement(ModePaiement modePaiement) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.modePaiement = :modePaiement ORDER BY c.date DESC", 
+                "FROM CommandeVente c WHERE c.modePaiement = :modePaiement ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("modePaiement", modePaiement);
             
@@ -80,9 +310,9 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<CommandeVente> findByDateBetween(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.date BETWEEN :startDate AND :endDate ORDER BY c.date DESC", 
+                "FROM CommandeVente c WHERE c.dateCommandeVente BETWEEN :startDate AND :endDate ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("startDate", startDate);
             query.setParameter("endDate", endDate);
@@ -96,11 +326,18 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
         }
     }
     
+    @Override
+    public Stream<CommandeVente> streamByDateBetween(LocalDate startDate, LocalDate endDate, int fetchSize) {
+        return stream("FROM CommandeVente c WHERE c.dateCommandeVente BETWEEN :startDate AND :endDate " +
+                "ORDER BY c.dateCommandeVente, c.idCommandeVente",
+                Map.of("startDate", startDate, "endDate", endDate), fetchSize);
+    }
+    
     @Override
     public List<CommandeVente> findByTotalGreaterThanEqual(BigDecimal minAmount) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.total >= :minAmount ORDER BY c.total DESC", 
+                "FROM CommandeVente c WHERE c.totalTTC >= :minAmount ORDER BY c.totalTTC DESC", 
                 CommandeVente.class);
             query.setParameter("minAmount", minAmount);
             
@@ -115,10 +352,10 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<CommandeVente> findRecentOrders(int days) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             LocalDate cutoffDate = LocalDate.now().minusDays(days);
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.date >= :cutoffDate ORDER BY c.date DESC", 
+                "FROM CommandeVente c WHERE c.dateCommandeVente >= :cutoffDate ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("cutoffDate", cutoffDate);
             
@@ -133,10 +370,10 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<CommandeVente> findByClientAndDateBetween(Client client, LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
                 "FROM CommandeVente c WHERE c.client = :client " +
-                "AND c.date BETWEEN :startDate AND :endDate ORDER BY c.date DESC", 
+                "AND c.dateCommandeVente BETWEEN :startDate AND :endDate ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("client", client);
             query.setParameter("startDate", startDate);
@@ -155,10 +392,10 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<Object[]> getTopClientsByValue(LocalDate startDate, LocalDate endDate, int limit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
-                "SELECT c.client, SUM(c.total) as totalValue " +
-                "FROM CommandeVente c WHERE c.date BETWEEN :startDate AND :endDate " +
+                "SELECT c.client, SUM(c.totalTTC) as totalValue " +
+                "FROM CommandeVente c WHERE c.dateCommandeVente BETWEEN :startDate AND :endDate " +
                 "GROUP BY c.client ORDER BY totalValue DESC", 
                 Object[].class);
             query.setParameter("startDate", startDate);
@@ -176,16 +413,16 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<Object[]> getDailySalesTotals(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT c.date, SUM(c.total) " +
-                "FROM CommandeVente c WHERE c.date BETWEEN :startDate AND :endDate " +
-                "GROUP BY c.date ORDER BY c.date", 
-                Object[].class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            
-            List<Object[]> result = query.getResultList();
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            List<Object[]> result = session.createNativeQuery(
+                    "SELECT jour, SUM(montant_total) AS montant FROM ventes_journalieres " +
+                    "WHERE jour BETWEEN :startDate AND :endDate GROUP BY jour ORDER BY jour", Object[].class)
+                .addScalar("jour", StandardBasicTypes.LOCAL_DATE)
+                .addScalar("montant", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getResultList();
             logger.debug("Found {} daily sales totals between {} and {}", result.size(), startDate, endDate);
             return result;
         } catch (Exception e) {
@@ -196,15 +433,19 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<Object[]> getMonthlySalesSummary(int year) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT MONTH(c.date), SUM(c.total), COUNT(c) " +
-                "FROM CommandeVente c WHERE YEAR(c.date) = :year " +
-                "GROUP BY MONTH(c.date) ORDER BY MONTH(c.date)", 
-                Object[].class);
-            query.setParameter("year", year);
-            
-            List<Object[]> result = query.getResultList();
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            // A range on the day rather than EXTRACT(YEAR ...), so the primary key index is used
+            List<Object[]> result = session.createNativeQuery(
+                    "SELECT CAST(EXTRACT(MONTH FROM jour) AS integer) AS mois, SUM(montant_total) AS montant, " +
+                    "SUM(nombre_commandes) AS nombre FROM ventes_journalieres " +
+                    "WHERE jour >= :startDate AND jour < :endDate GROUP BY 1 ORDER BY 1", Object[].class)
+                .addScalar("mois", StandardBasicTypes.INTEGER)
+                .addScalar("montant", StandardBasicTypes.BIG_DECIMAL)
+                .addScalar("nombre", StandardBasicTypes.LONG)
+                .setParameter("startDate", LocalDate.of(year, 1, 1))
+                .setParameter("endDate", LocalDate.of(year + 1, 1, 1))
+                .getResultList();
             logger.debug("Found {} monthly sales summaries for year {}", result.size(), year);
             return result;
         } catch (Exception e) {
@@ -215,65 +456,54 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public BigDecimal getTotalSalesAmount(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<BigDecimal> query = session.createQuery(
-                "SELECT COALESCE(SUM(c.total), 0) FROM CommandeVente c " +
-                "WHERE c.date BETWEEN :startDate AND :endDate", 
-                BigDecimal.class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            
-            BigDecimal result = query.getSingleResult();
-            logger.debug("Total sales amount between {} and {}: {}", startDate, endDate, result);
-            return result != null ? result : BigDecimal.ZERO;
-        } catch (Exception e) {
-            logger.error("Error getting total sales amount: {} - {}", startDate, endDate, e);
-            throw new RuntimeException("Error getting total sales amount", e);
-        }
+        BigDecimal result = (BigDecimal) getSalesTotals(startDate, endDate)[1];
+        logger.debug("Total sales amount between {} and {}: {}", startDate, endDate, result);
+        return result;
     }
     
     @Override
     public long countOrdersInDateRange(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Long> query = session.createQuery(
-                "SELECT COUNT(c) FROM CommandeVente c WHERE c.date BETWEEN :startDate AND :endDate", 
-                Long.class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            
-            Long result = query.getSingleResult();
-            logger.debug("Order count between {} and {}: {}", startDate, endDate, result);
-            return result != null ? result : 0L;
-        } catch (Exception e) {
-            logger.error("Error counting orders in date range: {} - {}", startDate, endDate, e);
-            throw new RuntimeException("Error counting orders in date range", e);
-        }
+        long result = (Long) getSalesTotals(startDate, endDate)[0];
+        logger.debug("Order count between {} and {}: {}", startDate, endDate, result);
+        return result;
     }
     
     @Override
     public BigDecimal getAverageOrderValue(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<BigDecimal> query = session.createQuery(
-                "SELECT COALESCE(AVG(c.total), 0) FROM CommandeVente c " +
-                "WHERE c.date BETWEEN :startDate AND :endDate", 
-                BigDecimal.class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            
-            BigDecimal result = query.getSingleResult();
-            logger.debug("Average order value between {} and {}: {}", startDate, endDate, result);
-            return result != null ? result : BigDecimal.ZERO;
+        Object[] totals = getSalesTotals(startDate, endDate);
+        long count = (Long) totals[0];
+        BigDecimal result = count > 0
+            ? ((BigDecimal) totals[1]).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP)
+            : BigDecimal.ZERO;
+        logger.debug("Average order value between {} and {}: {}", startDate, endDate, result);
+        return result;
+    }
+    
+    /**
+     * @return [Order Count, Total Amount] of a date range, from the daily sales rollup
+     */
+    private Object[] getSalesTotals(LocalDate startDate, LocalDate endDate) {
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            return session.createNativeQuery(
+                    "SELECT COALESCE(SUM(nombre_commandes), 0) AS nombre, COALESCE(SUM(montant_total), 0) AS montant " +
+                    "FROM ventes_journalieres WHERE jour BETWEEN :startDate AND :endDate", Object[].class)
+                .addScalar("nombre", StandardBasicTypes.LONG)
+                .addScalar("montant", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getSingleResult();
         } catch (Exception e) {
-            logger.error("Error getting average order value: {} - {}", startDate, endDate, e);
-            throw new RuntimeException("Error getting average order value", e);
+            logger.error("Error getting sales totals: {} - {}", startDate, endDate, e);
+            throw new RuntimeException("Error getting sales totals", e);
         }
     }
     
     @Override
     public List<CommandeVente> findByNumeroLike(String numeroPattern) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<CommandeVente> query = session.createQuery(
-                "FROM CommandeVente c WHERE c.numero LIKE :numeroPattern ORDER BY c.date DESC", 
+                "FROM CommandeVente c WHERE c.numeroCommande LIKE :numeroPattern ORDER BY c.dateCommandeVente DESC", 
                 CommandeVente.class);
             query.setParameter("numeroPattern", numeroPattern);
             
@@ -288,16 +518,22 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
     
     @Override
     public List<Object[]> getPaymentMethodDistribution(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT c.modePaiement, COUNT(c), SUM(c.total) " +
-                "FROM CommandeVente c WHERE c.date BETWEEN :startDate AND :endDate " +
-                "GROUP BY c.modePaiement ORDER BY COUNT(c) DESC", 
-                Object[].class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            
-            List<Object[]> result = query.getResultList();
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            List<Object[]> result = session.createNativeQuery(
+                    "SELECT mode_paiement, SUM(nombre_commandes) AS nombre, SUM(montant_total) AS montant " +
+                    "FROM ventes_journalieres WHERE jour BETWEEN :startDate AND :endDate " +
+                    "GROUP BY mode_paiement ORDER BY 2 DESC", Object[].class)
+                .addScalar("mode_paiement", StandardBasicTypes.STRING)
+                .addScalar("nombre", StandardBasicTypes.LONG)
+                .addScalar("montant", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getResultList();
+            for (Object[] row : result) {
+                String mode = (String) row[0];
+                row[0] = mode.isEmpty() ? null : ModePaiement.valueOf(mode);
+            }
             logger.debug("Found {} payment method distributions between {} and {}", 
                 result.size(), startDate, endDate);
             return result;
@@ -306,4 +542,66 @@ public class CommandeVenteRepositoryImpl extends GenericRepositoryImpl<CommandeV
             throw new RuntimeException("Error getting payment method distribution", e);
         }
     }
+    
+    @Override
+    public List<Object[]> getSalesByCategory(LocalDate startDate, LocalDate endDate) {
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            List<Object[]> result = session.createNativeQuery(
+                    "SELECT categorie, SUM(quantite_vendue) AS quantite, SUM(montant_lignes) AS montant " +
+                    "FROM ventes_journalieres_categorie WHERE jour BETWEEN :startDate AND :endDate " +
+                    "GROUP BY categorie ORDER BY 3 DESC", Object[].class)
+                .addScalar("categorie", StandardBasicTypes.STRING)
+                .addScalar("quantite", StandardBasicTypes.LONG)
+                .addScalar("montant", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getResultList();
+            for (Object[] row : result) {
+                row[0] = CategorieProduit.valueOf((String) row[0]);
+            }
+            logger.debug("Found {} category sales totals between {} and {}", result.size(), startDate, endDate);
+            return result;
+        } catch (Exception e) {
+            logger.error("Error getting sales by category: {} - {}", startDate, endDate, e);
+            throw new RuntimeException("Error getting sales by category", e);
+        }
+    }
+    
+    @Override
+    public int rebuildSalesRollup(LocalDate startDate, LocalDate endDate) {
+        LocalDate from = startDate != null ? startDate : LocalDate.of(1, 1, 1);
+        LocalDate to = endDate != null ? endDate : LocalDate.of(9999, 12, 31);
+        int days = executeInTransaction("rebuilding sales rollup", session -> {
+            session.createNativeMutationQuery(LOCK_SALES_ROLLUP).executeUpdate();
+            // Deltas of the range are replaced by the orders they come from
+            for (String table : new String[]{"ventes_journalieres", "ventes_journalieres_categorie",
+                    "ventes_produit_journalieres", "ventes_journalieres_delta"}) {
+                session.createNativeMutationQuery(String.format(DELETE_SALES_ROLLUP, table))
+                    .setParameter("startDate", from)
+                    .setParameter("endDate", to)
+                    .executeUpdate();
+            }
+            session.createNativeMutationQuery(REBUILD_SALES_ROLLUP_CATEGORIE)
+                .setParameter("startDate", from)
+                .setParameter("endDate", to)
+                .executeUpdate();
+            session.createNativeMutationQuery(REBUILD_SALES_ROLLUP_PRODUIT)
+                .setParameter("startDate", from)
+                .setParameter("endDate", to)
+                .executeUpdate();
+            session.createNativeMutationQuery(REBUILD_SALES_ROLLUP)
+                .setParameter("startDate", from)
+                .setParameter("endDate", to)
+                .executeUpdate();
+            return session.createNativeQuery(
+                    "SELECT COUNT(DISTINCT jour) FROM ventes_journalieres WHERE jour BETWEEN :startDate AND :endDate",
+                    Long.class)
+                .setParameter("startDate", from)
+                .setParameter("endDate", to)
+                .getSingleResult().intValue();
+        });
+        logger.info("Sales rollup rebuilt: {} days between {} and {}", days, startDate, endDate);
+        return days;
+    }
 }
@@ -0,0 +1,93 @@
+package insea.neobrain.repository.impl;
+
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Writes rows to a COPY ... FROM STDIN WITH (FORMAT csv) operation.
+ * Rows are buffered and sent to the server in blocks. Strings are always quoted so an
+ * empty string stays distinct from NULL, which is written as an unquoted empty field.
+ */
+class CopyRowWriter {
+
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private final CopyIn copyIn;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+    private boolean firstColumn = true;
+
+    CopyRowWriter(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+
+    /**
+     * Append the next column of the current row
+     * @param value column value, may be null
+     * @return this writer
+     */
+    CopyRowWriter value(Object value) {
+        if (!firstColumn) {
+            buffer.append(',');
+        }
+        firstColumn = false;
+
+        if (value == null) {
+            return this;
+        }
+        if (value instanceof String) {
+            buffer.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+        } else if (value instanceof Enum) {
+            buffer.append(((Enum<?>) value).name());
+        } else if (value instanceof BigDecimal) {
+            buffer.append(((BigDecimal) value).toPlainString());
+        } else {
+            buffer.append(value);
+        }
+        return this;
+    }
+
+    /**
+     * Terminate the current row
+     */
+    void endRow() throws SQLException {
+        buffer.append('\n');
+        firstColumn = true;
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Send the remaining rows and complete the COPY
+     * @return number of rows copied, as reported by the server
+     */
+    long finish() throws SQLException {
+        flushBuffer();
+        return copyIn.endCopy();
+    }
+
+    /**
+     * Abort the COPY after an error, if it is still in progress
+     */
+    void cancel() {
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            // The transaction is rolled back anyway
+        }
+    }
+
+    private void flushBuffer() throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+}
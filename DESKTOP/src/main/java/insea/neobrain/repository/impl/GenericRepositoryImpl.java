@@ -2,15 +2,37 @@ package insea.neobrain.repository.impl;
 
 import insea.neobrain.config.HibernateUtil;
 import insea.neobrain.repository.GenericRepository;
+import insea.neobrain.repository.KeysetCursor;
+import insea.neobrain.repository.KeysetPage;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Generic repository implementation providing basic CRUD operations
@@ -21,14 +43,30 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
     
     private static final Logger logger = LoggerFactory.getLogger(GenericRepositoryImpl.class);
     
+    /**
+     * Batch size used when hibernate.jdbc.batch_size is not configured
+     */
+    protected static final int DEFAULT_BATCH_SIZE = 50;
+    
+    /**
+     * Fetch size used by streams when hibernate.jdbc.fetch_size is not configured
+     */
+    protected static final int DEFAULT_FETCH_SIZE = 500;
+    
+    private static final String DESCENDING_CURSOR_PREFIX = "-";
+    
     protected final SessionFactory sessionFactory;
     protected final Class<T> entityClass;
+    protected final int batchSize;
+    protected final int fetchSize;
     
     @SuppressWarnings("unchecked")
     public GenericRepositoryImpl() {
         this.sessionFactory = HibernateUtil.getSessionFactory();
         this.entityClass = (Class<T>) ((ParameterizedType) getClass()
                 .getGenericSuperclass()).getActualTypeArguments()[0];
+        this.batchSize = resolveIntSetting(AvailableSettings.STATEMENT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        this.fetchSize = resolveIntSetting(AvailableSettings.STATEMENT_FETCH_SIZE, DEFAULT_FETCH_SIZE);
     }
     
     @Override
@@ -99,6 +137,7 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
                     logger.error("Error during transaction rollback", rollbackEx);
                 }
             }
+            evictFromCache(entity);
             logger.error("Error updating entity: {}", entity, e);
             throw new RuntimeException("Error updating entity", e);
         } finally {
@@ -144,6 +183,50 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
         }
     }
     
+    @Override
+    public List<T> saveAll(Collection<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<T> saved = executeInTransaction("saving entities", session -> {
+            List<T> result = new ArrayList<>(entities.size());
+            int count = 0;
+            for (T entity : entities) {
+                session.persist(entity);
+                result.add(entity);
+                if (++count % batchSize == 0) {
+                    // Send the pending batch and release the persistence context
+                    session.flush();
+                    session.clear();
+                }
+            }
+            return result;
+        });
+        logger.debug("Saved {} entities of type {} in batches of {}", saved.size(), entityClass.getSimpleName(), batchSize);
+        return saved;
+    }
+    
+    @Override
+    public List<T> updateAll(Collection<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<T> updated = executeInTransaction("updating entities", session -> {
+            List<T> result = new ArrayList<>(entities.size());
+            int count = 0;
+            for (T entity : entities) {
+                result.add(session.merge(entity));
+                if (++count % batchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            return result;
+        });
+        logger.debug("Updated {} entities of type {} in batches of {}", updated.size(), entityClass.getSimpleName(), batchSize);
+        return updated;
+    }
+    
     @Override
     public void delete(T entity) {
         Transaction transaction = null;
@@ -183,9 +266,36 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
         }
     }
     
+    @Override
+    public int deleteAllById(Collection<ID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        List<ID> idList = new ArrayList<>(ids);
+        int deleted = executeInTransaction("deleting entities by ID", session -> {
+            int removed = 0;
+            // Load each chunk with a single IN query, then remove so cascades still apply
+            for (int from = 0; from < idList.size(); from += batchSize) {
+                List<ID> chunk = idList.subList(from, Math.min(from + batchSize, idList.size()));
+                List<T> found = session.byMultipleIds(entityClass).multiLoad(chunk);
+                for (T entity : found) {
+                    if (entity != null) {
+                        session.remove(entity);
+                        removed++;
+                    }
+                }
+                session.flush();
+                session.clear();
+            }
+            return removed;
+        });
+        logger.debug("Deleted {} of {} requested entities of type {}", deleted, idList.size(), entityClass.getSimpleName());
+        return deleted;
+    }
+    
     @Override
     public Optional<T> findById(ID id) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             T entity = session.get(entityClass, id);
             logger.debug("Entity found by ID {}: {}", id, entity != null);
             return Optional.ofNullable(entity);
@@ -197,7 +307,7 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
     
     @Override
     public boolean existsById(ID id) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             T entity = session.get(entityClass, id);
             boolean exists = entity != null;
             logger.debug("Entity exists by ID {}: {}", id, exists);
@@ -210,7 +320,7 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
     
     @Override
     public List<T> findAll() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             String hql = "FROM " + entityClass.getSimpleName();
             List<T> entities = session.createQuery(hql, entityClass).getResultList();
             logger.debug("Found {} entities of type {}", entities.size(), entityClass.getSimpleName());
@@ -221,9 +331,20 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
         }
     }
     
+    @Override
+    public Stream<T> streamAll() {
+        return streamAll(fetchSize);
+    }
+    
+    @Override
+    public Stream<T> streamAll(int fetchSize) {
+        String hql = "FROM " + entityClass.getSimpleName() + " e ORDER BY e." + getIdAttributeName();
+        return stream(hql, Map.of(), fetchSize);
+    }
+    
     @Override
     public long count() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             String hql = "SELECT COUNT(*) FROM " + entityClass.getSimpleName();
             Long count = session.createQuery(hql, Long.class).getSingleResult();
             logger.debug("Count of entities of type {}: {}", entityClass.getSimpleName(), count);
@@ -254,8 +375,8 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
     
     @Override
     public List<T> findWithPagination(int offset, int limit) {
-        try (Session session = sessionFactory.openSession()) {
-            String hql = "FROM " + entityClass.getSimpleName();
+        try (Session session = openReadOnlySession()) {
+            String hql = "FROM " + entityClass.getSimpleName() + " e ORDER BY e." + getIdAttributeName();
             List<T> entities = session.createQuery(hql, entityClass)
                     .setFirstResult(offset)
                     .setMaxResults(limit)
@@ -269,6 +390,313 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
         }
     }
     
+    @Override
+    public KeysetPage<T> findPage(String cursor, int limit) {
+        return findPage(getIdAttributeName(), cursor, limit, false);
+    }
+    
+    @Override
+    public KeysetPage<T> findPage(String sortAttribute, String cursor, int limit, boolean withApproximateTotal) {
+        return findPage(sortAttribute, false, cursor, 0, limit, withApproximateTotal);
+    }
+    
+    @Override
+    public KeysetPage<T> findPage(String sortAttribute, boolean descending, String cursor, int limit) {
+        return findPage(sortAttribute, descending, cursor, 0, limit, false);
+    }
+    
+    @Override
+    public KeysetPage<T> findPageAt(String sortAttribute, boolean descending, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Page offset must not be negative: " + offset);
+        }
+        return findPage(sortAttribute, descending, null, offset, limit, false);
+    }
+    
+    private KeysetPage<T> findPage(String sortAttribute, boolean descending, String cursor, int offset, int limit,
+                                   boolean withApproximateTotal) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        String idAttribute = getIdAttributeName();
+        // Only metamodel attribute names reach the query string
+        Class<?> sortType = getAttributeType(sortAttribute);
+        Class<?> idType = getAttributeType(idAttribute);
+        boolean sortById = sortAttribute.equals(idAttribute);
+        // Descending cursors carry a marker so they cannot be replayed in the other direction
+        String cursorKey = descending ? DESCENDING_CURSOR_PREFIX + sortAttribute : sortAttribute;
+        KeysetCursor after = cursor != null ? KeysetCursor.decode(cursor) : null;
+        if (after != null && !after.getSortAttribute().equals(cursorKey)) {
+            throw new IllegalArgumentException("Cursor was created for attribute " + after.getSortAttribute()
+                    + ", not " + cursorKey);
+        }
+        String comparison = descending ? " < " : " > ";
+        String direction = descending ? " DESC" : "";
+        
+        try (Session session = openReadOnlySession()) {
+            StringBuilder hql = new StringBuilder("SELECT e, e.").append(sortAttribute)
+                    .append(", e.").append(idAttribute)
+                    .append(" FROM ").append(entityClass.getSimpleName()).append(" e")
+                    .append(getPageFetchJoins());
+            if (after != null) {
+                if (sortById) {
+                    hql.append(" WHERE e.").append(idAttribute).append(comparison).append(":lastId");
+                } else {
+                    // Equivalent to (sort, id) > (:lastValue, :lastId) (< when descending), written so the sort index bounds the scan
+                    hql.append(" WHERE e.").append(sortAttribute).append(comparison.trim()).append("= :lastValue AND (e.")
+                            .append(sortAttribute).append(comparison).append(":lastValue OR e.")
+                            .append(idAttribute).append(comparison).append(":lastId)");
+                }
+            }
+            hql.append(" ORDER BY e.").append(sortAttribute).append(direction);
+            if (!sortById) {
+                hql.append(", e.").append(idAttribute).append(direction);
+            }
+            
+            Query<Object[]> query = session.createQuery(hql.toString(), Object[].class)
+                    .setMaxResults(limit + 1);
+            if (offset > 0) {
+                query.setFirstResult(offset);
+            }
+            if (after != null) {
+                query.setParameter("lastId", parseKeyValue(idType, after.getLastId()));
+                if (!sortById) {
+                    query.setParameter("lastValue", parseKeyValue(sortType, after.getLastValue()));
+                }
+            }
+            List<Object[]> rows = query.getResultList();
+            
+            // One extra row tells whether a next page exists
+            boolean hasNext = rows.size() > limit;
+            List<T> content = new ArrayList<>(Math.min(rows.size(), limit));
+            for (int i = 0; i < rows.size() && i < limit; i++) {
+                content.add(entityClass.cast(rows.get(i)[0]));
+            }
+            String nextCursor = null;
+            if (hasNext) {
+                Object[] last = rows.get(limit - 1);
+                nextCursor = new KeysetCursor(cursorKey, formatKeyValue(last[1]), formatKeyValue(last[2])).encode();
+            }
+            long total = withApproximateTotal ? approximateCount() : KeysetPage.UNKNOWN_TOTAL;
+            logger.debug("Found {} entities of type {} with keyset pagination (sort: {}{}, offset: {}, limit: {})",
+                        content.size(), entityClass.getSimpleName(), sortAttribute, direction, offset, limit);
+            return new KeysetPage<>(content, nextCursor, total);
+        } catch (Exception e) {
+            logger.error("Error finding entities with keyset pagination (sort: {}, limit: {})", sortAttribute, limit, e);
+            throw new RuntimeException("Error finding entities with keyset pagination", e);
+        }
+    }
+    
+    @Override
+    public long approximateCount() {
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table == null || table.name().isEmpty()) {
+            return count();
+        }
+        try (Session session = openReadOnlySession()) {
+            // reltuples is maintained by VACUUM/ANALYZE; it is -1 for a table never analyzed
+            Long estimate = session.createNativeQuery(
+                    "SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = to_regclass(:tableName)", Long.class)
+                    .setParameter("tableName", table.name())
+                    .uniqueResult();
+            if (estimate == null || estimate.longValue() < 0) {
+                return count();
+            }
+            logger.debug("Approximate count of entities of type {}: {}", entityClass.getSimpleName(), estimate);
+            return estimate.longValue();
+        } catch (Exception e) {
+            logger.error("Error estimating count of entities of type: {}", entityClass.getSimpleName(), e);
+            throw new RuntimeException("Error estimating count of entities", e);
+        }
+    }
+    
+    /**
+     * Stream the results of a query with a forward-only cursor.
+     * The session is read-only and its persistence context is cleared every fetchSize rows,
+     * so memory does not grow with the number of rows. Closing the stream closes the session.
+     * @param hql the query
+     * @param parameters named query parameters
+     * @param fetchSize number of rows fetched from the database per round trip
+     * @return stream of the query results
+     */
+    protected Stream<T> stream(String hql, Map<String, Object> parameters, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        Session session = openReadOnlySession();
+        try {
+            session.setCacheMode(CacheMode.IGNORE);
+            // PostgreSQL only uses a server-side cursor inside a transaction
+            Transaction transaction = session.beginTransaction();
+            Query<T> query = session.createQuery(hql, entityClass)
+                    .setReadOnly(true)
+                    .setFetchSize(fetchSize);
+            parameters.forEach(query::setParameter);
+            ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY);
+            
+            Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                private long count;
+                
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    if (count > 0 && count % fetchSize == 0) {
+                        // Rows already handed out are no longer needed by the session
+                        session.clear();
+                    }
+                    if (!results.next()) {
+                        return false;
+                    }
+                    count++;
+                    action.accept(results.get());
+                    return true;
+                }
+            };
+            
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    results.close();
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                } catch (Exception e) {
+                    logger.error("Error closing stream of type: {}", entityClass.getSimpleName(), e);
+                } finally {
+                    session.close();
+                }
+            });
+        } catch (Exception e) {
+            session.close();
+            logger.error("Error streaming entities of type: {}", entityClass.getSimpleName(), e);
+            throw new RuntimeException("Error streaming entities", e);
+        }
+    }
+    
+    /**
+     * Drop the second-level cache copy of an entity, e.g. after a failed optimistic update
+     * where the cached state may be the stale version
+     * @param entity the entity
+     */
+    protected void evictFromCache(T entity) {
+        if (entity == null) {
+            return;
+        }
+        try {
+            Object id = sessionFactory.getPersistenceUnitUtil().getIdentifier(entity);
+            if (id != null) {
+                sessionFactory.getCache().evictEntityData(entityClass, id);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not evict entity from cache: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Get the name of the ID attribute of the entity
+     * @return ID attribute name
+     */
+    protected String getIdAttributeName() {
+        EntityType<T> entityType = sessionFactory.getMetamodel().entity(entityClass);
+        return entityType.getId(entityType.getIdType().getJavaType()).getName();
+    }
+    
+    /**
+     * Fetch joins added to the keyset page queries, for the to-one associations displayed with
+     * each row (the entity alias is e); none by default
+     * @return HQL join clauses starting with a space, or an empty string
+     */
+    protected String getPageFetchJoins() {
+        return "";
+    }
+    
+    /**
+     * Get the Java type of an entity attribute
+     * @param attributeName attribute name
+     * @return attribute type
+     * @throws IllegalArgumentException if the entity has no such attribute
+     */
+    private Class<?> getAttributeType(String attributeName) {
+        return sessionFactory.getMetamodel().entity(entityClass).getAttribute(attributeName).getJavaType();
+    }
+    
+    private static String formatKeyValue(Object value) {
+        if (value == null) {
+            throw new IllegalStateException("Keyset pagination requires a non-null sort attribute");
+        }
+        return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parseKeyValue(Class<?> type, String raw) {
+        if (type == String.class) {
+            return raw;
+        } else if (type == Long.class || type == long.class) {
+            return Long.valueOf(raw);
+        } else if (type == Integer.class || type == int.class) {
+            return Integer.valueOf(raw);
+        } else if (type == BigDecimal.class) {
+            return new BigDecimal(raw);
+        } else if (type == LocalDate.class) {
+            return LocalDate.parse(raw);
+        } else if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(raw);
+        } else if (type == Boolean.class || type == boolean.class) {
+            return Boolean.valueOf(raw);
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) type, raw);
+        }
+        throw new IllegalArgumentException("Unsupported keyset attribute type: " + type.getName());
+    }
+    
+    /**
+     * Run a unit of work in its own session and transaction.
+     * The transaction is rolled back and the error wrapped if the work fails.
+     * @param operation short description used in log and error messages
+     * @param work the work to execute
+     * @return the value returned by the work
+     */
+    protected <R> R executeInTransaction(String operation, Function<Session, R> work) {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            session.setJdbcBatchSize(batchSize);
+            transaction = session.beginTransaction();
+            R result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                try {
+                    transaction.rollback();
+                } catch (Exception rollbackEx) {
+                    logger.error("Error during transaction rollback", rollbackEx);
+                }
+            }
+            logger.error("Error {} of type: {}", operation, entityClass.getSimpleName(), e);
+            throw new RuntimeException("Error " + operation, e);
+        }
+    }
+    
+    /**
+     * Read a positive integer setting from the Hibernate configuration
+     * @param key setting name
+     * @param defaultValue value used when the setting is missing or invalid
+     * @return configured value, or defaultValue
+     */
+    private int resolveIntSetting(String key, int defaultValue) {
+        Object configured = sessionFactory.getProperties().get(key);
+        if (configured != null) {
+            try {
+                int value = Integer.parseInt(configured.toString().trim());
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid {} value: {}", key, configured);
+            }
+        }
+        return defaultValue;
+    }
+    
     /**
      * Get current session for custom queries
      * @return current session
@@ -284,4 +712,17 @@ public abstract class GenericRepositoryImpl<T, ID> implements GenericRepository<
     protected Session openSession() {
         return sessionFactory.openSession();
     }
+    
+    /**
+     * Open a new session for queries that do not modify data.
+     * Loaded entities are read-only, so Hibernate keeps no dirty-checking snapshot
+     * of them, and the session never flushes.
+     * @return new read-only session
+     */
+    protected Session openReadOnlySession() {
+        Session session = sessionFactory.openSession();
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        return session;
+    }
 }
@@ -6,12 +6,16 @@ import insea.neobrain.entity.Produit;
 import insea.neobrain.entity.CategorieProduit;
 import insea.neobrain.repository.InventaireRepository;
 import org.hibernate.Session;
+import org.hibernate.query.MutationQuery;
 import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,9 +28,36 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     private static final Logger logger = LoggerFactory.getLogger(InventaireRepositoryImpl.class);
     
+    private static final String INSERT_TASKS_FOR_ACTIVE_PRODUCTS =
+        "INSERT INTO tache_inventaire (id_tache_inventaire, date_tache, etat_tache, quantite_theorique, priorite, " +
+        "emplacement_verifie, id_personnel, id_produit, id_inventaire) " +
+        "SELECT nextval('tache_inventaire_seq'), LOCALTIMESTAMP, 'EN_ATTENTE', p.quantite_stock, 3, " +
+        "p.emplacement, :personnelId, p.id_produit, :inventaireId " +
+        "FROM produit p WHERE p.actif = true";
+    
+    // The latest count of each product wins; the locking sub-select provides the quantity before the update
+    private static final String RECONCILE_STOCK =
+        "WITH counted AS (" +
+        "  SELECT DISTINCT ON (t.id_produit) t.id_produit, t.quantite_physique " +
+        "  FROM tache_inventaire t " +
+        "  WHERE t.id_inventaire IN (:inventaireIds) AND t.etat_tache = 'TERMINEE' AND t.quantite_physique IS NOT NULL " +
+        "  ORDER BY t.id_produit, t.date_fin DESC NULLS LAST, t.id_tache_inventaire DESC" +
+        "), corrected AS (" +
+        "  UPDATE produit p SET quantite_stock = c.quantite_physique, version = p.version + 1, " +
+        "  dernier_inventaire = LOCALTIMESTAMP, date_modification = LOCALTIMESTAMP " +
+        "  FROM counted c, " +
+        "  (SELECT id_produit, quantite_stock FROM produit WHERE id_produit IN (SELECT id_produit FROM counted) FOR UPDATE) old " +
+        "  WHERE p.id_produit = c.id_produit AND old.id_produit = p.id_produit " +
+        "  AND old.quantite_stock <> c.quantite_physique " +
+        "  RETURNING p.id_produit, c.quantite_physique - old.quantite_stock AS quantite, c.quantite_physique AS quantite_apres" +
+        ") " +
+        "INSERT INTO mouvement_stock (id_mouvement_stock, id_produit, type_mouvement, quantite, quantite_apres, motif, date_mouvement) " +
+        "SELECT nextval('mouvement_stock_seq'), id_produit, 'CORRECTION_INVENTAIRE', quantite, quantite_apres, " +
+        ":motif, LOCALTIMESTAMP FROM corrected";
+    
     @Override
     public Optional<Inventaire> findByNumeroInventaire(String numeroInventaire) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.numeroInventaire = :numeroInventaire", Inventaire.class);
             query.setParameter("numeroInventaire", numeroInventaire);
@@ -41,7 +72,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findActive() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.estClos = false OR i.etatInventaire = 'EN_COURS' " +
                 "ORDER BY i.dateDebut DESC", Inventaire.class);
@@ -56,7 +87,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findClosed() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.estClos = true OR i.etatInventaire = 'CLOS' " +
                 "ORDER BY i.dateFin DESC", Inventaire.class);
@@ -71,7 +102,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findByDateRange(LocalDate dateDebut, LocalDate dateFin) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.dateDebut BETWEEN :dateDebut AND :dateFin " +
                 "ORDER BY i.dateDebut DESC", Inventaire.class);
@@ -88,7 +119,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findByResponsable(String responsable) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.responsable = :responsable ORDER BY i.dateDebut DESC", Inventaire.class);
             query.setParameter("responsable", responsable);
@@ -103,7 +134,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findByEtat(String etatInventaire) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.etatInventaire = :etatInventaire ORDER BY i.dateDebut DESC", Inventaire.class);
             query.setParameter("etatInventaire", etatInventaire);
@@ -118,7 +149,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findWithDiscrepancies() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.ecartsDetectes > 0 ORDER BY i.ecartsDetectes DESC", Inventaire.class);
             List<Inventaire> inventaires = query.getResultList();
@@ -130,9 +161,173 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
         }
     }
     
+    @Override
+    public List<Inventaire> findByEcartsAtLeast(int minEcarts) {
+        try (Session session = openReadOnlySession()) {
+            Query<Inventaire> query = session.createQuery(
+                "FROM Inventaire i WHERE i.ecartsDetectes >= :minEcarts " +
+                "ORDER BY i.ecartsDetectes DESC, i.dateDebut DESC", Inventaire.class);
+            query.setParameter("minEcarts", minEcarts);
+            List<Inventaire> inventaires = query.getResultList();
+            logger.debug("Found {} inventories with at least {} discrepancies", inventaires.size(), minEcarts);
+            return inventaires;
+        } catch (Exception e) {
+            logger.error("Error finding inventories with at least {} discrepancies", minEcarts, e);
+            throw new RuntimeException("Error finding inventories by discrepancies", e);
+        }
+    }
+    
+    @Override
+    public Object[] getDiscrepancySummary(LocalDate dateDebut, LocalDate dateFin) {
+        StringBuilder hql = new StringBuilder(
+            "SELECT COUNT(i), " +
+            "COALESCE(SUM(CASE WHEN i.ecartsDetectes IS NULL OR i.ecartsDetectes = 0 THEN 1 ELSE 0 END), 0), " +
+            "COALESCE(SUM(i.ecartsDetectes), 0) " +
+            "FROM Inventaire i WHERE 1 = 1");
+        if (dateDebut != null) {
+            hql.append(" AND i.dateDebut >= :dateDebut");
+        }
+        if (dateFin != null) {
+            hql.append(" AND i.dateDebut <= :dateFin");
+        }
+        
+        try (Session session = openReadOnlySession()) {
+            Query<Object[]> query = session.createQuery(hql.toString(), Object[].class);
+            if (dateDebut != null) {
+                query.setParameter("dateDebut", dateDebut);
+            }
+            if (dateFin != null) {
+                query.setParameter("dateFin", dateFin);
+            }
+            Object[] row = query.getSingleResult();
+            Object[] summary = new Object[]{
+                toLong(row[0]), toLong(row[1]), toLong(row[2])
+            };
+            logger.debug("Discrepancy summary between {} and {}: {} inventories, {} accurate, {} discrepancies",
+                dateDebut, dateFin, summary[0], summary[1], summary[2]);
+            return summary;
+        } catch (Exception e) {
+            logger.error("Error computing discrepancy summary: {} - {}", dateDebut, dateFin, e);
+            throw new RuntimeException("Error computing discrepancy summary", e);
+        }
+    }
+    
+    @Override
+    public List<Inventaire> createFullInventory(Inventaire header, Long personnelId, boolean groupByEmplacement) {
+        if (header.getNumeroInventaire() == null) {
+            throw new IllegalArgumentException("The full inventory header must be numbered");
+        }
+        List<Inventaire> created = executeInTransaction("creating full inventory", session -> {
+            // Product count per location, computed by the database
+            List<Object[]> groups;
+            if (groupByEmplacement) {
+                groups = session.createQuery(
+                    "SELECT p.emplacement, COUNT(p) FROM Produit p WHERE p.actif = true " +
+                    "GROUP BY p.emplacement ORDER BY p.emplacement", Object[].class).getResultList();
+            } else {
+                groups = new ArrayList<>();
+                groups.add(new Object[]{null, null});
+            }
+            
+            List<Inventaire> inventaires = new ArrayList<>(groups.size());
+            for (Object[] group : groups) {
+                String emplacement = (String) group[0];
+                
+                Inventaire inventaire = new Inventaire();
+                inventaire.setDateDebut(header.getDateDebut());
+                inventaire.setResponsable(header.getResponsable());
+                inventaire.setDescription(groupByEmplacement
+                    ? header.getDescription() + " - " + (emplacement != null ? emplacement : "Sans emplacement")
+                    : header.getDescription());
+                // One number per full inventory, the sessions of the other locations are suffixed
+                inventaire.setNumeroInventaire(inventaires.isEmpty()
+                    ? header.getNumeroInventaire()
+                    : header.getNumeroInventaire() + "-" + (inventaires.size() + 1));
+                if (group[1] != null) {
+                    inventaire.setNombreProduitsTotal(((Number) group[1]).intValue());
+                }
+                session.persist(inventaire);
+                session.flush();
+                
+                String sql = INSERT_TASKS_FOR_ACTIVE_PRODUCTS;
+                if (groupByEmplacement) {
+                    sql += emplacement != null ? " AND p.emplacement = :emplacement" : " AND p.emplacement IS NULL";
+                }
+                MutationQuery insert = session.createNativeMutationQuery(sql)
+                    .setParameter("personnelId", personnelId, StandardBasicTypes.LONG)
+                    .setParameter("inventaireId", inventaire.getIdInventaire());
+                if (groupByEmplacement && emplacement != null) {
+                    insert.setParameter("emplacement", emplacement);
+                }
+                int taskCount = insert.executeUpdate();
+                
+                if (inventaire.getNombreProduitsTotal() == null || inventaire.getNombreProduitsTotal() != taskCount) {
+                    inventaire.setNombreProduitsTotal(taskCount);
+                }
+                inventaires.add(inventaire);
+            }
+            return inventaires;
+        });
+        logger.debug("Created {} inventories for a full inventory", created.size());
+        return created;
+    }
+    
+    @Override
+    public int[] closeInventories(List<Long> inventaireIds, boolean updateStock) {
+        if (inventaireIds == null || inventaireIds.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        int[] result = executeInTransaction("closing inventories", session -> {
+            int corrected = 0;
+            if (updateStock) {
+                corrected = session.createNativeMutationQuery(RECONCILE_STOCK)
+                    .setParameterList("inventaireIds", inventaireIds)
+                    .setParameter("motif", "Clôture d'inventaire")
+                    .executeUpdate();
+            }
+            
+            int closed = session.createMutationQuery(
+                    "UPDATE Inventaire i SET i.estClos = true, i.dateFin = :today, i.etatInventaire = 'CLOS', " +
+                    "i.dateModification = :now WHERE i.idInventaire IN (:inventaireIds)")
+                .setParameter("today", LocalDate.now())
+                .setParameter("now", LocalDateTime.now())
+                .setParameterList("inventaireIds", inventaireIds)
+                .executeUpdate();
+            return new int[]{closed, corrected};
+        });
+        
+        if (result[1] > 0) {
+            // Stock was changed with native SQL: cached products and query results are stale
+            sessionFactory.getCache().evictEntityData(Produit.class);
+            sessionFactory.getCache().evictQueryRegions();
+        }
+        logger.debug("Closed {} inventories, corrected stock of {} products", result[0], result[1]);
+        return result;
+    }
+    
+    @Override
+    public boolean incrementStatistics(Long inventaireId, int counted, int discrepancies) {
+        int updated = executeInTransaction("updating inventory statistics", session ->
+            session.createMutationQuery(
+                    "UPDATE Inventaire i SET " +
+                    "i.nombreProduitsComptes = COALESCE(i.nombreProduitsComptes, 0) + :counted, " +
+                    "i.ecartsDetectes = COALESCE(i.ecartsDetectes, 0) + :discrepancies, " +
+                    "i.dateModification = :now WHERE i.idInventaire = :inventaireId")
+                .setParameter("counted", counted)
+                .setParameter("discrepancies", discrepancies)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("inventaireId", inventaireId)
+                .executeUpdate());
+        return updated > 0;
+    }
+    
+    private static Long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+    
     @Override
     public List<Inventaire> findCurrentYear() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             int currentYear = LocalDate.now().getYear();
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE YEAR(i.dateDebut) = :year ORDER BY i.dateDebut DESC", Inventaire.class);
@@ -148,7 +343,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findByCompletionAbove(double minPercentage) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.nombreProduitsTotal > 0 AND " +
                 "((CAST(i.nombreProduitsComptes AS double) / CAST(i.nombreProduitsTotal AS double)) * 100) >= :minPercentage " +
@@ -166,7 +361,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public Optional<Inventaire> findMostRecent() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i ORDER BY i.dateCreation DESC", Inventaire.class);
             query.setMaxResults(1);
@@ -182,7 +377,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findNeedingAttention() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             LocalDate threeDaysAgo = LocalDate.now().minusDays(3);
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.estClos = false AND i.dateDebut < :deadline AND " +
@@ -201,7 +396,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public boolean existsByNumeroInventaire(String numeroInventaire) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(i) FROM Inventaire i WHERE i.numeroInventaire = :numeroInventaire", Long.class);
             query.setParameter("numeroInventaire", numeroInventaire);
@@ -217,7 +412,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public long countByYear(int year) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(i) FROM Inventaire i WHERE YEAR(i.dateDebut) = :year", Long.class);
             query.setParameter("year", year);
@@ -232,7 +427,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public long countActive() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(i) FROM Inventaire i WHERE i.estClos = false", Long.class);
             Long count = query.getSingleResult();
@@ -246,7 +441,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
 
     @Override
     public List<Inventaire> findByProduit(Produit produit) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "SELECT DISTINCT i FROM Inventaire i " +
                 "JOIN TacheInventaire t ON t.inventaire = i " +
@@ -264,7 +459,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
 
     @Override
     public List<Inventaire> findByPersonnel(Personnel personnel) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "FROM Inventaire i WHERE i.responsable = :responsableName ORDER BY i.dateDebut DESC", 
                 Inventaire.class);
@@ -280,7 +475,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
 
     @Override
     public List<Inventaire> findWithSignificantDiscrepancies(int threshold) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "SELECT DISTINCT i FROM Inventaire i " +
                 "JOIN TacheInventaire t ON t.inventaire = i " +
@@ -300,7 +495,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
 
     @Override
     public BigDecimal calculateTotalVariance() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<BigDecimal> query = session.createQuery(
                 "SELECT COALESCE(SUM(ABS(t.quantiteTheorique - t.quantiteReelle)), 0) " +
                 "FROM TacheInventaire t", 
@@ -316,7 +511,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
 
     @Override
     public long countAccurateInventories() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(t) FROM TacheInventaire t " +
                 "WHERE t.quantiteTheorique = t.quantiteReelle", 
@@ -332,7 +527,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
 
     @Override
     public Map<CategorieProduit, Object[]> getInventoryStatisticsByCategory() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT p.categorie, " +
                 "COUNT(t), " +
@@ -363,7 +558,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     // Override the findAll method to eagerly load tasks
     @Override
     public List<Inventaire> findAll() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "SELECT DISTINCT i FROM Inventaire i LEFT JOIN FETCH i.taches " +
                 "ORDER BY i.dateCreation DESC", Inventaire.class);
@@ -379,7 +574,7 @@ public class InventaireRepositoryImpl extends GenericRepositoryImpl<Inventaire,
     
     @Override
     public List<Inventaire> findByDescriptionContaining(String searchTerm) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Inventaire> query = session.createQuery(
                 "SELECT DISTINCT i FROM Inventaire i LEFT JOIN FETCH i.taches " +
                 "WHERE LOWER(i.description) LIKE LOWER(:searchTerm) ORDER BY i.dateDebut DESC", 
@@ -6,12 +6,16 @@ import insea.neobrain.entity.Produit;
 import insea.neobrain.repository.LigneCommandeRepository;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of LigneCommandeRepository
@@ -28,7 +32,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public List<LigneCommande> findByCommande(CommandeVente commande) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<LigneCommande> query = session.createQuery(
                 "FROM LigneCommande l WHERE l.commande = :commande ORDER BY l.id", 
                 LigneCommande.class);
@@ -45,7 +49,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public List<LigneCommande> findByProduit(Produit produit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<LigneCommande> query = session.createQuery(
                 "FROM LigneCommande l WHERE l.produit = :produit ORDER BY l.commande.date DESC", 
                 LigneCommande.class);
@@ -62,7 +66,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public List<LigneCommande> findByProduitAndDateBetween(Produit produit, LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<LigneCommande> query = session.createQuery(
                 "FROM LigneCommande l WHERE l.produit = :produit " +
                 "AND l.commande.date BETWEEN :startDate AND :endDate " +
@@ -84,7 +88,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public int getTotalQuantitySold(Produit produit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COALESCE(SUM(l.quantite), 0) FROM LigneCommande l WHERE l.produit = :produit", 
                 Long.class);
@@ -102,7 +106,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public int getTotalQuantitySoldInDateRange(Produit produit, LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COALESCE(SUM(l.quantite), 0) FROM LigneCommande l " +
                 "WHERE l.produit = :produit AND l.commande.date BETWEEN :startDate AND :endDate", 
@@ -124,7 +128,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public BigDecimal getTotalRevenue(Produit produit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<BigDecimal> query = session.createQuery(
                 "SELECT COALESCE(SUM(l.sousTotal), 0) FROM LigneCommande l WHERE l.produit = :produit", 
                 BigDecimal.class);
@@ -142,7 +146,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public BigDecimal getTotalRevenueInDateRange(Produit produit, LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<BigDecimal> query = session.createQuery(
                 "SELECT COALESCE(SUM(l.sousTotal), 0) FROM LigneCommande l " +
                 "WHERE l.produit = :produit AND l.commande.date BETWEEN :startDate AND :endDate", 
@@ -163,90 +167,85 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     }
     
     @Override
-    public List<Object[]> getTopSellingProductsByQuantity(int limit) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT l.produit, SUM(l.quantite) as totalQuantity " +
-                "FROM LigneCommande l GROUP BY l.produit ORDER BY totalQuantity DESC", 
-                Object[].class);
-            query.setMaxResults(limit);
-            
-            List<Object[]> result = query.getResultList();
-            logger.debug("Found {} top selling products by quantity", result.size());
+    public List<Object[]> getProductSalesTotals(LocalDate startDate, LocalDate endDate, boolean byRevenue, int limit) {
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            List<Object[]> totals = session.createNativeQuery(
+                    "SELECT id_produit, SUM(quantite_vendue) AS quantite, SUM(montant) AS montant " +
+                    "FROM ventes_produit_journalieres WHERE jour BETWEEN :startDate AND :endDate " +
+                    "GROUP BY id_produit HAVING SUM(quantite_vendue) > 0 " +
+                    "ORDER BY " + (byRevenue ? "montant" : "quantite") + " DESC, id_produit LIMIT :limit",
+                    Object[].class)
+                .addScalar("id_produit", StandardBasicTypes.LONG)
+                .addScalar("quantite", StandardBasicTypes.LONG)
+                .addScalar("montant", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("startDate", startDate != null ? startDate : LocalDate.of(1, 1, 1))
+                .setParameter("endDate", endDate != null ? endDate : LocalDate.of(9999, 12, 31))
+                .setParameter("limit", limit)
+                .getResultList();
+            if (totals.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            List<Long> ids = new ArrayList<>(totals.size());
+            for (Object[] row : totals) {
+                ids.add((Long) row[0]);
+            }
+            Map<Long, Produit> produits = new HashMap<>();
+            for (Produit produit : session.createQuery("FROM Produit p WHERE p.idProduit IN :ids", Produit.class)
+                    .setParameter("ids", ids)
+                    .getResultList()) {
+                produits.put(produit.getIdProduit(), produit);
+            }
+
+            List<Object[]> result = new ArrayList<>(totals.size());
+            for (Object[] row : totals) {
+                Produit produit = produits.get((Long) row[0]);
+                // Skips products deleted since their sales
+                if (produit != null) {
+                    result.add(new Object[]{produit, row[1], row[2]});
+                }
+            }
+            logger.debug("Found {} best sellers by {} between {} and {}", result.size(),
+                byRevenue ? "revenue" : "quantity", startDate, endDate);
             return result;
         } catch (Exception e) {
-            logger.error("Error getting top selling products by quantity", e);
-            throw new RuntimeException("Error getting top selling products by quantity", e);
+            logger.error("Error getting product sales totals: {} - {}", startDate, endDate, e);
+            throw new RuntimeException("Error getting product sales totals", e);
         }
     }
     
+    @Override
+    public List<Object[]> getTopSellingProductsByQuantity(int limit) {
+        return getTopSellingProductsByQuantityInDateRange(null, null, limit);
+    }
+    
     @Override
     public List<Object[]> getTopSellingProductsByQuantityInDateRange(LocalDate startDate, LocalDate endDate, int limit) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT l.produit, SUM(l.quantite) as totalQuantity " +
-                "FROM LigneCommande l WHERE l.commande.date BETWEEN :startDate AND :endDate " +
-                "GROUP BY l.produit ORDER BY totalQuantity DESC", 
-                Object[].class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            query.setMaxResults(limit);
-            
-            List<Object[]> result = query.getResultList();
-            logger.debug("Found {} top selling products by quantity between {} and {}", 
-                result.size(), startDate, endDate);
-            return result;
-        } catch (Exception e) {
-            logger.error("Error getting top selling products by quantity in date range: {} - {}", 
-                startDate, endDate, e);
-            throw new RuntimeException("Error getting top selling products by quantity in date range", e);
+        List<Object[]> result = new ArrayList<>();
+        for (Object[] row : getProductSalesTotals(startDate, endDate, false, limit)) {
+            result.add(new Object[]{row[0], row[1]});
         }
+        return result;
     }
     
     @Override
     public List<Object[]> getTopSellingProductsByRevenue(int limit) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT l.produit, SUM(l.sousTotal) as totalRevenue " +
-                "FROM LigneCommande l GROUP BY l.produit ORDER BY totalRevenue DESC", 
-                Object[].class);
-            query.setMaxResults(limit);
-            
-            List<Object[]> result = query.getResultList();
-            logger.debug("Found {} top selling products by revenue", result.size());
-            return result;
-        } catch (Exception e) {
-            logger.error("Error getting top selling products by revenue", e);
-            throw new RuntimeException("Error getting top selling products by revenue", e);
-        }
+        return getTopSellingProductsByRevenueInDateRange(null, null, limit);
     }
     
     @Override
     public List<Object[]> getTopSellingProductsByRevenueInDateRange(LocalDate startDate, LocalDate endDate, int limit) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Object[]> query = session.createQuery(
-                "SELECT l.produit, SUM(l.sousTotal) as totalRevenue " +
-                "FROM LigneCommande l WHERE l.commande.date BETWEEN :startDate AND :endDate " +
-                "GROUP BY l.produit ORDER BY totalRevenue DESC", 
-                Object[].class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            query.setMaxResults(limit);
-            
-            List<Object[]> result = query.getResultList();
-            logger.debug("Found {} top selling products by revenue between {} and {}", 
-                result.size(), startDate, endDate);
-            return result;
-        } catch (Exception e) {
-            logger.error("Error getting top selling products by revenue in date range: {} - {}", 
-                startDate, endDate, e);
-            throw new RuntimeException("Error getting top selling products by revenue in date range", e);
+        List<Object[]> result = new ArrayList<>();
+        for (Object[] row : getProductSalesTotals(startDate, endDate, true, limit)) {
+            result.add(new Object[]{row[0], row[2]});
         }
+        return result;
     }
     
     @Override
     public List<Object[]> getSalesSummaryByCategory(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT l.produit.categorie, SUM(l.quantite), SUM(l.sousTotal) " +
                 "FROM LigneCommande l WHERE l.commande.date BETWEEN :startDate AND :endDate " +
@@ -267,7 +266,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public List<LigneCommande> findByQuantityGreaterThanEqual(int minQuantity) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<LigneCommande> query = session.createQuery(
                 "FROM LigneCommande l WHERE l.quantite >= :minQuantity ORDER BY l.quantite DESC", 
                 LigneCommande.class);
@@ -284,7 +283,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public List<LigneCommande> findByPrixUnitaireBetween(BigDecimal minPrice, BigDecimal maxPrice) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<LigneCommande> query = session.createQuery(
                 "FROM LigneCommande l WHERE l.prixUnitaire BETWEEN :minPrice AND :maxPrice " +
                 "ORDER BY l.prixUnitaire", 
@@ -304,7 +303,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public BigDecimal getAverageSellingPrice(Produit produit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<BigDecimal> query = session.createQuery(
                 "SELECT COALESCE(AVG(l.prixUnitaire), 0) FROM LigneCommande l WHERE l.produit = :produit", 
                 BigDecimal.class);
@@ -322,7 +321,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public List<LigneCommande> findOrderLinesWithDiscounts() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<LigneCommande> query = session.createQuery(
                 "FROM LigneCommande l WHERE l.remise > 0 ORDER BY l.remise DESC", 
                 LigneCommande.class);
@@ -338,7 +337,7 @@ public class LigneCommandeRepositoryImpl extends GenericRepositoryImpl<LigneComm
     
     @Override
     public BigDecimal getTotalDiscountAmount(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<BigDecimal> query = session.createQuery(
                 "SELECT COALESCE(SUM(l.quantite * l.prixUnitaire * l.remise / 100), 0) " +
                 "FROM LigneCommande l WHERE l.commande.date BETWEEN :startDate AND :endDate", 
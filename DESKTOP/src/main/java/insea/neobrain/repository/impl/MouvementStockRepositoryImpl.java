@@ -0,0 +1,77 @@
+package insea.neobrain.repository.impl;
+
+import insea.neobrain.entity.MouvementStock;
+import insea.neobrain.entity.TypeMouvementStock;
+import insea.neobrain.repository.MouvementStockRepository;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Implementation of MouvementStockRepository.
+ * Queries filter on the product and order by date so they are served by
+ * the (id_produit, date_mouvement) index.
+ */
+public class MouvementStockRepositoryImpl extends GenericRepositoryImpl<MouvementStock, Long>
+        implements MouvementStockRepository {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MouvementStockRepositoryImpl.class);
+    
+    @Override
+    public List<MouvementStock> findByProduit(Long produitId, int limit) {
+        try (Session session = openReadOnlySession()) {
+            Query<MouvementStock> query = session.createQuery(
+                "FROM MouvementStock m WHERE m.idProduit = :produitId " +
+                "ORDER BY m.dateMouvement DESC, m.idMouvementStock DESC", MouvementStock.class);
+            query.setParameter("produitId", produitId);
+            query.setMaxResults(limit);
+            List<MouvementStock> result = query.getResultList();
+            logger.debug("Found {} stock movements for product {}", result.size(), produitId);
+            return result;
+        } catch (Exception e) {
+            logger.error("Error finding stock movements for product: {}", produitId, e);
+            throw new RuntimeException("Error finding stock movements for product", e);
+        }
+    }
+    
+    @Override
+    public List<MouvementStock> findByProduitAndDateBetween(Long produitId, LocalDateTime start, LocalDateTime end) {
+        try (Session session = openReadOnlySession()) {
+            Query<MouvementStock> query = session.createQuery(
+                "FROM MouvementStock m WHERE m.idProduit = :produitId " +
+                "AND m.dateMouvement >= :start AND m.dateMouvement < :end " +
+                "ORDER BY m.dateMouvement DESC, m.idMouvementStock DESC", MouvementStock.class);
+            query.setParameter("produitId", produitId);
+            query.setParameter("start", start);
+            query.setParameter("end", end);
+            List<MouvementStock> result = query.getResultList();
+            logger.debug("Found {} stock movements for product {} between {} and {}", result.size(), produitId, start, end);
+            return result;
+        } catch (Exception e) {
+            logger.error("Error finding stock movements for product {} between {} and {}", produitId, start, end, e);
+            throw new RuntimeException("Error finding stock movements by date range", e);
+        }
+    }
+    
+    @Override
+    public long sumQuantiteByType(Long produitId, TypeMouvementStock type, LocalDateTime start, LocalDateTime end) {
+        try (Session session = openReadOnlySession()) {
+            Query<Long> query = session.createQuery(
+                "SELECT COALESCE(SUM(m.quantite), 0L) FROM MouvementStock m WHERE m.idProduit = :produitId " +
+                "AND m.typeMouvement = :type AND m.dateMouvement >= :start AND m.dateMouvement < :end", Long.class);
+            query.setParameter("produitId", produitId);
+            query.setParameter("type", type);
+            query.setParameter("start", start);
+            query.setParameter("end", end);
+            Long sum = query.uniqueResult();
+            return sum != null ? sum : 0L;
+        } catch (Exception e) {
+            logger.error("Error summing stock movements for product {} of type {}", produitId, type, e);
+            throw new RuntimeException("Error summing stock movements", e);
+        }
+    }
+}
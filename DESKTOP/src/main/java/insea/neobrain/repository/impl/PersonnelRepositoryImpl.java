@@ -27,7 +27,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public Optional<Personnel> findByIdPersonnel(String idPersonnel) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.idPersonnel = :idPersonnel", Personnel.class);
             query.setParameter("idPersonnel", idPersonnel);
@@ -42,7 +42,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public Optional<Personnel> findByEmail(String email) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.email = :email", Personnel.class);
             query.setParameter("email", email);
@@ -57,7 +57,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> findByRole(Role role) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.role = :role ORDER BY p.nom, p.prenom", Personnel.class);
             query.setParameter("role", role);
@@ -72,9 +72,10 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> findActive() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.actif = true ORDER BY p.nom, p.prenom", Personnel.class);
+            query.setCacheable(true);
             List<Personnel> personnel = query.getResultList();
             logger.debug("Found {} active personnel", personnel.size());
             return personnel;
@@ -86,7 +87,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> findByName(String nom, String prenom) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.nom = :nom AND p.prenom = :prenom", Personnel.class);
             query.setParameter("nom", nom);
@@ -102,7 +103,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> findInventoryCapablePersonnel() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.actif = true AND " +
                 "(p.role = :responsableStock OR p.role = :employeStock) " +
@@ -120,7 +121,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> searchByName(String searchTerm) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             String searchPattern = "%" + searchTerm.toLowerCase() + "%";
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE LOWER(CONCAT(p.nom, ' ', p.prenom)) LIKE :searchTerm " +
@@ -138,7 +139,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public Optional<Personnel> authenticate(String email, String motDePasse) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.email = :email AND p.actif = true", Personnel.class);
             query.setParameter("email", email);
@@ -159,7 +160,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public boolean existsByEmail(String email) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Personnel p WHERE p.email = :email", Long.class);
             query.setParameter("email", email);
@@ -175,7 +176,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public boolean existsByIdPersonnel(String idPersonnel) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Personnel p WHERE p.idPersonnel = :idPersonnel", Long.class);
             query.setParameter("idPersonnel", idPersonnel);
@@ -201,7 +202,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public java.util.Map<Role, Long> getPersonnelCountByRole() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT p.role, COUNT(p) FROM Personnel p GROUP BY p.role", Object[].class);
             List<Object[]> results = query.getResultList();
@@ -223,7 +224,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> searchPersonnel(String nom, String prenom, Role role, String email, String telephone) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             StringBuilder hql = new StringBuilder("FROM Personnel p WHERE 1=1");
             
             if (nom != null && !nom.trim().isEmpty()) {
@@ -273,7 +274,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public long countByPersonnelNumberPrefix(String prefix) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Personnel p WHERE p.idPersonnel LIKE :prefix", Long.class);
             query.setParameter("prefix", prefix + "%");
@@ -288,7 +289,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public long countByRole(Role role) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Personnel p WHERE p.role = :role", Long.class);
             query.setParameter("role", role);
@@ -303,7 +304,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public boolean canDeletePersonnel(Long personnelId) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             // Check if personnel has any related records that would prevent deletion
             // Only check inventory tasks, since CommandeVente does not reference personnel
             Query<Long> taskQuery = session.createQuery(
@@ -323,7 +324,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     @Override
     public List<Personnel> findByDateNaissanceBetween(java.time.LocalDate startDate, java.time.LocalDate endDate) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "FROM Personnel p WHERE p.dateNaissance BETWEEN :startDate AND :endDate " +
                 "ORDER BY p.dateNaissance, p.nom, p.prenom", Personnel.class);
@@ -340,7 +341,7 @@ public class PersonnelRepositoryImpl extends GenericRepositoryImpl<Personnel, Lo
     
     // Find Personnel by username (nom_utilisateur) via join with Personne
     public Optional<Personnel> findByNomUtilisateur(String nomUtilisateur) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Personnel> query = session.createQuery(
                 "SELECT p FROM Personnel p WHERE p.nomUtilisateur = :nomUtilisateur", Personnel.class);
             query.setParameter("nomUtilisateur", nomUtilisateur);
@@ -3,15 +3,26 @@ package insea.neobrain.repository.impl;
 import insea.neobrain.entity.CategorieProduit;
 import insea.neobrain.entity.Produit;
 import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.repository.QueryCancellation;
+import insea.neobrain.repository.StockLevel;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * Implementation of ProduitRepository
@@ -20,9 +31,32 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     private static final Logger logger = LoggerFactory.getLogger(ProduitRepositoryImpl.class);
     
+    private static final int SEARCH_BY_NAME_OR_REFERENCE_LIMIT = 500;
+    // Below 3 characters a term has no trigram: only the name prefix index can serve it
+    private static final int MIN_TRIGRAM_TERM_LENGTH = 3;
+    
+    private static final String SEARCH_PREFIX =
+        "SELECT p.* FROM produit p WHERE lower(p.nom) LIKE :prefix " +
+        "ORDER BY lower(p.nom), p.id_produit LIMIT :limit";
+    
+    private static final String SEARCH_SUBSTRING =
+        "SELECT p.* FROM produit p " +
+        "WHERE lower(p.nom) LIKE :pattern OR lower(p.code_produit) LIKE :pattern OR p.code_barre LIKE :pattern " +
+        "ORDER BY (lower(p.nom) LIKE :prefix) DESC, lower(p.nom), p.id_produit LIMIT :limit";
+    
+    // <% also matches names containing a word close to the term, e.g. with a typo
+    private static final String SEARCH_TRIGRAM =
+        "SELECT p.* FROM produit p " +
+        "WHERE lower(p.nom) LIKE :pattern OR lower(p.code_produit) LIKE :pattern OR p.code_barre LIKE :pattern " +
+        "OR :term <% lower(p.nom) " +
+        "ORDER BY (lower(p.nom) LIKE :prefix) DESC, word_similarity(:term, lower(p.nom)) DESC, " +
+        "lower(p.nom), p.id_produit LIMIT :limit";
+    
+    private volatile Boolean trigramAvailable;
+    
     @Override
     public Optional<Produit> findByReference(String reference) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.reference = :reference", Produit.class);
             query.setParameter("reference", reference);
@@ -37,7 +71,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findByNom(String nom) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             String searchPattern = "%" + nom.toLowerCase() + "%";
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE LOWER(p.nom) LIKE :nom ORDER BY p.nom", Produit.class);
@@ -53,26 +87,81 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> searchByNameOrReference(String searchTerm) {
-        try (Session session = openSession()) {
-            String searchPattern = "%" + searchTerm.toLowerCase() + "%";
-            Query<Produit> query = session.createQuery(
-                "FROM Produit p WHERE LOWER(p.nom) LIKE :searchTerm " +
-                "OR LOWER(p.reference) LIKE :searchTerm " +
-                "OR LOWER(p.description) LIKE :searchTerm " +
-                "ORDER BY p.nom", Produit.class);
-            query.setParameter("searchTerm", searchPattern);
-            List<Produit> produits = query.getResultList();
-            logger.debug("Found {} products matching search term: {}", produits.size(), searchTerm);
-            return produits;
+        return search(searchTerm, SEARCH_BY_NAME_OR_REFERENCE_LIMIT);
+    }
+    
+    @Override
+    public List<Produit> search(String term, int limit) {
+        return search(term, limit, null);
+    }
+    
+    @Override
+    public List<Produit> search(String term, int limit, QueryCancellation cancellation) {
+        String normalized = term != null ? term.trim().toLowerCase() : "";
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        try (Session session = openReadOnlySession()) {
+            if (cancellation != null && !cancellation.attach(session)) {
+                return new ArrayList<>();
+            }
+            try {
+                String escaped = escapeLike(normalized);
+                Query<Produit> query;
+                if (normalized.length() < MIN_TRIGRAM_TERM_LENGTH) {
+                    query = session.createNativeQuery(SEARCH_PREFIX, Produit.class);
+                } else if (isTrigramAvailable(session)) {
+                    query = session.createNativeQuery(SEARCH_TRIGRAM, Produit.class);
+                    query.setParameter("term", normalized);
+                    query.setParameter("pattern", "%" + escaped + "%");
+                } else {
+                    query = session.createNativeQuery(SEARCH_SUBSTRING, Produit.class);
+                    query.setParameter("pattern", "%" + escaped + "%");
+                }
+                query.setParameter("prefix", escaped + "%");
+                query.setParameter("limit", limit);
+                
+                List<Produit> produits = query.getResultList();
+                logger.debug("Found {} products matching search term: {}", produits.size(), term);
+                return produits;
+            } finally {
+                if (cancellation != null) {
+                    cancellation.detach();
+                }
+            }
         } catch (Exception e) {
-            logger.error("Error searching products by name or reference: {}", searchTerm, e);
-            throw new RuntimeException("Error searching products by name or reference", e);
+            if (cancellation != null && cancellation.isCancelled()) {
+                logger.debug("Product search cancelled: {}", term);
+                return new ArrayList<>();
+            }
+            logger.error("Error searching products: {}", term, e);
+            throw new RuntimeException("Error searching products", e);
         }
     }
     
+    private boolean isTrigramAvailable(Session session) {
+        if (trigramAvailable == null) {
+            Boolean installed = session.createNativeQuery(
+                "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')", Boolean.class)
+                .getSingleResult();
+            trigramAvailable = Boolean.TRUE.equals(installed);
+            if (!trigramAvailable) {
+                logger.warn("pg_trgm extension not installed, product search falls back to substring matching");
+            }
+        }
+        return trigramAvailable;
+    }
+    
+    /**
+     * Escape the LIKE wildcards of a user term (backslash is the default escape character)
+     */
+    static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
     @Override
     public List<Produit> findByCategorie(CategorieProduit categorie) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.categorie = :categorie ORDER BY p.nom", Produit.class);
             query.setParameter("categorie", categorie);
@@ -85,11 +174,41 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
         }
     }
     
+    @Override
+    public List<Produit> findByCategorie(CategorieProduit categorie, int limit, QueryCancellation cancellation) {
+        try (Session session = openReadOnlySession()) {
+            if (cancellation != null && !cancellation.attach(session)) {
+                return new ArrayList<>();
+            }
+            try {
+                Query<Produit> query = session.createQuery(
+                    "FROM Produit p WHERE p.categorie = :categorie ORDER BY p.nom, p.idProduit", Produit.class);
+                query.setParameter("categorie", categorie);
+                query.setMaxResults(limit);
+                List<Produit> produits = query.getResultList();
+                logger.debug("Found {} products in category: {} (limit {})", produits.size(), categorie, limit);
+                return produits;
+            } finally {
+                if (cancellation != null) {
+                    cancellation.detach();
+                }
+            }
+        } catch (Exception e) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                logger.debug("Category query cancelled: {}", categorie);
+                return new ArrayList<>();
+            }
+            logger.error("Error finding products by category: {}", categorie, e);
+            throw new RuntimeException("Error finding products by category", e);
+        }
+    }
+    
     @Override
     public List<Produit> findActive() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = true ORDER BY p.nom", Produit.class);
+            query.setCacheable(true);
             List<Produit> produits = query.getResultList();
             logger.debug("Found {} active products", produits.size());
             return produits;
@@ -99,9 +218,14 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
         }
     }
     
+    @Override
+    public Stream<Produit> streamActive(int fetchSize) {
+        return stream("FROM Produit p WHERE p.actif = true ORDER BY p.idProduit", Map.of(), fetchSize);
+    }
+    
     @Override
     public List<Produit> findAvailableForSale() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = true AND p.disponible = true " +
                 "AND p.quantiteStock > 0 ORDER BY p.nom", Produit.class);
@@ -116,7 +240,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findWithLowStock() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = true AND p.quantiteStock <= p.stockMinimum " +
                 "AND p.quantiteStock > 0 ORDER BY p.quantiteStock ASC", Produit.class);
@@ -131,7 +255,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findOutOfStock() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = true AND " +
                 "(p.quantiteStock IS NULL OR p.quantiteStock <= 0) ORDER BY p.nom", Produit.class);
@@ -146,7 +270,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findByPriceRange(BigDecimal prixMin, BigDecimal prixMax) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.prix BETWEEN :prixMin AND :prixMax " +
                 "ORDER BY p.prix ASC", Produit.class);
@@ -163,7 +287,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findNeedingInventory() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = true AND p.besoinInventaire = true " +
                 "ORDER BY p.dernierInventaire ASC NULLS FIRST", Produit.class);
@@ -178,7 +302,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findByEmplacement(String emplacement) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.emplacement = :emplacement ORDER BY p.nom", Produit.class);
             query.setParameter("emplacement", emplacement);
@@ -193,13 +317,16 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findTopSellingProducts(int limit) {
-        try (Session session = openSession()) {
-            Query<Produit> query = session.createQuery(
-                "SELECT lc.produit FROM LigneCommande lc " +
-                "JOIN lc.commandeVente cv WHERE cv.estValide = true " +
-                "GROUP BY lc.produit ORDER BY SUM(lc.quantiteVente) DESC", Produit.class);
-            query.setMaxResults(limit);
-            List<Produit> produits = query.getResultList();
+        executeInTransaction("folding sales rollup", SalesRollup::fold);
+        try (Session session = openReadOnlySession()) {
+            // Daily sales per product (ventes_produit_journalieres) rather than the order lines
+            List<Produit> produits = session.createNativeQuery(
+                    "SELECT p.* FROM produit p JOIN (" +
+                    "  SELECT id_produit, SUM(quantite_vendue) AS quantite FROM ventes_produit_journalieres " +
+                    "  GROUP BY id_produit HAVING SUM(quantite_vendue) > 0 ORDER BY quantite DESC, id_produit LIMIT :limit" +
+                    ") v ON v.id_produit = p.id_produit ORDER BY v.quantite DESC, p.id_produit", Produit.class)
+                .setParameter("limit", limit)
+                .getResultList();
             logger.debug("Found {} top selling products", produits.size());
             return produits;
         } catch (Exception e) {
@@ -210,7 +337,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public List<Produit> findWithStockBelow(Integer threshold) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = true AND " +
                 "(p.quantiteStock IS NULL OR p.quantiteStock < :threshold) " +
@@ -227,7 +354,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public boolean existsByReference(String reference) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Produit p WHERE p.reference = :reference", Long.class);
             query.setParameter("reference", reference);
@@ -243,7 +370,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public long countByCategorie(CategorieProduit categorie) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Produit p WHERE p.categorie = :categorie", Long.class);
             query.setParameter("categorie", categorie);
@@ -258,7 +385,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
     
     @Override
     public long countActive() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Produit p WHERE p.actif = true", Long.class);
             Long count = query.getSingleResult();
@@ -272,10 +399,11 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
 
     @Override
     public Optional<Produit> findByCodeBarre(String codeBarre) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.codeBarre = :codeBarre", Produit.class);
             query.setParameter("codeBarre", codeBarre);
+            query.setCacheable(true);
             Produit produit = query.uniqueResult();
             logger.debug("Product found by barcode {}: {}", codeBarre, produit != null);
             return Optional.ofNullable(produit);
@@ -285,6 +413,94 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
         }
     }
 
+    @Override
+    public Set<String> findAllCodesBarre() {
+        try (Session session = openReadOnlySession()) {
+            List<String> codes = session.createQuery(
+                "SELECT p.codeBarre FROM Produit p WHERE p.codeBarre IS NOT NULL", String.class)
+                .setFetchSize(fetchSize)
+                .getResultList();
+            logger.debug("Found {} product barcodes", codes.size());
+            return new HashSet<>(codes);
+        } catch (Exception e) {
+            logger.error("Error finding product barcodes", e);
+            throw new RuntimeException("Error finding product barcodes", e);
+        }
+    }
+
+    @Override
+    public void forEachCodeBarre(BiConsumer<String, Long> action) {
+        try (Session session = openReadOnlySession()) {
+            // PostgreSQL only uses a server-side cursor inside a transaction
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableResults<Object[]> results = session.createQuery(
+                    "SELECT p.codeBarre, p.idProduit FROM Produit p WHERE p.codeBarre IS NOT NULL AND p.codeBarre <> ''",
+                    Object[].class)
+                    .setReadOnly(true)
+                    .setFetchSize(fetchSize)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                long count = 0;
+                while (results.next()) {
+                    Object[] row = results.get();
+                    action.accept((String) row[0], (Long) row[1]);
+                    count++;
+                }
+                logger.debug("Read {} product barcodes", count);
+            } finally {
+                transaction.rollback();
+            }
+        } catch (Exception e) {
+            logger.error("Error reading product barcodes", e);
+            throw new RuntimeException("Error reading product barcodes", e);
+        }
+    }
+
+    @Override
+    public List<Object[]> findCodesBarreModifiedSince(LocalDateTime since) {
+        try (Session session = openReadOnlySession()) {
+            List<Object[]> result = session.createQuery(
+                "SELECT p.codeBarre, p.idProduit FROM Produit p WHERE p.codeBarre IS NOT NULL " +
+                "AND (p.dateCreation > :since OR p.dateModification > :since)", Object[].class)
+                .setParameter("since", since)
+                .getResultList();
+            logger.debug("Found {} product barcodes modified since {}", result.size(), since);
+            return result;
+        } catch (Exception e) {
+            logger.error("Error finding product barcodes modified since {}", since, e);
+            throw new RuntimeException("Error finding modified product barcodes", e);
+        }
+    }
+
+    @Override
+    public long countCodesBarre() {
+        try (Session session = openReadOnlySession()) {
+            Long count = session.createQuery(
+                "SELECT COUNT(p) FROM Produit p WHERE p.codeBarre IS NOT NULL AND p.codeBarre <> ''", Long.class)
+                .getSingleResult();
+            logger.debug("Count of products with a barcode: {}", count);
+            return count != null ? count : 0L;
+        } catch (Exception e) {
+            logger.error("Error counting products with a barcode", e);
+            throw new RuntimeException("Error counting products with a barcode", e);
+        }
+    }
+
+    @Override
+    public long[] summarizeCodesBarre() {
+        try (Session session = openReadOnlySession()) {
+            Object[] row = session.createQuery(
+                "SELECT COUNT(p), COALESCE(SUM(p.idProduit), 0) FROM Produit p " +
+                "WHERE p.codeBarre IS NOT NULL AND p.codeBarre <> ''", Object[].class)
+                .getSingleResult();
+            long[] summary = {((Number) row[0]).longValue(), ((Number) row[1]).longValue()};
+            logger.debug("Products with a barcode: {}, ID sum: {}", summary[0], summary[1]);
+            return summary;
+        } catch (Exception e) {
+            logger.error("Error summarizing products with a barcode", e);
+            throw new RuntimeException("Error summarizing products with a barcode", e);
+        }
+    }
+
     @Override
     public List<Produit> findByNomContaining(String nom) {
         return findByNom(nom); // Delegate to existing method
@@ -297,7 +513,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
 
     @Override
     public List<Produit> searchProducts(String nom, CategorieProduit categorie, BigDecimal minPrice, BigDecimal maxPrice) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             StringBuilder queryBuilder = new StringBuilder("FROM Produit p WHERE 1=1");
             
             if (nom != null && !nom.trim().isEmpty()) {
@@ -341,7 +557,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
 
     @Override
     public long countLowStockProducts() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Produit p WHERE p.quantiteStock <= p.stockMinimum", Long.class);
             Long count = query.getSingleResult();
@@ -355,7 +571,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
 
     @Override
     public BigDecimal calculateTotalInventoryValue() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<BigDecimal> query = session.createQuery(
                 "SELECT SUM(p.prix * p.quantiteStock) FROM Produit p WHERE p.actif = true", BigDecimal.class);
             BigDecimal total = query.getSingleResult();
@@ -369,7 +585,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
 
     @Override
     public java.util.Map<CategorieProduit, Long> getProductCountByCategory() {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT p.categorie, COUNT(p) FROM Produit p WHERE p.actif = true GROUP BY p.categorie", Object[].class);
             List<Object[]> results = query.getResultList();
@@ -389,7 +605,7 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
 
     @Override
     public boolean canDeleteProduct(Long produitId) {
-        try (Session session = openSession()) {
+        try (Session session = openReadOnlySession()) {
             // Check if product has any inventory tasks
             Query<Long> inventoryTaskQuery = session.createQuery(
                 "SELECT COUNT(t) FROM TacheInventaire t WHERE t.produit.idProduit = :produitId", Long.class);
@@ -411,11 +627,61 @@ public class ProduitRepositoryImpl extends GenericRepositoryImpl<Produit, Long>
         }
     }
 
+    @Override
+    public Optional<StockLevel> adjustStock(Long produitId, int delta) {
+        // The guard and the increment run in the same statement, so concurrent adjustments cannot be lost
+        Optional<StockLevel> stock = executeInTransaction("adjusting stock", session -> session.createNativeQuery(
+                "UPDATE produit SET quantite_stock = quantite_stock + :delta, version = version + 1, " +
+                "date_modification = CURRENT_TIMESTAMP " +
+                "WHERE id_produit = :id AND quantite_stock + :delta >= 0 " +
+                "RETURNING quantite_stock - :delta, quantite_stock, COALESCE(stock_minimum, 0)", Object[].class)
+                .setParameter("delta", delta)
+                .setParameter("id", produitId)
+                .uniqueResultOptional()
+                .map(ProduitRepositoryImpl::toStockLevel));
+        evictCachedProduit(produitId);
+        logger.debug("Stock of product {} adjusted by {}: {}", produitId, delta, stock.orElse(null));
+        return stock;
+    }
+    
+    @Override
+    public Optional<StockLevel> setStock(Long produitId, int quantity) {
+        // The locking sub-select reads the previous quantity of the row being updated
+        Optional<StockLevel> stock = executeInTransaction("setting stock", session -> session.createNativeQuery(
+                "UPDATE produit p SET quantite_stock = :quantity, version = p.version + 1, " +
+                "date_modification = CURRENT_TIMESTAMP " +
+                "FROM (SELECT id_produit, quantite_stock FROM produit WHERE id_produit = :id FOR UPDATE) old " +
+                "WHERE p.id_produit = old.id_produit " +
+                "RETURNING old.quantite_stock, p.quantite_stock, COALESCE(p.stock_minimum, 0)", Object[].class)
+                .setParameter("quantity", quantity)
+                .setParameter("id", produitId)
+                .uniqueResultOptional()
+                .map(ProduitRepositoryImpl::toStockLevel));
+        evictCachedProduit(produitId);
+        logger.debug("Stock of product {} set to {}: {}", produitId, quantity, stock.orElse(null));
+        return stock;
+    }
+    
+    /**
+     * Map a RETURNING row (previous quantity, new quantity, threshold)
+     */
+    private static StockLevel toStockLevel(Object[] row) {
+        return new StockLevel(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+            ((Number) row[2]).intValue());
+    }
+    
+    /**
+     * Drop a product from the second-level cache after a native update
+     * @param produitId the product ID
+     */
+    private void evictCachedProduit(Long produitId) {
+        sessionFactory.getCache().evictEntityData(Produit.class, produitId);
+    }
+
     @Override
     public List<Produit> findByActif(boolean actif) {
         logger.debug("Finding products by active status: {}", actif);
-        try {
-            Session session = sessionFactory.getCurrentSession();
+        try (Session session = openReadOnlySession()) {
             Query<Produit> query = session.createQuery(
                 "FROM Produit p WHERE p.actif = :actif", Produit.class);
             query.setParameter("actif", actif);
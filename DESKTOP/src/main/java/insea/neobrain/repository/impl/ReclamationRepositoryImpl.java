@@ -5,6 +5,7 @@ import insea.neobrain.entity.LigneCommande;
 import insea.neobrain.entity.Client;
 import insea.neobrain.entity.EtatReclamation;
 import insea.neobrain.entity.TypeReclamation;
+import insea.neobrain.repository.QueryCancellation;
 import insea.neobrain.repository.ReclamationRepository;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,10 +29,16 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     public ReclamationRepositoryImpl() {
         super();
     }
+    
+    @Override
+    protected String getPageFetchJoins() {
+        // The complaint list shows the order line and the client of each complaint
+        return " LEFT JOIN FETCH e.ligneCommande l LEFT JOIN FETCH l.commandeVente c LEFT JOIN FETCH c.client";
+    }
 
     @Override
     public List<Reclamation> findByDateRange(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.date BETWEEN :startDate AND :endDate ORDER BY r.date DESC",
                 Reclamation.class);
@@ -48,7 +56,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
 
     @Override
     public List<Reclamation> findByLigneCommandeId(Long ligneCommandeId) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.ligneCommande.idLigneVente = :ligneCommandeId ORDER BY r.date DESC",
                 Reclamation.class);
@@ -65,7 +73,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
 
     @Override
     public List<Reclamation> findByEtatReclamation(EtatReclamation etatReclamation) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.etat = :etatReclamation ORDER BY r.date DESC",
                 Reclamation.class);
@@ -82,7 +90,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
 
     @Override
     public long countByType(TypeReclamation typeReclamation) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(r) FROM Reclamation r WHERE r.type = :typeReclamation",
                 Long.class);
@@ -99,7 +107,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
 
     @Override
     public List<Reclamation> findByTypeReclamation(TypeReclamation typeReclamation) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.type = :typeReclamation ORDER BY r.date DESC",
                 Reclamation.class);
@@ -116,7 +124,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findByClient(Client client) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.ligneCommande.commande.client = :client ORDER BY r.date DESC", 
                 Reclamation.class);
@@ -134,14 +142,18 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
 
     @Override
     public long countAll() {
-        Session session = sessionFactory.getCurrentSession();
-        Query<Long> query = session.createQuery("SELECT COUNT(r) FROM Reclamation r", Long.class);
-        return query.uniqueResult();
+        try (Session session = openReadOnlySession()) {
+            Query<Long> query = session.createQuery("SELECT COUNT(r) FROM Reclamation r", Long.class);
+            return query.uniqueResult();
+        } catch (Exception e) {
+            logger.error("Error counting complaints", e);
+            throw new RuntimeException("Error counting complaints", e);
+        }
     }
     
     @Override
     public List<Reclamation> findByLigneCommande(LigneCommande ligneCommande) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.ligneCommande = :ligneCommande ORDER BY r.date DESC", 
                 Reclamation.class);
@@ -158,7 +170,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findByEtat(EtatReclamation etat) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.etat = :etat ORDER BY r.date DESC", 
                 Reclamation.class);
@@ -175,7 +187,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findByType(TypeReclamation type) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.type = :type ORDER BY r.date DESC", 
                 Reclamation.class);
@@ -192,7 +204,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findByDateBetween(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.date BETWEEN :startDate AND :endDate ORDER BY r.date DESC", 
                 Reclamation.class);
@@ -210,7 +222,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findPendingComplaints() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.etat IN (:pendingStates) ORDER BY r.date", 
                 Reclamation.class);
@@ -228,7 +240,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findResolvedInDateRange(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.etat = :resolvedState " +
                 "AND r.dateResolution BETWEEN :startDate AND :endDate ORDER BY r.dateResolution DESC", 
@@ -248,7 +260,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findByNumeroLike(String numeroPattern) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.numero LIKE :numeroPattern ORDER BY r.date DESC", 
                 Reclamation.class);
@@ -265,7 +277,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findRecentComplaints(int days) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             LocalDate cutoffDate = LocalDate.now().minusDays(days);
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.date >= :cutoffDate ORDER BY r.date DESC", 
@@ -283,7 +295,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public long countByEtat(EtatReclamation etat) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(r) FROM Reclamation r WHERE r.etat = :etat", 
                 Long.class);
@@ -300,7 +312,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public long countByTypeAndDateBetween(TypeReclamation type, LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(r) FROM Reclamation r WHERE r.type = :type " +
                 "AND r.date BETWEEN :startDate AND :endDate", 
@@ -322,7 +334,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Object[]> getComplaintStatisticsByType(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT r.type, COUNT(r) " +
                 "FROM Reclamation r WHERE r.date BETWEEN :startDate AND :endDate " +
@@ -343,7 +355,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Object[]> getComplaintStatisticsByStatus(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT r.etat, COUNT(r) " +
                 "FROM Reclamation r WHERE r.date BETWEEN :startDate AND :endDate " +
@@ -364,7 +376,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Object[]> getMonthlyComplaintTrends(int year) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT MONTH(r.date), COUNT(r) " +
                 "FROM Reclamation r WHERE YEAR(r.date) = :year " +
@@ -383,7 +395,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findByClientAndDateBetween(Client client, LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.ligneCommande.commande.client = :client " +
                 "AND r.date BETWEEN :startDate AND :endDate ORDER BY r.date DESC", 
@@ -405,7 +417,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Object[]> getClientsWithMostComplaints(int limit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT r.ligneCommande.commande.client, COUNT(r) as complaintCount " +
                 "FROM Reclamation r GROUP BY r.ligneCommande.commande.client " +
@@ -424,7 +436,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public Double getAverageResolutionTime(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             // Get resolved complaints with both dates available
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.etat = :resolvedState " +
@@ -459,7 +471,7 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
     
     @Override
     public List<Reclamation> findOverdueComplaints(int days) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             LocalDate cutoffDate = LocalDate.now().minusDays(days);
             Query<Reclamation> query = session.createQuery(
                 "FROM Reclamation r WHERE r.date <= :cutoffDate " +
@@ -477,4 +489,63 @@ public class ReclamationRepositoryImpl extends GenericRepositoryImpl<Reclamation
             throw new RuntimeException("Error finding overdue complaints", e);
         }
     }
+    
+    @Override
+    public List<Reclamation> search(String term, EtatReclamation etat, TypeReclamation type, int limit,
+                                    QueryCancellation cancellation) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        String normalized = term != null ? term.trim().toLowerCase() : "";
+        StringBuilder hql = new StringBuilder(
+            "SELECT r FROM Reclamation r JOIN FETCH r.ligneCommande l JOIN FETCH l.commandeVente c " +
+            "JOIN FETCH c.client cl WHERE 1 = 1");
+        if (!normalized.isEmpty()) {
+            hql.append(" AND (lower(r.numeroReclamation) LIKE :pattern OR lower(r.motif) LIKE :pattern" +
+                " OR lower(r.description) LIKE :pattern OR lower(cl.nom) LIKE :pattern" +
+                " OR lower(cl.prenom) LIKE :pattern)");
+        }
+        if (etat != null) {
+            hql.append(" AND r.etatReclamation = :etat");
+        }
+        if (type != null) {
+            hql.append(" AND r.typeReclamation = :type");
+        }
+        hql.append(" ORDER BY r.dateReclamation DESC, r.idReclamation DESC");
+        
+        try (Session session = openReadOnlySession()) {
+            if (cancellation != null && !cancellation.attach(session)) {
+                return new ArrayList<>();
+            }
+            try {
+                Query<Reclamation> query = session.createQuery(hql.toString(), Reclamation.class)
+                    .setMaxResults(limit);
+                if (!normalized.isEmpty()) {
+                    query.setParameter("pattern", "%" + ProduitRepositoryImpl.escapeLike(normalized) + "%");
+                }
+                if (etat != null) {
+                    query.setParameter("etat", etat);
+                }
+                if (type != null) {
+                    query.setParameter("type", type);
+                }
+                
+                List<Reclamation> result = query.getResultList();
+                logger.debug("Found {} complaints matching search term: {} (state: {}, type: {})",
+                    result.size(), term, etat, type);
+                return result;
+            } finally {
+                if (cancellation != null) {
+                    cancellation.detach();
+                }
+            }
+        } catch (Exception e) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                logger.debug("Complaint search cancelled: {}", term);
+                return new ArrayList<>();
+            }
+            logger.error("Error searching complaints: {}", term, e);
+            throw new RuntimeException("Error searching complaints", e);
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package insea.neobrain.repository.impl;
+
+import org.hibernate.Session;
+
+/**
+ * Daily sales rollups (ventes_journalieres, ventes_journalieres_categorie, ventes_produit_journalieres).
+ * Orders do not update the rollup rows, which would make all sales of a day and payment mode wait on
+ * one row until they commit: they append their totals to ventes_journalieres_delta, a plain insert
+ * that never waits on other orders. The deltas are folded into the rollups before they are read.
+ * Folds take a lock held by one fold at a time, so concurrent folds neither wait on each other's
+ * rows in the middle of a statement nor deadlock; orders never wait on a fold.
+ */
+class SalesRollup {
+
+    /**
+     * Append the totals of one order, as flushed to the database, with a sign: 1 to add the order,
+     * -1 to take it out. One row for the order, one per product of its lines.
+     * Orders without payment mode are kept under ''.
+     */
+    private static final String RECORD =
+        "WITH commande AS (" +
+        "  SELECT c.id_commande_vente, c.date_commande_vente AS jour, COALESCE(c.mode_paiement, '') AS mode_paiement, " +
+        "  COALESCE(c.total_ttc, 0) AS total_ttc FROM commande_vente c WHERE c.id_commande_vente = :id" +
+        ") " +
+        "INSERT INTO ventes_journalieres_delta (jour, mode_paiement, id_produit, categorie, nombre_commandes, " +
+        "montant_total, quantite_vendue, montant_lignes) " +
+        "SELECT jour, mode_paiement, NULL, NULL, :sign, :sign * total_ttc, 0, 0 FROM commande " +
+        "UNION ALL " +
+        "SELECT c.jour, c.mode_paiement, l.id_produit, p.categorie, 0, 0, " +
+        ":sign * SUM(l.quantite_vente), :sign * SUM(COALESCE(l.sous_total, 0)) " +
+        "FROM commande c JOIN ligne_commande l ON l.id_commande_vente = c.id_commande_vente " +
+        "JOIN produit p ON p.id_produit = l.id_produit " +
+        "GROUP BY c.jour, c.mode_paiement, l.id_produit, p.categorie";
+
+    /**
+     * One fold at a time; readers of the rollups and orders are not blocked
+     */
+    private static final String LOCK_FOLD =
+        "LOCK TABLE ventes_journalieres, ventes_journalieres_categorie, ventes_produit_journalieres " +
+        "IN SHARE ROW EXCLUSIVE MODE";
+
+    /**
+     * Move the committed deltas to the rollups, rows upserted in key order
+     */
+    private static final String FOLD =
+        "WITH moved AS (" +
+        "  DELETE FROM ventes_journalieres_delta RETURNING *" +
+        "), totaux AS (" +
+        "  INSERT INTO ventes_journalieres AS v (jour, mode_paiement, nombre_commandes, montant_total) " +
+        "  SELECT jour, mode_paiement, SUM(nombre_commandes), SUM(montant_total) FROM moved " +
+        "  WHERE id_produit IS NULL GROUP BY 1, 2 ORDER BY 1, 2 " +
+        "  ON CONFLICT (jour, mode_paiement) DO UPDATE SET " +
+        "  nombre_commandes = v.nombre_commandes + EXCLUDED.nombre_commandes, " +
+        "  montant_total = v.montant_total + EXCLUDED.montant_total" +
+        "), produits AS (" +
+        "  INSERT INTO ventes_produit_journalieres AS v (jour, id_produit, quantite_vendue, montant) " +
+        "  SELECT jour, id_produit, SUM(quantite_vendue), SUM(montant_lignes) FROM moved " +
+        "  WHERE id_produit IS NOT NULL GROUP BY 1, 2 ORDER BY 1, 2 " +
+        "  ON CONFLICT (jour, id_produit) DO UPDATE SET " +
+        "  quantite_vendue = v.quantite_vendue + EXCLUDED.quantite_vendue, montant = v.montant + EXCLUDED.montant" +
+        ") " +
+        "INSERT INTO ventes_journalieres_categorie AS v (jour, mode_paiement, categorie, quantite_vendue, montant_lignes) " +
+        "SELECT jour, mode_paiement, categorie, SUM(quantite_vendue), SUM(montant_lignes) FROM moved " +
+        "WHERE id_produit IS NOT NULL GROUP BY 1, 2, 3 ORDER BY 1, 2, 3 " +
+        "ON CONFLICT (jour, mode_paiement, categorie) DO UPDATE SET " +
+        "quantite_vendue = v.quantite_vendue + EXCLUDED.quantite_vendue, " +
+        "montant_lignes = v.montant_lignes + EXCLUDED.montant_lignes";
+
+    private SalesRollup() {
+    }
+
+    /**
+     * Add (sign = 1) or take out (sign = -1) an order, in the order's transaction
+     */
+    static void record(Session session, Long commandeId, int sign) {
+        session.createNativeMutationQuery(RECORD)
+            .setParameter("id", commandeId)
+            .setParameter("sign", sign)
+            .executeUpdate();
+    }
+
+    /**
+     * Fold the committed deltas into the rollups, in a transaction of its own before reading them
+     * @return number of rollup rows changed by category
+     */
+    static Integer fold(Session session) {
+        session.createNativeMutationQuery(LOCK_FOLD).executeUpdate();
+        return session.createNativeMutationQuery(FOLD).executeUpdate();
+    }
+}
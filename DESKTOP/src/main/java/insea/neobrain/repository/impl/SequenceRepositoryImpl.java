@@ -0,0 +1,43 @@
+package insea.neobrain.repository.impl;
+
+import insea.neobrain.config.HibernateUtil;
+import insea.neobrain.repository.SequenceRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PostgreSQL implementation of the sequence repository
+ */
+public class SequenceRepositoryImpl implements SequenceRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceRepositoryImpl.class);
+
+    private final SessionFactory sessionFactory;
+
+    public SequenceRepositoryImpl() {
+        this.sessionFactory = HibernateUtil.getSessionFactory();
+    }
+
+    @Override
+    public long nextBlock(String sequenceName) {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            Long value = session.createNativeQuery("SELECT nextval(CAST(:sequence AS regclass))", Long.class)
+                .setParameter("sequence", sequenceName)
+                .getSingleResult();
+            transaction.commit();
+            logger.debug("Reserved block starting at {} from {}", value, sequenceName);
+            return value;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error reserving a block from sequence: {}", sequenceName, e);
+            throw new RuntimeException("Error reserving a block from sequence: " + sequenceName, e);
+        }
+    }
+}
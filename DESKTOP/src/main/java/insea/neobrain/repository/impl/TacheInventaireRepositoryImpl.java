@@ -11,10 +11,13 @@ import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of TacheInventaireRepository
@@ -25,13 +28,58 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     private static final Logger logger = LoggerFactory.getLogger(TacheInventaireRepositoryImpl.class);
     
+    // Rows locked by another claim are skipped instead of waited for
+    private static final String SELECT_CLAIMABLE_TASKS =
+        "SELECT t.id_tache_inventaire FROM tache_inventaire t " +
+        "WHERE t.etat_tache = 'EN_ATTENTE' AND t.id_personnel IS NULL " +
+        "ORDER BY t.priorite, t.emplacement_verifie NULLS LAST, t.id_tache_inventaire " +
+        "LIMIT :maxTasks FOR UPDATE SKIP LOCKED";
+    
+    // A lot is recorded once: a lot replayed after a crash adds nothing
+    private static final String INSERT_SCAN_LOT =
+        "INSERT INTO scan_lot (id_lot, date_application) VALUES (?, LOCALTIMESTAMP) ON CONFLICT (id_lot) DO NOTHING";
+    
+    // Counts of several scanners add up instead of overwriting each other
+    private static final String ADD_PHYSICAL_COUNT =
+        "UPDATE tache_inventaire SET quantite_physique = GREATEST(0, COALESCE(quantite_physique, 0) + ?), " +
+        "etat_tache = 'EN_COURS', date_debut = COALESCE(date_debut, LOCALTIMESTAMP) " +
+        "WHERE id_tache_inventaire = ? AND etat_tache IN ('EN_ATTENTE', 'EN_COURS')";
+    
+    // Completes the counted tasks, adds them to the inventory counters and sets the stock to the
+    // counted quantity in one statement; the locking sub-select provides the quantity before the update
+    private static final String COMPLETE_COUNTED_TASKS =
+        "WITH completed AS (" +
+        "  UPDATE tache_inventaire SET etat_tache = 'TERMINEE', date_fin = LOCALTIMESTAMP " +
+        "  WHERE id_inventaire = :inventaireId AND id_tache_inventaire IN (:taskIds) " +
+        "  AND etat_tache IN ('EN_ATTENTE', 'EN_COURS') AND quantite_physique IS NOT NULL " +
+        "  RETURNING id_produit, quantite_physique, quantite_theorique" +
+        "), counters AS (" +
+        "  UPDATE inventaire SET nombre_produits_comptes = COALESCE(nombre_produits_comptes, 0) + (SELECT COUNT(*) FROM completed), " +
+        "  ecarts_detectes = COALESCE(ecarts_detectes, 0) + " +
+        "  (SELECT COUNT(*) FROM completed WHERE quantite_physique IS DISTINCT FROM quantite_theorique), " +
+        "  date_modification = LOCALTIMESTAMP WHERE id_inventaire = :inventaireId" +
+        "), corrected AS (" +
+        "  UPDATE produit p SET quantite_stock = c.quantite_physique, version = p.version + 1, " +
+        "  dernier_inventaire = LOCALTIMESTAMP, date_modification = LOCALTIMESTAMP " +
+        "  FROM completed c, " +
+        "  (SELECT id_produit, quantite_stock FROM produit WHERE id_produit IN (SELECT id_produit FROM completed) FOR UPDATE) old " +
+        "  WHERE p.id_produit = c.id_produit AND old.id_produit = p.id_produit " +
+        "  AND old.quantite_stock <> c.quantite_physique " +
+        "  RETURNING p.id_produit, c.quantite_physique - old.quantite_stock AS quantite, c.quantite_physique AS quantite_apres" +
+        "), moved AS (" +
+        "  INSERT INTO mouvement_stock (id_mouvement_stock, id_produit, type_mouvement, quantite, quantite_apres, motif, date_mouvement) " +
+        "  SELECT nextval('mouvement_stock_seq'), id_produit, 'CORRECTION_INVENTAIRE', quantite, quantite_apres, " +
+        "  :motif, LOCALTIMESTAMP FROM corrected" +
+        ") " +
+        "SELECT COUNT(*) FROM completed";
+    
     public TacheInventaireRepositoryImpl() {
         super();
     }
     
     @Override
     public List<TacheInventaire> findByPersonnel(Personnel personnel) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.personnel = :personnel ORDER BY t.dateAssignation DESC", 
                 TacheInventaire.class);
@@ -48,7 +96,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findByInventaire(Inventaire inventaire) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.inventaire = :inventaire ORDER BY t.dateAssignation", 
                 TacheInventaire.class);
@@ -65,7 +113,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findByEtat(EtatTache etat) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.etat = :etat ORDER BY t.dateAssignation", 
                 TacheInventaire.class);
@@ -82,7 +130,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findByDateAssignationBetween(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.dateAssignation BETWEEN :startDate AND :endDate " +
                 "ORDER BY t.dateAssignation", 
@@ -101,7 +149,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findCompletedBetween(LocalDate startDate, LocalDate endDate) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.etat = :completedStatus " +
                 "AND t.dateRealisation BETWEEN :startDate AND :endDate " +
@@ -122,7 +170,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findOverdueTasks() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.delai < :currentDate " +
                 "AND t.etat != :completedStatus ORDER BY t.delai", 
@@ -141,7 +189,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findPendingTasksByPersonnel(Personnel personnel) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.personnel = :personnel " +
                 "AND t.etat IN (:pendingStates) ORDER BY t.delai", 
@@ -160,7 +208,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public long countByInventaireAndEtat(Inventaire inventaire, EtatTache etat) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(t) FROM TacheInventaire t WHERE t.inventaire = :inventaire AND t.etat = :etat", 
                 Long.class);
@@ -178,7 +226,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findHighPriorityTasks(int days) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             LocalDate priorityDate = LocalDate.now().plusDays(days);
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.delai <= :priorityDate " +
@@ -198,7 +246,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public Object[] getTaskStatisticsByPersonnel(Personnel personnel) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<Object[]> query = session.createQuery(
                 "SELECT " +
                 "SUM(CASE WHEN t.etat = :completedStatus THEN 1 ELSE 0 END), " +
@@ -220,7 +268,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
     
     @Override
     public List<TacheInventaire> findLatestTasksPerProduct(Inventaire inventaire) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t1 WHERE t1.inventaire = :inventaire " +
                 "AND t1.dateAssignation = (" +
@@ -243,7 +291,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findByProduit(Produit produit) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.produit = :produit ORDER BY t.dateAssignation DESC", 
                 TacheInventaire.class);
@@ -265,7 +313,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findByDateRange(LocalDateTime startDateTime, LocalDateTime endDateTime) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.dateAssignation BETWEEN :startDate AND :endDate " +
                 "ORDER BY t.dateAssignation", 
@@ -284,7 +332,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findWithDiscrepancies() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.quantitePhysique != t.quantiteTheorique " +
                 "ORDER BY t.dateAssignation DESC", 
@@ -301,7 +349,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findWithSignificantDiscrepancies(int threshold) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE ABS(t.quantitePhysique - t.quantiteTheorique) >= :threshold " +
                 "ORDER BY ABS(t.quantitePhysique - t.quantiteTheorique) DESC", 
@@ -319,7 +367,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findByPersonnelAndEtatTache(Personnel personnel, EtatTache etatTache) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.personnel = :personnel AND t.etat = :etatTache " +
                 "ORDER BY t.dateAssignation DESC", 
@@ -340,7 +388,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findByInventaireAndEtatTache(Inventaire inventaire, EtatTache etatTache) {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.inventaire = :inventaire AND t.etat = :etatTache " +
                 "ORDER BY t.dateAssignation", 
@@ -361,7 +409,7 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
 
     @Override
     public List<TacheInventaire> findUnassigned() {
-        try (Session session = sessionFactory.openSession()) {
+        try (Session session = openReadOnlySession()) {
             Query<TacheInventaire> query = session.createQuery(
                 "FROM TacheInventaire t WHERE t.personnel IS NULL " +
                 "ORDER BY t.dateAssignation DESC", 
@@ -375,4 +423,112 @@ public class TacheInventaireRepositoryImpl extends GenericRepositoryImpl<TacheIn
             return new ArrayList<>();
         }
     }
+    
+    @Override
+    public List<TacheInventaire> claimNextTasks(Personnel personnel, int maxTasks) {
+        if (maxTasks <= 0) {
+            return new ArrayList<>();
+        }
+        List<TacheInventaire> result = executeInTransaction("claiming tasks", session -> {
+            List<Long> ids = session.createNativeQuery(SELECT_CLAIMABLE_TASKS, Long.class)
+                .setParameter("maxTasks", maxTasks)
+                .getResultList();
+            if (ids.isEmpty()) {
+                return new ArrayList<TacheInventaire>();
+            }
+            
+            session.createMutationQuery(
+                    "UPDATE TacheInventaire t SET t.personnel = :personnel, t.etatTache = :enCours, " +
+                    "t.dateDebut = :now WHERE t.idTacheInventaire IN (:ids)")
+                .setParameter("personnel", session.getReference(Personnel.class, personnel.getIdPersonne()))
+                .setParameter("enCours", EtatTache.EN_COURS)
+                .setParameter("now", LocalDateTime.now())
+                .setParameterList("ids", ids)
+                .executeUpdate();
+            
+            return session.createQuery(
+                    "SELECT t FROM TacheInventaire t JOIN FETCH t.produit LEFT JOIN FETCH t.inventaire " +
+                    "WHERE t.idTacheInventaire IN (:ids) " +
+                    "ORDER BY t.priorite, t.emplacementVerifie NULLS LAST, t.idTacheInventaire",
+                    TacheInventaire.class)
+                .setParameterList("ids", ids)
+                .getResultList();
+        });
+        logger.debug("Claimed {} tasks for personnel: {}", result.size(), personnel.getNumeroPersonnel());
+        return result;
+    }
+    
+    @Override
+    public List<TacheInventaire> findOpenTasksWithProduit(Long inventaireId) {
+        try (Session session = openReadOnlySession()) {
+            Query<TacheInventaire> query = session.createQuery(
+                "SELECT t FROM TacheInventaire t JOIN FETCH t.produit " +
+                "WHERE t.inventaire.idInventaire = :inventaireId AND t.etatTache IN (:openStates) " +
+                "ORDER BY t.emplacementVerifie NULLS LAST, t.idTacheInventaire",
+                TacheInventaire.class);
+            query.setParameter("inventaireId", inventaireId);
+            query.setParameterList("openStates", List.of(EtatTache.EN_ATTENTE, EtatTache.EN_COURS));
+            
+            List<TacheInventaire> result = query.getResultList();
+            logger.debug("Found {} open tasks for inventory: {}", result.size(), inventaireId);
+            return result;
+        } catch (Exception e) {
+            logger.error("Error finding open tasks for inventory: {}", inventaireId, e);
+            throw new RuntimeException("Error finding open tasks for inventory", e);
+        }
+    }
+    
+    @Override
+    public int addPhysicalCounts(String lotId, Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        int updated = executeInTransaction("adding physical counts", session ->
+            session.doReturningWork(connection -> {
+                try (PreparedStatement lot = connection.prepareStatement(INSERT_SCAN_LOT)) {
+                    lot.setString(1, lotId);
+                    if (lot.executeUpdate() == 0) {
+                        logger.debug("Scan lot {} was already applied", lotId);
+                        return 0;
+                    }
+                }
+                try (PreparedStatement statement = connection.prepareStatement(ADD_PHYSICAL_COUNT)) {
+                    for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+                        statement.setInt(1, entry.getValue());
+                        statement.setLong(2, entry.getKey());
+                        statement.addBatch();
+                    }
+                    int total = 0;
+                    for (int count : statement.executeBatch()) {
+                        // SUCCESS_NO_INFO (-2) when the driver does not report per-statement counts
+                        total += count > 0 ? count : 0;
+                    }
+                    return total;
+                }
+            }));
+        logger.debug("Added physical counts of {} tasks (lot {})", updated, lotId);
+        return updated;
+    }
+    
+    @Override
+    public int completeCountedTasks(Long inventaireId, Collection<Long> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            return 0;
+        }
+        int completed = executeInTransaction("completing counted tasks", session ->
+            session.createNativeQuery(COMPLETE_COUNTED_TASKS, Long.class)
+                .setParameter("inventaireId", inventaireId)
+                .setParameterList("taskIds", taskIds)
+                .setParameter("motif", "Comptage par scan - inventaire " + inventaireId)
+                .getSingleResult()
+                .intValue());
+        
+        if (completed > 0) {
+            // Stock was changed with native SQL: cached products and query results are stale
+            sessionFactory.getCache().evictEntityData(Produit.class);
+            sessionFactory.getCache().evictQueryRegions();
+        }
+        logger.debug("Completed {} counted tasks of inventory {}", completed, inventaireId);
+        return completed;
+    }
 }
@@ -6,6 +6,7 @@ import insea.neobrain.entity.Client;
 import insea.neobrain.entity.Personnel;
 import insea.neobrain.entity.ModePaiement;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -225,9 +226,21 @@ public interface CommandeVenteService {
     String exportCommandesToCSV();
     
     /**
-     * Import sales orders from CSV
+     * Export the sales orders of a period to a CSV stream, reading them through a cursor
+     * @param startDate the first order date
+     * @param endDate the last order date
+     * @param out the destination stream, flushed but not closed
+     * @param gzip true to gzip the output
+     * @return number of orders exported
+     */
+    long exportCommandesToCSV(LocalDate startDate, LocalDate endDate, OutputStream out, boolean gzip);
+    
+    /**
+     * Import sales orders from CSV, one line per order line: Numero Commande, Id Client,
+     * Mode Paiement, Code Barre, Quantite. Each order is created like with createCommande;
+     * invalid orders are skipped and logged.
      * @param csvData the CSV data
-     * @return number of records imported
+     * @return number of orders imported
      */
     int importCommandesFromCSV(String csvData);
 }
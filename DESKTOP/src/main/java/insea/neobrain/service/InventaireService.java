@@ -4,6 +4,8 @@ import insea.neobrain.entity.Inventaire;
 import insea.neobrain.entity.Produit;
 import insea.neobrain.entity.Personnel;
 
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -103,12 +105,20 @@ public interface InventaireService {
     List<Inventaire> findInventairesWithSignificantDiscrepancies(int threshold);
     
     /**
-     * Start a new inventory session for all products
+     * Start a new inventory session for all active products, with one unassigned pending task per product
      * @param personnel the personnel responsible
-     * @return number of inventory records created
+     * @return number of inventory tasks created
      */
     int startFullInventory(Personnel personnel);
     
+    /**
+     * Start a new inventory for all active products, with one unassigned pending task per product
+     * @param personnel the personnel responsible
+     * @param parEmplacement true to open one inventory session per product location
+     * @return number of inventory tasks created
+     */
+    int startFullInventory(Personnel personnel, boolean parEmplacement);
+    
     /**
      * Start a new inventory session for specific products
      * @param produits the products to inventory
@@ -118,7 +128,9 @@ public interface InventaireService {
     int startPartialInventory(List<Produit> produits, Personnel personnel);
     
     /**
-     * Complete an inventory session and update stock levels
+     * Complete an inventory session and update stock levels.
+     * All inventories are closed in one transaction; with updateStock the stock of each counted
+     * product is set to its latest physical count and a CORRECTION_INVENTAIRE movement is recorded.
      * @param inventaireIds the inventory IDs to complete
      * @param updateStock whether to update stock levels
      * @return number of records processed
@@ -176,6 +188,21 @@ public interface InventaireService {
      */
     String exportInventairesToCSV();
     
+    /**
+     * Export inventory data to a CSV stream, reading it through a cursor
+     * @param out the destination stream, flushed but not closed
+     * @param gzip true to gzip the output
+     * @return number of records exported
+     */
+    long exportInventairesToCSV(OutputStream out, boolean gzip);
+    
+    /**
+     * Export inventory data to a CSV file, gzipped when the file name ends with ".gz"
+     * @param path the destination file
+     * @return number of records exported
+     */
+    long exportInventairesToCSV(Path path);
+    
     /**
      * Import inventory data from CSV
      * @param csvData the CSV data
@@ -5,6 +5,8 @@ import insea.neobrain.entity.Role;
 import insea.neobrain.entity.Civilite;
 import insea.neobrain.entity.Nationalite;
 
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -197,6 +199,21 @@ public interface PersonnelService {
      */
     String exportPersonnelToCSV();
     
+    /**
+     * Export personnel data to a CSV stream, reading it through a cursor
+     * @param out Destination stream, flushed but not closed
+     * @param gzip true to gzip the output
+     * @return Number of personnel exported
+     */
+    long exportPersonnelToCSV(OutputStream out, boolean gzip);
+    
+    /**
+     * Export personnel data to a CSV file, gzipped when the file name ends with ".gz"
+     * @param path Destination file
+     * @return Number of personnel exported
+     */
+    long exportPersonnelToCSV(Path path);
+    
     /**
      * Import personnel data from CSV
      * @param csvData CSV string containing personnel data
@@ -2,10 +2,17 @@ package insea.neobrain.service;
 
 import insea.neobrain.entity.Produit;
 import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.TypeMouvementStock;
+import insea.neobrain.repository.QueryCancellation;
+import insea.neobrain.util.CsvImportResult;
 
+import java.io.OutputStream;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 /**
  * Service interface for product management
@@ -81,6 +88,15 @@ public interface ProduitService {
      */
     List<Produit> findProduitsByCategorie(CategorieProduit categorie);
     
+    /**
+     * First products of a category by name, cancellable when the filter changes
+     * @param categorie The product category
+     * @param limit Maximum number of products returned
+     * @param cancellation Cancels the running query
+     * @return List of products in the category, empty if cancelled
+     */
+    List<Produit> findProduitsByCategorie(CategorieProduit categorie, int limit, QueryCancellation cancellation);
+    
     /**
      * Find products by name (partial match)
      * @param nom Product name (partial)
@@ -145,6 +161,23 @@ public interface ProduitService {
     List<Produit> searchProduits(String nom, CategorieProduit categorie,
                                 BigDecimal minPrice, BigDecimal maxPrice);
     
+    /**
+     * Full-text search on the name, product code and barcode, most relevant first
+     * @param term Search term
+     * @param limit Maximum number of products returned
+     * @return List of matching products
+     */
+    List<Produit> searchProduits(String term, int limit);
+    
+    /**
+     * Full-text search that can be cancelled when the term changes
+     * @param term Search term
+     * @param limit Maximum number of products returned
+     * @param cancellation Cancels the running query
+     * @return List of matching products, empty if cancelled
+     */
+    List<Produit> searchProduits(String term, int limit, QueryCancellation cancellation);
+    
     /**
      * Update product stock quantity
      * @param produitId Product ID
@@ -232,6 +265,16 @@ public interface ProduitService {
      * @return true if adjusted successfully, false otherwise
      */
     boolean adjustStock(Long produitId, int quantity, String reason);
+    
+    /**
+     * Adjust product stock and record the movement with its type
+     * @param produitId Product ID
+     * @param quantity Quantity adjustment (positive or negative)
+     * @param type Movement type (sale, return, ...)
+     * @param reason Reason for the adjustment
+     * @return true if adjusted successfully, false otherwise
+     */
+    boolean adjustStock(Long produitId, int quantity, TypeMouvementStock type, String reason);
 
     /**
      * Check if a barcode is available
@@ -267,7 +310,7 @@ public interface ProduitService {
     /**
      * Get top selling products
      * @param limit Maximum number of products to return
-     * @return List of top selling products data
+     * @return List of [Product, Quantity Sold] arrays over the last 12 months
      */
     List<Object[]> getTopSellingProducts(int limit);
 
@@ -283,6 +326,21 @@ public interface ProduitService {
      * @return CSV string containing product data
      */
     String exportProduitsToCSV();
+    
+    /**
+     * Export products to a CSV stream, reading them through a cursor
+     * @param out Destination stream, flushed but not closed
+     * @param gzip true to gzip the output
+     * @return Number of products exported
+     */
+    long exportProduitsToCSV(OutputStream out, boolean gzip);
+    
+    /**
+     * Export products to a CSV file, gzipped when the file name ends with ".gz"
+     * @param path Destination file
+     * @return Number of products exported
+     */
+    long exportProduitsToCSV(Path path);
 
     /**
      * Import products from CSV (alias)
@@ -290,6 +348,30 @@ public interface ProduitService {
      * @return Number of products imported successfully
      */
     int importProduitsFromCSV(String csvData);
+    
+    /**
+     * Import products from a CSV stream, validating rows in parallel and inserting them in batches
+     * @param reader CSV source (header line first), not closed by this method
+     * @param progress Called with the number of records processed so far (may be null)
+     * @return Import result with counts and per-line errors
+     */
+    CsvImportResult importProduitsFromCSV(Reader reader, IntConsumer progress);
+    
+    /**
+     * Import products from a UTF-8 CSV file
+     * @param path CSV file
+     * @param progress Called with the number of records processed so far (may be null)
+     * @return Import result with counts and per-line errors
+     */
+    CsvImportResult importProduitsFromCSV(Path path, IntConsumer progress);
+    
+    /**
+     * Import a large UTF-8 CSV file with PostgreSQL COPY instead of batched inserts
+     * @param path CSV file
+     * @param progress Called with the number of records processed so far (may be null)
+     * @return Import result with counts and per-line errors
+     */
+    CsvImportResult bulkImportProduitsFromCSV(Path path, IntConsumer progress);
 
     /**
      * Validate product data before create/update
@@ -343,7 +425,7 @@ public interface ProduitService {
     /**
      * Get highest revenue products
      * @param limit Maximum number of products to return
-     * @return List of [Product, Revenue] arrays
+     * @return List of [Product, Revenue] arrays over the last 12 months
      */
     List<Object[]> getHighestRevenueProducts(int limit);
     
@@ -371,7 +453,7 @@ public interface ProduitService {
     /**
      * Get stock movement history for a product
      * @param produitId Product ID
-     * @return List of stock movements with dates and quantities
+     * @return List of [Date, Type, Quantity, Stock after, Reason] arrays, most recent first
      */
     List<Object[]> getStockMovementHistory(Long produitId);
 }
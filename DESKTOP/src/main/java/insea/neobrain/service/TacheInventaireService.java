@@ -6,6 +6,7 @@ import insea.neobrain.entity.Personnel;
 import insea.neobrain.entity.Produit;
 import insea.neobrain.entity.TacheInventaire;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -78,8 +79,18 @@ public interface TacheInventaireService {
      */
     TacheInventaire assignTask(TacheInventaire task, Personnel personnel);
     
+    /**
+     * Claim up to maxTasks unassigned tasks for a personnel; concurrent callers never get the same task
+     */
+    List<TacheInventaire> claimNextTasks(Personnel personnel, int maxTasks);
+    
     /**
      * Mark a task as complete with physical count
      */
     TacheInventaire completeTask(TacheInventaire task, Integer physicalCount);
+    
+    /**
+     * Complete the counted tasks of an inventory in one statement, with their saved physical count
+     */
+    int completeCountedTasks(Long inventaireId, Collection<Long> taskIds);
 }
@@ -0,0 +1,262 @@
+package insea.neobrain.service.impl;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.ClientRepository;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.service.CommandeVenteService;
+import insea.neobrain.util.CsvImportResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Streaming sales order CSV importer.
+ * The file has one line per order line; consecutive lines with the same order number form one
+ * order. Orders are read chunk by chunk, their clients and products resolved once per chunk, and
+ * each order goes through {@link CommandeVenteService#createCommande(CommandeVente)}, so it is
+ * validated, takes its stock and is added to the sales rollup like an order entered at the counter.
+ * An invalid order is rejected as a whole, the other orders are imported.
+ *
+ * Expected columns: Numero Commande, Id Client, Mode Paiement, Code Barre, Quantite.
+ * The payment mode is the enum name (CARTE) or its label (Carte bancaire), and may be empty.
+ */
+public class CommandeCsvImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandeCsvImporter.class);
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int MIN_FIELDS = 5;
+
+    private final ClientRepository clientRepository;
+    private final ProduitRepository produitRepository;
+    private final CommandeVenteService commandeVenteService;
+    private final int chunkSize;
+
+    public CommandeCsvImporter(ClientRepository clientRepository, ProduitRepository produitRepository,
+                               CommandeVenteService commandeVenteService) {
+        this(clientRepository, produitRepository, commandeVenteService, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize number of orders whose clients and products are resolved together
+     */
+    public CommandeCsvImporter(ClientRepository clientRepository, ProduitRepository produitRepository,
+                               CommandeVenteService commandeVenteService, int chunkSize) {
+        this.clientRepository = clientRepository;
+        this.produitRepository = produitRepository;
+        this.commandeVenteService = commandeVenteService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Import the orders of a CSV stream. The first line is a header and is skipped.
+     * @param reader CSV source, not closed by this method
+     * @param progress called after each chunk with the number of orders processed so far (may be null)
+     * @return the import result, one record per order, errors reported on the order's first line
+     * @throws IOException if the source cannot be read or is not valid CSV
+     */
+    public CsvImportResult importFrom(Reader reader, IntConsumer progress) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvImportResult result = new CsvImportResult();
+
+        CSVReader csvReader = new CSVReader(reader);
+        try {
+            if (csvReader.readNext() == null) {
+                return result;
+            }
+
+            List<CsvOrder> chunk = new ArrayList<>(chunkSize);
+            CsvOrder current = null;
+            long linesRead = csvReader.getLinesRead();
+            int processed = 0;
+            String[] fields;
+            while ((fields = csvReader.readNext()) != null) {
+                long line = linesRead + 1;
+                linesRead = csvReader.getLinesRead();
+                if (isBlank(fields)) {
+                    continue;
+                }
+                String numero = fields[0].trim();
+                if (current == null || !current.numero.equals(numero)) {
+                    if (current != null) {
+                        chunk.add(current);
+                    }
+                    if (chunk.size() >= chunkSize) {
+                        processed += importChunk(chunk, result);
+                        chunk.clear();
+                        notifyProgress(progress, processed);
+                    }
+                    current = new CsvOrder(line, numero);
+                }
+                current.rows.add(new CsvRow(line, fields));
+            }
+            if (current != null) {
+                chunk.add(current);
+            }
+            if (!chunk.isEmpty()) {
+                processed += importChunk(chunk, result);
+                notifyProgress(progress, processed);
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV at line " + csvReader.getLinesRead(), e);
+        } finally {
+            result.setDurationMillis(System.currentTimeMillis() - start);
+        }
+
+        logger.info("Orders imported from CSV: {} imported, {} rejected out of {} orders in {} ms",
+            result.getImportedCount(), result.getRejectedCount(), result.getRecordCount(), result.getDurationMillis());
+        return result;
+    }
+
+    private int importChunk(List<CsvOrder> chunk, CsvImportResult result) {
+        result.addRecords(chunk.size());
+        // Clients and products are usually shared by many orders of a chunk
+        Map<Long, Client> clients = new HashMap<>();
+        Map<String, Produit> produits = new HashMap<>();
+
+        for (CsvOrder order : chunk) {
+            CommandeVente commande;
+            try {
+                commande = toCommande(order, clients, produits);
+            } catch (IllegalArgumentException e) {
+                result.addError(order.line, e.getMessage());
+                continue;
+            }
+            try {
+                commandeVenteService.createCommande(commande);
+                result.addImported(1);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Validation or stock errors
+                result.addError(order.line, e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Error inserting CSV order {} (line {})", order.numero, order.line, e);
+                result.addError(order.line, "Insert failed: " + e.getMessage());
+            }
+        }
+        return chunk.size();
+    }
+
+    /**
+     * Build an order from its CSV lines
+     * @throws IllegalArgumentException if a line is invalid or references an unknown client or product
+     */
+    private CommandeVente toCommande(CsvOrder order, Map<Long, Client> clients, Map<String, Produit> produits) {
+        CsvRow first = order.rows.get(0);
+        checkFields(first);
+        if (order.numero.isEmpty()) {
+            throw new IllegalArgumentException("Missing order number");
+        }
+
+        Long clientId = parseLong(first, first.fields[1], "client ID");
+        Client client = clients.get(clientId);
+        if (client == null) {
+            client = clientRepository.findById(clientId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown client: " + clientId));
+            clients.put(clientId, client);
+        }
+
+        CommandeVente commande = new CommandeVente(client);
+        commande.setNumeroCommande(order.numero);
+        commande.setModePaiement(parseModePaiement(first.fields[2]));
+
+        List<LigneCommande> lignes = new ArrayList<>(order.rows.size());
+        for (CsvRow row : order.rows) {
+            checkFields(row);
+            String codeBarre = row.fields[3].trim();
+            Produit produit = produits.get(codeBarre);
+            if (produit == null) {
+                produit = produitRepository.findByCodeBarre(codeBarre)
+                    .orElseThrow(() -> new IllegalArgumentException(
+                        "Line " + row.line + ": unknown barcode " + codeBarre));
+                produits.put(codeBarre, produit);
+            }
+            int quantite = (int) parseLong(row, row.fields[4], "quantity");
+            lignes.add(new LigneCommande(commande, produit, quantite));
+        }
+        commande.setLignesCommande(lignes);
+        return commande;
+    }
+
+    /**
+     * Accept either the enum name (CARTE) or the label (Carte bancaire); empty for no payment mode
+     */
+    static ModePaiement parseModePaiement(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        for (ModePaiement mode : ModePaiement.values()) {
+            if (mode.name().equalsIgnoreCase(trimmed) || mode.getLabel().equalsIgnoreCase(trimmed)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown payment mode: " + trimmed);
+    }
+
+    private static void checkFields(CsvRow row) {
+        if (row.fields.length < MIN_FIELDS) {
+            throw new IllegalArgumentException("Line " + row.line + ": expected at least " + MIN_FIELDS
+                + " fields, found " + row.fields.length);
+        }
+    }
+
+    private static long parseLong(CsvRow row, String value, String name) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + row.line + ": invalid " + name + ": " + value.trim());
+        }
+    }
+
+    private static boolean isBlank(String[] fields) {
+        for (String field : fields) {
+            if (field != null && !field.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void notifyProgress(IntConsumer progress, int processed) {
+        if (progress != null) {
+            progress.accept(processed);
+        }
+    }
+
+    private static final class CsvRow {
+        final long line;
+        final String[] fields;
+
+        CsvRow(long line, String[] fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Consecutive CSV lines of one order
+     */
+    private static final class CsvOrder {
+        final long line;
+        final String numero;
+        final List<CsvRow> rows = new ArrayList<>();
+
+        CsvOrder(long line, String numero) {
+            this.line = line;
+            this.numero = numero;
+        }
+    }
+}
@@ -8,14 +8,23 @@ import insea.neobrain.repository.ProduitRepository;
 import insea.neobrain.service.InventaireService;
 import insea.neobrain.util.AuditLogger;
 import insea.neobrain.util.BusinessException;
+import insea.neobrain.util.CsvStreamWriter;
+import insea.neobrain.util.NumberGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Simple implementation of InventaireService
@@ -27,17 +36,26 @@ public class InventaireServiceImpl implements InventaireService {
     
     private final InventaireRepository inventaireRepository;
     private final ProduitRepository produitRepository;
+    private final NumberGenerator numberGenerator;
     
     public InventaireServiceImpl(InventaireRepository inventaireRepository, 
                                 ProduitRepository produitRepository) {
+        this(inventaireRepository, produitRepository, NumberGenerator.getInstance());
+    }
+    
+    public InventaireServiceImpl(InventaireRepository inventaireRepository,
+                                ProduitRepository produitRepository,
+                                NumberGenerator numberGenerator) {
         this.inventaireRepository = inventaireRepository;
         this.produitRepository = produitRepository;
+        this.numberGenerator = numberGenerator;
     }
     
     @Override
     public Inventaire createInventaire(Inventaire inventaire) {
         try {
             logger.debug("Creating new inventory record");
+            assignNumero(inventaire);
             return inventaireRepository.save(inventaire);
         } catch (Exception e) {
             logger.error("Error creating inventory record", e);
@@ -62,6 +80,7 @@ public class InventaireServiceImpl implements InventaireService {
             // Calculate variance
             int variance = Math.abs(quantitePhysique - quantiteSysteme);
             inventaire.setEcartsDetectes(variance > 0 ? 1 : 0);
+            assignNumero(inventaire);
             
             Inventaire saved = inventaireRepository.save(inventaire);
             logger.info("Inventory record created for product: {}", produit.getNom());
@@ -168,10 +187,7 @@ public class InventaireServiceImpl implements InventaireService {
     @Override
     public List<Inventaire> findInventairesWithDiscrepancies() {
         try {
-            List<Inventaire> allInventaires = inventaireRepository.findAll();
-            return allInventaires.stream()
-                .filter(inv -> inv.getEcartsDetectes() != null && inv.getEcartsDetectes() > 0)
-                .toList();
+            return inventaireRepository.findWithDiscrepancies();
         } catch (Exception e) {
             logger.error("Error finding inventories with discrepancies", e);
             return new ArrayList<>();
@@ -181,10 +197,7 @@ public class InventaireServiceImpl implements InventaireService {
     @Override
     public List<Inventaire> findInventairesWithSignificantDiscrepancies(int threshold) {
         try {
-            List<Inventaire> allInventaires = inventaireRepository.findAll();
-            return allInventaires.stream()
-                .filter(inv -> inv.getEcartsDetectes() != null && inv.getEcartsDetectes() >= threshold)
-                .toList();
+            return inventaireRepository.findByEcartsAtLeast(threshold);
         } catch (Exception e) {
             logger.error("Error finding inventories with significant discrepancies", e);
             return new ArrayList<>();
@@ -193,11 +206,34 @@ public class InventaireServiceImpl implements InventaireService {
     
     @Override
     public int startFullInventory(Personnel personnel) {
+        return startFullInventory(personnel, false);
+    }
+    
+    @Override
+    public int startFullInventory(Personnel personnel, boolean parEmplacement) {
         try {
-            logger.info("Starting full inventory by personnel: {}", personnel.getNomComplet());
+            logger.info("Starting full inventory by personnel: {} (by location: {})",
+                personnel.getNomComplet(), parEmplacement);
+            
+            Inventaire header = new Inventaire();
+            header.setDateDebut(LocalDate.now());
+            header.setDescription("Inventaire complet");
+            header.setResponsable(personnel.getNomComplet());
+            assignNumero(header);
+            
+            // Headers and tasks are created by the database, the catalog is not loaded.
+            // The tasks are left unassigned: counters take them from the pool with claimNextTasks
+            List<Inventaire> sessions = inventaireRepository.createFullInventory(
+                header, null, parEmplacement);
+            int taskCount = sessions.stream()
+                .mapToInt(inv -> inv.getNombreProduitsTotal() != null ? inv.getNombreProduitsTotal() : 0)
+                .sum();
             
-            List<Produit> allProducts = produitRepository.findAll();
-            return startPartialInventory(allProducts, personnel);
+            AuditLogger.logInventoryAction(personnel.getNomUtilisateur(), "START_FULL_INVENTORY",
+                sessions.isEmpty() ? null : sessions.get(0).getIdInventaire(),
+                sessions.size() + " session(s), " + taskCount + " tasks");
+            logger.info("Full inventory started: {} session(s), {} tasks", sessions.size(), taskCount);
+            return taskCount;
             
         } catch (Exception e) {
             logger.error("Error starting full inventory", e);
@@ -219,6 +255,7 @@ public class InventaireServiceImpl implements InventaireService {
             session.setNombreProduitsTotal(produits.size());
             session.setNombreProduitsComptes(0);
             session.setEcartsDetectes(0);
+            assignNumero(session);
             
             inventaireRepository.save(session);
             
@@ -237,33 +274,12 @@ public class InventaireServiceImpl implements InventaireService {
             logger.info("Completing inventory for {} records, update stock: {}", 
                 inventaireIds.size(), updateStock);
             
-            int processed = 0;
+            // Closing and stock reconciliation run in a single transaction
+            int[] result = inventaireRepository.closeInventories(inventaireIds, updateStock);
             
-            for (Long inventaireId : inventaireIds) {
-                try {
-                    Optional<Inventaire> inventaireOpt = inventaireRepository.findById(inventaireId);
-                    if (inventaireOpt.isEmpty()) {
-                        logger.warn("Inventory record not found: ID {}", inventaireId);
-                        continue;
-                    }
-                    
-                    Inventaire inventaire = inventaireOpt.get();
-                    
-                    // Mark inventory as completed
-                    inventaire.setEstClos(true);
-                    inventaire.setDateFin(LocalDate.now());
-                    inventaire.setEtatInventaire("CLOS");
-                    
-                    inventaireRepository.update(inventaire);
-                    processed++;
-                    
-                } catch (Exception e) {
-                    logger.warn("Error completing inventory record ID {}: {}", inventaireId, e.getMessage());
-                }
-            }
-            
-            logger.info("Inventory completion processed: {} records", processed);
-            return processed;
+            logger.info("Inventory completion processed: {} records closed, {} stock levels corrected",
+                result[0], result[1]);
+            return result[0];
             
         } catch (Exception e) {
             logger.error("Error completing inventory", e);
@@ -285,16 +301,14 @@ public class InventaireServiceImpl implements InventaireService {
     @Override
     public double calculateInventoryAccuracy() {
         try {
-            List<Inventaire> allInventaires = inventaireRepository.findAll();
-            if (allInventaires.isEmpty()) {
+            Object[] summary = inventaireRepository.getDiscrepancySummary(null, null);
+            long total = (Long) summary[0];
+            if (total == 0) {
                 return 100.0;
             }
             
-            long accurateCount = allInventaires.stream()
-                .filter(inv -> inv.getEcartsDetectes() == null || inv.getEcartsDetectes() == 0)
-                .count();
-            
-            return (double) accurateCount / allInventaires.size() * 100.0;
+            long accurateCount = (Long) summary[1];
+            return (double) accurateCount / total * 100.0;
             
         } catch (Exception e) {
             logger.error("Error calculating inventory accuracy", e);
@@ -375,37 +389,59 @@ public class InventaireServiceImpl implements InventaireService {
     
     @Override
     public String exportInventairesToCSV() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportInventairesToCSV(out, false);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public long exportInventairesToCSV(OutputStream out, boolean gzip) {
         try {
-            List<Inventaire> inventaires = inventaireRepository.findAll();
-            StringBuilder csv = new StringBuilder();
-            
-            // Header
-            csv.append("ID,Numero,Date Debut,Date Fin,Etat,Responsable,Produits Total,Produits Comptes,Ecarts\n");
-            
-            // Data
-            for (Inventaire inv : inventaires) {
-                csv.append(String.format("%d,%s,%s,%s,%s,%s,%d,%d,%d\n",
-                    inv.getIdInventaire(),
-                    inv.getNumeroInventaire(),
-                    inv.getDateDebut(),
-                    inv.getDateFin() != null ? inv.getDateFin() : "",
-                    inv.getEtatInventaire(),
-                    inv.getResponsable(),
-                    inv.getNombreProduitsTotal() != null ? inv.getNombreProduitsTotal() : 0,
-                    inv.getNombreProduitsComptes() != null ? inv.getNombreProduitsComptes() : 0,
-                    inv.getEcartsDetectes() != null ? inv.getEcartsDetectes() : 0
-                ));
-            }
-            
-            logger.info("Inventory data exported to CSV: {} records", inventaires.size());
-            return csv.toString();
-            
+            CsvStreamWriter csv = new CsvStreamWriter(out, gzip);
+            long count = writeInventairesCsv(csv);
+            csv.finish();
+            return count;
         } catch (Exception e) {
             logger.error("Error exporting inventories to CSV", e);
             throw new RuntimeException("Error exporting inventories to CSV", e);
         }
     }
     
+    @Override
+    public long exportInventairesToCSV(Path path) {
+        try (CsvStreamWriter csv = CsvStreamWriter.open(path)) {
+            return writeInventairesCsv(csv);
+        } catch (Exception e) {
+            logger.error("Error exporting inventories to CSV file: {}", path, e);
+            throw new RuntimeException("Error exporting inventories to CSV file: " + path, e);
+        }
+    }
+    
+    private long writeInventairesCsv(CsvStreamWriter csv) throws IOException {
+        csv.header("ID", "Numero", "Date Debut", "Date Fin", "Etat", "Responsable",
+            "Produits Total", "Produits Comptes", "Ecarts");
+        
+        // Data, read through a scrolling cursor so the inventories are not all held in memory
+        try (Stream<Inventaire> inventaires = inventaireRepository.streamAll()) {
+            for (Iterator<Inventaire> it = inventaires.iterator(); it.hasNext(); ) {
+                Inventaire inv = it.next();
+                csv.field(inv.getIdInventaire())
+                    .field(inv.getNumeroInventaire())
+                    .field(inv.getDateDebut())
+                    .field(inv.getDateFin())
+                    .field(inv.getEtatInventaire())
+                    .field(inv.getResponsable())
+                    .field(inv.getNombreProduitsTotal() != null ? inv.getNombreProduitsTotal() : 0)
+                    .field(inv.getNombreProduitsComptes() != null ? inv.getNombreProduitsComptes() : 0)
+                    .field(inv.getEcartsDetectes() != null ? inv.getEcartsDetectes() : 0)
+                    .endRow();
+            }
+        }
+        
+        logger.info("Inventory data exported to CSV: {} records", csv.getRowCount());
+        return csv.getRowCount();
+    }
+    
     @Override
     public int importInventairesFromCSV(String csvData) {
         try {
@@ -585,17 +621,15 @@ public class InventaireServiceImpl implements InventaireService {
         try {
             logger.debug("Generating inventory performance report for period: {} to {}", startDate, endDate);
             
-            List<Inventaire> periodInventories = findInventairesByDateRange(startDate, endDate);
+            // Counts are aggregated by the database, the inventories themselves are not loaded
+            Object[] summary = inventaireRepository.getDiscrepancySummary(startDate, endDate);
+            int sessionCount = ((Long) summary[0]).intValue();
             
             InventoryPerformanceReport report = new InventoryPerformanceReport();
             report.setPeriodStart(startDate);
             report.setPeriodEnd(endDate);
-            report.setTotalInventorySessions(periodInventories.size());
-            
-            int totalDiscrepancies = periodInventories.stream()
-                .mapToInt(Inventaire::getEcartsDetectes)
-                .sum();
-            report.setTotalDiscrepancies(totalDiscrepancies);
+            report.setTotalInventorySessions(sessionCount);
+            report.setTotalDiscrepancies(((Long) summary[2]).intValue());
             
             double accuracy = calculateInventoryAccuracy();
             report.setAccuracyPercentage(accuracy);
@@ -606,7 +640,7 @@ public class InventaireServiceImpl implements InventaireService {
             List<Object[]> categoryStats = getInventoryStatisticsByCategory();
             report.setCategoryStatistics(categoryStats);
             
-            logger.info("Performance report generated for {} inventory sessions", periodInventories.size());
+            logger.info("Performance report generated for {} inventory sessions", sessionCount);
             return report;
             
         } catch (Exception e) {
@@ -615,6 +649,15 @@ public class InventaireServiceImpl implements InventaireService {
         }
     }
     
+    /**
+     * Give a new session its number before it is saved, outside the insert transaction
+     */
+    private void assignNumero(Inventaire inventaire) {
+        if (inventaire.getNumeroInventaire() == null) {
+            inventaire.setNumeroInventaire(numberGenerator.nextNumeroInventaire());
+        }
+    }
+    
     /**
      * Inner class for inventory performance report
      */
@@ -7,16 +7,24 @@ import insea.neobrain.entity.Nationalite;
 import insea.neobrain.repository.PersonnelRepository;
 import insea.neobrain.service.PersonnelService;
 import insea.neobrain.service.AuthenticationService;
+import insea.neobrain.util.CsvStreamWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.Period;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of PersonnelService
@@ -419,38 +427,60 @@ public class PersonnelServiceImpl implements PersonnelService {
     
     @Override
     public String exportPersonnelToCSV() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportPersonnelToCSV(out, false);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public long exportPersonnelToCSV(OutputStream out, boolean gzip) {
         try {
-            List<Personnel> personnel = personnelRepository.findAll();
-            StringBuilder csv = new StringBuilder();
-            
-            // Header
-            csv.append("Numero Personnel,Nom,Prenom,Civilite,Nationalite,Role,Email,Telephone,Adresse,Date Naissance\n");
-            
-            // Data
-            for (Personnel p : personnel) {
-                csv.append(String.format("%s,%s,%s,%s,%s,%s,%s,%s,\"%s\",%s\n",
-                    p.getNumeroPersonnel(),
-                    p.getNom(),
-                    p.getPrenom(),
-                    p.getCivilite(),
-                    p.getNationalite(),
-                    p.getRole(),
-                    p.getEmail() != null ? p.getEmail() : "",
-                    p.getTelephone() != null ? p.getTelephone() : "",
-                    p.getAdresse() != null ? p.getAdresse().replace("\"", "\"\"") : "",
-                    p.getDateNaissance()
-                ));
-            }
-            
-            logger.info("Personnel data exported to CSV: {} records", personnel.size());
-            return csv.toString();
-            
+            CsvStreamWriter csv = new CsvStreamWriter(out, gzip);
+            long count = writePersonnelCsv(csv);
+            csv.finish();
+            return count;
         } catch (Exception e) {
             logger.error("Error exporting personnel to CSV", e);
             throw new RuntimeException("Error exporting personnel to CSV", e);
         }
     }
     
+    @Override
+    public long exportPersonnelToCSV(Path path) {
+        try (CsvStreamWriter csv = CsvStreamWriter.open(path)) {
+            return writePersonnelCsv(csv);
+        } catch (Exception e) {
+            logger.error("Error exporting personnel to CSV file: {}", path, e);
+            throw new RuntimeException("Error exporting personnel to CSV file: " + path, e);
+        }
+    }
+    
+    private long writePersonnelCsv(CsvStreamWriter csv) throws IOException {
+        csv.header("Numero Personnel", "Nom", "Prenom", "Civilite", "Nationalite", "Role",
+            "Email", "Telephone", "Adresse", "Date Naissance");
+        
+        // Data, read through a scrolling cursor so the personnel are not all held in memory
+        try (Stream<Personnel> personnel = personnelRepository.streamAll()) {
+            for (Iterator<Personnel> it = personnel.iterator(); it.hasNext(); ) {
+                Personnel p = it.next();
+                csv.field(p.getNumeroPersonnel())
+                    .field(p.getNom())
+                    .field(p.getPrenom())
+                    .field(p.getCivilite())
+                    .field(p.getNationalite())
+                    .field(p.getRole())
+                    .field(p.getEmail())
+                    .field(p.getTelephone())
+                    .field(p.getAdresse())
+                    .field(p.getDateNaissance())
+                    .endRow();
+            }
+        }
+        
+        logger.info("Personnel data exported to CSV: {} records", csv.getRowCount());
+        return csv.getRowCount();
+    }
+    
     @Override
     public int importPersonnelFromCSV(String csvData) {
         try {
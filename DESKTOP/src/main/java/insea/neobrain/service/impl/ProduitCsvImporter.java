@@ -0,0 +1,254 @@
+package insea.neobrain.service.impl;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.BulkLoadRepository;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.util.CsvImportResult;
+import insea.neobrain.util.NumberGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming product CSV importer.
+ * The file is read chunk by chunk, the rows of a chunk are parsed and validated in parallel,
+ * barcodes are checked against the set of existing barcodes loaded once, and the valid rows
+ * of each chunk are numbered by the NumberGenerator, like products created in the application,
+ * and inserted with a single batched saveAll, or with PostgreSQL COPY when the importer is
+ * created with a bulk loader.
+ *
+ * Expected columns (same layout as the export): Code Barre, Nom Produit, Categorie,
+ * Description, Prix Unitaire, Quantite Stock, Seuil Alerte[, Date Creation].
+ * The creation date column is ignored, the creation date is set on insert.
+ */
+public class ProduitCsvImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProduitCsvImporter.class);
+
+    static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final int MIN_FIELDS = 7;
+
+    private final ProduitRepository produitRepository;
+    private final BulkLoadRepository bulkLoadRepository;
+    private final NumberGenerator numberGenerator;
+    private final int chunkSize;
+
+    public ProduitCsvImporter(ProduitRepository produitRepository) {
+        this(produitRepository, null, NumberGenerator.getInstance(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param produitRepository product repository, used to load the existing barcodes
+     * @param bulkLoadRepository COPY loader used to insert the chunks, or null to use saveAll
+     * @param numberGenerator source of the product codes
+     * @param chunkSize number of records parsed and inserted together
+     */
+    public ProduitCsvImporter(ProduitRepository produitRepository, BulkLoadRepository bulkLoadRepository,
+                              NumberGenerator numberGenerator, int chunkSize) {
+        this.produitRepository = produitRepository;
+        this.bulkLoadRepository = bulkLoadRepository;
+        this.numberGenerator = numberGenerator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Import the products of a CSV stream. The first line is a header and is skipped.
+     * @param reader CSV source, not closed by this method
+     * @param progress called after each chunk with the number of records processed so far (may be null)
+     * @return the import result with the per-line errors
+     * @throws IOException if the source cannot be read or is not valid CSV
+     */
+    public CsvImportResult importFrom(Reader reader, IntConsumer progress) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvImportResult result = new CsvImportResult();
+        Set<String> knownBarcodes = produitRepository.findAllCodesBarre();
+
+        CSVReader csvReader = new CSVReader(reader);
+        try {
+            if (csvReader.readNext() == null) {
+                return result;
+            }
+
+            List<CsvRow> chunk = new ArrayList<>(chunkSize);
+            long linesRead = csvReader.getLinesRead();
+            int processed = 0;
+            String[] fields;
+            while ((fields = csvReader.readNext()) != null) {
+                long line = linesRead + 1;
+                linesRead = csvReader.getLinesRead();
+                if (isBlank(fields)) {
+                    continue;
+                }
+                chunk.add(new CsvRow(line, fields));
+                if (chunk.size() >= chunkSize) {
+                    processed += importChunk(chunk, knownBarcodes, result);
+                    chunk.clear();
+                    notifyProgress(progress, processed);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                processed += importChunk(chunk, knownBarcodes, result);
+                notifyProgress(progress, processed);
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV at line " + csvReader.getLinesRead(), e);
+        } finally {
+            result.setDurationMillis(System.currentTimeMillis() - start);
+        }
+
+        logger.info("Products imported from CSV: {} imported, {} rejected out of {} records in {} ms",
+            result.getImportedCount(), result.getRejectedCount(), result.getRecordCount(), result.getDurationMillis());
+        return result;
+    }
+
+    private int importChunk(List<CsvRow> chunk, Set<String> knownBarcodes, CsvImportResult result) {
+        result.addRecords(chunk.size());
+
+        // Parsing and field validation do not touch the database and run in parallel
+        List<ParsedRow> parsedRows = chunk.parallelStream()
+            .map(ProduitCsvImporter::parse)
+            .collect(Collectors.toList());
+
+        // Barcode uniqueness is checked in file order so the first occurrence wins
+        List<ParsedRow> valid = new ArrayList<>(parsedRows.size());
+        for (ParsedRow row : parsedRows) {
+            if (row.error != null) {
+                result.addError(row.line, row.error);
+            } else if (!knownBarcodes.add(row.produit.getCodeBarre())) {
+                result.addError(row.line, "Barcode is already used by another product: " + row.produit.getCodeBarre());
+            } else {
+                valid.add(row);
+            }
+        }
+
+        if (valid.isEmpty()) {
+            return chunk.size();
+        }
+
+        // Numbered in file order; the codes of a chunk that fails to insert are skipped
+        for (ParsedRow row : valid) {
+            row.produit.setCodeProduit(numberGenerator.nextCodeProduit(row.produit.getCategorieProduit()));
+        }
+
+        List<Produit> produits = valid.stream().map(row -> row.produit).collect(Collectors.toList());
+        try {
+            if (bulkLoadRepository != null) {
+                long loaded = bulkLoadRepository.loadProduits(produits.iterator(), BulkLoadRepository.ConflictMode.SKIP);
+                if (loaded < produits.size()) {
+                    // Rows created concurrently by another client since the barcodes were loaded
+                    logger.warn("{} products of lines {}-{} already existed and were skipped",
+                        produits.size() - loaded, valid.get(0).line, valid.get(valid.size() - 1).line);
+                }
+                result.addImported(loaded);
+            } else {
+                produitRepository.saveAll(produits);
+                result.addImported(produits.size());
+            }
+        } catch (Exception e) {
+            logger.error("Error inserting CSV chunk of {} products (lines {}-{})",
+                valid.size(), valid.get(0).line, valid.get(valid.size() - 1).line, e);
+            for (ParsedRow row : valid) {
+                knownBarcodes.remove(row.produit.getCodeBarre());
+                result.addError(row.line, "Insert failed: " + e.getMessage());
+            }
+        }
+        return chunk.size();
+    }
+
+    /**
+     * Convert a CSV record into a product and validate its fields
+     */
+    static ParsedRow parse(CsvRow row) {
+        String[] fields = row.fields;
+        if (fields.length < MIN_FIELDS) {
+            return ParsedRow.error(row.line, "Expected at least " + MIN_FIELDS + " fields, found " + fields.length);
+        }
+
+        Produit produit = new Produit();
+        try {
+            produit.setCodeBarre(fields[0].trim());
+            produit.setNomProduit(fields[1].trim());
+            produit.setCategorieProduit(parseCategorie(fields[2]));
+            produit.setDescription(fields[3].trim().isEmpty() ? null : fields[3].trim());
+            produit.setPrixUnitaire(new BigDecimal(fields[4].trim()));
+            produit.setQuantiteStock(Integer.parseInt(fields[5].trim()));
+            produit.setSeuilAlerte(Integer.parseInt(fields[6].trim()));
+        } catch (NumberFormatException e) {
+            return ParsedRow.error(row.line, "Invalid number: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ParsedRow.error(row.line, e.getMessage());
+        }
+
+        List<String> errors = ProduitServiceImpl.validateProduitFields(produit);
+        if (!errors.isEmpty()) {
+            return ParsedRow.error(row.line, String.join(", ", errors));
+        }
+
+        return new ParsedRow(row.line, produit, null);
+    }
+
+    /**
+     * Accept either the enum name (INFORMATIQUE) or the label written by the export (Informatique)
+     */
+    static CategorieProduit parseCategorie(String value) {
+        String trimmed = value.trim();
+        for (CategorieProduit categorie : CategorieProduit.values()) {
+            if (categorie.name().equalsIgnoreCase(trimmed) || categorie.getLabel().equalsIgnoreCase(trimmed)) {
+                return categorie;
+            }
+        }
+        throw new IllegalArgumentException("Unknown category: " + trimmed);
+    }
+
+    private static boolean isBlank(String[] fields) {
+        for (String field : fields) {
+            if (field != null && !field.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void notifyProgress(IntConsumer progress, int processed) {
+        if (progress != null) {
+            progress.accept(processed);
+        }
+    }
+
+    static final class CsvRow {
+        final long line;
+        final String[] fields;
+
+        CsvRow(long line, String[] fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    static final class ParsedRow {
+        final long line;
+        final Produit produit;
+        final String error;
+
+        ParsedRow(long line, Produit produit, String error) {
+            this.line = line;
+            this.produit = produit;
+            this.error = error;
+        }
+
+        static ParsedRow error(long line, String error) {
+            return new ParsedRow(line, null, error);
+        }
+    }
+}
@@ -2,19 +2,46 @@ package insea.neobrain.service.impl;
 
 import insea.neobrain.entity.Produit;
 import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.MouvementStock;
+import insea.neobrain.entity.TypeMouvementStock;
+import insea.neobrain.repository.MouvementStockRepository;
 import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.repository.QueryCancellation;
+import insea.neobrain.repository.StockLevel;
+import insea.neobrain.repository.impl.BulkLoadRepositoryImpl;
+import insea.neobrain.repository.impl.MouvementStockRepositoryImpl;
 import insea.neobrain.service.ProduitService;
+import insea.neobrain.util.BarcodeIndex;
+import insea.neobrain.util.CsvImportResult;
+import insea.neobrain.util.CsvStreamWriter;
+import insea.neobrain.util.NumberGenerator;
+import insea.neobrain.util.SalesLeaderboard;
+import insea.neobrain.util.StockMovementRecorder;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of ProduitService
@@ -24,11 +51,34 @@ public class ProduitServiceImpl implements ProduitService {
     
     private static final Logger logger = LoggerFactory.getLogger(ProduitServiceImpl.class);
     private static final Pattern BARCODE_PATTERN = Pattern.compile("^[0-9]{8,14}$");
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+    private static final int STOCK_HISTORY_LIMIT = 500;
+    private static final int BULK_IMPORT_CHUNK_SIZE = 50000;
     
     private final ProduitRepository produitRepository;
+    private final MouvementStockRepository mouvementStockRepository;
+    private final StockMovementRecorder stockMovementRecorder;
+    private final BarcodeIndex barcodeIndex;
+    private final SalesLeaderboard salesLeaderboard;
+    private final NumberGenerator numberGenerator;
     
     public ProduitServiceImpl(ProduitRepository produitRepository) {
+        this(produitRepository, new MouvementStockRepositoryImpl(), StockMovementRecorder.getInstance(),
+            BarcodeIndex.getInstance(), SalesLeaderboard.getInstance(), NumberGenerator.getInstance());
+    }
+    
+    public ProduitServiceImpl(ProduitRepository produitRepository,
+                              MouvementStockRepository mouvementStockRepository,
+                              StockMovementRecorder stockMovementRecorder,
+                              BarcodeIndex barcodeIndex,
+                              SalesLeaderboard salesLeaderboard,
+                              NumberGenerator numberGenerator) {
         this.produitRepository = produitRepository;
+        this.mouvementStockRepository = mouvementStockRepository;
+        this.stockMovementRecorder = stockMovementRecorder;
+        this.barcodeIndex = barcodeIndex;
+        this.salesLeaderboard = salesLeaderboard;
+        this.numberGenerator = numberGenerator;
     }
     
     @Override
@@ -45,7 +95,13 @@ public class ProduitServiceImpl implements ProduitService {
             // Set creation date
             produit.setDateCreation(LocalDateTime.now());
             
+            // Product code taken before the insert, outside its transaction
+            if (produit.getCodeProduit() == null) {
+                produit.setCodeProduit(numberGenerator.nextCodeProduit(produit.getCategorie()));
+            }
+            
             Produit created = produitRepository.save(produit);
+            barcodeIndex.put(created.getCodeBarre(), created.getIdProduit());
             logger.info("Product created successfully: {}", created.getNomProduit());
             return created;
             
@@ -84,6 +140,7 @@ public class ProduitServiceImpl implements ProduitService {
             produit.setDateModification(LocalDateTime.now());
             
             Produit updated = produitRepository.update(produit);
+            barcodeIndex.put(updated.getCodeBarre(), updated.getIdProduit());
             logger.info("Product updated successfully: {}", updated.getNomProduit());
             return updated;
             
@@ -105,6 +162,7 @@ public class ProduitServiceImpl implements ProduitService {
             }
             
             produitRepository.deleteById(id);
+            barcodeIndex.remove(id);
             logger.info("Product deleted successfully: ID {}", id);
             return true;
             
@@ -127,7 +185,19 @@ public class ProduitServiceImpl implements ProduitService {
     @Override
     public Optional<Produit> findProduitByCodeBarre(String codeBarre) {
         try {
-            return produitRepository.findByCodeBarre(codeBarre);
+            Long produitId = barcodeIndex.findProduitId(codeBarre);
+            if (produitId != null) {
+                // Served by the second-level cache in most cases
+                Optional<Produit> produit = produitRepository.findById(produitId);
+                if (produit.isPresent() && codeBarre.equals(produit.get().getCodeBarre())) {
+                    return produit;
+                }
+            }
+            
+            // Barcode unknown to the index or stale entry: the database decides
+            Optional<Produit> produit = produitRepository.findByCodeBarre(codeBarre);
+            produit.ifPresent(p -> barcodeIndex.put(p.getCodeBarre(), p.getIdProduit()));
+            return produit;
         } catch (Exception e) {
             logger.error("Error finding product by barcode: {}", codeBarre, e);
             return Optional.empty();
@@ -154,6 +224,16 @@ public class ProduitServiceImpl implements ProduitService {
         }
     }
     
+    @Override
+    public List<Produit> findProduitsByCategorie(CategorieProduit categorie, int limit, QueryCancellation cancellation) {
+        try {
+            return produitRepository.findByCategorie(categorie, limit, cancellation);
+        } catch (Exception e) {
+            logger.error("Error finding products by category: {}", categorie, e);
+            return new ArrayList<>();
+        }
+    }
+    
     @Override
     public List<Produit> findProduitsByName(String nom) {
         try {
@@ -164,6 +244,26 @@ public class ProduitServiceImpl implements ProduitService {
         }
     }
     
+    @Override
+    public List<Produit> searchProduits(String term, int limit) {
+        try {
+            return produitRepository.search(term, limit);
+        } catch (Exception e) {
+            logger.error("Error searching products: {}", term, e);
+            return new ArrayList<>();
+        }
+    }
+    
+    @Override
+    public List<Produit> searchProduits(String term, int limit, QueryCancellation cancellation) {
+        try {
+            return produitRepository.search(term, limit, cancellation);
+        } catch (Exception e) {
+            logger.error("Error searching products: {}", term, e);
+            return new ArrayList<>();
+        }
+    }
+    
     @Override
     public List<Produit> findLowStockProduits() {
         try {
@@ -198,25 +298,22 @@ public class ProduitServiceImpl implements ProduitService {
     @Override
     public boolean updateStock(Long produitId, int newQuantity) {
         try {
-            Optional<Produit> produitOpt = produitRepository.findById(produitId);
-            if (produitOpt.isEmpty()) {
-                logger.warn("Product not found for stock update: ID {}", produitId);
+            if (newQuantity < 0) {
+                logger.warn("Negative stock refused for product ID {}: {}", produitId, newQuantity);
                 return false;
             }
             
-            Produit produit = produitOpt.get();
-            produit.setQuantiteStock(newQuantity);
-            produit.setDateModification(LocalDateTime.now());
-            
-            produitRepository.update(produit);
-            logger.info("Stock updated for product ID {}: new quantity = {}", produitId, newQuantity);
-            
-            // Check if stock is below threshold
-            if (newQuantity <= produit.getSeuilAlerte()) {
-                logger.warn("Stock below threshold for product {}: {} <= {}", 
-                    produit.getNomProduit(), newQuantity, produit.getSeuilAlerte());
+            Optional<StockLevel> stock = produitRepository.setStock(produitId, newQuantity);
+            if (stock.isEmpty()) {
+                logger.warn("Product not found for stock update: ID {}", produitId);
+                return false;
             }
             
+            int previousQuantity = stock.get().getPreviousQuantity();
+            stockMovementRecorder.record(produitId, TypeMouvementStock.AJUSTEMENT_MANUEL,
+                newQuantity - previousQuantity, newQuantity, "Stock update");
+            logger.info("Stock updated for product ID {}: {} -> {}", produitId, previousQuantity, newQuantity);
+            warnIfBelowThreshold(produitId, stock.get());
             return true;
         } catch (Exception e) {
             logger.error("Error updating stock for product ID: {}", produitId, e);
@@ -224,30 +321,37 @@ public class ProduitServiceImpl implements ProduitService {
         }
     }
     
+    /**
+     * Warn when a stock update leaves the product at or below its alert threshold
+     */
+    private static void warnIfBelowThreshold(Long produitId, StockLevel stock) {
+        if (stock.isBelowThreshold()) {
+            logger.warn("Stock below threshold for product ID {}: {} <= {}",
+                produitId, stock.getQuantity(), stock.getThreshold());
+        }
+    }
+    
     @Override
     public boolean adjustStock(Long produitId, int quantity, String reason) {
+        return adjustStock(produitId, quantity, TypeMouvementStock.AJUSTEMENT_MANUEL, reason);
+    }
+    
+    @Override
+    public boolean adjustStock(Long produitId, int quantity, TypeMouvementStock type, String reason) {
         try {
-            Optional<Produit> produitOpt = produitRepository.findById(produitId);
-            if (produitOpt.isEmpty()) {
-                logger.warn("Product not found for stock adjustment: ID {}", produitId);
-                return false;
-            }
-            
-            Produit produit = produitOpt.get();
-            int newQuantity = produit.getQuantiteStock() + quantity;
-            
-            if (newQuantity < 0) {
-                logger.warn("Stock adjustment would result in negative stock: {} + {} = {}", 
-                    produit.getQuantiteStock(), quantity, newQuantity);
+            // Single atomic statement: no read, and no lost update between concurrent clients
+            Optional<StockLevel> stock = produitRepository.adjustStock(produitId, quantity);
+            if (stock.isEmpty()) {
+                logger.warn("Stock adjustment refused for product ID {}: product not found or insufficient stock for {}", 
+                    produitId, quantity);
                 return false;
             }
             
-            produit.setQuantiteStock(newQuantity);
-            produit.setDateModification(LocalDateTime.now());
-            
-            produitRepository.update(produit);
+            int newQuantity = stock.get().getQuantity();
+            stockMovementRecorder.record(produitId, type, quantity, newQuantity, reason);
             logger.info("Stock adjusted for product ID {}: {} + {} = {} (reason: {})", 
-                produitId, produit.getQuantiteStock() - quantity, quantity, newQuantity, reason);
+                produitId, stock.get().getPreviousQuantity(), quantity, newQuantity, reason);
+            warnIfBelowThreshold(produitId, stock.get());
             
             return true;
         } catch (Exception e) {
@@ -259,20 +363,13 @@ public class ProduitServiceImpl implements ProduitService {
     @Override
     public boolean updatePrice(Long produitId, BigDecimal newPrice) {
         try {
-            Optional<Produit> produitOpt = produitRepository.findById(produitId);
-            if (produitOpt.isEmpty()) {
+            boolean updated = modifyProduit(produitId, produit -> produit.setPrixUnitaire(newPrice));
+            if (!updated) {
                 logger.warn("Product not found for price update: ID {}", produitId);
                 return false;
             }
             
-            Produit produit = produitOpt.get();
-            BigDecimal oldPrice = produit.getPrixUnitaire();
-            produit.setPrixUnitaire(newPrice);
-            produit.setDateModification(LocalDateTime.now());
-            
-            produitRepository.update(produit);
-            logger.info("Price updated for product ID {}: {} -> {}", produitId, oldPrice, newPrice);
-            
+            logger.info("Price updated for product ID {}: {}", produitId, newPrice);
             return true;
         } catch (Exception e) {
             logger.error("Error updating price for product ID: {}", produitId, e);
@@ -282,6 +379,23 @@ public class ProduitServiceImpl implements ProduitService {
     
     @Override
     public List<String> validateProduit(Produit produit) {
+        List<String> errors = validateProduitFields(produit);
+        
+        // Check barcode uniqueness
+        if (produit.getCodeBarre() != null && !produit.getCodeBarre().trim().isEmpty()
+                && !isBarcodeAvailable(produit.getCodeBarre(), produit.getIdProduit())) {
+            errors.add("Barcode is already used by another product");
+        }
+        
+        return errors;
+    }
+    
+    /**
+     * Validate the product fields without querying the database (barcode uniqueness is not checked)
+     * @param produit Product to validate
+     * @return List of validation errors (empty if valid)
+     */
+    static List<String> validateProduitFields(Produit produit) {
         List<String> errors = new ArrayList<>();
         
         // Required fields validation
@@ -293,14 +407,8 @@ public class ProduitServiceImpl implements ProduitService {
         
         if (produit.getCodeBarre() == null || produit.getCodeBarre().trim().isEmpty()) {
             errors.add("Barcode is required");
-        } else {
-            if (!BARCODE_PATTERN.matcher(produit.getCodeBarre()).matches()) {
-                errors.add("Invalid barcode format (must be 8-14 digits)");
-            }
-            // Check barcode uniqueness
-            if (!isBarcodeAvailable(produit.getCodeBarre(), produit.getIdProduit())) {
-                errors.add("Barcode is already used by another product");
-            }
+        } else if (!BARCODE_PATTERN.matcher(produit.getCodeBarre()).matches()) {
+            errors.add("Invalid barcode format (must be 8-14 digits)");
         }
         
         if (produit.getCategorieProduit() == null) {
@@ -337,13 +445,15 @@ public class ProduitServiceImpl implements ProduitService {
     
     private boolean isBarcodeAvailable(String codeBarre, Long excludeProductId) {
         try {
-            Optional<Produit> existing = produitRepository.findByCodeBarre(codeBarre);
-            if (existing.isEmpty()) {
+            // A product created by another client since the last refresh may be missed here,
+            // the partial unique index idx_produit_code_barre_unique rejects the duplicate on save
+            Long existingId = barcodeIndex.findProduitId(codeBarre);
+            if (existingId == null) {
                 return true;
             }
             
             // If excludeProductId is provided, check if it's the same product
-            return excludeProductId != null && existing.get().getIdProduit().equals(excludeProductId);
+            return existingId.equals(excludeProductId);
         } catch (Exception e) {
             logger.error("Error checking barcode availability: {}", codeBarre, e);
             return false;
@@ -403,10 +513,9 @@ public class ProduitServiceImpl implements ProduitService {
     @Override
     public List<Object[]> getTopSellingProducts(int limit) {
         try {
-            List<Produit> topProducts = produitRepository.findTopSellingProducts(limit);
-            // Convert to Object[] format: [Product, Quantity Sold]
-            return topProducts.stream()
-                .map(p -> new Object[]{p, 0}) // Default quantity sold to 0 for now
+            // Best sellers of the last 12 months: [Product, Quantity Sold]
+            return salesLeaderboard.getTopByQuantity(SalesLeaderboard.Window.YEAR, limit).stream()
+                .map(entry -> new Object[]{entry.getProduit(), entry.getQuantite()})
                 .collect(Collectors.toList());
         } catch (Exception e) {
             logger.error("Error getting top selling products", e);
@@ -441,74 +550,104 @@ public class ProduitServiceImpl implements ProduitService {
     
     @Override
     public String exportProduitsToCSV() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportProduitsToCSV(out, false);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public long exportProduitsToCSV(OutputStream out, boolean gzip) {
         try {
-            List<Produit> produits = produitRepository.findAll();
-            StringBuilder csv = new StringBuilder();
-            
-            // Header
-            csv.append("Code Barre,Nom Produit,Categorie,Description,Prix Unitaire,Quantite Stock,Seuil Alerte,Date Creation\n");
-            
-            // Data
-            for (Produit p : produits) {
-                csv.append(String.format("%s,%s,%s,\"%s\",%s,%d,%d,%s\n",
-                    p.getCodeBarre(),
-                    p.getNomProduit(),
-                    p.getCategorieProduit(),
-                    p.getDescription() != null ? p.getDescription().replace("\"", "\"\"") : "",
-                    p.getPrixUnitaire(),
-                    p.getQuantiteStock(),
-                    p.getSeuilAlerte(),
-                    p.getDateCreation()
-                ));
-            }
-            
-            logger.info("Product data exported to CSV: {} records", produits.size());
-            return csv.toString();
-            
+            CsvStreamWriter csv = new CsvStreamWriter(out, gzip);
+            long count = writeProduitsCsv(csv);
+            csv.finish();
+            return count;
         } catch (Exception e) {
             logger.error("Error exporting products to CSV", e);
             throw new RuntimeException("Error exporting products to CSV", e);
         }
     }
     
+    @Override
+    public long exportProduitsToCSV(Path path) {
+        try (CsvStreamWriter csv = CsvStreamWriter.open(path)) {
+            return writeProduitsCsv(csv);
+        } catch (Exception e) {
+            logger.error("Error exporting products to CSV file: {}", path, e);
+            throw new RuntimeException("Error exporting products to CSV file: " + path, e);
+        }
+    }
+    
+    private long writeProduitsCsv(CsvStreamWriter csv) throws IOException {
+        csv.header("Code Barre", "Nom Produit", "Categorie", "Description", "Prix Unitaire",
+            "Quantite Stock", "Seuil Alerte", "Date Creation");
+        
+        // Data, read through a scrolling cursor so the products are not all held in memory
+        try (Stream<Produit> produits = produitRepository.streamAll()) {
+            for (Iterator<Produit> it = produits.iterator(); it.hasNext(); ) {
+                Produit p = it.next();
+                csv.field(p.getCodeBarre())
+                    .field(p.getNomProduit())
+                    .field(p.getCategorieProduit())
+                    .field(p.getDescription())
+                    .field(p.getPrixUnitaire())
+                    .field(p.getQuantiteStock())
+                    .field(p.getSeuilAlerte())
+                    .field(p.getDateCreation())
+                    .endRow();
+            }
+        }
+        
+        logger.info("Product data exported to CSV: {} records", csv.getRowCount());
+        return csv.getRowCount();
+    }
+    
     @Override
     public int importProduitsFromCSV(String csvData) {
+        return (int) importProduitsFromCSV(new StringReader(csvData), null).getImportedCount();
+    }
+    
+    @Override
+    public CsvImportResult importProduitsFromCSV(Reader reader, IntConsumer progress) {
         try {
-            String[] lines = csvData.split("\n");
-            int imported = 0;
-            
-            // Skip header line
-            for (int i = 1; i < lines.length; i++) {
-                try {
-                    String[] fields = lines[i].split(",");
-                    if (fields.length >= 8) {
-                        Produit produit = new Produit();
-                        produit.setCodeBarre(fields[0].trim());
-                        produit.setNomProduit(fields[1].trim());
-                        produit.setCategorieProduit(CategorieProduit.valueOf(fields[2].trim()));
-                        produit.setDescription(fields[3].trim().replace("\"", ""));
-                        produit.setPrixUnitaire(new BigDecimal(fields[4].trim()));
-                        produit.setQuantiteStock(Integer.parseInt(fields[5].trim()));
-                        produit.setSeuilAlerte(Integer.parseInt(fields[6].trim()));
-                        produit.setDateCreation(LocalDateTime.parse(fields[7].trim() + "T00:00:00"));
-                        
-                        createProduit(produit);
-                        imported++;
-                    }
-                } catch (Exception e) {
-                    logger.warn("Error importing product from line {}: {}", i + 1, e.getMessage());
-                }
+            CsvImportResult result = new ProduitCsvImporter(produitRepository, null, numberGenerator,
+                ProduitCsvImporter.DEFAULT_CHUNK_SIZE).importFrom(reader, progress);
+            if (result.getImportedCount() > 0) {
+                barcodeIndex.refreshSoon();
             }
-            
-            logger.info("Products imported from CSV: {} records", imported);
-            return imported;
-            
+            return result;
         } catch (Exception e) {
             logger.error("Error importing products from CSV", e);
             throw new RuntimeException("Error importing products from CSV", e);
         }
     }
     
+    @Override
+    public CsvImportResult importProduitsFromCSV(Path path, IntConsumer progress) {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return importProduitsFromCSV(reader, progress);
+        } catch (IOException e) {
+            logger.error("Error reading CSV file: {}", path, e);
+            throw new RuntimeException("Error reading CSV file: " + path, e);
+        }
+    }
+    
+    @Override
+    public CsvImportResult bulkImportProduitsFromCSV(Path path, IntConsumer progress) {
+        ProduitCsvImporter importer = new ProduitCsvImporter(produitRepository, new BulkLoadRepositoryImpl(),
+            numberGenerator, BULK_IMPORT_CHUNK_SIZE);
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            CsvImportResult result = importer.importFrom(reader, progress);
+            if (result.getImportedCount() > 0) {
+                barcodeIndex.refreshSoon();
+            }
+            return result;
+        } catch (Exception e) {
+            logger.error("Error bulk importing products from CSV file: {}", path, e);
+            throw new RuntimeException("Error bulk importing products from CSV file: " + path, e);
+        }
+    }
+    
     // Missing interface method implementations
     
     @Override
@@ -561,16 +700,7 @@ public class ProduitServiceImpl implements ProduitService {
     @Override
     public boolean updateStockThreshold(Long produitId, int threshold) {
         try {
-            Optional<Produit> produitOpt = produitRepository.findById(produitId);
-            if (produitOpt.isEmpty()) {
-                return false;
-            }
-            
-            Produit produit = produitOpt.get();
-            produit.setSeuilAlerte(threshold);
-            produit.setDateModification(LocalDateTime.now());
-            produitRepository.update(produit);
-            return true;
+            return modifyProduit(produitId, produit -> produit.setSeuilAlerte(threshold));
         } catch (Exception e) {
             logger.error("Error updating stock threshold", e);
             return false;
@@ -647,8 +777,18 @@ public class ProduitServiceImpl implements ProduitService {
     
     @Override
     public List<Object[]> getStockMovementHistory(Long produitId) {
-        logger.warn("Stock movement history not implemented yet");
-        return new ArrayList<>();
+        try {
+            // Movements still queued for writing would be missing from the result
+            stockMovementRecorder.flush();
+            List<MouvementStock> mouvements = mouvementStockRepository.findByProduit(produitId, STOCK_HISTORY_LIMIT);
+            return mouvements.stream()
+                .map(m -> new Object[]{m.getDateMouvement(), m.getTypeMouvement(), m.getQuantite(),
+                    m.getQuantiteApres(), m.getMotif()})
+                .collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.error("Error getting stock movement history for product ID: {}", produitId, e);
+            return new ArrayList<>();
+        }
     }
     
     @Override
@@ -664,9 +804,9 @@ public class ProduitServiceImpl implements ProduitService {
     @Override
     public List<Object[]> getHighestRevenueProducts(int limit) {
         try {
-            List<Produit> topProducts = produitRepository.findTopSellingProducts(limit);
-            return topProducts.stream()
-                .map(p -> new Object[]{p.getIdProduit(), p.getNomProduit(), p.getPrixUnitaire()})
+            // Best sellers of the last 12 months: [Product, Revenue]
+            return salesLeaderboard.getTopByRevenue(SalesLeaderboard.Window.YEAR, limit).stream()
+                .map(entry -> new Object[]{entry.getProduit(), entry.getMontant()})
                 .collect(Collectors.toList());
         } catch (Exception e) {
             logger.error("Error getting highest revenue products", e);
@@ -726,4 +866,43 @@ public class ProduitServiceImpl implements ProduitService {
     public boolean addStock(Long produitId, int quantity) {
         return adjustStock(produitId, quantity, "Stock addition");
     }
+    
+    /**
+     * Apply a change to a freshly loaded product and save it.
+     * If another client updated the product in between (version conflict),
+     * the product is reloaded and the change applied again, up to MAX_UPDATE_ATTEMPTS times.
+     * @param produitId Product ID
+     * @param change Change to apply
+     * @return true if saved, false if the product does not exist
+     */
+    private boolean modifyProduit(Long produitId, Consumer<Produit> change) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<Produit> produitOpt = produitRepository.findById(produitId);
+            if (produitOpt.isEmpty()) {
+                return false;
+            }
+            
+            Produit produit = produitOpt.get();
+            change.accept(produit);
+            produit.setDateModification(LocalDateTime.now());
+            try {
+                produitRepository.update(produit);
+                return true;
+            } catch (RuntimeException e) {
+                if (!isOptimisticLockFailure(e) || attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.debug("Concurrent update of product ID {}, retrying ({}/{})", produitId, attempt, MAX_UPDATE_ATTEMPTS);
+            }
+        }
+    }
+    
+    private static boolean isOptimisticLockFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
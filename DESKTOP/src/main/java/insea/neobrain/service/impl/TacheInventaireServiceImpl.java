@@ -5,12 +5,21 @@ import insea.neobrain.entity.Inventaire;
 import insea.neobrain.entity.Personnel;
 import insea.neobrain.entity.Produit;
 import insea.neobrain.entity.TacheInventaire;
+import insea.neobrain.entity.TypeMouvementStock;
+import insea.neobrain.repository.InventaireRepository;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.repository.StockLevel;
 import insea.neobrain.repository.TacheInventaireRepository;
+import insea.neobrain.repository.impl.InventaireRepositoryImpl;
+import insea.neobrain.repository.impl.ProduitRepositoryImpl;
 import insea.neobrain.repository.impl.TacheInventaireRepositoryImpl;
 import insea.neobrain.service.TacheInventaireService;
+import insea.neobrain.util.StockMovementRecorder;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.time.LocalDateTime;
@@ -22,9 +31,13 @@ public class TacheInventaireServiceImpl implements TacheInventaireService {
     
     private static final Logger LOGGER = Logger.getLogger(TacheInventaireServiceImpl.class.getName());
     private final TacheInventaireRepository repository;
+    private final ProduitRepository produitRepository;
+    private final InventaireRepository inventaireRepository;
     
     public TacheInventaireServiceImpl() {
         this.repository = new TacheInventaireRepositoryImpl();
+        this.produitRepository = new ProduitRepositoryImpl();
+        this.inventaireRepository = new InventaireRepositoryImpl();
     }
     
     @Override
@@ -183,6 +196,20 @@ public class TacheInventaireServiceImpl implements TacheInventaireService {
         }
     }
     
+    @Override
+    public List<TacheInventaire> claimNextTasks(Personnel personnel, int maxTasks) {
+        try {
+            if (personnel == null) {
+                throw new IllegalArgumentException("Personnel cannot be null");
+            }
+            
+            return repository.claimNextTasks(personnel, maxTasks);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error claiming tasks", e);
+            throw new RuntimeException("Failed to claim tasks: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public TacheInventaire completeTask(TacheInventaire task, Integer physicalCount) {
         try {
@@ -194,6 +221,9 @@ public class TacheInventaireServiceImpl implements TacheInventaireService {
                 throw new IllegalArgumentException("Physical count cannot be null for completed tasks");
             }
             
+            // A recount replaces the previous count: the counters only move by the difference
+            boolean alreadyCounted = task.getEtatTache() == EtatTache.TERMINEE;
+            boolean previousDiscrepancy = alreadyCounted && task.hasEcart();
             task.setQuantitePhysique(physicalCount);
             task.setEtatTache(EtatTache.TERMINEE);
             
@@ -201,17 +231,47 @@ public class TacheInventaireServiceImpl implements TacheInventaireService {
             if (task.getProduit() != null) {
                 task.getProduit().setDernierInventaire(LocalDateTime.now());
                 
-                // Handle inventory discrepancy if needed
-                if (task.getProduit().getQuantiteStock() != physicalCount) {
-                    task.getProduit().setQuantiteStock(physicalCount);
-                    task.getProduit().setDerniereModification(LocalDateTime.now());
+                // Handle inventory discrepancy: the counted quantity becomes the stock
+                Long produitId = task.getProduit().getIdProduit();
+                Optional<StockLevel> stock = produitRepository.setStock(produitId, physicalCount);
+                if (stock.isPresent() && task.getQuantiteTheorique() == null) {
+                    task.setQuantiteTheorique(stock.get().getPreviousQuantity());
+                }
+                if (stock.isPresent() && stock.get().getPreviousQuantity() != physicalCount) {
+                    StockMovementRecorder.getInstance().record(produitId, TypeMouvementStock.CORRECTION_INVENTAIRE,
+                        physicalCount - stock.get().getPreviousQuantity(), physicalCount,
+                        "Tâche d'inventaire " + task.getIdTacheInventaire());
                 }
             }
             
-            return repository.update(task);
+            TacheInventaire result = repository.update(task);
+            
+            // Keep the inventory counters up to date with an atomic increment
+            Inventaire inventaire = task.getInventaire();
+            if (inventaire != null && inventaire.getIdInventaire() != null) {
+                int discrepancyDelta = (task.hasEcart() ? 1 : 0) - (previousDiscrepancy ? 1 : 0);
+                inventaireRepository.incrementStatistics(inventaire.getIdInventaire(),
+                    alreadyCounted ? 0 : 1, discrepancyDelta);
+            }
+            
+            return result;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error completing task", e);
             throw new RuntimeException("Failed to complete task: " + e.getMessage(), e);
         }
     }
+    
+    @Override
+    public int completeCountedTasks(Long inventaireId, Collection<Long> taskIds) {
+        try {
+            if (inventaireId == null) {
+                throw new IllegalArgumentException("Inventory cannot be null");
+            }
+            
+            return repository.completeCountedTasks(inventaireId, taskIds);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error completing counted tasks", e);
+            throw new RuntimeException("Failed to complete counted tasks: " + e.getMessage(), e);
+        }
+    }
 }
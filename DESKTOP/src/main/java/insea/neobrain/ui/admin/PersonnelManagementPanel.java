@@ -1,15 +1,16 @@
 package insea.neobrain.ui.admin;
 
+import insea.neobrain.config.ConfigurationManager;
 import insea.neobrain.entity.*;
 import insea.neobrain.service.PersonnelService;
 import insea.neobrain.service.impl.PersonnelServiceImpl;
 import insea.neobrain.repository.impl.PersonnelRepositoryImpl;
+import insea.neobrain.ui.common.PagedTableModel;
 import insea.neobrain.ui.common.UIConstants;
 import insea.neobrain.ui.common.UIUtils;
 import insea.neobrain.service.impl.AuthenticationServiceImpl;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -20,11 +21,12 @@ import java.util.List;
  */
 public class PersonnelManagementPanel extends JPanel implements ActionListener {
     
+    private final PersonnelRepositoryImpl personnelRepository;
     private final PersonnelService personnelService;
     
     // UI Components
     private JTable personnelTable;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Personnel> tableModel;
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
@@ -33,7 +35,8 @@ public class PersonnelManagementPanel extends JPanel implements ActionListener {
     private JButton searchButton;
     
     public PersonnelManagementPanel() {
-        this.personnelService = new PersonnelServiceImpl(new PersonnelRepositoryImpl(), new AuthenticationServiceImpl(new PersonnelRepositoryImpl()));
+        this.personnelRepository = new PersonnelRepositoryImpl();
+        this.personnelService = new PersonnelServiceImpl(personnelRepository, new AuthenticationServiceImpl(personnelRepository));
         initializeComponents();
         setupLayout();
         setupEventHandlers();
@@ -43,20 +46,18 @@ public class PersonnelManagementPanel extends JPanel implements ActionListener {
     private void initializeComponents() {
         // Table setup
         String[] columnNames = {"ID", "Nom", "Prénom", "Email", "Téléphone", "Rôle", "Date Embauche"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 0) return Long.class;
-                return String.class;
-            }
-        };
+        // Entity attribute sorting each column on the server, null when not sortable (nullable columns)
+        String[] sortAttributes = {"idPersonne", "nom", "prenom", null, null, "role", "dateEmbauche"};
+        // Rows are read page by page as the table scrolls
+        tableModel = new PagedTableModel<>(personnelRepository, columnNames, sortAttributes, "nom",
+            PersonnelManagementPanel::getColumnValue,
+            ConfigurationManager.getInstance().getTableRowsPerPage(), PagedTableModel.DEFAULT_MAX_PAGES);
+        tableModel.setErrorHandler(e -> UIUtils.showErrorMessage(this,
+            "Error loading personnel data: " + e.getMessage()));
         
         personnelTable = UIUtils.createStyledTable();
         personnelTable.setModel(tableModel);
+        tableModel.installHeaderSorting(personnelTable);
         UIUtils.setupTableColumnWidths(personnelTable, new int[]{50, 120, 120, 180, 120, 120, 120});
         
         // Buttons
@@ -159,38 +160,23 @@ public class PersonnelManagementPanel extends JPanel implements ActionListener {
     }
     
     public void refreshData() {
-        SwingWorker<List<Personnel>, Void> worker = new SwingWorker<List<Personnel>, Void>() {
-            @Override
-            protected List<Personnel> doInBackground() throws Exception {
-                return personnelService.findAllPersonnel();
-            }
-            @Override
-            protected void done() {
-                try {
-                    List<Personnel> personnelList = get();
-                    updateTable(personnelList);
-                } catch (Exception e) {
-                    UIUtils.showErrorMessage(PersonnelManagementPanel.this, 
-                        "Error loading personnel data: " + e.getMessage());
-                }
-            }
-        };
-        worker.execute();
+        tableModel.reload();
     }
     
     private void updateTable(List<Personnel> personnelList) {
-        tableModel.setRowCount(0);
-        for (Personnel personnel : personnelList) {
-            Object[] row = {
-                personnel.getIdPersonne(),
-                personnel.getNom(),
-                personnel.getPrenom(),
-                personnel.getEmail(),
-                personnel.getTelephone(),
-                personnel.getRole(),
-                personnel.getDateEmbauche() != null ? personnel.getDateEmbauche().toString() : ""
-            };
-            tableModel.addRow(row);
+        tableModel.setRows(personnelList);
+    }
+    
+    private static Object getColumnValue(Personnel personnel, int column) {
+        switch (column) {
+            case 0: return personnel.getIdPersonne();
+            case 1: return personnel.getNom();
+            case 2: return personnel.getPrenom();
+            case 3: return personnel.getEmail();
+            case 4: return personnel.getTelephone();
+            case 5: return personnel.getRole();
+            case 6: return personnel.getDateEmbauche() != null ? personnel.getDateEmbauche().toString() : "";
+            default: return null;
         }
     }
     
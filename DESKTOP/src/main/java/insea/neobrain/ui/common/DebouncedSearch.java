@@ -0,0 +1,121 @@
+package insea.neobrain.ui.common;
+
+import insea.neobrain.repository.QueryCancellation;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type against the database.
+ * The search runs once typing pauses; a new term cancels the running search, its SwingWorker and
+ * its JDBC statement, and only the result of the latest term is applied.
+ * All methods must be called on the Event Dispatch Thread.
+ */
+public class DebouncedSearch<T> {
+
+    public static final int DEFAULT_DELAY_MS = 300;
+
+    /**
+     * Query run in a background thread
+     */
+    @FunctionalInterface
+    public interface SearchFunction<T> {
+        List<T> search(String term, QueryCancellation cancellation) throws Exception;
+    }
+
+    private final SearchFunction<T> searchFunction;
+    private final Consumer<List<T>> resultHandler;
+    private final Consumer<Exception> errorHandler;
+    private final Timer delayTimer;
+    private String pendingTerm = "";
+    private SwingWorker<List<T>, Void> currentWorker;
+    private QueryCancellation currentCancellation;
+    private long generation;
+
+    public DebouncedSearch(SearchFunction<T> searchFunction, Consumer<List<T>> resultHandler,
+                           Consumer<Exception> errorHandler) {
+        this(searchFunction, resultHandler, errorHandler, DEFAULT_DELAY_MS);
+    }
+
+    public DebouncedSearch(SearchFunction<T> searchFunction, Consumer<List<T>> resultHandler,
+                           Consumer<Exception> errorHandler, int delayMillis) {
+        this.searchFunction = searchFunction;
+        this.resultHandler = resultHandler;
+        this.errorHandler = errorHandler;
+        this.delayTimer = new Timer(delayMillis, e -> startSearch());
+        this.delayTimer.setRepeats(false);
+    }
+
+    /**
+     * The term changed: search once no other change comes within the delay
+     */
+    public void termChanged(String term) {
+        pendingTerm = term != null ? term.trim() : "";
+        delayTimer.restart();
+    }
+
+    /**
+     * Search immediately, e.g. on Enter or when a filter changes
+     */
+    public void searchNow(String term) {
+        delayTimer.stop();
+        pendingTerm = term != null ? term.trim() : "";
+        startSearch();
+    }
+
+    /**
+     * Drop the pending and running searches, e.g. when the table is reloaded by other means
+     */
+    public void cancel() {
+        delayTimer.stop();
+        generation++;
+        cancelRunning();
+    }
+
+    private void startSearch() {
+        cancelRunning();
+        final long searchGeneration = ++generation;
+        final String term = pendingTerm;
+        final QueryCancellation cancellation = new QueryCancellation();
+
+        SwingWorker<List<T>, Void> worker = new SwingWorker<List<T>, Void>() {
+            @Override
+            protected List<T> doInBackground() throws Exception {
+                return searchFunction.search(term, cancellation);
+            }
+
+            @Override
+            protected void done() {
+                if (searchGeneration != generation || cancellation.isCancelled()) {
+                    // Superseded by a newer term
+                    return;
+                }
+                currentWorker = null;
+                currentCancellation = null;
+                try {
+                    resultHandler.accept(get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    errorHandler.accept(cause instanceof Exception ? (Exception) cause : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        currentWorker = worker;
+        currentCancellation = cancellation;
+        worker.execute();
+    }
+
+    private void cancelRunning() {
+        if (currentWorker != null && !currentWorker.isDone()) {
+            currentCancellation.cancel();
+            // No interrupt: the JDBC statement is cancelled instead, the connection stays usable
+            currentWorker.cancel(false);
+        }
+        currentWorker = null;
+        currentCancellation = null;
+    }
+}
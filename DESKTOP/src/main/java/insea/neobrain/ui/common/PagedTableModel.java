@@ -0,0 +1,316 @@
+package insea.neobrain.ui.common;
+
+import insea.neobrain.repository.GenericRepository;
+import insea.neobrain.repository.KeysetPage;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Table model reading its rows from a repository page by page, as the table scrolls.
+ * Only the pages displayed recently are kept (bounded LRU), so memory stays flat whatever the
+ * size of the table. Sorting is done by the database with keyset queries; a page far from the
+ * loaded ones (scrollbar dragged) is read by offset once, and the pages after it by keyset again.
+ * Rows not loaded yet show empty cells until their page arrives.
+ * A fixed list, e.g. search results, can be shown instead of the pages with {@link #setRows(List)}.
+ * All methods must be called on the Event Dispatch Thread.
+ */
+public class PagedTableModel<T> extends AbstractTableModel {
+
+    public static final int DEFAULT_MAX_PAGES = 40;
+    // Cursors are small, keep many more of them than pages so scrolling back stays on keyset queries
+    private static final int MAX_CURSORS = 4096;
+
+    /**
+     * Extracts the value of a cell from a row entity
+     */
+    @FunctionalInterface
+    public interface ColumnValue<T> {
+        Object getValue(T row, int column);
+    }
+
+    private final GenericRepository<T, ?> repository;
+    private final String[] columnNames;
+    private final String[] sortAttributes;
+    private final ColumnValue<T> columnValue;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages;
+    private final Map<Integer, String> nextCursors;
+    private Consumer<Exception> errorHandler = e -> { };
+
+    private String sortAttribute;
+    private boolean descending;
+    private int rowCount;
+    private List<T> fixedRows;
+    private long generation;
+    private Integer loadingPage;
+    private Integer wantedPage;
+    private boolean loadFailed;
+
+    /**
+     * @param repository source of the pages
+     * @param columnNames column headers
+     * @param sortAttributes entity attribute sorting each column, null for a column that cannot be sorted;
+     *                       the attributes must be non-null and should be indexed together with the ID
+     * @param defaultSortAttribute attribute sorting the rows initially
+     * @param columnValue extracts the cell values
+     * @param pageSize number of rows per page
+     * @param maxPages number of pages kept in memory
+     */
+    public PagedTableModel(GenericRepository<T, ?> repository, String[] columnNames, String[] sortAttributes,
+                           String defaultSortAttribute, ColumnValue<T> columnValue, int pageSize, int maxPages) {
+        if (columnNames.length != sortAttributes.length) {
+            throw new IllegalArgumentException("One sort attribute (or null) is needed per column");
+        }
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Page size and page count must be positive");
+        }
+        this.repository = repository;
+        this.columnNames = columnNames.clone();
+        this.sortAttributes = sortAttributes.clone();
+        this.sortAttribute = defaultSortAttribute;
+        this.columnValue = columnValue;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+        this.nextCursors = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > MAX_CURSORS;
+            }
+        };
+    }
+
+    /**
+     * Handler of the errors raised while loading a page, called on the Event Dispatch Thread
+     */
+    public void setErrorHandler(Consumer<Exception> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Drop the loaded pages and read the table again from the first page
+     */
+    public void reload() {
+        generation++;
+        fixedRows = null;
+        pages.clear();
+        nextCursors.clear();
+        loadingPage = null;
+        wantedPage = null;
+        loadFailed = false;
+        rowCount = 0;
+        fireTableDataChanged();
+        startLoad(0, true);
+    }
+
+    /**
+     * Show a fixed list of rows instead of the pages, until the next {@link #reload()}
+     */
+    public void setRows(List<T> rows) {
+        generation++;
+        fixedRows = new ArrayList<>(rows);
+        pages.clear();
+        nextCursors.clear();
+        loadingPage = null;
+        wantedPage = null;
+        rowCount = fixedRows.size();
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return true when showing the pages of the repository, false when showing a fixed list
+     */
+    public boolean isPaged() {
+        return fixedRows == null;
+    }
+
+    public boolean isSortable(int column) {
+        return sortAttributes[column] != null;
+    }
+
+    /**
+     * Sort on a column: ascending first, then the other way on each call for the same column.
+     * Ignored for a column that cannot be sorted and while a fixed list is shown.
+     */
+    public void toggleSort(int column) {
+        if (!isSortable(column) || !isPaged()) {
+            return;
+        }
+        descending = sortAttributes[column].equals(sortAttribute) && !descending;
+        sortAttribute = sortAttributes[column];
+        reload();
+    }
+
+    /**
+     * Sort the pages when a header of the table is clicked
+     */
+    public void installHeaderSorting(JTable table) {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int viewColumn = table.columnAtPoint(e.getPoint());
+                if (viewColumn >= 0) {
+                    toggleSort(table.convertColumnIndexToModel(viewColumn));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the entity of a row, or null if its page is not loaded
+     */
+    public T getRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            return null;
+        }
+        if (fixedRows != null) {
+            return fixedRows.get(row);
+        }
+        int page = row / pageSize;
+        List<T> content = pages.get(page);
+        if (content == null) {
+            requestPage(page);
+            return null;
+        }
+        int index = row % pageSize;
+        return index < content.size() ? content.get(index) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        T row = getRow(rowIndex);
+        return row != null ? columnValue.getValue(row, columnIndex) : null;
+    }
+
+    private void requestPage(int page) {
+        if (loadFailed) {
+            // Every repaint would fail again; wait for the next reload
+            return;
+        }
+        if (loadingPage != null) {
+            // Only the latest request matters: pages scrolled past are requested again when repainted
+            if (loadingPage != page) {
+                wantedPage = page;
+            }
+            return;
+        }
+        startLoad(page, false);
+    }
+
+    private void startLoad(int page, boolean withTotal) {
+        final long loadGeneration = generation;
+        final String cursor = page > 0 ? nextCursors.get(page - 1) : null;
+        final String sort = sortAttribute;
+        final boolean desc = descending;
+        loadingPage = page;
+
+        SwingWorker<KeysetPage<T>, Void> worker = new SwingWorker<KeysetPage<T>, Void>() {
+            private long total = KeysetPage.UNKNOWN_TOTAL;
+
+            @Override
+            protected KeysetPage<T> doInBackground() throws Exception {
+                KeysetPage<T> result = fetchPage(sort, desc, page, cursor);
+                if (withTotal) {
+                    total = repository.approximateCount();
+                } else if (page > 0 && result.getContent().isEmpty()) {
+                    // The estimate was too high and the table was scrolled past its end
+                    total = repository.count();
+                }
+                return result;
+            }
+
+            @Override
+            protected void done() {
+                if (loadGeneration != generation) {
+                    // Reloaded or sorted again in the meantime
+                    return;
+                }
+                loadingPage = null;
+                try {
+                    pageLoaded(page, get(), total);
+                } catch (ExecutionException e) {
+                    loadFailed = true;
+                    wantedPage = null;
+                    Throwable cause = e.getCause();
+                    errorHandler.accept(cause instanceof Exception ? (Exception) cause : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Integer next = wantedPage;
+                wantedPage = null;
+                if (next != null && !pages.containsKey(next)) {
+                    requestPage(next);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Read a page in a background thread: by keyset when the previous page's cursor is known
+     */
+    KeysetPage<T> fetchPage(String sort, boolean desc, int page, String cursor) {
+        if (page == 0 || cursor != null) {
+            return repository.findPage(sort, desc, cursor, pageSize);
+        }
+        return repository.findPageAt(sort, desc, page * pageSize, pageSize);
+    }
+
+    void pageLoaded(int page, KeysetPage<T> result, long total) {
+        List<T> content = result.getContent();
+        pages.put(page, content);
+        if (result.hasNext()) {
+            nextCursors.put(page, result.getNextCursor());
+        }
+
+        int first = page * pageSize;
+        int end = first + content.size();
+        int newCount = total >= 0 ? (int) Math.min(total, Integer.MAX_VALUE) : rowCount;
+        if (!result.hasNext() && (!content.isEmpty() || page == 0)) {
+            // Last page: the exact count is known
+            newCount = end;
+        } else if (result.hasNext() && newCount <= end) {
+            // The estimate was too low: at least one more row follows
+            newCount = end + 1;
+        }
+
+        int oldCount = rowCount;
+        rowCount = newCount;
+        if (newCount > oldCount) {
+            fireTableRowsInserted(oldCount, newCount - 1);
+        } else if (newCount < oldCount) {
+            fireTableRowsDeleted(newCount, oldCount - 1);
+        }
+        if (Math.min(end, rowCount) > first) {
+            fireTableRowsUpdated(first, Math.min(end, rowCount) - 1);
+        }
+    }
+}
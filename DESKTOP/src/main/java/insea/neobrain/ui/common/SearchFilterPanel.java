@@ -1,21 +1,44 @@
 package insea.neobrain.ui.common;
 
+import insea.neobrain.repository.QueryCancellation;
+
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Reusable search and filter panel for data tables
+ * Reusable search and filter panel for data tables.
+ * Filters the rows already loaded in a TableRowSorter, or, in server-side mode, sends the
+ * term to a limited repository query so the table never has to be loaded in full.
  */
 public class SearchFilterPanel extends JPanel {
     private JTextField searchField;
     private JComboBox<String> filterCombo;
     private TableRowSorter<?> sorter;
+    private DebouncedSearch<?> serverSearch;
+    private volatile String serverFilter;
     private JButton clearButton;
     private JButton exportButton;
     
+    /**
+     * Query of the server-side mode, run in a background thread
+     */
+    @FunctionalInterface
+    public interface ServerSearch<T> {
+        /**
+         * @param term the search term, empty when cleared
+         * @param filter the selected filter option
+         * @param cancellation to pass down to the repository so the query can be cancelled
+         */
+        List<T> search(String term, String filter, QueryCancellation cancellation) throws Exception;
+    }
+    
     public SearchFilterPanel(TableRowSorter<?> sorter, String[] filterOptions) {
         this.sorter = sorter;
         initComponents(filterOptions);
@@ -34,6 +57,34 @@ public class SearchFilterPanel extends JPanel {
         setupEventHandlers();
     }
     
+    /**
+     * Server-side search mode: the search runs once typing pauses, a newer term cancels the
+     * running query, and only the result of the latest term is passed to the result handler
+     * (on the Event Dispatch Thread).
+     */
+    public <T> SearchFilterPanel(String[] filterOptions, ServerSearch<T> search, Consumer<List<T>> resultHandler) {
+        this(filterOptions, search, resultHandler, false);
+    }
+    
+    /**
+     * Server-side search mode with an optional export button
+     */
+    public <T> SearchFilterPanel(String[] filterOptions, ServerSearch<T> search, Consumer<List<T>> resultHandler,
+                                 boolean includeExport) {
+        initComponents(filterOptions);
+        if (includeExport) {
+            exportButton = new JButton("Exporter CSV");
+            exportButton.setToolTipText("Exporter les données vers un fichier CSV");
+        }
+        this.serverFilter = getSelectedFilter();
+        this.serverSearch = new DebouncedSearch<T>(
+            (term, cancellation) -> search.search(term, serverFilter, cancellation),
+            resultHandler,
+            e -> UIUtils.showErrorMessage(this, "Erreur lors de la recherche: " + e.getMessage()));
+        setupLayout();
+        setupEventHandlers();
+    }
+    
     private void initComponents(String[] filterOptions) {
         searchField = new JTextField(20);
         searchField.setToolTipText("Tapez pour rechercher...");
@@ -69,12 +120,32 @@ public class SearchFilterPanel extends JPanel {
     }
     
     private void setupEventHandlers() {
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                performSearch();
-            }
-        });
+        if (serverSearch != null) {
+            searchField.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    serverSearch.termChanged(searchField.getText());
+                }
+                
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    serverSearch.termChanged(searchField.getText());
+                }
+                
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    // Attribute changes only
+                }
+            });
+            searchField.addActionListener(e -> performSearch());
+        } else {
+            searchField.addKeyListener(new KeyAdapter() {
+                @Override
+                public void keyReleased(KeyEvent e) {
+                    performSearch();
+                }
+            });
+        }
         
         filterCombo.addActionListener(e -> performSearch());
         
@@ -84,6 +155,12 @@ public class SearchFilterPanel extends JPanel {
     private void performSearch() {
         String text = searchField.getText().trim();
         
+        if (serverSearch != null) {
+            serverFilter = getSelectedFilter();
+            serverSearch.searchNow(text);
+            return;
+        }
+        
         if (text.isEmpty()) {
             sorter.setRowFilter(null);
         } else {
@@ -95,7 +172,20 @@ public class SearchFilterPanel extends JPanel {
     public void clearSearch() {
         searchField.setText("");
         filterCombo.setSelectedIndex(0);
-        sorter.setRowFilter(null);
+        if (serverSearch != null) {
+            performSearch();
+        } else {
+            sorter.setRowFilter(null);
+        }
+    }
+    
+    /**
+     * Run the server-side search again with the current term, e.g. after the data changed
+     */
+    public void refreshSearch() {
+        if (serverSearch != null) {
+            performSearch();
+        }
     }
     
     public String getSearchText() {
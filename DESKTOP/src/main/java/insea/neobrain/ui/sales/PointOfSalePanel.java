@@ -0,0 +1,394 @@
+package insea.neobrain.ui.sales;
+
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Personnel;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.ClientRepository;
+import insea.neobrain.repository.impl.ClientRepositoryImpl;
+import insea.neobrain.service.CommandeVenteService;
+import insea.neobrain.service.impl.CommandeVenteServiceImpl;
+import insea.neobrain.ui.common.UIConstants;
+import insea.neobrain.ui.common.UIUtils;
+import insea.neobrain.util.SaleCart;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Point-of-sale panel: barcode scans fill an in-memory cart, the sale is saved in one call on checkout.
+ * A keyboard-wedge scanner types the barcode followed by Enter in the scan field. Products already
+ * cached are added on the Event Dispatch Thread without any database access; the first scan of
+ * another product reads it in the background.
+ */
+public class PointOfSalePanel extends JPanel {
+
+    private final Personnel currentUser;
+    private final CommandeVenteService commandeVenteService;
+    private final ClientRepository clientRepository;
+    private final SaleCart cart;
+
+    // UI Components
+    private JTextField scanField;
+    private JSpinner quantitySpinner;
+    private JLabel lastScanLabel;
+    private DefaultTableModel cartTableModel;
+    private JTable cartTable;
+    private JComboBox<Client> clientCombo;
+    private JComboBox<ModePaiement> paymentCombo;
+    private JLabel totalLabel;
+    private JButton removeButton;
+    private JButton cancelButton;
+    private JButton checkoutButton;
+    private boolean busy;
+
+    public PointOfSalePanel(Personnel currentUser) {
+        this.currentUser = currentUser;
+        this.commandeVenteService = new CommandeVenteServiceImpl();
+        this.clientRepository = new ClientRepositoryImpl();
+        this.cart = new SaleCart(commandeVenteService);
+        initializeComponents();
+        setupLayout();
+        setupEventHandlers();
+
+        Thread warmUp = new Thread(cart::warmUp, "sale-cart-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    private void initializeComponents() {
+        scanField = UIUtils.createStyledTextField();
+        scanField.setColumns(20);
+        quantitySpinner = new JSpinner(new SpinnerNumberModel(1, -999, 999, 1));
+
+        lastScanLabel = new JLabel(" ");
+        lastScanLabel.setFont(UIConstants.SUBTITLE_FONT);
+
+        String[] columnNames = {"Code Barre", "Produit", "Prix Unitaire", "Quantité", "Sous-total"};
+        cartTableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        cartTable = UIUtils.createStyledTable();
+        cartTable.setModel(cartTableModel);
+        cartTable.setFocusable(false);
+        UIUtils.setupTableColumnWidths(cartTable, new int[]{130, 250, 100, 80, 100});
+
+        clientCombo = UIUtils.createStyledComboBox(new Client[0]);
+        clientCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value instanceof Client) {
+                    Client client = (Client) value;
+                    setText(client.getPrenom() + " " + client.getNom());
+                }
+                return this;
+            }
+        });
+        paymentCombo = UIUtils.createStyledComboBox(ModePaiement.values());
+
+        totalLabel = new JLabel();
+        totalLabel.setFont(UIConstants.TITLE_FONT);
+        totalLabel.setForeground(UIConstants.PRIMARY_COLOR);
+
+        removeButton = UIUtils.createDangerButton("Remove Line");
+        cancelButton = UIUtils.createSecondaryButton("Cancel Sale");
+        checkoutButton = UIUtils.createSuccessButton("Checkout");
+        updateTotal();
+    }
+
+    private void setupLayout() {
+        setLayout(new BorderLayout());
+        setBackground(Color.WHITE);
+
+        // Title and scan input
+        JLabel titleLabel = new JLabel("Point of Sale");
+        titleLabel.setFont(UIConstants.TITLE_FONT);
+        titleLabel.setForeground(UIConstants.PRIMARY_COLOR);
+
+        JPanel scanPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        scanPanel.setBackground(Color.WHITE);
+        scanPanel.add(new JLabel("Code barre:"));
+        scanPanel.add(scanField);
+        scanPanel.add(new JLabel("Quantité:"));
+        scanPanel.add(quantitySpinner);
+
+        JPanel northPanel = new JPanel(new BorderLayout(5, 5));
+        northPanel.setBackground(Color.WHITE);
+        northPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
+        northPanel.add(titleLabel, BorderLayout.NORTH);
+        northPanel.add(scanPanel, BorderLayout.CENTER);
+        northPanel.add(lastScanLabel, BorderLayout.SOUTH);
+
+        // Cart
+        JScrollPane tableScrollPane = new JScrollPane(cartTable);
+        tableScrollPane.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createEmptyBorder(0, 10, 0, 10),
+            BorderFactory.createLineBorder(UIConstants.BORDER_COLOR)));
+
+        // Payment and buttons
+        JPanel paymentPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        paymentPanel.setBackground(Color.WHITE);
+        paymentPanel.add(new JLabel("Client:"));
+        paymentPanel.add(clientCombo);
+        paymentPanel.add(new JLabel("Paiement:"));
+        paymentPanel.add(paymentCombo);
+        paymentPanel.add(Box.createHorizontalStrut(20));
+        paymentPanel.add(totalLabel);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.setBackground(Color.WHITE);
+        buttonPanel.add(removeButton);
+        buttonPanel.add(cancelButton);
+        buttonPanel.add(checkoutButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBackground(Color.WHITE);
+        southPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 10, 10));
+        southPanel.add(paymentPanel, BorderLayout.WEST);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+
+        add(northPanel, BorderLayout.NORTH);
+        add(tableScrollPane, BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
+    }
+
+    private void setupEventHandlers() {
+        scanField.addActionListener(e -> processScan());
+        removeButton.addActionListener(e -> removeSelectedLine());
+        cancelButton.addActionListener(e -> cancelSale());
+        checkoutButton.addActionListener(e -> checkout());
+    }
+
+    /**
+     * Reload the clients and give the focus to the scan field
+     */
+    public void refreshData() {
+        SwingWorker<List<Client>, Void> worker = new SwingWorker<List<Client>, Void>() {
+            @Override
+            protected List<Client> doInBackground() throws Exception {
+                return clientRepository.findAll();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Object selected = clientCombo.getSelectedItem();
+                    clientCombo.setModel(new DefaultComboBoxModel<>(get().toArray(new Client[0])));
+                    if (selected != null) {
+                        clientCombo.setSelectedItem(selected);
+                    }
+                } catch (Exception e) {
+                    UIUtils.showErrorMessage(PointOfSalePanel.this, "Error loading clients: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+        scanField.requestFocusInWindow();
+    }
+
+    private void processScan() {
+        String barcode = scanField.getText().trim();
+        scanField.setText("");
+        if (barcode.isEmpty()) {
+            return;
+        }
+        int quantity = (Integer) quantitySpinner.getValue();
+        quantitySpinner.setValue(1);
+
+        Produit cached = cart.getCachedProduit(barcode);
+        if (cached != null) {
+            addToCart(barcode, cached, quantity, false);
+            return;
+        }
+
+        // First scan of this product on this terminal, or cached copy expired: read from the database
+        SwingWorker<Produit, Void> worker = new SwingWorker<Produit, Void>() {
+            @Override
+            protected Produit doInBackground() throws Exception {
+                return cart.loadProduit(barcode);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    addToCart(barcode, get(), quantity, true);
+                } catch (Exception e) {
+                    Toolkit.getDefaultToolkit().beep();
+                    showScanMessage("Erreur lors de la lecture du produit: " + e.getMessage(), false);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Read a product refused from the cache again, it may have been restocked or made available since
+     */
+    private void reloadAndAdd(String barcode, Produit produit, int quantity) {
+        SwingWorker<Produit, Void> worker = new SwingWorker<Produit, Void>() {
+            @Override
+            protected Produit doInBackground() throws Exception {
+                return cart.reloadProduit(produit.getIdProduit());
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    addToCart(barcode, get(), quantity, true);
+                } catch (Exception e) {
+                    Toolkit.getDefaultToolkit().beep();
+                    showScanMessage("Erreur lors de la lecture du produit: " + e.getMessage(), false);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * @param fromDatabase true if the product was just read from the database, false if it comes from the cache
+     */
+    private void addToCart(String barcode, Produit produit, int quantity, boolean fromDatabase) {
+        if (busy) {
+            // Scanned, or read in the background, while the sale is being saved
+            Toolkit.getDefaultToolkit().beep();
+            showScanMessage("Vente en cours d'enregistrement, scannez " + barcode + " à nouveau", false);
+            return;
+        }
+        if (produit == null) {
+            Toolkit.getDefaultToolkit().beep();
+            showScanMessage("Code barre inconnu: " + barcode, false);
+            return;
+        }
+        SaleCart.AddStatus status = cart.add(produit, quantity);
+        if (status != SaleCart.AddStatus.ADDED && !fromDatabase) {
+            reloadAndAdd(barcode, produit, quantity);
+            return;
+        }
+        switch (status) {
+            case UNAVAILABLE:
+                Toolkit.getDefaultToolkit().beep();
+                showScanMessage(produit.getNom() + " n'est pas disponible à la vente", false);
+                return;
+            case INSUFFICIENT_STOCK:
+                Toolkit.getDefaultToolkit().beep();
+                showScanMessage("Stock insuffisant pour " + produit.getNom() + " (" + cart.availableStock(produit)
+                    + " disponible(s))", false);
+                return;
+            default:
+                SaleCart.CartLine line = cart.getLine(produit.getIdProduit());
+                showScanMessage(produit.getNom() + " x " + (line != null ? line.getQuantite() : 0), true);
+                refreshCart(produit.getIdProduit());
+        }
+    }
+
+    private void showScanMessage(String message, boolean success) {
+        lastScanLabel.setForeground(success ? UIConstants.SUCCESS_COLOR : UIConstants.DANGER_COLOR);
+        lastScanLabel.setText(message);
+    }
+
+    /**
+     * Show the cart again, selecting the line of a product
+     */
+    private void refreshCart(Long selectedProduitId) {
+        cartTableModel.setRowCount(0);
+        int selectedRow = -1;
+        for (SaleCart.CartLine line : cart.getLines()) {
+            Produit produit = line.getProduit();
+            if (produit.getIdProduit().equals(selectedProduitId)) {
+                selectedRow = cartTableModel.getRowCount();
+            }
+            cartTableModel.addRow(new Object[]{
+                produit.getCodeBarre(),
+                produit.getNom(),
+                produit.getPrix(),
+                line.getQuantite(),
+                line.getSousTotal()
+            });
+        }
+        if (selectedRow >= 0) {
+            cartTable.setRowSelectionInterval(selectedRow, selectedRow);
+            cartTable.scrollRectToVisible(cartTable.getCellRect(selectedRow, 0, true));
+        }
+        updateTotal();
+    }
+
+    private void updateTotal() {
+        totalLabel.setText("Total: " + cart.getTotal() + " (" + cart.getItemCount() + " article(s))");
+    }
+
+    private void removeSelectedLine() {
+        int row = cartTable.getSelectedRow();
+        if (row < 0 || busy) {
+            return;
+        }
+        cart.remove(cart.getLines().get(row).getProduit().getIdProduit());
+        refreshCart(null);
+        scanField.requestFocusInWindow();
+    }
+
+    private void cancelSale() {
+        if (cart.isEmpty() || busy || !UIUtils.showConfirmDialog(this, "Annuler la vente en cours ?")) {
+            return;
+        }
+        cart.clear();
+        refreshCart(null);
+        showScanMessage(" ", true);
+        scanField.requestFocusInWindow();
+    }
+
+    private void checkout() {
+        if (cart.isEmpty() || busy) {
+            return;
+        }
+        Client client = (Client) clientCombo.getSelectedItem();
+        if (client == null) {
+            UIUtils.showWarningMessage(this, "Please select a client.");
+            return;
+        }
+        ModePaiement modePaiement = (ModePaiement) paymentCombo.getSelectedItem();
+        List<SaleCart.CartLine> lines = cart.getLines();
+        setBusy(true);
+
+        SwingWorker<CommandeVente, Void> worker = new SwingWorker<CommandeVente, Void>() {
+            @Override
+            protected CommandeVente doInBackground() throws Exception {
+                return cart.checkout(lines, client, currentUser, modePaiement);
+            }
+
+            @Override
+            protected void done() {
+                setBusy(false);
+                try {
+                    CommandeVente commande = get();
+                    cart.clear();
+                    refreshCart(null);
+                    showScanMessage("Vente enregistrée: " + commande.getNumeroCommande()
+                        + " - " + commande.getTotalTTC(), true);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    // The cart is kept: the cashier can adjust it and check out again
+                    UIUtils.showErrorMessage(PointOfSalePanel.this,
+                        "Erreur lors de l'enregistrement de la vente: " + cause.getMessage());
+                }
+                scanField.requestFocusInWindow();
+            }
+        };
+        worker.execute();
+    }
+
+    private void setBusy(boolean busy) {
+        this.busy = busy;
+        checkoutButton.setEnabled(!busy);
+        cancelButton.setEnabled(!busy);
+        removeButton.setEnabled(!busy);
+        setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+    }
+}
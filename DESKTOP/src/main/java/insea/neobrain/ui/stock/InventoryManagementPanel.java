@@ -2,15 +2,19 @@ package insea.neobrain.ui.stock;
 
 import insea.neobrain.entity.Inventaire;
 import insea.neobrain.entity.Personnel;
+import insea.neobrain.config.ConfigurationManager;
+import insea.neobrain.repository.InventaireRepository;
 import insea.neobrain.service.InventaireService;
 import insea.neobrain.service.impl.InventaireServiceImpl;
 import insea.neobrain.repository.impl.InventaireRepositoryImpl;
 import insea.neobrain.repository.impl.ProduitRepositoryImpl;
+import insea.neobrain.ui.common.PagedTableModel;
 import insea.neobrain.ui.common.UIConstants;
 import insea.neobrain.ui.common.UIUtils;
 
+import org.hibernate.Hibernate;
+
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -22,13 +26,14 @@ import java.util.List;
  */
 public class InventoryManagementPanel extends JPanel implements ActionListener {
     
+    private final InventaireRepository inventaireRepository;
     private final InventaireService inventaireService;
     @SuppressWarnings("unused")
     private final Personnel currentUser;
     
     // UI Components
     private JTable inventoryTable;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Inventaire> tableModel;
     private JButton createButton;
     private JButton viewButton;
     private JButton refreshButton;
@@ -37,11 +42,12 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
     private JComboBox<String> statusFilter;
     
     // Date formatter
-    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     
     public InventoryManagementPanel(Personnel currentUser) {
         this.currentUser = currentUser;
-        this.inventaireService = new InventaireServiceImpl(new InventaireRepositoryImpl(), new ProduitRepositoryImpl());
+        this.inventaireRepository = new InventaireRepositoryImpl();
+        this.inventaireService = new InventaireServiceImpl(inventaireRepository, new ProduitRepositoryImpl());
         initializeComponents();
         setupLayout();
         setupEventHandlers();
@@ -51,15 +57,18 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
     private void initializeComponents() {
         // Table setup
         String[] columnNames = {"ID", "Date Création", "Description", "Statut", "Produits", "Tâches Terminées"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Entity attribute sorting each column on the server, null when not sortable
+        String[] sortAttributes = {"idInventaire", "dateCreation", null, null, null, null};
+        // Rows are read page by page as the table scrolls
+        tableModel = new PagedTableModel<>(inventaireRepository, columnNames, sortAttributes, "dateCreation",
+            InventoryManagementPanel::getColumnValue,
+            ConfigurationManager.getInstance().getTableRowsPerPage(), PagedTableModel.DEFAULT_MAX_PAGES);
+        tableModel.setErrorHandler(e -> UIUtils.showErrorMessage(this,
+            "Erreur lors du chargement des inventaires: " + e.getMessage()));
         
         inventoryTable = UIUtils.createStyledTable();
         inventoryTable.setModel(tableModel);
+        tableModel.installHeaderSorting(inventoryTable);
         
         // Set column widths
         int[] columnWidths = {80, 150, 200, 120, 100, 150};
@@ -188,60 +197,37 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
     }
     
     public void refreshData() {
-        SwingWorker<List<Inventaire>, Void> worker = new SwingWorker<List<Inventaire>, Void>() {
-            @Override
-            protected List<Inventaire> doInBackground() throws Exception {
-                return inventaireService.findAllInventaires();
-            }
-            
-            @Override
-            protected void done() {
-                try {
-                    List<Inventaire> inventaires = get();
-                    updateTable(inventaires);
-                } catch (Exception e) {
-                    UIUtils.showErrorMessage(InventoryManagementPanel.this, 
-                        "Erreur lors du chargement des inventaires: " + e.getMessage());
-                }
-            }
-        };
-        worker.execute();
+        tableModel.reload();
     }
     
     private void updateTable(List<Inventaire> inventaires) {
-        tableModel.setRowCount(0);
-        for (Inventaire inventaire : inventaires) {
-            // Count products
-            String productsCount = getProductsCountDisplay(inventaire);
-            
-            // Avoid accessing lazy-loaded taches collection
-            // Instead, show a placeholder or calculate in service layer
-            String tasksCount = "N/A";
-            try {
-                if (inventaire.getTaches() != null) {
-                    long completedTasks = inventaire.getTaches().stream()
-                        .filter(tache -> tache.getEtatTache() == insea.neobrain.entity.EtatTache.TERMINEE)
-                        .count();
-                    tasksCount = completedTasks + "/" + inventaire.getTaches().size();
-                }
-            } catch (Exception e) {
-                // Lazy initialization exception - just show N/A
-                tasksCount = "N/A";
-            }
-            
-            Object[] row = {
-                inventaire.getIdInventaire(),
-                inventaire.getDateCreation().format(dateFormatter),
-                inventaire.getDescription(),
-                getStatusDisplayNameFromEtat(inventaire.getEtatInventaire()),
-                productsCount,
-                tasksCount
-            };
-            tableModel.addRow(row);
+        tableModel.setRows(inventaires);
+    }
+    
+    private static Object getColumnValue(Inventaire inventaire, int column) {
+        switch (column) {
+            case 0: return inventaire.getIdInventaire();
+            case 1: return inventaire.getDateCreation().format(DATE_FORMATTER);
+            case 2: return inventaire.getDescription();
+            case 3: return getStatusDisplayNameFromEtat(inventaire.getEtatInventaire());
+            case 4: return getProductsCountDisplay(inventaire);
+            case 5: return getTasksCountDisplay(inventaire);
+            default: return null;
+        }
+    }
+    
+    private static String getTasksCountDisplay(Inventaire inventaire) {
+        // The tasks are not loaded with the rows
+        if (inventaire.getTaches() == null || !Hibernate.isInitialized(inventaire.getTaches())) {
+            return "N/A";
         }
+        long completedTasks = inventaire.getTaches().stream()
+            .filter(tache -> tache.getEtatTache() == insea.neobrain.entity.EtatTache.TERMINEE)
+            .count();
+        return completedTasks + "/" + inventaire.getTaches().size();
     }
     
-    private String getProductsCountDisplay(Inventaire inventaire) {
+    private static String getProductsCountDisplay(Inventaire inventaire) {
         Integer total = inventaire.getNombreProduitsTotal();
         Integer counted = inventaire.getNombreProduitsComptes();
         
@@ -256,7 +242,7 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
         }
     }
 
-    private String getStatusDisplayNameFromEtat(String etat) {
+    private static String getStatusDisplayNameFromEtat(String etat) {
         if (etat == null) return "Tous";
         switch (etat) {
             case "EN_ATTENTE": return "En Attente";
@@ -304,10 +290,7 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
         SwingWorker<List<Inventaire>, Void> worker = new SwingWorker<List<Inventaire>, Void>() {
             @Override
             protected List<Inventaire> doInBackground() throws Exception {
-                List<Inventaire> all = inventaireService.findAllInventaires();
-                return all.stream().filter(inv -> {
-                    return selectedStatus.equals(inv.getEtatInventaire());
-                }).toList();
+                return inventaireRepository.findByEtat(selectedStatus);
             }
             @Override
             protected void done() {
@@ -363,7 +346,7 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
             return;
         }
         
-        Long inventoryId = (Long) tableModel.getValueAt(selectedRow, 0);
+        Long inventoryId = (Long) tableModel.getValueAt(inventoryTable.convertRowIndexToModel(selectedRow), 0);
         
         SwingWorker<Inventaire, Void> worker = new SwingWorker<Inventaire, Void>() {
             @Override
@@ -404,10 +387,10 @@ public class InventoryManagementPanel extends JPanel implements ActionListener {
         StringBuilder details = new StringBuilder();
         details.append("ID: ").append(inventaire.getIdInventaire()).append("\n\n");
         details.append("Description: ").append(inventaire.getDescription()).append("\n\n");
-        details.append("Date de création: ").append(inventaire.getDateCreation().format(dateFormatter)).append("\n\n");
+        details.append("Date de création: ").append(inventaire.getDateCreation().format(DATE_FORMATTER)).append("\n\n");
         details.append("Statut: ").append(getStatusDisplayNameFromEtat(inventaire.getEtatInventaire())).append("\n\n");
         if (inventaire.getDateFin() != null) {
-            details.append("Date de fin: ").append(inventaire.getDateFin().format(dateFormatter)).append("\n\n");
+            details.append("Date de fin: ").append(inventaire.getDateFin().format(DATE_FORMATTER)).append("\n\n");
         }
         detailsArea.setText(details.toString());
         JScrollPane scrollPane = new JScrollPane(detailsArea);
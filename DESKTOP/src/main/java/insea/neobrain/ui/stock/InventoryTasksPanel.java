@@ -7,6 +7,7 @@ import insea.neobrain.service.TacheInventaireService;
 import insea.neobrain.service.impl.TacheInventaireServiceImpl;
 import insea.neobrain.ui.common.UIConstants;
 import insea.neobrain.ui.common.UIUtils;
+import insea.neobrain.util.ScanCountSession;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -25,9 +26,12 @@ public class InventoryTasksPanel extends JPanel {
     private DefaultTableModel tableModel;
     private JButton updateTaskButton;
     private JButton viewDetailsButton;
+    private JButton scanCountButton;
+    private JButton claimTasksButton;
     private JComboBox<EtatTache> statusFilterComboBox;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int CLAIM_BATCH_SIZE = 20;
     
     public InventoryTasksPanel(Personnel loggedInUser) {
         this.loggedInUser = loggedInUser;
@@ -81,10 +85,16 @@ public class InventoryTasksPanel extends JPanel {
         
         updateTaskButton = UIUtils.createPrimaryButton("Mettre à jour");
         viewDetailsButton = UIUtils.createSecondaryButton("Voir détails");
+        scanCountButton = UIUtils.createSecondaryButton("Comptage par scan");
+        claimTasksButton = UIUtils.createSecondaryButton("Prendre des tâches");
         
+        claimTasksButton.addActionListener(e -> claimNextTasks());
         updateTaskButton.addActionListener(e -> updateSelectedTask());
         viewDetailsButton.addActionListener(e -> viewTaskDetails());
+        scanCountButton.addActionListener(e -> startScanCounting());
         
+        buttonPanel.add(claimTasksButton);
+        buttonPanel.add(scanCountButton);
         buttonPanel.add(viewDetailsButton);
         buttonPanel.add(updateTaskButton);
         
@@ -123,6 +133,40 @@ public class InventoryTasksPanel extends JPanel {
         }
     }
     
+    private void claimNextTasks() {
+        claimTasksButton.setEnabled(false);
+        
+        // Full inventories leave their tasks in a shared pool, each counter takes the next batch
+        SwingWorker<List<TacheInventaire>, Void> worker = new SwingWorker<List<TacheInventaire>, Void>() {
+            @Override
+            protected List<TacheInventaire> doInBackground() {
+                return taskService.claimNextTasks(loggedInUser, CLAIM_BATCH_SIZE);
+            }
+            
+            @Override
+            protected void done() {
+                claimTasksButton.setEnabled(true);
+                try {
+                    List<TacheInventaire> claimed = get();
+                    if (claimed.isEmpty()) {
+                        JOptionPane.showMessageDialog(InventoryTasksPanel.this,
+                                "Aucune tâche en attente d'attribution",
+                                "Information",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        UIUtils.showSuccessMessage(InventoryTasksPanel.this,
+                                claimed.size() + " tâche(s) vous ont été attribuées");
+                    }
+                    loadTasks();
+                } catch (Exception ex) {
+                    UIUtils.showErrorMessage(InventoryTasksPanel.this,
+                            "Erreur lors de l'attribution des tâches: " + ex.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+    
     private void updateSelectedTask() {
         int selectedRow = taskTable.getSelectedRow();
         if (selectedRow < 0) {
@@ -180,6 +224,43 @@ public class InventoryTasksPanel extends JPanel {
         new TaskDetailsDialog(task).setVisible(true);
     }
     
+    private void startScanCounting() {
+        int selectedRow = taskTable.getSelectedRow();
+        if (selectedRow < 0) {
+            JOptionPane.showMessageDialog(this,
+                    "Veuillez sélectionner une tâche de l'inventaire à compter",
+                    "Information",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        
+        Long inventaireId = (Long) tableModel.getValueAt(selectedRow, 2);
+        scanCountButton.setEnabled(false);
+        
+        // Loading the tasks and replaying the journal may take a moment on a large inventory
+        SwingWorker<ScanCountSession, Void> worker = new SwingWorker<ScanCountSession, Void>() {
+            @Override
+            protected ScanCountSession doInBackground() throws Exception {
+                return ScanCountSession.open(inventaireId);
+            }
+            
+            @Override
+            protected void done() {
+                scanCountButton.setEnabled(true);
+                try {
+                    ScanCountSession session = get();
+                    new ScanCountingDialog(SwingUtilities.getWindowAncestor(InventoryTasksPanel.this),
+                            session, taskService).setVisible(true);
+                    loadTasks();
+                } catch (Exception ex) {
+                    UIUtils.showErrorMessage(InventoryTasksPanel.this,
+                            "Erreur lors de l'ouverture du comptage: " + ex.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+    
     /**
      * Dialog for updating an inventory task
      */
@@ -402,7 +483,8 @@ public class InventoryTasksPanel extends JPanel {
             
             gbc.gridy++;
             addDetailField(detailsPanel, gbc, "Personnel assigné:", 
-                    task.getPersonnel().getNom() + " " + task.getPersonnel().getPrenom());
+                    task.getPersonnel() != null ?
+                    task.getPersonnel().getNom() + " " + task.getPersonnel().getPrenom() : "Non assigné");
             
             gbc.gridy++;
             addDetailField(detailsPanel, gbc, "État:", 
@@ -237,11 +237,10 @@ public class ProductFormDialog extends JDialog {
 
             // Set basic fields
             String code = codeField.getText().trim();
-            if (code.isEmpty()) {
-                // Generate code if empty
-                code = "PROD_" + System.currentTimeMillis();
+            if (!code.isEmpty()) {
+                produit.setCodeProduit(code);
             }
-            produit.setCodeProduit(code);
+            // Otherwise a new product gets its code from the numbering sequence when saved
             produit.setNom(nomField.getText().trim());
             produit.setDescription(descriptionArea.getText().trim());
             Object selectedCategorie = categorieComboBox.getSelectedItem();
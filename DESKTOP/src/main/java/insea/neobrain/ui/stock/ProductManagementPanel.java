@@ -2,14 +2,19 @@ package insea.neobrain.ui.stock;
 
 import insea.neobrain.entity.CategorieProduit;
 import insea.neobrain.entity.Produit;
+import insea.neobrain.config.ConfigurationManager;
+import insea.neobrain.repository.ProduitRepository;
 import insea.neobrain.service.ProduitService;
 import insea.neobrain.service.impl.ProduitServiceImpl;
 import insea.neobrain.repository.impl.ProduitRepositoryImpl;
+import insea.neobrain.ui.common.DebouncedSearch;
+import insea.neobrain.ui.common.PagedTableModel;
 import insea.neobrain.ui.common.UIConstants;
 import insea.neobrain.ui.common.UIUtils;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -21,11 +26,14 @@ import java.util.Optional;
  */
 public class ProductManagementPanel extends JPanel implements ActionListener {
     
+    private static final int SEARCH_LIMIT = 200;
+    
+    private final ProduitRepository produitRepository;
     private final ProduitService produitService;
     
     // UI Components
     private JTable productTable;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Produit> tableModel;
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
@@ -33,9 +41,12 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
     private JTextField searchField;
     private JButton searchButton;
     private JComboBox<CategorieProduit> categoryFilter;
+    private DebouncedSearch<Produit> productSearch;
+    private DebouncedSearch<Produit> categorySearch;
     
     public ProductManagementPanel() {
-        this.produitService = new ProduitServiceImpl(new ProduitRepositoryImpl());
+        this.produitRepository = new ProduitRepositoryImpl();
+        this.produitService = new ProduitServiceImpl(produitRepository);
         initializeComponents();
         setupLayout();
         setupEventHandlers();
@@ -45,15 +56,18 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
     private void initializeComponents() {
         // Table setup
         String[] columnNames = {"ID", "Reference", "Nom", "Description", "Prix", "Catégorie", "Stock", "Disponible"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        // Entity attribute sorting each column on the server, null when not sortable
+        String[] sortAttributes = {"idProduit", "codeProduit", "nom", null, "prix", "categorie", "quantiteStock", null};
+        // Rows are read page by page as the table scrolls (AbstractTableModel cells are read-only)
+        tableModel = new PagedTableModel<>(produitRepository, columnNames, sortAttributes, "nom",
+            ProductManagementPanel::getColumnValue,
+            ConfigurationManager.getInstance().getTableRowsPerPage(), PagedTableModel.DEFAULT_MAX_PAGES);
+        tableModel.setErrorHandler(e -> UIUtils.showErrorMessage(this,
+            "Error loading product data: " + e.getMessage()));
         
         productTable = UIUtils.createStyledTable();
         productTable.setModel(tableModel);
+        tableModel.installHeaderSorting(productTable);
         UIUtils.setupTableColumnWidths(productTable, new int[]{50, 100, 150, 200, 80, 120, 80, 80});
         
         // Buttons
@@ -150,7 +164,33 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
         // Category filter change
         categoryFilter.addActionListener(e -> performFilter());
         
-        // Enter key for search
+        // Search as you type, Enter searches immediately
+        productSearch = new DebouncedSearch<Produit>(
+            (term, cancellation) -> produitService.searchProduits(term, SEARCH_LIMIT, cancellation),
+            this::updateTable,
+            e -> UIUtils.showErrorMessage(this, "Error searching products: " + e.getMessage()));
+        // The category filter goes through the same cancellation: only the latest selection is shown
+        categorySearch = new DebouncedSearch<Produit>(
+            (name, cancellation) -> produitService.findProduitsByCategorie(
+                CategorieProduit.valueOf(name), SEARCH_LIMIT, cancellation),
+            this::updateTable,
+            e -> UIUtils.showErrorMessage(this, "Error filtering products: " + e.getMessage()));
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTermChanged();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTermChanged();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes only
+            }
+        });
         searchField.addActionListener(e -> performSearch());
         
         // Double-click to edit
@@ -179,24 +219,9 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
     }
     
     public void refreshData() {
-        SwingWorker<List<Produit>, Void> worker = new SwingWorker<List<Produit>, Void>() {
-            @Override
-            protected List<Produit> doInBackground() throws Exception {
-                return produitService.findAllProduits();
-            }
-            
-            @Override
-            protected void done() {
-                try {
-                    List<Produit> products = get();
-                    updateTable(products);
-                } catch (Exception e) {
-                    UIUtils.showErrorMessage(ProductManagementPanel.this, 
-                        "Error loading product data: " + e.getMessage());
-                }
-            }
-        };
-        worker.execute();
+        productSearch.cancel();
+        categorySearch.cancel();
+        tableModel.reload();
     }
     
     /**
@@ -207,19 +232,29 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
     }
     
     private void updateTable(List<Produit> products) {
-        tableModel.setRowCount(0);
-        for (Produit product : products) {
-            Object[] row = {
-                product.getIdProduit(),
-                product.getCodeProduit(), // Use getCodeProduit instead of getReference
-                product.getNom(), // Use getNom instead of getNomProduit 
-                product.getDescription(),
-                product.getPrix(), // Use getPrix instead of getPrixUnitaire
-                product.getCategorie(),
-                product.getQuantiteStock(),
-                product.getDisponible() ? "Yes" : "No" // Use getDisponible instead of isDisponible
-            };
-            tableModel.addRow(row);
+        tableModel.setRows(products);
+    }
+    
+    private static Object getColumnValue(Produit product, int column) {
+        switch (column) {
+            case 0: return product.getIdProduit();
+            case 1: return product.getCodeProduit();
+            case 2: return product.getNom();
+            case 3: return product.getDescription();
+            case 4: return product.getPrix();
+            case 5: return product.getCategorie();
+            case 6: return product.getQuantiteStock();
+            case 7: return Boolean.TRUE.equals(product.getDisponible()) ? "Yes" : "No";
+            default: return null;
+        }
+    }
+    
+    private void searchTermChanged() {
+        if (searchField.getText().trim().isEmpty()) {
+            refreshData();
+        } else {
+            categorySearch.cancel();
+            productSearch.termChanged(searchField.getText());
         }
     }
     
@@ -229,52 +264,18 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
             refreshData();
             return;
         }
-        
-        SwingWorker<List<Produit>, Void> worker = new SwingWorker<List<Produit>, Void>() {
-            @Override
-            protected List<Produit> doInBackground() throws Exception {
-                return produitService.findProduitsByName(searchTerm);
-            }
-            
-            @Override
-            protected void done() {
-                try {
-                    List<Produit> results = get();
-                    updateTable(results);
-                } catch (Exception e) {
-                    UIUtils.showErrorMessage(ProductManagementPanel.this, 
-                        "Error searching products: " + e.getMessage());
-                }
-            }
-        };
-        worker.execute();
+        categorySearch.cancel();
+        productSearch.searchNow(searchTerm);
     }
     
     private void performFilter() {
+        productSearch.cancel();
         CategorieProduit selectedCategory = (CategorieProduit) categoryFilter.getSelectedItem();
         if (selectedCategory == null) {
             refreshData();
             return;
         }
-        
-        SwingWorker<List<Produit>, Void> worker = new SwingWorker<List<Produit>, Void>() {
-            @Override
-            protected List<Produit> doInBackground() throws Exception {
-                return produitService.findProduitsByCategorie(selectedCategory);
-            }
-            
-            @Override
-            protected void done() {
-                try {
-                    List<Produit> results = get();
-                    updateTable(results);
-                } catch (Exception e) {
-                    UIUtils.showErrorMessage(ProductManagementPanel.this, 
-                        "Error filtering products: " + e.getMessage());
-                }
-            }
-        };
-        worker.execute();
+        categorySearch.searchNow(selectedCategory.name());
     }
     
     private void showAddProductDialog() {
@@ -290,7 +291,12 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
             return;
         }
         
-        Long productId = (Long) tableModel.getValueAt(selectedRow, 0);
+        Produit selected = tableModel.getRow(productTable.convertRowIndexToModel(selectedRow));
+        if (selected == null) {
+            // Page still loading
+            return;
+        }
+        Long productId = selected.getIdProduit();
         
         SwingWorker<Optional<Produit>, Void> worker = new SwingWorker<Optional<Produit>, Void>() {
             @Override
@@ -352,8 +358,13 @@ public class ProductManagementPanel extends JPanel implements ActionListener {
             return;
         }
         
-        Long productId = (Long) tableModel.getValueAt(selectedRow, 0);
-        String productName = (String) tableModel.getValueAt(selectedRow, 2);
+        Produit selected = tableModel.getRow(productTable.convertRowIndexToModel(selectedRow));
+        if (selected == null) {
+            // Page still loading
+            return;
+        }
+        Long productId = selected.getIdProduit();
+        String productName = selected.getNom();
         
         boolean confirmed = UIUtils.showConfirmDialog(this, 
             "Are you sure you want to delete product '" + productName + "'?\nThis action cannot be undone.");
@@ -3,19 +3,22 @@ package insea.neobrain.ui.stock;
 import insea.neobrain.entity.Reclamation;
 import insea.neobrain.entity.EtatReclamation;
 import insea.neobrain.entity.TypeReclamation;
+import insea.neobrain.config.ConfigurationManager;
+import insea.neobrain.repository.KeysetPage;
+import insea.neobrain.repository.QueryCancellation;
+import insea.neobrain.repository.ReclamationRepository;
+import insea.neobrain.repository.impl.ReclamationRepositoryImpl;
 import insea.neobrain.service.ReclamationService;
+import insea.neobrain.ui.common.PagedTableModel;
 import insea.neobrain.ui.common.SearchFilterPanel;
 import insea.neobrain.ui.common.UIUtils;
 import insea.neobrain.util.ExportUtil;
 import insea.neobrain.util.AuditLogger;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,12 +26,21 @@ import java.util.List;
  */
 public class ReclamationManagementPanel extends JPanel {
     
+    private static final int SEARCH_LIMIT = 200;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final String[] COLUMNS = {
+        "ID", "Date", "Type", "État", "Description", "Commande", "Client"
+    };
+    private static final String[] FILTER_OPTIONS =
+        {"Tous", "En Attente", "Validées", "Refusées", "Retours", "Échecs Réception"};
+    
     private final ReclamationService reclamationService;
+    private final ReclamationRepository reclamationRepository;
     private final String currentUsername;
     
     private JTable reclamationTable;
-    private DefaultTableModel tableModel;
-    private TableRowSorter<DefaultTableModel> rowSorter;
+    private PagedTableModel<Reclamation> tableModel;
     private SearchFilterPanel searchPanel;
     
     private JButton validateButton;
@@ -39,7 +51,13 @@ public class ReclamationManagementPanel extends JPanel {
     private JLabel statsLabel;
     
     public ReclamationManagementPanel(ReclamationService reclamationService, String currentUsername) {
+        this(reclamationService, new ReclamationRepositoryImpl(), currentUsername);
+    }
+    
+    public ReclamationManagementPanel(ReclamationService reclamationService,
+                                      ReclamationRepository reclamationRepository, String currentUsername) {
         this.reclamationService = reclamationService;
+        this.reclamationRepository = reclamationRepository;
         this.currentUsername = currentUsername;
         
         initComponents();
@@ -50,29 +68,25 @@ public class ReclamationManagementPanel extends JPanel {
     }
     
     private void initComponents() {
-        // Create table model
-        String[] columns = {
-            "ID", "Date", "Type", "État", "Description", "Commande", "Client"
-        };
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
+        // Rows are read page by page as the table scrolls, sorted by the database
+        String[] sortAttributes = {
+            "idReclamation", "dateReclamation", "typeReclamation", "etatReclamation", null, null, null
         };
+        tableModel = new PagedTableModel<>(reclamationRepository, COLUMNS, sortAttributes, "dateReclamation",
+            ReclamationManagementPanel::getColumnValue,
+            ConfigurationManager.getInstance().getTableRowsPerPage(), PagedTableModel.DEFAULT_MAX_PAGES);
+        tableModel.setErrorHandler(e -> JOptionPane.showMessageDialog(this,
+            "Erreur lors du chargement des réclamations: " + e.getMessage(),
+            "Erreur", JOptionPane.ERROR_MESSAGE));
         
         // Create table
         reclamationTable = new JTable(tableModel);
         reclamationTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         reclamationTable.setRowHeight(25);
+        tableModel.installHeaderSorting(reclamationTable);
         
-        // Setup row sorter
-        rowSorter = new TableRowSorter<>(tableModel);
-        reclamationTable.setRowSorter(rowSorter);
-        
-        // Create search panel
-        String[] filterOptions = {"Tous", "En Attente", "Validées", "Refusées", "Retours", "Échecs Réception"};
-        searchPanel = new SearchFilterPanel(rowSorter, filterOptions, true);
+        // Search panel: the term and the filter are sent to the database, only the matches are loaded
+        searchPanel = new SearchFilterPanel(FILTER_OPTIONS, this::searchReclamations, this::showSearchResults, true);
         
         // Create buttons
         validateButton = UIUtils.createStyledButton("Valider", UIUtils.SUCCESS_COLOR);
@@ -122,53 +136,65 @@ public class ReclamationManagementPanel extends JPanel {
         refuseButton.addActionListener(e -> refuseSelectedReclamation());
         detailsButton.addActionListener(e -> showReclamationDetails());
         refreshButton.addActionListener(e -> {
-            loadReclamations();
+            searchPanel.refreshSearch();
             updateStats();
         });
         
         // Export handler
         searchPanel.addExportActionListener(e -> exportReclamations());
-        
-        // Filter handler for search panel
-        searchPanel.addExportActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                String filter = searchPanel.getSelectedFilter();
-                applyFilter(filter);
-            }
-        });
     }
     
     private void loadReclamations() {
-        try {
-            List<Reclamation> reclamations = reclamationService.findAll();
-            updateTable(reclamations);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                "Erreur lors du chargement des réclamations: " + e.getMessage(),
-                "Erreur", JOptionPane.ERROR_MESSAGE);
+        tableModel.reload();
+    }
+    
+    /**
+     * Server-side search, run in a background thread by the search panel
+     */
+    private List<Reclamation> searchReclamations(String term, String filter, QueryCancellation cancellation) {
+        if (showsAll(term, filter)) {
+            // The full list is loaded by showSearchResults
+            return new ArrayList<>();
         }
+        EtatReclamation etat = null;
+        TypeReclamation type = null;
+        switch (filter) {
+            case "En Attente": etat = EtatReclamation.EN_ATTENTE; break;
+            case "Validées": etat = EtatReclamation.VALIDEE; break;
+            case "Refusées": etat = EtatReclamation.REFUSEE; break;
+            case "Retours": type = TypeReclamation.RETOUR; break;
+            case "Échecs Réception": type = TypeReclamation.ECHEC_RECEPTION; break;
+            default: break;
+        }
+        return reclamationRepository.search(term, etat, type, SEARCH_LIMIT, cancellation);
     }
     
-    private void updateTable(List<Reclamation> reclamations) {
-        tableModel.setRowCount(0);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        
-        for (Reclamation reclamation : reclamations) {
-            Object[] row = {
-                reclamation.getIdReclamation(),
-                reclamation.getDateReclamation().format(formatter),
-                reclamation.getTypeReclamation().getDisplayName(),
-                reclamation.getEtatReclamation().getDisplayName(),
-                truncateText(reclamation.getDescription(), 50),
-                reclamation.getLigneCommande().getIdLigneVente(),
-                getClientName(reclamation)
-            };
-            tableModel.addRow(row);
+    private void showSearchResults(List<Reclamation> reclamations) {
+        if (showsAll(searchPanel.getSearchText(), searchPanel.getSelectedFilter())) {
+            loadReclamations();
+        } else {
+            tableModel.setRows(reclamations);
+        }
+    }
+    
+    private static boolean showsAll(String term, String filter) {
+        return term.isEmpty() && FILTER_OPTIONS[0].equals(filter);
+    }
+    
+    private static Object getColumnValue(Reclamation reclamation, int column) {
+        switch (column) {
+            case 0: return reclamation.getIdReclamation();
+            case 1: return reclamation.getDateReclamation().format(DATE_FORMAT);
+            case 2: return reclamation.getTypeReclamation().getDisplayName();
+            case 3: return reclamation.getEtatReclamation().getDisplayName();
+            case 4: return truncateText(reclamation.getDescription(), 50);
+            case 5: return reclamation.getLigneCommande().getIdLigneVente();
+            case 6: return getClientName(reclamation);
+            default: return null;
         }
     }
     
-    private String getClientName(Reclamation reclamation) {
+    private static String getClientName(Reclamation reclamation) {
         try {
             if (reclamation.getLigneCommande() != null && 
                 reclamation.getLigneCommande().getCommandeVente() != null &&
@@ -182,7 +208,7 @@ public class ReclamationManagementPanel extends JPanel {
         return "N/A";
     }
     
-    private String truncateText(String text, int maxLength) {
+    private static String truncateText(String text, int maxLength) {
         if (text == null) return "";
         return text.length() > maxLength ? text.substring(0, maxLength) + "..." : text;
     }
@@ -194,9 +220,8 @@ public class ReclamationManagementPanel extends JPanel {
         if (hasSelection) {
             int selectedRow = reclamationTable.getSelectedRow();
             if (selectedRow >= 0) {
-                String status = (String) tableModel.getValueAt(
-                    reclamationTable.convertRowIndexToModel(selectedRow), 3);
-                isPending = "En Attente".equals(status);
+                Reclamation selected = tableModel.getRow(reclamationTable.convertRowIndexToModel(selectedRow));
+                isPending = selected != null && selected.getEtatReclamation() == EtatReclamation.EN_ATTENTE;
             }
         }
         
@@ -223,7 +248,7 @@ public class ReclamationManagementPanel extends JPanel {
                     JOptionPane.showMessageDialog(this,
                         "Réclamation validée avec succès",
                         "Succès", JOptionPane.INFORMATION_MESSAGE);
-                    loadReclamations();
+                    searchPanel.refreshSearch();
                     updateStats();
                     AuditLogger.logUserAction(currentUsername, "VALIDATE_RECLAMATION",
                         "Validated reclamation ID: " + reclamationId);
@@ -260,7 +285,7 @@ public class ReclamationManagementPanel extends JPanel {
                     JOptionPane.showMessageDialog(this,
                         "Réclamation refusée avec succès",
                         "Succès", JOptionPane.INFORMATION_MESSAGE);
-                    loadReclamations();
+                    searchPanel.refreshSearch();
                     updateStats();
                     AuditLogger.logUserAction(currentUsername, "REFUSE_RECLAMATION",
                         "Refused reclamation ID: " + reclamationId + ", Reason: " + reason);
@@ -368,21 +393,52 @@ public class ReclamationManagementPanel extends JPanel {
         }
     }
     
-    private void applyFilter(String filter) {
-        // This would be implemented to filter based on the selected option
-        // For now, we'll just refresh the table
-        loadReclamations();
-    }
-    
     private void exportReclamations() {
-        ExportUtil.exportTableToCSV(reclamationTable, "reclamations");
+        if (!tableModel.isPaged()) {
+            // Search results: all the rows are in the table
+            ExportUtil.exportTableToCSV(reclamationTable, "reclamations");
+            return;
+        }
+        // The table only holds the pages displayed recently: read every page for the export
+        SwingWorker<List<Reclamation>, Void> worker = new SwingWorker<List<Reclamation>, Void>() {
+            @Override
+            protected List<Reclamation> doInBackground() {
+                List<Reclamation> reclamations = new ArrayList<>();
+                String cursor = null;
+                do {
+                    KeysetPage<Reclamation> page =
+                        reclamationRepository.findPage("dateReclamation", false, cursor, EXPORT_PAGE_SIZE);
+                    reclamations.addAll(page.getContent());
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+                return reclamations;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    ExportUtil.exportListToCSV(get(), COLUMNS, reclamation -> {
+                        String[] row = new String[COLUMNS.length];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = String.valueOf(getColumnValue(reclamation, i));
+                        }
+                        return row;
+                    }, "reclamations");
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(ReclamationManagementPanel.this,
+                        "Erreur lors de l'export: " + e.getMessage(),
+                        "Erreur", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
     }
     
     /**
      * Refresh data in the panel
      */
     public void refreshData() {
-        loadReclamations();
+        searchPanel.refreshSearch();
         updateStats();
     }
 }
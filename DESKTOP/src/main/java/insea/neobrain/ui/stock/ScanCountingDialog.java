@@ -0,0 +1,223 @@
+package insea.neobrain.ui.stock;
+
+import insea.neobrain.service.TacheInventaireService;
+import insea.neobrain.ui.common.UIConstants;
+import insea.neobrain.ui.common.UIUtils;
+import insea.neobrain.util.ScanCountSession;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Dialog for counting an inventory with a barcode scanner.
+ * A keyboard-wedge scanner types the barcode followed by Enter in the scan field; each scan is
+ * resolved and counted locally by the ScanCountSession, the database is written in the background.
+ */
+public class ScanCountingDialog extends JDialog {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final int COUNT_COLUMN = 3;
+
+    private final ScanCountSession session;
+    private final TacheInventaireService taskService;
+    private final Map<Long, Integer> rowByTask = new HashMap<>();
+    private DefaultTableModel tableModel;
+    private JTable countTable;
+    private JTextField scanField;
+    private JSpinner quantitySpinner;
+    private JLabel lastScanLabel;
+    private JLabel statusLabel;
+    private Timer statusTimer;
+
+    public ScanCountingDialog(Window owner, ScanCountSession session, TacheInventaireService taskService) {
+        super(owner, "Comptage par scan - Inventaire #" + session.getInventaireId(), ModalityType.APPLICATION_MODAL);
+        this.session = session;
+        this.taskService = taskService;
+
+        initComponents();
+        loadRows();
+
+        setSize(700, 550);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeSession(false);
+            }
+        });
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout(10, 10));
+
+        // Scan input
+        JPanel scanPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        scanPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        scanPanel.add(new JLabel("Code barre:"));
+        scanField = UIUtils.createStyledTextField();
+        scanField.setColumns(20);
+        scanField.addActionListener(e -> processScan());
+        scanPanel.add(scanField);
+        scanPanel.add(new JLabel("Quantité:"));
+        quantitySpinner = new JSpinner(new SpinnerNumberModel(1, -999, 999, 1));
+        scanPanel.add(quantitySpinner);
+
+        lastScanLabel = new JLabel(" ");
+        lastScanLabel.setFont(UIConstants.SUBTITLE_FONT);
+        lastScanLabel.setBorder(BorderFactory.createEmptyBorder(0, 15, 0, 10));
+
+        JPanel northPanel = new JPanel(new BorderLayout(5, 5));
+        northPanel.add(scanPanel, BorderLayout.NORTH);
+        northPanel.add(lastScanLabel, BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
+
+        // Counts
+        String[] columnNames = {"Code Barre", "Produit", "Emplacement", "Qté Comptée"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        countTable = UIUtils.createStyledTable();
+        countTable.setModel(tableModel);
+        countTable.setFocusable(false);
+        add(new JScrollPane(countTable), BorderLayout.CENTER);
+
+        // Status and buttons
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        statusLabel = new JLabel(" ");
+        statusLabel.setFont(UIConstants.NORMAL_FONT);
+        southPanel.add(statusLabel, BorderLayout.WEST);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton closeButton = UIUtils.createSecondaryButton("Fermer");
+        JButton finishButton = UIUtils.createPrimaryButton("Terminer le comptage");
+        closeButton.addActionListener(e -> closeSession(false));
+        finishButton.addActionListener(e -> closeSession(true));
+        buttonPanel.add(closeButton);
+        buttonPanel.add(finishButton);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+        add(southPanel, BorderLayout.SOUTH);
+
+        statusTimer = new Timer(1000, e -> updateStatus());
+        statusTimer.start();
+    }
+
+    private void loadRows() {
+        for (ScanCountSession.ScanResult row : session.getAllTasks()) {
+            rowByTask.put(row.getTask().getIdTacheInventaire(), tableModel.getRowCount());
+            tableModel.addRow(new Object[]{
+                row.getBarcode(),
+                row.getTask().getProduit().getNom(),
+                row.getTask().getProduit().getEmplacement(),
+                row.getCount()
+            });
+        }
+        updateStatus();
+    }
+
+    private void processScan() {
+        String barcode = scanField.getText().trim();
+        scanField.setText("");
+        if (barcode.isEmpty()) {
+            return;
+        }
+
+        try {
+            ScanCountSession.ScanResult result = session.scan(barcode, (Integer) quantitySpinner.getValue());
+            quantitySpinner.setValue(1);
+
+            if (!result.isKnown()) {
+                Toolkit.getDefaultToolkit().beep();
+                lastScanLabel.setForeground(UIConstants.DANGER_COLOR);
+                lastScanLabel.setText("Code barre inconnu dans cet inventaire: " + barcode);
+                return;
+            }
+
+            lastScanLabel.setForeground(UIConstants.SUCCESS_COLOR);
+            lastScanLabel.setText(result.getTask().getProduit().getNom() + " : " + result.getCount());
+
+            Integer row = rowByTask.get(result.getTask().getIdTacheInventaire());
+            if (row != null) {
+                tableModel.setValueAt(result.getCount(), row, COUNT_COLUMN);
+                countTable.setRowSelectionInterval(row, row);
+                countTable.scrollRectToVisible(countTable.getCellRect(row, 0, true));
+            }
+        } catch (Exception ex) {
+            Toolkit.getDefaultToolkit().beep();
+            UIUtils.showErrorMessage(this, "Erreur lors de l'enregistrement du scan: " + ex.getMessage());
+        } finally {
+            scanField.requestFocusInWindow();
+        }
+    }
+
+    private void updateStatus() {
+        StringBuilder status = new StringBuilder();
+        status.append("En attente d'enregistrement: ").append(session.getPendingCount());
+        if (session.getLastFlushTime() != null) {
+            status.append("  |  Dernier enregistrement: ").append(session.getLastFlushTime().format(TIME_FORMATTER));
+        }
+        if (session.getLastFlushError() != null) {
+            status.append("  |  Base de données indisponible, comptes conservés localement");
+            statusLabel.setForeground(UIConstants.WARNING_COLOR);
+        } else {
+            statusLabel.setForeground(UIConstants.DARK_GRAY);
+        }
+        statusLabel.setText(status.toString());
+    }
+
+    /**
+     * Save the remaining counts and close the dialog; when finishing, the counted tasks are completed
+     */
+    private void closeSession(boolean finish) {
+        if (finish && !UIUtils.showConfirmDialog(this,
+                "Terminer les tâches comptées ? Le stock des produits sera mis à jour avec les quantités comptées.")) {
+            return;
+        }
+        statusTimer.stop();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                session.close();
+                if (!finish) {
+                    return 0;
+                }
+                // The saved counts include the scans of the other counters of this inventory
+                List<Long> taskIds = session.getCountedTasks().stream()
+                    .map(result -> result.getTask().getIdTacheInventaire())
+                    .collect(Collectors.toList());
+                return taskService.completeCountedTasks(session.getInventaireId(), taskIds);
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    int completed = get();
+                    if (finish) {
+                        UIUtils.showSuccessMessage(ScanCountingDialog.this, completed + " tâche(s) terminée(s).");
+                    }
+                } catch (Exception e) {
+                    UIUtils.showErrorMessage(ScanCountingDialog.this,
+                        "Erreur lors de l'enregistrement des comptages: " + e.getMessage()
+                        + "\nLes comptages sont conservés et seront repris à la prochaine ouverture.");
+                }
+                dispose();
+            }
+        };
+        worker.execute();
+    }
+}
@@ -8,6 +8,7 @@ import insea.neobrain.service.impl.ReclamationServiceImpl;
 import insea.neobrain.ui.common.UIConstants;
 import insea.neobrain.ui.common.UIUtils;
 import insea.neobrain.ui.login.LoginWindow;
+import insea.neobrain.ui.sales.PointOfSalePanel;
 
 import javax.swing.*;
 import java.awt.*;
@@ -42,6 +43,7 @@ public class StockDashboard extends JFrame implements ActionListener {
     private InventoryManagementPanel inventoryPanel;
     private InventoryTasksPanel tasksPanel;
     private ReclamationManagementPanel reclamationPanel;
+    private PointOfSalePanel salesPanel;
     
     public StockDashboard(Personnel currentUser) {
         this.currentUser = currentUser;
@@ -91,6 +93,7 @@ public class StockDashboard extends JFrame implements ActionListener {
         if (isStockManager) {
             productPanel = new ProductManagementPanel();
             inventoryPanel = new InventoryManagementPanel(currentUser);
+            salesPanel = new PointOfSalePanel(currentUser);
         }
         tasksPanel = new InventoryTasksPanel(currentUser);
         reclamationPanel = new ReclamationManagementPanel(reclamationService, currentUser.getEmail());
@@ -100,6 +103,7 @@ public class StockDashboard extends JFrame implements ActionListener {
         if (isStockManager) {
             contentPanel.add(productPanel, "PRODUCTS");
             contentPanel.add(inventoryPanel, "INVENTORY");
+            contentPanel.add(salesPanel, "SALES");
         }
         contentPanel.add(tasksPanel, "TASKS");
         contentPanel.add(reclamationPanel, "RECLAMATIONS");
@@ -307,7 +311,10 @@ public class StockDashboard extends JFrame implements ActionListener {
     }
     
     private void showSalesOrders() {
-        UIUtils.showWarningMessage(this, "Sales Orders functionality will be implemented in a future version.");
+        if (isStockManager && salesPanel != null) {
+            cardLayout.show(contentPanel, "SALES");
+            salesPanel.refreshData();
+        }
     }
     
     private void handleLogout() {
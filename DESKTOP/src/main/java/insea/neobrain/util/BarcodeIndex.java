@@ -0,0 +1,335 @@
+package insea.neobrain.util;
+
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.repository.impl.ProduitRepositoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Process-wide barcode to product ID index.
+ * Loaded on the first lookup, kept current by the product service on create, update and delete,
+ * and cross-checked in the background against the products changed by other clients.
+ *
+ * Numeric barcodes (the normal case, 8 to 14 digits) are stored as a long key, packed with their
+ * length so leading zeros are kept, in a primitive open-addressing map, with a reverse map from
+ * product ID to key so a product's barcode is dropped without a scan: about 60 MB for a million
+ * products. Other barcodes go to a pair of regular maps.
+ */
+public class BarcodeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarcodeIndex.class);
+    private static final long REFRESH_INTERVAL_MS = 60_000;
+    // Re-read a window before the last check: other clients' clocks may be slightly off
+    private static final long REFRESH_OVERLAP_MINUTES = 2;
+    private static final int MAX_NUMERIC_LENGTH = 15;
+    // Each new or changed barcode scans the table for the previous one: beyond this, reload instead
+    private static final int MAX_INCREMENTAL_CHANGES = 500;
+
+    private static BarcodeIndex instance;
+
+    private final ProduitRepository repository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService refresher;
+    private LongLongHashMap numericCodes;
+    private LongLongHashMap numericKeysById;
+    private Map<String, Long> otherCodes;
+    private Map<Long, String> otherCodesById;
+    // Sum of the indexed product IDs, compared with the database to detect deletions
+    private long idSum;
+    private volatile boolean loaded;
+    private LocalDateTime lastCheck;
+
+    BarcodeIndex(ProduitRepository repository, long refreshIntervalMillis) {
+        this.repository = repository;
+        if (refreshIntervalMillis > 0) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "barcode-index-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMillis, refreshIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        } else {
+            this.refresher = null;
+        }
+    }
+
+    public static synchronized BarcodeIndex getInstance() {
+        if (instance == null) {
+            instance = new BarcodeIndex(new ProduitRepositoryImpl(), REFRESH_INTERVAL_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Find the product having a barcode
+     * @param codeBarre the barcode
+     * @return the product ID, or null if no product of the index has this barcode
+     */
+    public Long findProduitId(String codeBarre) {
+        if (codeBarre == null || codeBarre.isEmpty()) {
+            return null;
+        }
+        ensureLoaded();
+        long key = numericKey(codeBarre);
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                // Invalidated concurrently: let the caller use the database
+                return null;
+            }
+            if (key != 0) {
+                long id = numericCodes.get(key);
+                return id != 0 ? id : null;
+            }
+            return otherCodes.get(codeBarre);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record the barcode of a created or updated product; a previous barcode of the product is dropped
+     */
+    public void put(String codeBarre, Long produitId) {
+        if (produitId == null || !loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            putUnlocked(codeBarre, produitId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the barcode of a deleted product
+     */
+    public void remove(Long produitId) {
+        if (produitId == null || !loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(produitId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the whole index, e.g. after a bulk import; it is reloaded on the next lookup
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            numericCodes = null;
+            numericKeysById = null;
+            otherCodes = null;
+            otherCodesById = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of barcodes in the index, 0 when not loaded
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return loaded ? numericCodes.size() + otherCodes.size() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run a cross-check in the background now, e.g. after many products were imported
+     */
+    public void refreshSoon() {
+        if (refresher != null) {
+            refresher.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * Apply the barcodes changed since the last check, and reload everything when the number of
+     * barcodes or the sum of their product IDs differs from the database: products deleted or
+     * barcodes cleared by another client leave no modification date. New IDs are never reused,
+     * so a deletion offset by a creation still changes the sum.
+     */
+    void refresh() {
+        if (!loaded) {
+            return;
+        }
+        LocalDateTime since;
+        lock.readLock().lock();
+        try {
+            since = lastCheck.minusMinutes(REFRESH_OVERLAP_MINUTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LocalDateTime checkStart = LocalDateTime.now();
+        List<Object[]> changes = repository.findCodesBarreModifiedSince(since);
+        long[] expected = repository.summarizeCodesBarre();
+
+        boolean reload = false;
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            int changed = 0;
+            for (Object[] change : changes) {
+                if (putUnlocked((String) change[0], (Long) change[1]) && ++changed > MAX_INCREMENTAL_CHANGES) {
+                    reload = true;
+                    break;
+                }
+            }
+            lastCheck = checkStart;
+            reload = reload || numericCodes.size() + otherCodes.size() != expected[0] || idSum != expected[1];
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (reload) {
+            logger.info("Barcode index out of date ({} products with a barcode), reloading", expected[0]);
+            load();
+        } else if (!changes.isEmpty()) {
+            logger.debug("Barcode index checked, {} recent product changes applied", changes.size());
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Error refreshing the barcode index", e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        LocalDateTime loadStart = LocalDateTime.now();
+        int expectedSize = (int) Math.min(Integer.MAX_VALUE / 2, repository.countCodesBarre());
+        LongLongHashMap numeric = new LongLongHashMap(expectedSize);
+        LongLongHashMap numericById = new LongLongHashMap(expectedSize);
+        Map<String, Long> other = new HashMap<>();
+        Map<Long, String> otherById = new HashMap<>();
+        long[] sum = {0};
+        repository.forEachCodeBarre((codeBarre, produitId) -> {
+            long key = numericKey(codeBarre);
+            if (key != 0) {
+                numeric.put(key, produitId);
+                numericById.put(produitId, key);
+            } else {
+                other.put(codeBarre, produitId);
+                otherById.put(produitId, codeBarre);
+            }
+            sum[0] += produitId;
+        });
+
+        lock.writeLock().lock();
+        try {
+            numericCodes = numeric;
+            numericKeysById = numericById;
+            otherCodes = other;
+            otherCodesById = otherById;
+            idSum = sum[0];
+            // Changes made while loading are picked up by the next refresh
+            lastCheck = loadStart;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Barcode index loaded: {} barcodes in {} ms", numeric.size() + other.size(),
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return true if the index changed
+     */
+    private boolean putUnlocked(String codeBarre, Long produitId) {
+        if (codeBarre == null || codeBarre.isEmpty()) {
+            removeUnlocked(produitId);
+            return true;
+        }
+        long key = numericKey(codeBarre);
+        Long current = key != 0 ? Long.valueOf(numericCodes.get(key)) : otherCodes.get(codeBarre);
+        if (produitId.equals(current)) {
+            // Unchanged barcode, by far the most frequent case
+            return false;
+        }
+        removeUnlocked(produitId);
+        if (current != null && current != 0) {
+            // The barcode moved from another product, whose new barcode comes with its own change
+            removeUnlocked(current);
+        }
+        if (key != 0) {
+            numericCodes.put(key, produitId);
+            numericKeysById.put(produitId, key);
+        } else {
+            otherCodes.put(codeBarre, produitId);
+            otherCodesById.put(produitId, codeBarre);
+        }
+        idSum += produitId;
+        return true;
+    }
+
+    private void removeUnlocked(Long produitId) {
+        long key = numericKeysById.remove(produitId);
+        if (key != 0) {
+            numericCodes.remove(key);
+            idSum -= produitId;
+        }
+        String codeBarre = otherCodesById.remove(produitId);
+        if (codeBarre != null) {
+            otherCodes.remove(codeBarre);
+            idSum -= produitId;
+        }
+    }
+
+    /**
+     * Pack a numeric barcode with its length into a non-zero long
+     * @return the key, or 0 if the barcode is not made of 1 to 15 digits
+     */
+    static long numericKey(String codeBarre) {
+        int length = codeBarre.length();
+        if (length == 0 || length > MAX_NUMERIC_LENGTH) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = codeBarre.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return (value << 4) | length;
+    }
+}
@@ -0,0 +1,109 @@
+package insea.neobrain.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a CSV import: counts and the errors of the rejected lines
+ */
+public class CsvImportResult {
+    
+    /**
+     * Maximum number of line errors kept in memory; further errors are only counted
+     */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+    
+    private long recordCount;
+    private long importedCount;
+    private long rejectedCount;
+    private long durationMillis;
+    private final List<LineError> errors = new ArrayList<>();
+    
+    public synchronized void addImported(long count) {
+        importedCount += count;
+    }
+    
+    public synchronized void addRecords(long count) {
+        recordCount += count;
+    }
+    
+    public synchronized void addError(long line, String message) {
+        rejectedCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new LineError(line, message));
+        }
+    }
+    
+    public synchronized void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+    
+    /**
+     * @return number of data records read (header excluded)
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+    
+    public synchronized long getImportedCount() {
+        return importedCount;
+    }
+    
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+    
+    public synchronized long getDurationMillis() {
+        return durationMillis;
+    }
+    
+    /**
+     * @return the first {@link #MAX_REPORTED_ERRORS} errors, in line order
+     */
+    public synchronized List<LineError> getErrors() {
+        List<LineError> sorted = new ArrayList<>(errors);
+        sorted.sort((a, b) -> Long.compare(a.getLine(), b.getLine()));
+        return Collections.unmodifiableList(sorted);
+    }
+    
+    public synchronized boolean hasErrors() {
+        return rejectedCount > 0;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "CsvImportResult{" +
+                "records=" + recordCount +
+                ", imported=" + importedCount +
+                ", rejected=" + rejectedCount +
+                ", durationMillis=" + durationMillis +
+                '}';
+    }
+    
+    /**
+     * Error of a single CSV line
+     */
+    public static class LineError {
+        private final long line;
+        private final String message;
+        
+        public LineError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+        
+        public long getLine() {
+            return line;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        @Override
+        public String toString() {
+            return "Ligne " + line + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package insea.neobrain.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered CSV writer for large exports.
+ * Fields are written straight to the output (UTF-8, optionally gzip-compressed) without building
+ * the row in memory; a field is quoted only when it contains a separator, a quote or a line break.
+ */
+public class CsvStreamWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private final Writer writer;
+    private final GZIPOutputStream gzipStream;
+    private boolean firstField = true;
+    private long rowCount;
+
+    /**
+     * @param out destination stream
+     * @param gzip true to compress the output with gzip
+     * @throws IOException if the gzip header cannot be written
+     */
+    public CsvStreamWriter(OutputStream out, boolean gzip) throws IOException {
+        this.gzipStream = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        this.writer = new BufferedWriter(
+            new OutputStreamWriter(gzip ? gzipStream : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Open a writer on a file, compressed when the file name ends with ".gz"
+     * @param path destination file, created or truncated
+     * @return the writer, to be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public static CsvStreamWriter open(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        try {
+            return new CsvStreamWriter(out, isGzipPath(path));
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path file path
+     * @return true if the file name has the ".gz" extension
+     */
+    public static boolean isGzipPath(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * Write a complete header row
+     * @param columns column names
+     */
+    public CsvStreamWriter header(String... columns) throws IOException {
+        for (String column : columns) {
+            field(column);
+        }
+        endRow();
+        rowCount = 0;
+        return this;
+    }
+
+    /**
+     * Write a text field; null is written as an empty field
+     */
+    public CsvStreamWriter field(String value) throws IOException {
+        separate();
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        if (!needsQuoting(value)) {
+            writer.write(value);
+            return this;
+        }
+        writer.write(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                writer.write(QUOTE);
+            }
+            writer.write(c);
+        }
+        writer.write(QUOTE);
+        return this;
+    }
+
+    /**
+     * Write a numeric field
+     */
+    public CsvStreamWriter field(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Write any other value with its toString(); null is written as an empty field
+     */
+    public CsvStreamWriter field(Object value) throws IOException {
+        return field(value != null ? value.toString() : null);
+    }
+
+    /**
+     * Terminate the current row
+     */
+    public void endRow() throws IOException {
+        writer.write('\n');
+        firstField = true;
+        rowCount++;
+    }
+
+    /**
+     * @return number of rows written, header excluded
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Write the buffered data and the gzip trailer, without closing the destination stream
+     */
+    public void finish() throws IOException {
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+    }
+
+    /**
+     * Finish the output and close the destination stream
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void separate() throws IOException {
+        if (!firstField) {
+            writer.write(SEPARATOR);
+        }
+        firstField = false;
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
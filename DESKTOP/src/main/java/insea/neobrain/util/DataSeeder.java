@@ -12,6 +12,8 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Data Seeding Utility for creating sample test data
@@ -20,6 +22,8 @@ import java.util.Random;
 public class DataSeeder {
     
     private static final Logger logger = LoggerFactory.getLogger(DataSeeder.class);
+    // Bulk orders are dated back from this day, so their rows do not depend on the day of the run
+    private static final LocalDate BULK_EPOCH = LocalDate.of(2024, 12, 31);
     private final Random random = new Random();
     
     // Repositories
@@ -31,6 +35,7 @@ public class DataSeeder {
     private final ReclamationRepository reclamationRepository;
     private final InventaireRepository inventaireRepository;
     private final TacheInventaireRepository tacheRepository;
+    private final BulkLoadRepository bulkLoadRepository;
     
     public DataSeeder() {
         // Initialize repositories
@@ -42,6 +47,7 @@ public class DataSeeder {
         this.reclamationRepository = new ReclamationRepositoryImpl();
         this.inventaireRepository = new InventaireRepositoryImpl();
         this.tacheRepository = new TacheInventaireRepositoryImpl();
+        this.bulkLoadRepository = new BulkLoadRepositoryImpl();
     }
     
     /**
@@ -67,6 +73,9 @@ public class DataSeeder {
             seedInventaires(produits, personnel);
             seedTachesInventaire(personnel, produits);
             
+            // Orders were saved without going through saveOrder
+            commandeRepository.rebuildSalesRollup(null, null);
+            
             logger.info("Data seeding completed successfully");
             
         } catch (Exception e) {
@@ -199,6 +208,7 @@ public class DataSeeder {
                 default:
                     produit.setCategorie(CategorieProduit.INFORMATIQUE);
             }
+            produit.setCodeProduit(NumberGenerator.getInstance().nextCodeProduit(produit.getCategorie()));
             produit.setPrix(new BigDecimal(data[2]));
             produit.setQuantiteStock(Integer.parseInt(data[3]));
             produit.setStockMinimum(Math.max(5, Integer.parseInt(data[3]) / 10)); // 10% of stock as minimum
@@ -211,9 +221,10 @@ public class DataSeeder {
                 produit.setQuantiteStock(Math.max(0, produit.getQuantiteStock() + variation));
             }
             
-            produitList.add(produitRepository.save(produit));
+            produitList.add(produit);
         }
         
+        produitList = produitRepository.saveAll(produitList);
         logger.info("Created {} product records", produitList.size());
         return produitList;
     }
@@ -289,9 +300,10 @@ public class DataSeeder {
             // Calculate total (will be updated when order lines are created)
             commande.setPrixTotal(BigDecimal.ZERO);
             
-            commandeList.add(commandeRepository.save(commande));
+            commandeList.add(commande);
         }
         
+        commandeList = commandeRepository.saveAll(commandeList);
         logger.info("Created {} order records", commandeList.size());
         return commandeList;
     }
@@ -319,14 +331,15 @@ public class DataSeeder {
                 ligne.setSousTotal(montantLigne);
                 commandeTotal = commandeTotal.add(montantLigne);
                 
-                ligneList.add(ligneCommandeRepository.save(ligne));
+                ligneList.add(ligne);
             }
             
             // Update order total
             commande.setPrixTotal(commandeTotal);
-            commandeRepository.update(commande);
         }
         
+        ligneList = ligneCommandeRepository.saveAll(ligneList);
+        commandeRepository.updateAll(commandes);
         logger.info("Created {} order line records", ligneList.size());
         return ligneList;
     }
@@ -390,6 +403,7 @@ public class DataSeeder {
         // Create inventory sessions for the last 3 months
         for (int i = 0; i < 10; i++) {
             Inventaire inventaire = new Inventaire();
+            inventaire.setNumeroInventaire(NumberGenerator.getInstance().nextNumeroInventaire());
             inventaire.setDateDebut(LocalDate.now().minusDays(random.nextInt(90)));
             inventaire.setDescription("Inventaire " + (i % 2 == 0 ? "complet" : "partiel") + " - Session " + (i + 1));
             
@@ -432,6 +446,7 @@ public class DataSeeder {
             return;
         }
         
+        List<TacheInventaire> taches = new ArrayList<>();
         for (int i = 0; i < 20; i++) {
             TacheInventaire tache = new TacheInventaire();
             tache.setCommentaire("Vérification stock produit - Task " + (i + 1));
@@ -451,10 +466,148 @@ public class DataSeeder {
             // Set priority (TacheInventaire uses Integer for priority, not enum)
             tache.setPriorite(random.nextInt(5) + 1); // Priority 1-5
             
-            tacheRepository.save(tache);
+            taches.add(tache);
+        }
+        
+        tacheRepository.saveAll(taches);
+        logger.info("Created {} inventory task records", taches.size());
+    }
+    
+    /**
+     * Seed a large synthetic data set with PostgreSQL COPY, for capacity testing.
+     * Rows are generated on the fly and never held in memory; the generated values are
+     * derived from the row index, so running it again with the same counts loads nothing new.
+     * @param produitCount number of products
+     * @param clientCount number of clients
+     * @param commandeCount number of sales orders, each with 1 to 5 lines
+     */
+    public void seedBulkData(int produitCount, int clientCount, int commandeCount) {
+        logger.info("Bulk seeding {} products, {} clients and {} orders...", produitCount, clientCount, commandeCount);
+        
+        try {
+            bulkLoadRepository.loadProduits(
+                IntStream.range(0, produitCount).mapToObj(this::bulkProduit).iterator(),
+                BulkLoadRepository.ConflictMode.SKIP);
+            
+            bulkLoadRepository.loadClients(
+                IntStream.range(0, clientCount).mapToObj(this::bulkClient).iterator());
+            
+            // Orders reference clients by id, which are only known once the clients are loaded
+            long[] clientIds;
+            try (Stream<Client> clients = clientRepository.streamAll()) {
+                clientIds = clients.mapToLong(Client::getIdPersonne).toArray();
+            }
+            if (clientIds.length == 0 || produitCount == 0) {
+                logger.warn("No clients or products available, skipping bulk order seeding");
+                return;
+            }
+            // Orders are taken by the existing employees, if any
+            long[] personnelIds = personnelRepository.findAll().stream().mapToLong(Personnel::getIdPersonne).toArray();
+            
+            bulkLoadRepository.loadCommandes(
+                IntStream.range(0, commandeCount)
+                    .mapToObj(i -> bulkCommande(i, clientIds, personnelIds, produitCount)).iterator(),
+                BulkLoadRepository.ConflictMode.SKIP);
+            
+            bulkLoadRepository.loadLignesCommande(
+                IntStream.range(0, commandeCount).boxed()
+                    .flatMap(i -> bulkLignes(i, produitCount).stream())
+                    .iterator());
+            
+            // COPY bypasses the incremental rollup updates
+            commandeRepository.rebuildSalesRollup(null, null);
+            
+            logger.info("Bulk seeding completed successfully");
+            
+        } catch (Exception e) {
+            logger.error("Error during bulk data seeding", e);
+            throw new RuntimeException("Failed to bulk seed data", e);
+        }
+    }
+    
+    private Produit bulkProduit(int index) {
+        Produit produit = new Produit();
+        produit.setCodeProduit(bulkCodeProduit(index));
+        produit.setCodeBarre(String.format("2%011d", index));
+        produit.setNom("Produit test " + index);
+        produit.setCategorie(CategorieProduit.values()[index % CategorieProduit.values().length]);
+        produit.setPrix(bulkPrix(index));
+        produit.setQuantiteStock(index % 500);
+        produit.setStockMinimum(10);
+        return produit;
+    }
+    
+    private Client bulkClient(int index) {
+        Client client = new Client();
+        client.setCivilite(Civilite.values()[index % Civilite.values().length]);
+        client.setNom("Client" + index);
+        client.setPrenom("Test");
+        client.setEmail("client" + index + "@bulk.neobrain.test");
+        client.setTypeClient(index % 10 == 0 ? TypeClient.ENTREPRISE : TypeClient.PARTICULIER);
+        return client;
+    }
+    
+    private CommandeVente bulkCommande(int index, long[] clientIds, long[] personnelIds, int produitCount) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (LigneCommande ligne : bulkLignes(index, produitCount)) {
+            total = total.add(ligne.getSousTotal());
         }
         
-        logger.info("Created 20 inventory task records");
+        Client client = new Client();
+        client.setIdPersonne(clientIds[index % clientIds.length]);
+        
+        CommandeVente commande = new CommandeVente();
+        commande.setNumeroCommande(bulkNumeroCommande(index));
+        commande.setClient(client);
+        if (personnelIds.length > 0) {
+            Personnel personnel = new Personnel();
+            personnel.setIdPersonne(personnelIds[index % personnelIds.length]);
+            commande.setPersonnel(personnel);
+        }
+        commande.setModePaiement(ModePaiement.values()[index % ModePaiement.values().length]);
+        commande.setDateCommandeVente(BULK_EPOCH.minusDays(index % 365));
+        commande.setStatut("LIVREE");
+        commande.setPrixTotal(total);
+        commande.setTotalTTC(total);
+        return commande;
+    }
+    
+    /**
+     * Lines of a bulk order; the same index always yields the same lines
+     */
+    private List<LigneCommande> bulkLignes(int index, int produitCount) {
+        Random lineRandom = new Random(index);
+        CommandeVente commande = new CommandeVente();
+        commande.setNumeroCommande(bulkNumeroCommande(index));
+        
+        int numberOfLines = lineRandom.nextInt(5) + 1;
+        List<LigneCommande> lignes = new ArrayList<>(numberOfLines);
+        for (int i = 0; i < numberOfLines; i++) {
+            int produitIndex = lineRandom.nextInt(produitCount);
+            Produit produit = new Produit();
+            produit.setCodeProduit(bulkCodeProduit(produitIndex));
+            
+            LigneCommande ligne = new LigneCommande();
+            ligne.setCommandeVente(commande);
+            ligne.setProduit(produit);
+            ligne.setQuantiteVente(lineRandom.nextInt(10) + 1);
+            ligne.setPrixUnitaire(bulkPrix(produitIndex));
+            ligne.setSousTotal(ligne.getPrixUnitaire().multiply(BigDecimal.valueOf(ligne.getQuantiteVente())));
+            lignes.add(ligne);
+        }
+        return lignes;
+    }
+    
+    private static String bulkCodeProduit(int index) {
+        return "BLK" + index;
+    }
+    
+    private static String bulkNumeroCommande(int index) {
+        return String.format("BLK-%09d", index);
+    }
+    
+    private static BigDecimal bulkPrix(int index) {
+        return BigDecimal.valueOf(500 + (index * 37L) % 100000, 2);
     }
     
     /**
@@ -474,6 +627,9 @@ public class DataSeeder {
             produitRepository.deleteAll();
             personnelRepository.deleteAll();
             
+            // The sales rollup tables are not tied to the orders by foreign keys: empty them too
+            commandeRepository.rebuildSalesRollup(null, null);
+            
             logger.info("All data cleared successfully");
             
         } catch (Exception e) {
@@ -514,6 +670,9 @@ public class DataSeeder {
         try {
             if (args.length > 0 && "clear".equals(args[0])) {
                 seeder.clearAllData();
+            } else if (args.length > 3 && "bulk".equals(args[0])) {
+                seeder.seedBulkData(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+                seeder.generateSeedingSummary();
             } else {
                 seeder.seedAllData();
                 seeder.generateSeedingSummary();
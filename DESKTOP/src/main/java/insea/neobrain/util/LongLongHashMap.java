@@ -0,0 +1,172 @@
+package insea.neobrain.util;
+
+/**
+ * Open-addressing hash map from long keys to long values, stored in two primitive arrays
+ * (16 bytes per slot, no boxing and no entry objects).
+ * Key 0 marks an empty slot and cannot be stored; 0 is also returned for a missing key.
+ * Not thread-safe.
+ */
+class LongLongHashMap {
+
+    private static final float MAX_LOAD = 0.6f;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int resizeThreshold;
+
+    LongLongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return the value of the key, or 0 if absent
+     */
+    long get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            }
+            if (k == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return the previous value of the key, or 0 if absent
+     */
+    long put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the removed value, or 0 if absent
+     */
+    long remove(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                deleteSlot(slot);
+                return previous;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Remove every key mapped to a value. Scans the whole table.
+     * @return number of keys removed
+     */
+    int removeValue(long value) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < keys.length) {
+            if (keys[slot] != 0 && values[slot] == value) {
+                // The slot now holds a shifted entry, check it again
+                deleteSlot(slot);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Backward-shift deletion: move later entries of the probe chain into the hole
+     * so lookups never stop early at an empty slot
+     */
+    private void deleteSlot(int hole) {
+        int mask = keys.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int home = slot(key, mask);
+            // Move the entry if its home slot is not in the cyclic range (hole, slot]
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                keys[hole] = key;
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        resizeThreshold = (int) (capacity * MAX_LOAD);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slot(long key, int mask) {
+        // Spread the bits, consecutive barcodes would otherwise cluster
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @Override
+    public String toString() {
+        return "LongLongHashMap[size=" + size + ", capacity=" + keys.length + "]";
+    }
+}
@@ -0,0 +1,145 @@
+package insea.neobrain.util;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.repository.SequenceRepository;
+import insea.neobrain.repository.impl.SequenceRepositoryImpl;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide generator of business document numbers (inventories, orders, product codes).
+ * Each document type has a PostgreSQL sequence incremented by {@link #BLOCK_SIZE}: one nextval
+ * reserves a block of numbers, handed out in memory with a single atomic increment, so numbers
+ * never collide between clients and only one document in BLOCK_SIZE costs a database round trip.
+ * Numbers left in a block when the application stops are skipped, like database sequence gaps.
+ * Services take the number before saving the document; entity callbacks never call the
+ * generator, which may open a connection of its own in the middle of a flush.
+ *
+ * The formats contain a dash, which the former time-based numbers never had, so new numbers
+ * cannot collide with existing ones.
+ */
+public class NumberGenerator {
+
+    /**
+     * Increment of the numbering sequences (see db/schema_upgrades.sql)
+     */
+    public static final int BLOCK_SIZE = 50;
+
+    private static final DateTimeFormatter PERIOD_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * Numbered document types with their sequence
+     */
+    public enum DocumentType {
+        INVENTAIRE("numero_inventaire_seq"),
+        COMMANDE("numero_commande_seq"),
+        PRODUIT("code_produit_seq");
+
+        private final String sequenceName;
+
+        DocumentType(String sequenceName) {
+            this.sequenceName = sequenceName;
+        }
+
+        public String getSequenceName() {
+            return sequenceName;
+        }
+    }
+
+    /**
+     * Numbers of a reserved block not handed out yet
+     */
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    private static NumberGenerator instance;
+
+    private final SequenceRepository repository;
+    private final Map<DocumentType, AtomicReference<Block>> blocks = new EnumMap<>(DocumentType.class);
+
+    NumberGenerator(SequenceRepository repository) {
+        this.repository = repository;
+        for (DocumentType type : DocumentType.values()) {
+            blocks.put(type, new AtomicReference<>(new Block(0, 0)));
+        }
+    }
+
+    public static synchronized NumberGenerator getInstance() {
+        if (instance == null) {
+            instance = new NumberGenerator(new SequenceRepositoryImpl());
+        }
+        return instance;
+    }
+
+    /**
+     * @return the next inventory number, e.g. INV202410-000051
+     */
+    public String nextNumeroInventaire() {
+        return String.format("INV%s-%06d", YearMonth.now().format(PERIOD_FORMAT), next(DocumentType.INVENTAIRE));
+    }
+
+    /**
+     * @return the next order number, e.g. CMD202410-000051
+     */
+    public String nextNumeroCommande() {
+        return String.format("CMD%s-%06d", YearMonth.now().format(PERIOD_FORMAT), next(DocumentType.COMMANDE));
+    }
+
+    /**
+     * @return the next product code, prefixed by the category, e.g. INF-0000051
+     */
+    public String nextCodeProduit(CategorieProduit categorie) {
+        return String.format("%s-%07d", prefix(categorie), next(DocumentType.PRODUIT));
+    }
+
+    /**
+     * Next number of a document type; reserves a new block when the current one is used up
+     */
+    public long next(DocumentType type) {
+        AtomicReference<Block> current = blocks.get(type);
+        while (true) {
+            Block block = current.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return value;
+            }
+            synchronized (current) {
+                // Another thread may have reserved a block while this one waited
+                if (current.get() == block) {
+                    long start = repository.nextBlock(type.getSequenceName());
+                    current.set(new Block(start, start + BLOCK_SIZE));
+                }
+            }
+        }
+    }
+
+    private static String prefix(CategorieProduit categorie) {
+        if (categorie == null) {
+            return "PRD";
+        }
+        switch (categorie) {
+            case INFORMATIQUE:
+                return "INF";
+            case ELECTROMENAGER:
+                return "ELE";
+            case VETEMENTS:
+                return "VET";
+            case SPORTS:
+                return "SPO";
+            default:
+                return "PRD";
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package insea.neobrain.util;
+
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Personnel;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.repository.impl.ProduitRepositoryImpl;
+import insea.neobrain.service.CommandeVenteService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Point-of-sale cart.
+ * Barcodes are resolved with the BarcodeIndex and products come from a local cache, warmed with
+ * the best sellers and filled on the first scan of any other product, so adding a line never
+ * waits for the database. Stock is checked against the cached quantities; the database checks
+ * it again when the sale is saved, in one call for the whole cart.
+ *
+ * The cached quantities are decremented by the sales of this terminal only. Cached products
+ * expire after {@link #PRODUCT_TTL_MS} and are then read again on their next scan; a product
+ * refused for its stock or availability can be read again at once with {@link #reloadProduit},
+ * and the products of a failed checkout are dropped from the cache.
+ * Cart methods must be called from one thread (the Event Dispatch Thread); the product cache
+ * can be read and filled from any thread.
+ */
+public class SaleCart {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleCart.class);
+    private static final int WARM_UP_SIZE = 500;
+    /**
+     * Time a cached product is used without reading it again (restocks, price or availability changes)
+     */
+    public static final long PRODUCT_TTL_MS = 5 * 60_000;
+
+    /**
+     * Outcome of adding a product to the cart
+     */
+    public enum AddStatus { ADDED, UNAVAILABLE, INSUFFICIENT_STOCK }
+
+    /**
+     * A product of the cart with its quantity
+     */
+    public static final class CartLine {
+        private final Produit produit;
+        private int quantite;
+
+        CartLine(Produit produit) {
+            this.produit = produit;
+        }
+
+        public Produit getProduit() {
+            return produit;
+        }
+
+        public int getQuantite() {
+            return quantite;
+        }
+
+        public BigDecimal getSousTotal() {
+            return produit.getPrix().multiply(BigDecimal.valueOf(quantite));
+        }
+    }
+
+    private final BarcodeIndex barcodeIndex;
+    private final ProduitRepository produitRepository;
+    private final CommandeVenteService commandeVenteService;
+    private final long productTtlMillis;
+    private final Map<Long, CachedProduit> produits = new ConcurrentHashMap<>();
+    private final Map<Long, CartLine> lines = new LinkedHashMap<>();
+
+    /**
+     * A product of the cache with the time it was read
+     */
+    private static final class CachedProduit {
+        private final Produit produit;
+        private final long loadedAt;
+
+        CachedProduit(Produit produit) {
+            this.produit = produit;
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+
+    public SaleCart(CommandeVenteService commandeVenteService) {
+        this(BarcodeIndex.getInstance(), new ProduitRepositoryImpl(), commandeVenteService, PRODUCT_TTL_MS);
+    }
+
+    SaleCart(BarcodeIndex barcodeIndex, ProduitRepository produitRepository,
+             CommandeVenteService commandeVenteService, long productTtlMillis) {
+        this.barcodeIndex = barcodeIndex;
+        this.produitRepository = produitRepository;
+        this.commandeVenteService = commandeVenteService;
+        this.productTtlMillis = productTtlMillis;
+    }
+
+    /**
+     * Load the barcode index and the best-selling products, in a background thread before the first sale
+     */
+    public void warmUp() {
+        try {
+            // The first lookup loads the index
+            barcodeIndex.findProduitId("0");
+            for (Produit produit : produitRepository.findTopSellingProducts(WARM_UP_SIZE)) {
+                produits.putIfAbsent(produit.getIdProduit(), new CachedProduit(produit));
+            }
+            logger.info("Sale cart warmed up with {} products", produits.size());
+        } catch (Exception e) {
+            // Products are then loaded on their first scan
+            logger.warn("Could not warm up the sale cart: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Find a product from the cache only
+     * @return the product, or null if the barcode is unknown or its product not cached or expired
+     */
+    public Produit getCachedProduit(String codeBarre) {
+        Long id = barcodeIndex.findProduitId(codeBarre);
+        return id != null ? freshProduit(id) : null;
+    }
+
+    /**
+     * Find a product, reading it from the database if it is not cached or expired
+     * @return the product, or null if no product has this barcode
+     */
+    public Produit loadProduit(String codeBarre) {
+        Long id = barcodeIndex.findProduitId(codeBarre);
+        if (id == null) {
+            return null;
+        }
+        Produit produit = freshProduit(id);
+        return produit != null ? produit : reloadProduit(id);
+    }
+
+    /**
+     * Read a product from the database and replace its cached copy, e.g. before refusing it for
+     * its stock or availability; not on the Event Dispatch Thread
+     * @return the product, or null if it was deleted
+     */
+    public Produit reloadProduit(Long produitId) {
+        Produit produit = produitRepository.findById(produitId).orElse(null);
+        if (produit != null) {
+            produits.put(produitId, new CachedProduit(produit));
+        } else {
+            produits.remove(produitId);
+        }
+        return produit;
+    }
+
+    private Produit freshProduit(Long produitId) {
+        CachedProduit cached = produits.get(produitId);
+        if (cached == null || System.currentTimeMillis() - cached.loadedAt >= productTtlMillis) {
+            return null;
+        }
+        return cached.produit;
+    }
+
+    /**
+     * Add a quantity of a product to the cart, a negative quantity takes it off
+     */
+    public AddStatus add(Produit produit, int quantity) {
+        if (!Boolean.TRUE.equals(produit.getActif()) || !Boolean.TRUE.equals(produit.getDisponible())) {
+            return AddStatus.UNAVAILABLE;
+        }
+        CartLine line = lines.get(produit.getIdProduit());
+        int current = line != null ? line.quantite : 0;
+        return setQuantity(produit, current + quantity);
+    }
+
+    /**
+     * Set the quantity of a product in the cart, 0 removes it
+     */
+    public AddStatus setQuantity(Produit produit, int quantity) {
+        if (quantity <= 0) {
+            lines.remove(produit.getIdProduit());
+            return AddStatus.ADDED;
+        }
+        if (quantity > availableStock(produit)) {
+            return AddStatus.INSUFFICIENT_STOCK;
+        }
+        lines.computeIfAbsent(produit.getIdProduit(), id -> new CartLine(produit)).quantite = quantity;
+        return AddStatus.ADDED;
+    }
+
+    public void remove(Long produitId) {
+        lines.remove(produitId);
+    }
+
+    /**
+     * @return the stock of the product according to the cache
+     */
+    public int availableStock(Produit produit) {
+        CachedProduit cached = produits.get(produit.getIdProduit());
+        Integer stock = cached != null ? cached.produit.getQuantiteStock() : produit.getQuantiteStock();
+        return stock != null ? stock : 0;
+    }
+
+    public CartLine getLine(Long produitId) {
+        return lines.get(produitId);
+    }
+
+    public List<CartLine> getLines() {
+        return new ArrayList<>(lines.values());
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int getItemCount() {
+        int count = 0;
+        for (CartLine line : lines.values()) {
+            count += line.quantite;
+        }
+        return count;
+    }
+
+    public BigDecimal getTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartLine line : lines.values()) {
+            total = total.add(line.getSousTotal());
+        }
+        return total;
+    }
+
+    public void clear() {
+        lines.clear();
+    }
+
+    /**
+     * Save the cart as a validated order, lines and stock in one call to the sales service.
+     * Can run in a background thread; the caller clears the cart once the order is saved.
+     * @param lines snapshot of the cart taken with {@link #getLines()}
+     * @return the saved order
+     */
+    public CommandeVente checkout(List<CartLine> lines, Client client, Personnel personnel,
+                                  ModePaiement modePaiement) {
+        CommandeVente commande = new CommandeVente(client);
+        commande.setPersonnel(personnel);
+        commande.setModePaiement(modePaiement);
+        List<LigneCommande> lignes = new ArrayList<>(lines.size());
+        for (CartLine line : lines) {
+            LigneCommande ligne = new LigneCommande(commande, line.produit, line.quantite);
+            lignes.add(ligne);
+        }
+        commande.setLignesCommande(lignes);
+        commande.calculerTotaux();
+        // Paid at the counter: the order is final
+        commande.valider();
+
+        try {
+            CommandeVente saved = commandeVenteService.createCommande(commande);
+            for (CartLine line : lines) {
+                produits.computeIfPresent(line.produit.getIdProduit(), (id, cached) -> {
+                    cached.produit.setQuantiteStock(cached.produit.getQuantiteStock() - line.quantite);
+                    return cached;
+                });
+            }
+            return saved;
+        } catch (RuntimeException e) {
+            // The cached stock may be behind the sales of other terminals
+            for (CartLine line : lines) {
+                produits.remove(line.produit.getIdProduit());
+            }
+            throw e;
+        }
+    }
+}
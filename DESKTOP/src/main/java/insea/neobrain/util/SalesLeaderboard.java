@@ -0,0 +1,280 @@
+package insea.neobrain.util;
+
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.LigneCommandeRepository;
+import insea.neobrain.repository.impl.LigneCommandeRepositoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide best-seller leaderboard over sliding windows of days (7, 30 and 365 days).
+ * Each window keeps the sales of its top {@link #CANDIDATES} products by quantity and by revenue,
+ * read from the daily sales per product (ventes_produit_journalieres) on first use, when the day
+ * changes and in the background. Orders created by this client are added to the counters as
+ * they are committed, so top-N queries are answered from memory whatever the number of order lines.
+ *
+ * A product outside the candidates can only have sold less than the last candidate when the window
+ * was loaded: when its sales since then could bring it into the requested top, the window is read
+ * again. Orders changed or deleted, and the sales of other clients, are picked up by the next refresh.
+ */
+public class SalesLeaderboard {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesLeaderboard.class);
+    private static final long REFRESH_INTERVAL_MS = 5 * 60_000;
+
+    /**
+     * Products kept in memory per window and ranking; larger tops are read from the database
+     */
+    public static final int CANDIDATES = 100;
+
+    /**
+     * Sliding windows ending today
+     */
+    public enum Window {
+        WEEK(7),
+        MONTH(30),
+        YEAR(365);
+
+        private final int days;
+
+        Window(int days) {
+            this.days = days;
+        }
+
+        public int getDays() {
+            return days;
+        }
+    }
+
+    /**
+     * Sales of a product over a window
+     */
+    public static final class Entry {
+        private final Produit produit;
+        private long quantite;
+        private BigDecimal montant;
+
+        Entry(Produit produit, long quantite, BigDecimal montant) {
+            this.produit = produit;
+            this.quantite = quantite;
+            this.montant = montant != null ? montant : BigDecimal.ZERO;
+        }
+
+        public Produit getProduit() {
+            return produit;
+        }
+
+        public long getQuantite() {
+            return quantite;
+        }
+
+        public BigDecimal getMontant() {
+            return montant;
+        }
+
+        private Entry copy() {
+            return new Entry(produit, quantite, montant);
+        }
+    }
+
+    /**
+     * Counters of one window, guarded by the board's monitor
+     */
+    private static final class Board {
+        private final LocalDate lastDay;
+        private final LocalDate firstDay;
+        private final Map<Long, Entry> entries = new HashMap<>();
+        // Every product with sales is a candidate: there is nothing outside the board
+        private final boolean complete;
+        // Sales of the last candidate of each ranking when loaded, bound of all other products
+        private final long floorQuantite;
+        private final BigDecimal floorMontant;
+        // Sales recorded since the load for products outside the candidates
+        private final Map<Long, Entry> outsiders = new HashMap<>();
+
+        Board(Window window, LocalDate lastDay, List<Object[]> byQuantite, List<Object[]> byMontant) {
+            this.lastDay = lastDay;
+            this.firstDay = lastDay.minusDays(window.getDays() - 1L);
+            for (List<Object[]> rows : List.of(byQuantite, byMontant)) {
+                for (Object[] row : rows) {
+                    Produit produit = (Produit) row[0];
+                    entries.putIfAbsent(produit.getIdProduit(),
+                        new Entry(produit, ((Number) row[1]).longValue(), (BigDecimal) row[2]));
+                }
+            }
+            this.complete = byQuantite.size() < CANDIDATES;
+            this.floorQuantite = complete ? 0 : ((Number) byQuantite.get(byQuantite.size() - 1)[1]).longValue();
+            this.floorMontant = complete || byMontant.isEmpty()
+                ? BigDecimal.ZERO : (BigDecimal) byMontant.get(byMontant.size() - 1)[2];
+        }
+    }
+
+    private static SalesLeaderboard instance;
+
+    private final LigneCommandeRepository repository;
+    private final Map<Window, Board> boards = new ConcurrentHashMap<>();
+
+    SalesLeaderboard(LigneCommandeRepository repository, long refreshIntervalMillis) {
+        this.repository = repository;
+        if (refreshIntervalMillis > 0) {
+            ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sales-leaderboard-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMillis, refreshIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static synchronized SalesLeaderboard getInstance() {
+        if (instance == null) {
+            instance = new SalesLeaderboard(new LigneCommandeRepositoryImpl(), REFRESH_INTERVAL_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * @return the best sellers by quantity over the window, best first
+     */
+    public List<Entry> getTopByQuantity(Window window, int limit) {
+        return getTop(window, limit, false);
+    }
+
+    /**
+     * @return the best sellers by revenue over the window, best first
+     */
+    public List<Entry> getTopByRevenue(Window window, int limit) {
+        return getTop(window, limit, true);
+    }
+
+    /**
+     * Add the lines of a committed order to the windows loaded in memory
+     */
+    public void recordSale(CommandeVente commande) {
+        if (commande == null || commande.getLignesCommande() == null) {
+            return;
+        }
+        LocalDate day = commande.getDateCommandeVente() != null ? commande.getDateCommandeVente() : LocalDate.now();
+        for (Board board : boards.values()) {
+            if (day.isBefore(board.firstDay) || day.isAfter(board.lastDay)) {
+                continue;
+            }
+            synchronized (board) {
+                for (LigneCommande ligne : commande.getLignesCommande()) {
+                    if (ligne.getProduit() == null || ligne.getProduit().getIdProduit() == null
+                            || ligne.getQuantiteVente() == null) {
+                        continue;
+                    }
+                    Long id = ligne.getProduit().getIdProduit();
+                    Entry entry = board.entries.get(id);
+                    if (entry == null) {
+                        Map<Long, Entry> target = board.complete ? board.entries : board.outsiders;
+                        entry = target.computeIfAbsent(id, key -> new Entry(ligne.getProduit(), 0, BigDecimal.ZERO));
+                    }
+                    entry.quantite += ligne.getQuantiteVente();
+                    if (ligne.getSousTotal() != null) {
+                        entry.montant = entry.montant.add(ligne.getSousTotal());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the loaded windows again, dropping the recorded sales they now include
+     */
+    void refresh() {
+        LocalDate today = LocalDate.now();
+        for (Window window : boards.keySet()) {
+            load(window, today);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Error refreshing the sales leaderboard", e);
+        }
+    }
+
+    private List<Entry> getTop(Window window, int limit, boolean byRevenue) {
+        LocalDate today = LocalDate.now();
+        if (limit > CANDIDATES) {
+            List<Entry> result = new ArrayList<>();
+            for (Object[] row : repository.getProductSalesTotals(
+                    today.minusDays(window.getDays() - 1L), today, byRevenue, limit)) {
+                result.add(new Entry((Produit) row[0], ((Number) row[1]).longValue(), (BigDecimal) row[2]));
+            }
+            return result;
+        }
+
+        Board board = boards.get(window);
+        if (board == null || !board.lastDay.equals(today)) {
+            board = load(window, today);
+        }
+        List<Entry> top = rank(board, limit, byRevenue);
+        if (top == null) {
+            logger.debug("Best sellers of the last {} days changed beyond the candidates, reloading", window.getDays());
+            top = rank(load(window, today), limit, byRevenue);
+        }
+        return top;
+    }
+
+    /**
+     * @return copies of the top entries, or null if a product outside the candidates may belong to them
+     */
+    private static List<Entry> rank(Board board, int limit, boolean byRevenue) {
+        Comparator<Entry> order = byRevenue
+            ? Comparator.comparing(Entry::getMontant).reversed()
+            : Comparator.comparingLong(Entry::getQuantite).reversed();
+        order = order.thenComparing(entry -> entry.getProduit().getIdProduit());
+
+        synchronized (board) {
+            List<Entry> ranked = new ArrayList<>(board.entries.values());
+            ranked.sort(order);
+            List<Entry> top = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (Entry entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                top.add(entry.copy());
+            }
+            if (!board.outsiders.isEmpty() && !top.isEmpty() && top.size() == limit) {
+                Entry last = top.get(top.size() - 1);
+                for (Entry outsider : board.outsiders.values()) {
+                    boolean mayEnter = byRevenue
+                        ? board.floorMontant.add(outsider.montant).compareTo(last.montant) >= 0
+                        : board.floorQuantite + outsider.quantite >= last.quantite;
+                    if (mayEnter) {
+                        return null;
+                    }
+                }
+            }
+            return top;
+        }
+    }
+
+    private Board load(Window window, LocalDate today) {
+        LocalDate firstDay = today.minusDays(window.getDays() - 1L);
+        Board board = new Board(window, today,
+            repository.getProductSalesTotals(firstDay, today, false, CANDIDATES),
+            repository.getProductSalesTotals(firstDay, today, true, CANDIDATES));
+        boards.put(window, board);
+        logger.debug("Sales leaderboard of the last {} days loaded: {} products", window.getDays(),
+            board.entries.size());
+        return board;
+    }
+}
@@ -0,0 +1,432 @@
+package insea.neobrain.util;
+
+import insea.neobrain.config.ConfigurationManager;
+import insea.neobrain.entity.TacheInventaire;
+import insea.neobrain.repository.TacheInventaireRepository;
+import insea.neobrain.repository.impl.TacheInventaireRepositoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan-driven counting of the open tasks of one inventory.
+ * Barcodes are resolved against an in-memory barcode to task index and counts accumulate
+ * locally, so a scan never waits for the database. Every scan is appended to a local journal
+ * before it is acknowledged; a background thread adds the scanned quantities to the database
+ * in lots and compacts the journal. After a crash, reopening the session replays the journal.
+ *
+ * Journal lines are "taskId;delta" with the quantity added by a scan, so the counts of several
+ * scanners on the same inventory add up. A line "@lotId" closes a lot sent to the database;
+ * the database records each applied lot, so a lot replayed after a crash is not added twice.
+ */
+public class ScanCountSession implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanCountSession.class);
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 5000;
+    private static final char JOURNAL_SEPARATOR = ';';
+    private static final char LOT_MARKER = '@';
+
+    private final Long inventaireId;
+    private final TacheInventaireRepository repository;
+    private final Path journalPath;
+    private final Map<String, TacheInventaire> tasksByBarcode = new HashMap<>();
+    private final Map<Long, Integer> counts = new LinkedHashMap<>();
+    private final Map<Long, Integer> pending = new LinkedHashMap<>();
+    private final List<Lot> lots = new ArrayList<>();
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private FileOutputStream journalStream;
+    private Writer journal;
+    private volatile LocalDateTime lastFlushTime;
+    private volatile String lastFlushError;
+    private boolean closed;
+
+    ScanCountSession(Long inventaireId, TacheInventaireRepository repository, Path journalDirectory,
+                     long flushIntervalMillis) throws IOException {
+        this.inventaireId = inventaireId;
+        this.repository = repository;
+        this.journalPath = journalDirectory.resolve("inventaire-" + inventaireId + ".journal");
+
+        // Lots sent before a crash are applied first, so the counts loaded below include them
+        Files.createDirectories(journalDirectory);
+        replayJournal();
+        for (Lot lot : lots) {
+            repository.addPhysicalCounts(lot.id, lot.deltas);
+        }
+        lots.clear();
+
+        for (TacheInventaire task : repository.findOpenTasksWithProduit(inventaireId)) {
+            String barcode = task.getProduit().getCodeBarre();
+            if (barcode == null || barcode.isEmpty()) {
+                continue;
+            }
+            if (tasksByBarcode.putIfAbsent(barcode, task) != null) {
+                logger.warn("Barcode {} has several tasks in inventory {}, task {} ignored",
+                    barcode, inventaireId, task.getIdTacheInventaire());
+                continue;
+            }
+            counts.put(task.getIdTacheInventaire(),
+                task.getQuantitePhysique() != null ? task.getQuantitePhysique() : 0);
+        }
+
+        // Scans not sent yet are added to the loaded counts; tasks closed meanwhile are dropped
+        pending.keySet().retainAll(counts.keySet());
+        pending.forEach((taskId, delta) -> counts.merge(taskId, delta, (count, added) -> Math.max(0, count + added)));
+        compactJournal();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scan-count-flusher-" + inventaireId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Scan counting opened for inventory {}: {} tasks, {} counts recovered from the journal",
+            inventaireId, tasksByBarcode.size(), pending.size());
+    }
+
+    /**
+     * Open a counting session on an inventory, journaled in the configured scan journal directory
+     * @param inventaireId the inventory ID
+     * @return the session, to be closed by the caller
+     * @throws IOException if the journal cannot be read or created
+     */
+    public static ScanCountSession open(Long inventaireId) throws IOException {
+        Path directory = Paths.get(ConfigurationManager.getInstance().getScanJournalDirectory());
+        return new ScanCountSession(inventaireId, new TacheInventaireRepositoryImpl(), directory,
+            DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Count one unit of the product with this barcode
+     */
+    public ScanResult scan(String barcode) throws IOException {
+        return scan(barcode, 1);
+    }
+
+    /**
+     * Add a quantity to the count of the product with this barcode.
+     * A negative quantity corrects a previous scan; the count never goes below zero.
+     * @param barcode scanned barcode
+     * @param quantity quantity to add
+     * @return the result, unknown when no open task of the inventory has this barcode
+     * @throws IOException if the scan cannot be journaled; the count is then unchanged
+     */
+    public ScanResult scan(String barcode, int quantity) throws IOException {
+        String code = barcode != null ? barcode.trim() : "";
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Scan counting session is closed");
+            }
+            TacheInventaire task = tasksByBarcode.get(code);
+            if (task == null) {
+                return new ScanResult(code, null, 0);
+            }
+            Long taskId = task.getIdTacheInventaire();
+            int count = Math.max(0, counts.get(taskId) + quantity);
+            int delta = count - counts.get(taskId);
+
+            journal.write(taskId + String.valueOf(JOURNAL_SEPARATOR) + delta + "\n");
+            // Hand the line to the OS so it survives an application crash
+            journal.flush();
+
+            counts.put(taskId, count);
+            pending.merge(taskId, delta, Integer::sum);
+            return new ScanResult(code, task, count);
+        }
+    }
+
+    /**
+     * Close the scans since the last flush into a lot, send the unsaved lots with one batch each,
+     * then compact the journal. A lot that fails is sent again, with the same ID, by the next flush.
+     * @return number of task counts saved
+     * @throws IOException if the journal cannot be synced or compacted
+     */
+    public int flush() throws IOException {
+        synchronized (flushLock) {
+            List<Lot> batch;
+            synchronized (lock) {
+                if (!pending.isEmpty()) {
+                    Lot lot = new Lot(UUID.randomUUID().toString(), new LinkedHashMap<>(pending));
+                    journal.write(LOT_MARKER + lot.id + "\n");
+                    pending.clear();
+                    lots.add(lot);
+                }
+                if (lots.isEmpty()) {
+                    return 0;
+                }
+                journal.flush();
+                journalStream.getChannel().force(false);
+                batch = new ArrayList<>(lots);
+            }
+
+            int saved = 0;
+            for (Lot lot : batch) {
+                repository.addPhysicalCounts(lot.id, lot.deltas);
+                synchronized (lock) {
+                    lots.remove(lot);
+                }
+                saved += lot.deltas.size();
+            }
+
+            synchronized (lock) {
+                compactJournal();
+            }
+            lastFlushTime = LocalDateTime.now();
+            lastFlushError = null;
+            logger.debug("Saved {} scan counts of inventory {}", saved, inventaireId);
+            return saved;
+        }
+    }
+
+    /**
+     * Stop the background flush, save the remaining counts and close the journal.
+     * The journal is deleted once every count is saved.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            synchronized (lock) {
+                journal.close();
+                if (pending.isEmpty() && lots.isEmpty()) {
+                    Files.deleteIfExists(journalPath);
+                }
+            }
+        }
+        logger.info("Scan counting closed for inventory {}", inventaireId);
+    }
+
+    /**
+     * @return the counted tasks with their count, in task order
+     */
+    public List<ScanResult> getCountedTasks() {
+        synchronized (lock) {
+            List<ScanResult> result = new ArrayList<>();
+            for (TacheInventaire task : tasksByBarcode.values()) {
+                int count = counts.get(task.getIdTacheInventaire());
+                if (count > 0 || isUnsaved(task.getIdTacheInventaire()) || task.getQuantitePhysique() != null) {
+                    result.add(new ScanResult(task.getProduit().getCodeBarre(), task, count));
+                }
+            }
+            result.sort((a, b) -> a.getTask().getIdTacheInventaire().compareTo(b.getTask().getIdTacheInventaire()));
+            return result;
+        }
+    }
+
+    /**
+     * @return every task of the session with its current count
+     */
+    public List<ScanResult> getAllTasks() {
+        synchronized (lock) {
+            List<ScanResult> result = new ArrayList<>(tasksByBarcode.size());
+            for (Map.Entry<String, TacheInventaire> entry : tasksByBarcode.entrySet()) {
+                TacheInventaire task = entry.getValue();
+                result.add(new ScanResult(entry.getKey(), task, counts.get(task.getIdTacheInventaire())));
+            }
+            result.sort((a, b) -> a.getTask().getIdTacheInventaire().compareTo(b.getTask().getIdTacheInventaire()));
+            return result;
+        }
+    }
+
+    /**
+     * @return number of task counts not saved to the database yet
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            Set<Long> unsaved = new HashSet<>(pending.keySet());
+            for (Lot lot : lots) {
+                unsaved.addAll(lot.deltas.keySet());
+            }
+            return unsaved.size();
+        }
+    }
+
+    public Long getInventaireId() {
+        return inventaireId;
+    }
+
+    /**
+     * @return time of the last successful flush, or null
+     */
+    public LocalDateTime getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    /**
+     * @return message of the last failed flush, null once a flush succeeds
+     */
+    public String getLastFlushError() {
+        return lastFlushError;
+    }
+
+    /**
+     * Called with the lock held
+     */
+    private boolean isUnsaved(Long taskId) {
+        if (pending.containsKey(taskId)) {
+            return true;
+        }
+        for (Lot lot : lots) {
+            if (lot.deltas.containsKey(taskId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // Counts stay pending and journaled, the next run retries
+            lastFlushError = e.getMessage();
+            logger.warn("Error saving scan counts of inventory {}", inventaireId, e);
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            Map<Long, Integer> deltas = new LinkedHashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 1 && line.charAt(0) == LOT_MARKER) {
+                    lots.add(new Lot(line.substring(1), deltas));
+                    deltas = new LinkedHashMap<>();
+                    continue;
+                }
+                int separator = line.indexOf(JOURNAL_SEPARATOR);
+                if (separator <= 0) {
+                    continue;
+                }
+                try {
+                    Long taskId = Long.valueOf(line.substring(0, separator));
+                    int delta = Integer.parseInt(line.substring(separator + 1));
+                    deltas.merge(taskId, delta, Integer::sum);
+                } catch (NumberFormatException e) {
+                    // Last line cut short by a crash
+                    logger.warn("Ignoring malformed scan journal line: {}", line);
+                }
+            }
+            // Scans after the last lot were never sent
+            pending.putAll(deltas);
+        }
+    }
+
+    private void openJournal() throws IOException {
+        journalStream = new FileOutputStream(journalPath.toFile(), true);
+        journal = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rewrite the journal with the unsaved lots and the pending scans only. Called with the lock held.
+     */
+    private void compactJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        Path tmp = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (Lot lot : lots) {
+                writeDeltas(writer, lot.deltas);
+                writer.write(LOT_MARKER + lot.id + "\n");
+            }
+            writeDeltas(writer, pending);
+            writer.flush();
+            out.getChannel().force(false);
+        }
+        Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openJournal();
+    }
+
+    private static void writeDeltas(Writer writer, Map<Long, Integer> deltas) throws IOException {
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            writer.write(entry.getKey() + String.valueOf(JOURNAL_SEPARATOR) + entry.getValue() + "\n");
+        }
+    }
+
+    /**
+     * Scanned quantities by task sent to the database together, under an ID recorded on apply
+     */
+    private static final class Lot {
+        private final String id;
+        private final Map<Long, Integer> deltas;
+
+        Lot(String id, Map<Long, Integer> deltas) {
+            this.id = id;
+            this.deltas = deltas;
+        }
+    }
+
+    /**
+     * Outcome of a scan: the task counted and its new count, or an unknown barcode
+     */
+    public static final class ScanResult {
+        private final String barcode;
+        private final TacheInventaire task;
+        private final int count;
+
+        ScanResult(String barcode, TacheInventaire task, int count) {
+            this.barcode = barcode;
+            this.task = task;
+            this.count = count;
+        }
+
+        public boolean isKnown() {
+            return task != null;
+        }
+
+        public String getBarcode() {
+            return barcode;
+        }
+
+        public TacheInventaire getTask() {
+            return task;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package insea.neobrain.util;
+
+import insea.neobrain.entity.MouvementStock;
+import insea.neobrain.entity.TypeMouvementStock;
+import insea.neobrain.repository.MouvementStockRepository;
+import insea.neobrain.repository.impl.MouvementStockRepositoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous, batched writer for the stock movement ledger.
+ * Stock operations only enqueue the movement; a background thread appends
+ * queued movements with batched inserts. When the queue is full the caller
+ * writes its movement itself, so movements are slowed down but never dropped.
+ * Movements are only taken from the queue under the write lock, so a batch is never
+ * in flight outside it: flush() returns once every movement recorded before it is written.
+ */
+public class StockMovementRecorder {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockMovementRecorder.class);
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MS = 500;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    
+    private static StockMovementRecorder instance;
+    
+    private final MouvementStockRepository repository;
+    private final BlockingQueue<MouvementStock> queue;
+    private final Object writeLock = new Object();
+    private final Thread writer;
+    private volatile boolean running = true;
+    
+    StockMovementRecorder(MouvementStockRepository repository) {
+        this.repository = repository;
+        this.queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        this.writer = new Thread(this::writeLoop, "stock-movement-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    public static synchronized StockMovementRecorder getInstance() {
+        if (instance == null) {
+            instance = new StockMovementRecorder(new MouvementStockRepositoryImpl());
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::shutdown, "stock-movement-shutdown"));
+        }
+        return instance;
+    }
+    
+    /**
+     * Record a stock movement
+     * @param produitId Product ID
+     * @param type Movement type
+     * @param quantite Quantity moved (negative for an exit)
+     * @param quantiteApres Stock after the movement, if known
+     * @param motif Reason of the movement
+     */
+    public void record(Long produitId, TypeMouvementStock type, int quantite, Integer quantiteApres, String motif) {
+        if (produitId == null || quantite == 0) {
+            return;
+        }
+        MouvementStock mouvement = new MouvementStock(produitId, type, quantite, quantiteApres, motif);
+        if (!running || !queue.offer(mouvement)) {
+            // Back-pressure: the writer is behind (or stopped), write in the caller thread
+            logger.debug("Stock movement queue full, writing synchronously");
+            write(List.of(mouvement));
+        } else {
+            LockSupport.unpark(writer);
+        }
+    }
+    
+    /**
+     * Write all queued movements now; waits for the batch the writer is writing, if any
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            List<MouvementStock> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Stop the background writer and write the remaining movements
+     */
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    /**
+     * @return number of movements waiting to be written
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+    
+    private void writeLoop() {
+        while (running) {
+            if (queue.isEmpty()) {
+                // Woken up by record(); shutdown() interrupts the thread and flushes what is left
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                continue;
+            }
+            flush();
+        }
+    }
+    
+    private void write(List<MouvementStock> batch) {
+        // Serialize writers so a synchronous fallback, flush() and the background thread do not interleave batches
+        synchronized (writeLock) {
+            for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+                try {
+                    repository.saveAll(batch);
+                    logger.debug("Appended {} stock movements", batch.size());
+                    return;
+                } catch (Exception e) {
+                    logger.warn("Error appending {} stock movements (attempt {}/{})", batch.size(), attempt, MAX_WRITE_ATTEMPTS, e);
+                    // The failed transaction assigned IDs that were never committed
+                    batch.forEach(mouvement -> mouvement.setIdMouvementStock(null));
+                }
+            }
+            for (MouvementStock mouvement : batch) {
+                logger.error("Stock movement lost: {}", mouvement);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+-- Idempotent schema upgrades applied at startup by SchemaUpgrader.
+-- hbm2ddl (update) runs first, so every table and sequence mapped by an entity exists.
+-- Each statement must end with a semicolon at the end of a line.
+
+-- Pooled sequences (allocationSize = 50) replaced IDENTITY ids: move each sequence
+-- past the rows created before the switch. GREATEST keeps a sequence from going backwards
+-- while other clients still hold allocated blocks.
+SELECT setval('produit_seq', GREATEST((SELECT last_value FROM produit_seq), (SELECT COALESCE(MAX(id_produit), 0) FROM produit) + 50));
+SELECT setval('commande_vente_seq', GREATEST((SELECT last_value FROM commande_vente_seq), (SELECT COALESCE(MAX(id_commande_vente), 0) FROM commande_vente) + 50));
+SELECT setval('ligne_commande_seq', GREATEST((SELECT last_value FROM ligne_commande_seq), (SELECT COALESCE(MAX(id_ligne_vente), 0) FROM ligne_commande) + 50));
+SELECT setval('tache_inventaire_seq', GREATEST((SELECT last_value FROM tache_inventaire_seq), (SELECT COALESCE(MAX(id_tache_inventaire), 0) FROM tache_inventaire) + 50));
+
+-- Optimistic locking column added to produit: rows created before it start at version 0
+UPDATE produit SET version = 0 WHERE version IS NULL;
+
+-- Inventories with discrepancies are a small share of the history: a partial index keeps
+-- the discrepancy screens from scanning every inventory
+CREATE INDEX IF NOT EXISTS idx_inventaire_ecarts ON inventaire (ecarts_detectes DESC) WHERE ecarts_detectes > 0;
+
+-- Inventory tasks can wait unassigned in a shared pool until a counter claims them
+ALTER TABLE tache_inventaire ALTER COLUMN id_personnel DROP NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_tache_inventaire_pool ON tache_inventaire (priorite, emplacement_verifie, id_tache_inventaire) WHERE etat_tache = 'EN_ATTENTE' AND id_personnel IS NULL;
+
+-- Scan counting (ScanCountSession) adds journaled lots of counts to the tasks: each applied
+-- lot is recorded so a lot replayed after a crash is not added twice
+CREATE TABLE IF NOT EXISTS scan_lot (id_lot VARCHAR(36) PRIMARY KEY, date_application TIMESTAMP NOT NULL);
+
+-- Product search (ProduitRepository.search): trigram GIN indexes serve LIKE '%term%' and
+-- approximate name matches, the text_pattern_ops index serves short name prefixes.
+-- Creating the extension needs the CREATE privilege on the database; without it the
+-- search falls back to plain substring matching.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_produit_nom_trgm ON produit USING gin (lower(nom) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_produit_code_produit_trgm ON produit USING gin (lower(code_produit) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_produit_code_barre_trgm ON produit USING gin (code_barre gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_produit_nom_prefix ON produit (lower(nom) text_pattern_ops);
+
+-- Barcodes identify a product at the till (BarcodeIndex, scan counting): rows that share a
+-- barcode keep it on the oldest product only, then a partial unique index rejects new
+-- duplicates. Products without a barcode are left out of the index.
+UPDATE produit p SET code_barre = NULL WHERE p.code_barre <> '' AND EXISTS (SELECT 1 FROM produit o WHERE o.code_barre = p.code_barre AND o.id_produit < p.id_produit);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_produit_code_barre_unique ON produit (code_barre) WHERE code_barre <> '';
+
+-- Paged product table (PagedTableModel): each sortable column is read with keyset queries
+-- ordered by (column, id), served by a range scan of these indexes in either direction
+CREATE INDEX IF NOT EXISTS idx_produit_nom_id ON produit (nom, id_produit);
+CREATE INDEX IF NOT EXISTS idx_produit_prix_id ON produit (prix, id_produit);
+CREATE INDEX IF NOT EXISTS idx_produit_categorie_id ON produit (categorie, id_produit);
+CREATE INDEX IF NOT EXISTS idx_produit_quantite_stock_id ON produit (quantite_stock, id_produit);
+
+-- Category filter of the product table: first products of a category by name
+CREATE INDEX IF NOT EXISTS idx_produit_categorie_nom_id ON produit (categorie, nom, id_produit);
+
+-- Paged personnel table: same (column, id) keyset order; names are stored on personne
+CREATE INDEX IF NOT EXISTS idx_personne_nom_id ON personne (nom, id_personne);
+CREATE INDEX IF NOT EXISTS idx_personne_prenom_id ON personne (prenom, id_personne);
+CREATE INDEX IF NOT EXISTS idx_personnel_role_id ON personnel (role, id_personne);
+CREATE INDEX IF NOT EXISTS idx_personnel_date_embauche_id ON personnel (date_embauche, id_personne);
+
+-- Business document numbers (NumberGenerator): each nextval reserves a block of 50 numbers,
+-- handed out in memory by the client. The increment must match NumberGenerator.BLOCK_SIZE.
+CREATE SEQUENCE IF NOT EXISTS numero_inventaire_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS numero_commande_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS code_produit_seq START WITH 1 INCREMENT BY 50;
+
+-- Daily sales rollup read by the sales reports (CommandeVenteRepository): order totals per day
+-- and payment mode, line totals per day, payment mode and product category. Orders saved,
+-- changed or deleted through CommandeVenteRepository append their totals to
+-- ventes_journalieres_delta, folded into the rollup before it is read;
+-- rebuildSalesRollup recomputes it from the orders. Orders without payment mode are under ''.
+CREATE TABLE IF NOT EXISTS ventes_journalieres (
+    jour DATE NOT NULL,
+    mode_paiement VARCHAR(20) NOT NULL,
+    nombre_commandes INTEGER NOT NULL,
+    montant_total NUMERIC(14, 2) NOT NULL,
+    PRIMARY KEY (jour, mode_paiement));
+CREATE TABLE IF NOT EXISTS ventes_journalieres_categorie (
+    jour DATE NOT NULL,
+    mode_paiement VARCHAR(20) NOT NULL,
+    categorie VARCHAR(255) NOT NULL,
+    quantite_vendue BIGINT NOT NULL,
+    montant_lignes NUMERIC(14, 2) NOT NULL,
+    PRIMARY KEY (jour, mode_paiement, categorie));
+
+-- First start with the rollup: fill it from the order history
+INSERT INTO ventes_journalieres (jour, mode_paiement, nombre_commandes, montant_total)
+SELECT c.date_commande_vente, COALESCE(c.mode_paiement, ''), COUNT(*), COALESCE(SUM(c.total_ttc), 0)
+FROM commande_vente c WHERE NOT EXISTS (SELECT 1 FROM ventes_journalieres) GROUP BY 1, 2;
+INSERT INTO ventes_journalieres_categorie (jour, mode_paiement, categorie, quantite_vendue, montant_lignes)
+SELECT c.date_commande_vente, COALESCE(c.mode_paiement, ''), p.categorie, SUM(l.quantite_vente), COALESCE(SUM(l.sous_total), 0)
+FROM commande_vente c JOIN ligne_commande l ON l.id_commande_vente = c.id_commande_vente
+JOIN produit p ON p.id_produit = l.id_produit
+WHERE NOT EXISTS (SELECT 1 FROM ventes_journalieres_categorie) GROUP BY 1, 2, 3;
+
+-- Best sellers (SalesLeaderboard): line totals per day and product, maintained with the
+-- daily sales rollup. Top-N over a window reads the days of the window, whatever the history size.
+CREATE TABLE IF NOT EXISTS ventes_produit_journalieres (
+    jour DATE NOT NULL,
+    id_produit BIGINT NOT NULL,
+    quantite_vendue BIGINT NOT NULL,
+    montant NUMERIC(14, 2) NOT NULL,
+    PRIMARY KEY (jour, id_produit));
+INSERT INTO ventes_produit_journalieres (jour, id_produit, quantite_vendue, montant)
+SELECT c.date_commande_vente, l.id_produit, SUM(l.quantite_vente), COALESCE(SUM(l.sous_total), 0)
+FROM commande_vente c JOIN ligne_commande l ON l.id_commande_vente = c.id_commande_vente
+WHERE NOT EXISTS (SELECT 1 FROM ventes_produit_journalieres) GROUP BY 1, 2;
+
+-- Sales rollup deltas: one row per order (id_produit NULL) and one per product of its lines,
+-- appended in the order's transaction without locking any rollup row (see SalesRollup)
+CREATE TABLE IF NOT EXISTS ventes_journalieres_delta (
+    id BIGSERIAL PRIMARY KEY,
+    jour DATE NOT NULL,
+    mode_paiement VARCHAR(20) NOT NULL,
+    id_produit BIGINT,
+    categorie VARCHAR(255),
+    nombre_commandes INTEGER NOT NULL,
+    montant_total NUMERIC(14, 2) NOT NULL,
+    quantite_vendue BIGINT NOT NULL,
+    montant_lignes NUMERIC(14, 2) NOT NULL);
@@ -0,0 +1,43 @@
+package insea.neobrain.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+/**
+ * Unit tests for SchemaUpgrader script parsing
+ */
+public class SchemaUpgraderTest {
+
+    @Test
+    @DisplayName("Should split statements and skip comments")
+    void testParseStatements() {
+        String script = "-- comment\n"
+            + "SELECT setval('produit_seq', 1);\n"
+            + "\n"
+            + "CREATE INDEX IF NOT EXISTS idx_test\n"
+            + "    ON produit (nom);\n";
+
+        List<String> statements = SchemaUpgrader.parseStatements(script);
+
+        assertThat(statements).hasSize(2);
+        assertThat(statements.get(0)).isEqualTo("SELECT setval('produit_seq', 1)");
+        assertThat(statements.get(1)).startsWith("CREATE INDEX").endsWith("ON produit (nom)");
+    }
+
+    @Test
+    @DisplayName("Should keep a trailing statement without semicolon")
+    void testParseTrailingStatement() {
+        List<String> statements = SchemaUpgrader.parseStatements("SELECT 1;\nSELECT 2");
+
+        assertThat(statements).containsExactly("SELECT 1", "SELECT 2");
+    }
+
+    @Test
+    @DisplayName("Should return no statement for an empty script")
+    void testParseEmptyScript() {
+        assertThat(SchemaUpgrader.parseStatements("-- nothing\n\n")).isEmpty();
+    }
+}
@@ -0,0 +1,41 @@
+package insea.neobrain.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for KeysetCursor class
+ */
+public class KeysetCursorTest {
+
+    @Test
+    @DisplayName("Should decode an encoded cursor")
+    void testRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor("nom", "Clavier | sans fil", "1042");
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.getLastValue()).isEqualTo("Clavier | sans fil");
+    }
+
+    @Test
+    @DisplayName("Should produce an URL-safe token")
+    void testUrlSafeToken() {
+        String token = new KeysetCursor("nom", "é?/+", "1").encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    @DisplayName("Should reject malformed tokens")
+    void testMalformedToken() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not base64!"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("bm9t"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,41 @@
+package insea.neobrain.repository.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.postgresql.copy.CopyIn;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.CategorieProduit;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Unit tests for CopyRowWriter class
+ */
+public class CopyRowWriterTest {
+
+    @Test
+    @DisplayName("Should write rows in PostgreSQL CSV COPY format")
+    void testCsvFormat() throws Exception {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        CopyIn copyIn = mock(CopyIn.class);
+        doAnswer(invocation -> {
+            sent.write((byte[]) invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        when(copyIn.endCopy()).thenReturn(2L);
+
+        CopyRowWriter writer = new CopyRowWriter(copyIn);
+        writer.value("Écran \"27\", mat").value(null).value("").value(new BigDecimal("1E+2")).endRow();
+        writer.value(CategorieProduit.ELECTROMENAGER).value(LocalDate.of(2024, 3, 1)).value(true).value(5).endRow();
+
+        assertThat(writer.finish()).isEqualTo(2L);
+        assertThat(sent.toString(StandardCharsets.UTF_8)).isEqualTo(
+            "\"Écran \"\"27\"\", mat\",,\"\",100\n"
+            + "ELECTROMENAGER,2024-03-01,true,5\n");
+    }
+}
@@ -0,0 +1,91 @@
+package insea.neobrain.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.ClientRepository;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.service.CommandeVenteService;
+import insea.neobrain.util.CsvImportResult;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Unit tests for CommandeCsvImporter class
+ */
+@ExtendWith(MockitoExtension.class)
+public class CommandeCsvImporterTest {
+
+    private static final String HEADER = "Numero Commande,Id Client,Mode Paiement,Code Barre,Quantite\n";
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private ProduitRepository produitRepository;
+
+    @Mock
+    private CommandeVenteService commandeVenteService;
+
+    @Test
+    @DisplayName("Should group lines into orders, create them one by one and report rejected orders")
+    void testImportWithErrors() throws Exception {
+        Client client = new Client();
+        client.setIdPersonne(7L);
+        Produit stylo = new Produit("STY001", "Stylo", new BigDecimal("5.00"), CategorieProduit.values()[0], 100);
+        stylo.setIdProduit(1L);
+        when(clientRepository.findById(7L)).thenReturn(Optional.of(client));
+        when(clientRepository.findById(8L)).thenReturn(Optional.empty());
+        when(produitRepository.findByCodeBarre(anyString())).thenReturn(Optional.empty());
+        when(produitRepository.findByCodeBarre("12345678")).thenReturn(Optional.of(stylo));
+        List<CommandeVente> created = new ArrayList<>();
+        when(commandeVenteService.createCommande(any(CommandeVente.class))).thenAnswer(invocation -> {
+            CommandeVente commande = invocation.getArgument(0);
+            if ("CMD-4".equals(commande.getNumeroCommande())) {
+                throw new IllegalStateException("Stock insuffisant pour les produits: [1]");
+            }
+            created.add(commande);
+            return commande;
+        });
+
+        String csv = HEADER
+            + "CMD-1,7,CARTE,12345678,2\n"
+            + "CMD-1,7,CARTE,12345678,1\n"
+            + "CMD-2,7,Espèce,12345678,3\n"
+            + "CMD-3,8,,12345678,1\n"
+            + "CMD-4,7,,12345678,500\n"
+            + "CMD-5,7,,99999999,1\n"
+            + "CMD-6,7,,12345678,deux\n";
+
+        List<Integer> progress = new ArrayList<>();
+        CsvImportResult result = new CommandeCsvImporter(clientRepository, produitRepository, commandeVenteService, 4)
+            .importFrom(new StringReader(csv), progress::add);
+
+        assertThat(result.getRecordCount()).isEqualTo(6);
+        assertThat(result.getImportedCount()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(CsvImportResult.LineError::getLine).containsExactly(5L, 6L, 7L, 8L);
+        assertThat(created).extracting(CommandeVente::getNumeroCommande).containsExactly("CMD-1", "CMD-2");
+        assertThat(created.get(0).getLignesCommande()).hasSize(2);
+        assertThat(created.get(0).getModePaiement()).isEqualTo(ModePaiement.CARTE);
+        assertThat(created.get(1).getModePaiement()).isEqualTo(ModePaiement.ESPECE);
+        assertThat(progress).containsExactly(4, 6);
+        // Resolved once per chunk
+        verify(clientRepository, times(2)).findById(7L);
+    }
+}
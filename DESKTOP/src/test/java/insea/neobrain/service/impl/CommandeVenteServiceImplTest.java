@@ -0,0 +1,137 @@
+package insea.neobrain.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.InjectMocks;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Personnel;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.CommandeVenteRepository;
+import insea.neobrain.util.NumberGenerator;
+import insea.neobrain.util.SalesLeaderboard;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Unit tests for CommandeVenteServiceImpl class
+ */
+@ExtendWith(MockitoExtension.class)
+public class CommandeVenteServiceImplTest {
+
+    @Mock
+    private CommandeVenteRepository commandeVenteRepository;
+
+    @Mock
+    private NumberGenerator numberGenerator;
+
+    @Mock
+    private SalesLeaderboard salesLeaderboard;
+
+    @InjectMocks
+    private CommandeVenteServiceImpl commandeVenteService;
+
+    private Client sampleClient;
+    private Produit stylo;
+    private Produit cahier;
+
+    @BeforeEach
+    void setUp() {
+        sampleClient = new Client();
+        sampleClient.setNom("Dupont");
+        sampleClient.setPrenom("Jean");
+
+        stylo = new Produit("STY001", "Stylo", new BigDecimal("5.00"), CategorieProduit.values()[0], 100);
+        stylo.setIdProduit(1L);
+        cahier = new Produit("CAH001", "Cahier", new BigDecimal("12.50"), CategorieProduit.values()[0], 50);
+        cahier.setIdProduit(2L);
+    }
+
+    @Test
+    @DisplayName("Should save the order with its lines in one repository call")
+    void testCreateCommande() {
+        when(commandeVenteRepository.saveOrder(any(CommandeVente.class))).thenAnswer(i -> i.getArgument(0));
+        when(numberGenerator.nextNumeroCommande()).thenReturn("CMD202410-000051");
+        List<LigneCommande> lignes = Arrays.asList(
+            new LigneCommande(null, stylo, 4),
+            new LigneCommande(null, cahier, 2));
+
+        CommandeVente created = commandeVenteService.createCommande(sampleClient, new Personnel(), lignes,
+            ModePaiement.CARTE);
+
+        ArgumentCaptor<CommandeVente> saved = ArgumentCaptor.forClass(CommandeVente.class);
+        verify(commandeVenteRepository, times(1)).saveOrder(saved.capture());
+        verifyNoMoreInteractions(commandeVenteRepository);
+        verify(salesLeaderboard, times(1)).recordSale(created);
+        assertThat(saved.getValue().getLignesCommande()).hasSize(2)
+            .allSatisfy(l -> assertThat(l.getCommandeVente()).isSameAs(created));
+        assertThat(created.getPrixTotal()).isEqualByComparingTo("45.00");
+        assertThat(created.getNumeroCommande()).isEqualTo("CMD202410-000051");
+        assertThat(created.getModePaiement()).isEqualTo(ModePaiement.CARTE);
+    }
+
+    @Test
+    @DisplayName("Should reject an order without lines before reaching the database")
+    void testCreateCommandeWithoutLines() {
+        CommandeVente commande = new CommandeVente(sampleClient);
+
+        assertThatThrownBy(() -> commandeVenteService.createCommande(commande))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("At least one order line is required");
+        verifyNoInteractions(commandeVenteRepository);
+    }
+
+    @Test
+    @DisplayName("Should pass the insufficient stock message on to the caller")
+    void testCreateCommandeInsufficientStock() {
+        when(commandeVenteRepository.saveOrder(any(CommandeVente.class))).thenThrow(
+            new RuntimeException("Error saving order",
+                new IllegalStateException("Stock insuffisant pour les produits: [1]")));
+        List<LigneCommande> lignes = Arrays.asList(new LigneCommande(null, stylo, 500));
+
+        assertThatThrownBy(() -> commandeVenteService.createCommande(sampleClient, null, lignes, ModePaiement.ESPECE))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Stock insuffisant pour les produits: [1]");
+    }
+
+    @Test
+    @DisplayName("Should refuse to change an order that is no longer a draft")
+    @SuppressWarnings("unchecked")
+    void testAddLigneCommandeOnValidatedOrder() {
+        CommandeVente commande = new CommandeVente(sampleClient);
+        commande.setStatut("VALIDEE");
+        when(commandeVenteRepository.updateOrder(eq(1L), any(Consumer.class))).thenAnswer(i -> {
+            Consumer<CommandeVente> change = i.getArgument(1);
+            change.accept(commande);
+            return commande;
+        });
+
+        assertThatThrownBy(() -> commandeVenteService.addLigneCommande(1L, new LigneCommande(null, stylo, 1)))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("n'est plus modifiable");
+        assertThat(commande.getLignesCommande()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should take order numbers from the number generator")
+    void testGenerateOrderNumber() {
+        when(numberGenerator.nextNumeroCommande()).thenReturn("CMD202410-000051", "CMD202410-000052");
+
+        assertThat(commandeVenteService.generateOrderNumber()).isEqualTo("CMD202410-000051");
+        assertThat(commandeVenteService.generateOrderNumber()).isEqualTo("CMD202410-000052");
+    }
+}
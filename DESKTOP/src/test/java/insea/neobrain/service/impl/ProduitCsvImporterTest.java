@@ -0,0 +1,106 @@
+package insea.neobrain.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.util.CsvImportResult;
+import insea.neobrain.util.NumberGenerator;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for ProduitCsvImporter class
+ */
+@ExtendWith(MockitoExtension.class)
+public class ProduitCsvImporterTest {
+
+    private static final String HEADER =
+        "Code Barre,Nom Produit,Categorie,Description,Prix Unitaire,Quantite Stock,Seuil Alerte,Date Creation\n";
+
+    @Mock
+    private ProduitRepository produitRepository;
+
+    @Mock
+    private NumberGenerator numberGenerator;
+
+    @Test
+    @DisplayName("Should import valid rows in batches and report invalid lines")
+    @SuppressWarnings("unchecked")
+    void testImportWithErrors() throws Exception {
+        List<Produit> saved = new ArrayList<>();
+        when(produitRepository.findAllCodesBarre()).thenReturn(new HashSet<>(Set.of("99999999")));
+        when(produitRepository.saveAll(any())).thenAnswer(invocation -> {
+            saved.addAll((Collection<Produit>) invocation.getArgument(0));
+            return new ArrayList<>();
+        });
+        when(numberGenerator.nextCodeProduit(any())).thenReturn("INF-0000051", "ELE-0000052");
+
+        String csv = HEADER
+            + "12345678,Souris,INFORMATIQUE,\"Sans fil, USB\",19.90,10,2,2024-01-01T10:00\n"
+            + "12345679,Frigo,Électroménager,,499.00,3,1,\n"
+            + "99999999,Existant,SPORTS,,10.00,1,1,\n"
+            + "12345678,Doublon,SPORTS,,10.00,1,1,\n"
+            + "abc,Invalide,SPORTS,,10.00,1,1,\n"
+            + "12345680,Prix,SPORTS,,dix,1,1,\n";
+
+        List<Integer> progress = new ArrayList<>();
+        CsvImportResult result = new ProduitCsvImporter(produitRepository, null, numberGenerator, 2)
+            .importFrom(new StringReader(csv), progress::add);
+
+        assertThat(result.getRecordCount()).isEqualTo(6);
+        assertThat(result.getImportedCount()).isEqualTo(2);
+        assertThat(result.getRejectedCount()).isEqualTo(4);
+        assertThat(result.getErrors()).extracting(CsvImportResult.LineError::getLine)
+            .containsExactly(4L, 5L, 6L, 7L);
+        assertThat(progress).containsExactly(2, 4, 6);
+
+        assertThat(saved).hasSize(2);
+        assertThat(saved.get(0).getDescription()).isEqualTo("Sans fil, USB");
+        assertThat(saved.get(0).getCodeProduit()).isEqualTo("INF-0000051");
+        assertThat(saved.get(1).getCodeProduit()).isEqualTo("ELE-0000052");
+        verify(numberGenerator).nextCodeProduit(CategorieProduit.INFORMATIQUE);
+        assertThat(saved.get(1).getCategorieProduit()).isEqualTo(CategorieProduit.ELECTROMENAGER);
+        verify(produitRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should report every line of a chunk whose insert failed")
+    void testFailedChunk() throws Exception {
+        when(produitRepository.findAllCodesBarre()).thenReturn(new HashSet<>());
+        when(produitRepository.saveAll(any())).thenThrow(new RuntimeException("constraint violation"));
+        when(numberGenerator.nextCodeProduit(any())).thenReturn("INF-0000051", "INF-0000052");
+
+        String csv = HEADER
+            + "12345678,Souris,INFORMATIQUE,,19.90,10,2,\n"
+            + "12345679,Clavier,INFORMATIQUE,,29.90,5,2,\n";
+
+        CsvImportResult result = new ProduitCsvImporter(produitRepository, null, numberGenerator,
+            ProduitCsvImporter.DEFAULT_CHUNK_SIZE).importFrom(new StringReader(csv), null);
+
+        assertThat(result.getImportedCount()).isZero();
+        assertThat(result.getRejectedCount()).isEqualTo(2);
+        assertThat(result.getErrors().get(0).getMessage()).contains("constraint violation");
+    }
+
+    @Test
+    @DisplayName("Should accept category names and labels")
+    void testParseCategorie() {
+        assertThat(ProduitCsvImporter.parseCategorie("VETEMENTS")).isEqualTo(CategorieProduit.VETEMENTS);
+        assertThat(ProduitCsvImporter.parseCategorie(" Vêtements ")).isEqualTo(CategorieProduit.VETEMENTS);
+        assertThatThrownBy(() -> ProduitCsvImporter.parseCategorie("Jouets"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,89 @@
+package insea.neobrain.ui.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.repository.GenericRepository;
+import insea.neobrain.repository.KeysetPage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for PagedTableModel class
+ */
+@ExtendWith(MockitoExtension.class)
+public class PagedTableModelTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Mock
+    private GenericRepository<String, Long> repository;
+
+    @Test
+    @DisplayName("Should read the next page by keyset and a distant page by offset")
+    void testFetchPage() {
+        PagedTableModel<String> model = newModel();
+
+        model.fetchPage("nom", true, 0, null);
+        verify(repository).findPage("nom", true, null, PAGE_SIZE);
+
+        model.fetchPage("nom", true, 1, "cursor");
+        verify(repository).findPage("nom", true, "cursor", PAGE_SIZE);
+
+        model.fetchPage("nom", true, 500, null);
+        verify(repository).findPageAt("nom", true, 5_000, PAGE_SIZE);
+    }
+
+    @Test
+    @DisplayName("Should size the table from the estimate and correct it on the last page")
+    void testRowCount() {
+        PagedTableModel<String> model = newModel();
+
+        model.pageLoaded(0, new KeysetPage<>(rows(0, PAGE_SIZE), "next", 25), 25);
+        assertThat(model.getRowCount()).isEqualTo(25);
+        assertThat(model.getValueAt(3, 0)).isEqualTo("row 3");
+
+        // Estimate too low: one more row at least
+        model.pageLoaded(2, new KeysetPage<>(rows(20, PAGE_SIZE), "next", KeysetPage.UNKNOWN_TOTAL),
+            KeysetPage.UNKNOWN_TOTAL);
+        assertThat(model.getRowCount()).isEqualTo(31);
+
+        model.pageLoaded(3, new KeysetPage<>(rows(30, 4), null, KeysetPage.UNKNOWN_TOTAL),
+            KeysetPage.UNKNOWN_TOTAL);
+        assertThat(model.getRowCount()).isEqualTo(34);
+        assertThat(model.getValueAt(33, 0)).isEqualTo("row 33");
+    }
+
+    @Test
+    @DisplayName("Should show a fixed list until reloaded")
+    void testFixedRows() {
+        PagedTableModel<String> model = newModel();
+
+        model.setRows(List.of("a", "b"));
+
+        assertThat(model.isPaged()).isFalse();
+        assertThat(model.getRowCount()).isEqualTo(2);
+        assertThat(model.getRow(1)).isEqualTo("b");
+        model.toggleSort(0);
+        verifyNoInteractions(repository);
+    }
+
+    private PagedTableModel<String> newModel() {
+        return new PagedTableModel<>(repository, new String[]{"Nom"}, new String[]{"nom"}, "nom",
+            (row, column) -> row, PAGE_SIZE, 2);
+    }
+
+    private static List<String> rows(int first, int count) {
+        List<String> rows = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            rows.add("row " + i);
+        }
+        return rows;
+    }
+}
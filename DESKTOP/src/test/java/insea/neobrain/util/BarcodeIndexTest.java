@@ -0,0 +1,171 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.repository.ProduitRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+/**
+ * Unit tests for BarcodeIndex class
+ */
+@ExtendWith(MockitoExtension.class)
+public class BarcodeIndexTest {
+
+    @Mock
+    private ProduitRepository repository;
+
+    @Test
+    @DisplayName("Should load lazily and resolve numeric and other barcodes")
+    @SuppressWarnings("unchecked")
+    void testLookup() {
+        mockProducts(Map.of("3017620422003", 1L, "03017620422003", 2L, "ABC-12", 3L));
+        BarcodeIndex index = new BarcodeIndex(repository, 0);
+        verifyNoInteractions(repository);
+
+        assertThat(index.findProduitId("3017620422003")).isEqualTo(1L);
+        assertThat(index.findProduitId("03017620422003")).isEqualTo(2L);
+        assertThat(index.findProduitId("ABC-12")).isEqualTo(3L);
+        assertThat(index.findProduitId("12345678")).isNull();
+        assertThat(index.size()).isEqualTo(3);
+        verify(repository, times(1)).forEachCodeBarre(any(BiConsumer.class));
+    }
+
+    @Test
+    @DisplayName("Should follow barcode changes and deletions made through the service")
+    void testPutAndRemove() {
+        mockProducts(Map.of("11111111", 1L, "22222222", 2L));
+        BarcodeIndex index = new BarcodeIndex(repository, 0);
+        index.findProduitId("11111111");
+
+        index.put("33333333", 1L);
+        assertThat(index.findProduitId("11111111")).isNull();
+        assertThat(index.findProduitId("33333333")).isEqualTo(1L);
+
+        index.remove(2L);
+        assertThat(index.findProduitId("22222222")).isNull();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should apply recent changes and reload when products were deleted elsewhere")
+    @SuppressWarnings("unchecked")
+    void testRefresh() {
+        mockProducts(Map.of("11111111", 1L, "22222222", 2L));
+        BarcodeIndex index = new BarcodeIndex(repository, 0);
+        index.findProduitId("11111111");
+
+        List<Object[]> changes = new ArrayList<>();
+        changes.add(new Object[]{"44444444", 4L});
+        when(repository.findCodesBarreModifiedSince(any())).thenReturn(changes);
+        when(repository.summarizeCodesBarre()).thenReturn(new long[]{3, 7});
+        index.refresh();
+        assertThat(index.findProduitId("44444444")).isEqualTo(4L);
+        verify(repository, times(1)).forEachCodeBarre(any(BiConsumer.class));
+
+        mockProducts(Map.of("44444444", 4L));
+        index.refresh();
+        assertThat(index.findProduitId("11111111")).isNull();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reload when a deletion elsewhere is offset by a creation")
+    @SuppressWarnings("unchecked")
+    void testRefreshSameCount() {
+        mockProducts(Map.of("11111111", 1L, "22222222", 2L));
+        BarcodeIndex index = new BarcodeIndex(repository, 0);
+        index.findProduitId("11111111");
+
+        // Product 2 deleted and product 5 created: same count, different ID sum
+        List<Object[]> changes = new ArrayList<>();
+        changes.add(new Object[]{"55555555", 5L});
+        when(repository.findCodesBarreModifiedSince(any())).thenReturn(changes);
+        mockProducts(Map.of("11111111", 1L, "55555555", 5L));
+        index.refresh();
+
+        assertThat(index.findProduitId("22222222")).isNull();
+        assertThat(index.findProduitId("55555555")).isEqualTo(5L);
+        assertThat(index.size()).isEqualTo(2);
+        verify(repository, times(2)).forEachCodeBarre(any(BiConsumer.class));
+    }
+
+    @Test
+    @DisplayName("Should move a barcode taken over by another product")
+    void testPutMovedBarcode() {
+        mockProducts(Map.of("11111111", 1L, "ABC-1", 2L));
+        BarcodeIndex index = new BarcodeIndex(repository, 0);
+        index.findProduitId("11111111");
+
+        index.put("11111111", 3L);
+        index.put("ABC-1", 4L);
+        assertThat(index.findProduitId("11111111")).isEqualTo(3L);
+        assertThat(index.findProduitId("ABC-1")).isEqualTo(4L);
+
+        // Removing the former owners leaves the new ones in place
+        index.remove(1L);
+        index.remove(2L);
+        assertThat(index.findProduitId("11111111")).isEqualTo(3L);
+        assertThat(index.findProduitId("ABC-1")).isEqualTo(4L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should behave like a HashMap under random puts and removes")
+    void testLongLongHashMap() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.getOrDefault(key, 0L));
+                expected.remove(key);
+            } else {
+                long value = 1 + random.nextInt(1_000);
+                assertThat(map.put(key, value)).isEqualTo(expected.getOrDefault(key, 0L));
+                expected.put(key, value);
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+
+        long removedValue = expected.values().iterator().next();
+        long occurrences = expected.values().stream().filter(v -> v == removedValue).count();
+        assertThat(map.removeValue(removedValue)).isEqualTo((int) occurrences);
+        expected.values().removeIf(v -> v == removedValue);
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+    }
+
+    @Test
+    @DisplayName("Should keep leading zeros apart when packing numeric barcodes")
+    void testNumericKey() {
+        assertThat(BarcodeIndex.numericKey("0123")).isNotEqualTo(BarcodeIndex.numericKey("123"));
+        assertThat(BarcodeIndex.numericKey("99999999999999")).isPositive();
+        assertThat(BarcodeIndex.numericKey("12A4")).isZero();
+        assertThat(BarcodeIndex.numericKey("1234567890123456")).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockProducts(Map<String, Long> products) {
+        lenient().when(repository.countCodesBarre()).thenReturn((long) products.size());
+        lenient().when(repository.summarizeCodesBarre()).thenReturn(
+            new long[]{products.size(), products.values().stream().mapToLong(Long::longValue).sum()});
+        doAnswer(invocation -> {
+            BiConsumer<String, Long> action = invocation.getArgument(0);
+            products.forEach(action);
+            return null;
+        }).when(repository).forEachCodeBarre(any(BiConsumer.class));
+    }
+}
@@ -0,0 +1,56 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Unit tests for CsvStreamWriter class
+ */
+public class CsvStreamWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should quote only the fields that need it")
+    void testFieldFormatting() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvStreamWriter csv = new CsvStreamWriter(out, false);
+        csv.header("Nom", "Description", "Prix", "Stock", "Date");
+        csv.field("Souris").field("Sans fil, \"USB\"").field(new BigDecimal("19.90")).field(12).field((Object) null).endRow();
+        csv.field("Écran").field("Ligne 1\nLigne 2").field(BigDecimal.ONE).field(0).field(LocalDate.of(2024, 1, 31)).endRow();
+        csv.finish();
+
+        assertThat(csv.getRowCount()).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+            "Nom,Description,Prix,Stock,Date\n"
+            + "Souris,\"Sans fil, \"\"USB\"\"\",19.90,12,\n"
+            + "Écran,\"Ligne 1\nLigne 2\",1,0,2024-01-31\n");
+    }
+
+    @Test
+    @DisplayName("Should gzip files with the .gz extension")
+    void testGzipFile() throws Exception {
+        Path file = tempDir.resolve("produits.csv.gz");
+        try (CsvStreamWriter csv = CsvStreamWriter.open(file)) {
+            csv.header("Code", "Nom");
+            csv.field("12345678").field("Souris").endRow();
+        }
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("Code,Nom\n12345678,Souris\n");
+        }
+        assertThat(CsvStreamWriter.isGzipPath(tempDir.resolve("export.csv"))).isFalse();
+    }
+}
@@ -0,0 +1,100 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.repository.SequenceRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for NumberGenerator class
+ */
+public class NumberGeneratorTest {
+
+    /**
+     * In-memory sequences incremented by the block size, like the database ones
+     */
+    private static class FakeSequences implements SequenceRepository {
+        private final Map<String, AtomicLong> values = new ConcurrentHashMap<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public long nextBlock(String sequenceName) {
+            calls.incrementAndGet();
+            return values.computeIfAbsent(sequenceName, name -> new AtomicLong(1 - NumberGenerator.BLOCK_SIZE))
+                .addAndGet(NumberGenerator.BLOCK_SIZE);
+        }
+    }
+
+    @Test
+    @DisplayName("Should hand out a block of numbers per database call")
+    void testBlockAllocation() {
+        FakeSequences sequences = new FakeSequences();
+        NumberGenerator generator = new NumberGenerator(sequences);
+
+        for (int i = 1; i <= 120; i++) {
+            assertThat(generator.next(NumberGenerator.DocumentType.COMMANDE)).isEqualTo(i);
+        }
+        assertThat(generator.next(NumberGenerator.DocumentType.INVENTAIRE)).isEqualTo(1);
+        assertThat(sequences.calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should format numbers per document type")
+    void testFormats() {
+        NumberGenerator generator = new NumberGenerator(new FakeSequences());
+
+        assertThat(generator.nextNumeroInventaire()).matches("INV\\d{6}-000001");
+        assertThat(generator.nextNumeroCommande()).matches("CMD\\d{6}-000001");
+        assertThat(generator.nextCodeProduit(CategorieProduit.INFORMATIQUE)).isEqualTo("INF-0000001");
+        assertThat(generator.nextCodeProduit(null)).isEqualTo("PRD-0000002");
+    }
+
+    @Test
+    @DisplayName("Should never hand out the same number twice under concurrent use")
+    void testConcurrentNumbers() throws Exception {
+        FakeSequences sequences = new FakeSequences();
+        NumberGenerator generator = new NumberGenerator(sequences);
+        Set<Long> numbers = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<Integer> task = () -> {
+                    int duplicates = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (!numbers.add(generator.next(NumberGenerator.DocumentType.PRODUIT))) {
+                            duplicates++;
+                        }
+                    }
+                    return duplicates;
+                };
+                results.add(executor.submit(task));
+            }
+            for (Future<Integer> result : results) {
+                assertThat(result.get()).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(numbers).hasSize(threads * perThread);
+        assertThat(sequences.calls.get()).isEqualTo(threads * perThread / NumberGenerator.BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,134 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.Client;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.ModePaiement;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.ProduitRepository;
+import insea.neobrain.service.CommandeVenteService;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Unit tests for SaleCart class
+ */
+@ExtendWith(MockitoExtension.class)
+public class SaleCartTest {
+
+    @Mock
+    private ProduitRepository produitRepository;
+
+    @Mock
+    private CommandeVenteService commandeVenteService;
+
+    private SaleCart cart;
+    private Produit stylo;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            BiConsumer<String, Long> action = invocation.getArgument(0);
+            Map.of("3017620422003", 1L).forEach(action);
+            return null;
+        }).when(produitRepository).forEachCodeBarre(any(BiConsumer.class));
+        cart = new SaleCart(new BarcodeIndex(produitRepository, 0), produitRepository, commandeVenteService,
+            SaleCart.PRODUCT_TTL_MS);
+
+        stylo = new Produit("STY001", "Stylo", new BigDecimal("2.50"), CategorieProduit.values()[0], 5);
+        stylo.setIdProduit(1L);
+    }
+
+    @Test
+    @DisplayName("Should read a product once and then resolve it from the cache")
+    void testProductCache() {
+        when(produitRepository.findById(1L)).thenReturn(Optional.of(stylo));
+
+        assertThat(cart.getCachedProduit("3017620422003")).isNull();
+        assertThat(cart.loadProduit("3017620422003")).isSameAs(stylo);
+        assertThat(cart.getCachedProduit("3017620422003")).isSameAs(stylo);
+        assertThat(cart.loadProduit("12345678")).isNull();
+        verify(produitRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Should accumulate scans and check them against the cached stock")
+    void testAdd() {
+        assertThat(cart.add(stylo, 2)).isEqualTo(SaleCart.AddStatus.ADDED);
+        assertThat(cart.add(stylo, 3)).isEqualTo(SaleCart.AddStatus.ADDED);
+        assertThat(cart.add(stylo, 1)).isEqualTo(SaleCart.AddStatus.INSUFFICIENT_STOCK);
+        assertThat(cart.getLine(1L).getQuantite()).isEqualTo(5);
+        assertThat(cart.getTotal()).isEqualByComparingTo("12.50");
+
+        assertThat(cart.add(stylo, -5)).isEqualTo(SaleCart.AddStatus.ADDED);
+        assertThat(cart.isEmpty()).isTrue();
+
+        stylo.setDisponible(false);
+        assertThat(cart.add(stylo, 1)).isEqualTo(SaleCart.AddStatus.UNAVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Should save the cart in one call and decrement the cached stock")
+    void testCheckout() {
+        when(produitRepository.findById(1L)).thenReturn(Optional.of(stylo));
+        when(commandeVenteService.createCommande(any(CommandeVente.class))).thenAnswer(i -> i.getArgument(0));
+        cart.add(cart.loadProduit("3017620422003"), 3);
+
+        CommandeVente commande = cart.checkout(cart.getLines(), new Client(), null, ModePaiement.ESPECE);
+
+        verify(commandeVenteService, times(1)).createCommande(any(CommandeVente.class));
+        assertThat(commande.getLignesCommande()).hasSize(1);
+        assertThat(commande.getEstValide()).isTrue();
+        assertThat(commande.getPrixTotal()).isEqualByComparingTo("7.50");
+        assertThat(cart.availableStock(stylo)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should drop the cart products from the cache when the sale fails")
+    void testCheckoutFailure() {
+        Produit fresh = new Produit("STY001", "Stylo", new BigDecimal("2.50"), CategorieProduit.values()[0], 1);
+        fresh.setIdProduit(1L);
+        when(produitRepository.findById(1L)).thenReturn(Optional.of(stylo)).thenReturn(Optional.of(fresh));
+        when(commandeVenteService.createCommande(any(CommandeVente.class)))
+            .thenThrow(new IllegalStateException("Stock insuffisant pour les produits: [1]"));
+        cart.add(cart.loadProduit("3017620422003"), 3);
+
+        assertThatThrownBy(() -> cart.checkout(cart.getLines(), new Client(), null, ModePaiement.CARTE))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(cart.getLine(1L).getQuantite()).isEqualTo(3);
+        assertThat(cart.loadProduit("3017620422003")).isSameAs(fresh);
+        assertThat(cart.availableStock(stylo)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should read a product refused for its stock again, and expired products on their next scan")
+    void testReload() {
+        Produit restocked = new Produit("STY001", "Stylo", new BigDecimal("2.50"), CategorieProduit.values()[0], 20);
+        restocked.setIdProduit(1L);
+        when(produitRepository.findById(1L)).thenReturn(Optional.of(stylo)).thenReturn(Optional.of(restocked));
+        Produit produit = cart.loadProduit("3017620422003");
+        assertThat(cart.add(produit, 10)).isEqualTo(SaleCart.AddStatus.INSUFFICIENT_STOCK);
+
+        produit = cart.reloadProduit(1L);
+        assertThat(cart.add(produit, 10)).isEqualTo(SaleCart.AddStatus.ADDED);
+        assertThat(cart.getCachedProduit("3017620422003")).isSameAs(restocked);
+
+        SaleCart expiring = new SaleCart(new BarcodeIndex(produitRepository, 0), produitRepository,
+            commandeVenteService, 0);
+        expiring.loadProduit("3017620422003");
+        assertThat(expiring.getCachedProduit("3017620422003")).isNull();
+    }
+}
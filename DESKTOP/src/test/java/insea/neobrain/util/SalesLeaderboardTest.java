@@ -0,0 +1,132 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.CategorieProduit;
+import insea.neobrain.entity.CommandeVente;
+import insea.neobrain.entity.LigneCommande;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.repository.LigneCommandeRepository;
+import insea.neobrain.util.SalesLeaderboard.Entry;
+import insea.neobrain.util.SalesLeaderboard.Window;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for SalesLeaderboard class
+ */
+@ExtendWith(MockitoExtension.class)
+public class SalesLeaderboardTest {
+
+    @Mock
+    private LigneCommandeRepository repository;
+
+    @Test
+    @DisplayName("Should answer from memory and count the recorded sales")
+    void testRecordSale() {
+        Produit stylo = produit(1L, "5.00");
+        Produit cahier = produit(2L, "12.50");
+        when(repository.getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+                eq(SalesLeaderboard.CANDIDATES)))
+            .thenReturn(List.of(row(stylo, 10, "50.00"), row(cahier, 3, "37.50")));
+        SalesLeaderboard leaderboard = new SalesLeaderboard(repository, 0);
+
+        assertThat(leaderboard.getTopByQuantity(Window.WEEK, 5)).extracting(Entry::getProduit)
+            .containsExactly(stylo, cahier);
+
+        Produit classeur = produit(3L, "40.00");
+        leaderboard.recordSale(commande(LocalDate.now(), cahier, 10, classeur, 2));
+
+        List<Entry> byQuantity = leaderboard.getTopByQuantity(Window.WEEK, 5);
+        assertThat(byQuantity).extracting(Entry::getProduit).containsExactly(cahier, stylo, classeur);
+        assertThat(byQuantity.get(0).getQuantite()).isEqualTo(13);
+        assertThat(leaderboard.getTopByRevenue(Window.WEEK, 1).get(0).getMontant()).isEqualByComparingTo("162.50");
+        // Loaded once, both rankings
+        verify(repository, times(2)).getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+            anyInt());
+    }
+
+    @Test
+    @DisplayName("Should reload when a product outside the candidates may enter the top")
+    void testOutsiderReload() {
+        List<Object[]> candidates = new ArrayList<>();
+        for (long id = 1; id <= SalesLeaderboard.CANDIDATES; id++) {
+            candidates.add(row(produit(id, "1.00"), 1000 - id, String.valueOf(1000 - id)));
+        }
+        when(repository.getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+                eq(SalesLeaderboard.CANDIDATES)))
+            .thenReturn(candidates);
+        SalesLeaderboard leaderboard = new SalesLeaderboard(repository, 0);
+        leaderboard.getTopByQuantity(Window.MONTH, 10);
+
+        // At most 900 + 5 sold: cannot be in the top 10 (991 and more)
+        Produit outsider = produit(500L, "1.00");
+        leaderboard.recordSale(commande(LocalDate.now(), outsider, 5));
+        leaderboard.getTopByQuantity(Window.MONTH, 10);
+        verify(repository, times(2)).getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+            anyInt());
+
+        // Sales outside the window are ignored
+        leaderboard.recordSale(commande(LocalDate.now().minusDays(31), outsider, 500));
+        leaderboard.getTopByQuantity(Window.MONTH, 10);
+        verify(repository, times(2)).getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+            anyInt());
+
+        leaderboard.recordSale(commande(LocalDate.now(), outsider, 100));
+        leaderboard.getTopByQuantity(Window.MONTH, 10);
+        verify(repository, times(4)).getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+            anyInt());
+    }
+
+    @Test
+    @DisplayName("Should read tops larger than the candidates from the database")
+    void testLargeTop() {
+        Produit stylo = produit(1L, "5.00");
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(stylo, 10, "50.00"));
+        when(repository.getProductSalesTotals(LocalDate.now().minusDays(364), LocalDate.now(), true, 500))
+            .thenReturn(rows);
+        SalesLeaderboard leaderboard = new SalesLeaderboard(repository, 0);
+
+        assertThat(leaderboard.getTopByRevenue(Window.YEAR, 500)).extracting(Entry::getProduit)
+            .containsExactly(stylo);
+        verify(repository, never()).getProductSalesTotals(any(LocalDate.class), any(LocalDate.class), anyBoolean(),
+            eq(SalesLeaderboard.CANDIDATES));
+    }
+
+    private static Produit produit(Long id, String prix) {
+        Produit produit = new Produit("P" + id, "Produit " + id, new BigDecimal(prix), CategorieProduit.values()[0], 100);
+        produit.setIdProduit(id);
+        return produit;
+    }
+
+    private static Object[] row(Produit produit, long quantite, String montant) {
+        return new Object[]{produit, quantite, new BigDecimal(montant)};
+    }
+
+    private static CommandeVente commande(LocalDate date, Object... produitsEtQuantites) {
+        CommandeVente commande = new CommandeVente();
+        commande.setDateCommandeVente(date);
+        List<LigneCommande> lignes = new ArrayList<>();
+        for (int i = 0; i < produitsEtQuantites.length; i += 2) {
+            LigneCommande ligne = new LigneCommande(commande, (Produit) produitsEtQuantites[i],
+                (Integer) produitsEtQuantites[i + 1]);
+            ligne.calculerSousTotal();
+            lignes.add(ligne);
+        }
+        commande.setLignesCommande(lignes);
+        return commande;
+    }
+}
@@ -0,0 +1,113 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.EtatTache;
+import insea.neobrain.entity.Produit;
+import insea.neobrain.entity.TacheInventaire;
+import insea.neobrain.repository.TacheInventaireRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for ScanCountSession class
+ */
+@ExtendWith(MockitoExtension.class)
+public class ScanCountSessionTest {
+
+    private static final long NO_BACKGROUND_FLUSH = 3_600_000;
+
+    @Mock
+    private TacheInventaireRepository repository;
+
+    @TempDir
+    Path journalDirectory;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findOpenTasksWithProduit(7L)).thenReturn(List.of(
+            task(1L, "1111", null),
+            task(2L, "2222", 4)));
+    }
+
+    @Test
+    @DisplayName("Should count scans locally and save them in one batch")
+    @SuppressWarnings("unchecked")
+    void testScanAndFlush() throws Exception {
+        ScanCountSession session = new ScanCountSession(7L, repository, journalDirectory, NO_BACKGROUND_FLUSH);
+
+        assertThat(session.scan("1111").getCount()).isEqualTo(1);
+        assertThat(session.scan("1111", 5).getCount()).isEqualTo(6);
+        assertThat(session.scan("2222").getCount()).isEqualTo(5);
+        assertThat(session.scan("9999").isKnown()).isFalse();
+        assertThat(session.scan("1111", -10).getCount()).isZero();
+        assertThat(session.getPendingCount()).isEqualTo(2);
+        verify(repository, never()).addPhysicalCounts(any(), any());
+
+        assertThat(session.flush()).isEqualTo(2);
+        ArgumentCaptor<Map<Long, Integer>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).addPhysicalCounts(anyString(), captor.capture());
+        // Quantities added since the last flush, the clamped correction included
+        assertThat(captor.getValue()).containsEntry(1L, 0).containsEntry(2L, 1);
+        assertThat(session.getPendingCount()).isZero();
+        assertThat(session.flush()).isZero();
+
+        session.close();
+        assertThat(journalDirectory.resolve("inventaire-7.journal")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should send a failed lot again with the same ID and keep later scans pending")
+    void testReplayJournal() throws Exception {
+        when(repository.addPhysicalCounts(anyString(), any()))
+            .thenThrow(new RuntimeException("connection refused"))
+            .thenReturn(2);
+        ScanCountSession crashed = new ScanCountSession(7L, repository, journalDirectory, NO_BACKGROUND_FLUSH);
+        crashed.scan("1111");
+        crashed.scan("1111");
+        crashed.scan("2222", 3);
+        assertThatThrownBy(crashed::flush).hasMessageContaining("connection refused");
+        crashed.scan("2222");
+        // Simulate a torn last line
+        Files.writeString(journalDirectory.resolve("inventaire-7.journal"), "2;", StandardOpenOption.APPEND);
+
+        // Once the lot is applied, the database holds its counts
+        when(repository.findOpenTasksWithProduit(7L)).thenReturn(List.of(
+            task(1L, "1111", 2),
+            task(2L, "2222", 7)));
+        ScanCountSession recovered = new ScanCountSession(7L, repository, journalDirectory, NO_BACKGROUND_FLUSH);
+        ArgumentCaptor<String> lotIds = ArgumentCaptor.forClass(String.class);
+        verify(repository, times(2)).addPhysicalCounts(lotIds.capture(), eq(Map.of(1L, 2, 2L, 3)));
+        assertThat(lotIds.getAllValues().get(1)).isEqualTo(lotIds.getAllValues().get(0));
+
+        assertThat(recovered.getPendingCount()).isEqualTo(1);
+        assertThat(recovered.scan("1111").getCount()).isEqualTo(3);
+        assertThat(recovered.getCountedTasks())
+            .extracting(ScanCountSession.ScanResult::getCount)
+            .containsExactly(3, 8);
+    }
+
+    private static TacheInventaire task(Long id, String barcode, Integer quantitePhysique) {
+        Produit produit = new Produit();
+        produit.setCodeBarre(barcode);
+        TacheInventaire task = new TacheInventaire();
+        task.setIdTacheInventaire(id);
+        task.setProduit(produit);
+        task.setQuantitePhysique(quantitePhysique);
+        task.setEtatTache(quantitePhysique != null ? EtatTache.EN_COURS : EtatTache.EN_ATTENTE);
+        return task;
+    }
+}
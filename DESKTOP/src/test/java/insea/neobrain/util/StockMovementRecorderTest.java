@@ -0,0 +1,115 @@
+package insea.neobrain.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import insea.neobrain.entity.MouvementStock;
+import insea.neobrain.entity.TypeMouvementStock;
+import insea.neobrain.repository.MouvementStockRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for StockMovementRecorder class
+ */
+@ExtendWith(MockitoExtension.class)
+public class StockMovementRecorderTest {
+
+    @Mock
+    private MouvementStockRepository repository;
+
+    private StockMovementRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new StockMovementRecorder(repository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        recorder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should append recorded movements in batches")
+    @SuppressWarnings("unchecked")
+    void testRecordAndFlush() {
+        List<MouvementStock> written = new ArrayList<>();
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            written.addAll((Collection<MouvementStock>) invocation.getArgument(0));
+            return new ArrayList<>();
+        });
+
+        recorder.record(1L, TypeMouvementStock.VENTE, -3, 7, "Vente CMD-001");
+        recorder.record(2L, TypeMouvementStock.RETOUR, 1, 11, "Retour client");
+        recorder.shutdown();
+
+        assertThat(written).hasSize(2);
+        assertThat(written.get(0).getIdProduit()).isEqualTo(1L);
+        assertThat(written.get(0).getQuantite()).isEqualTo(-3);
+        assertThat(written.get(1).getTypeMouvement()).isEqualTo(TypeMouvementStock.RETOUR);
+        assertThat(recorder.getPendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should wait for the batch being written by the background writer on flush")
+    @SuppressWarnings("unchecked")
+    void testFlushWaitsForWriter() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        List<MouvementStock> written = new CopyOnWriteArrayList<>();
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            writing.countDown();
+            Thread.sleep(200);
+            written.addAll((Collection<MouvementStock>) invocation.getArgument(0));
+            return new ArrayList<>();
+        });
+
+        recorder.record(1L, TypeMouvementStock.VENTE, -2, 8, "Vente");
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        recorder.flush();
+
+        assertThat(written).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should ignore movements without quantity")
+    void testIgnoreEmptyMovement() {
+        recorder.record(1L, TypeMouvementStock.AJUSTEMENT_MANUEL, 0, 10, "Aucun changement");
+        recorder.record(null, TypeMouvementStock.AJUSTEMENT_MANUEL, 5, 10, "Sans produit");
+        recorder.shutdown();
+
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should retry a failed batch with fresh IDs")
+    @SuppressWarnings("unchecked")
+    void testRetryFailedBatch() {
+        recorder.shutdown();
+        ArgumentCaptor<Collection<MouvementStock>> captor = ArgumentCaptor.forClass(Collection.class);
+        when(repository.saveAll(captor.capture()))
+            .thenAnswer(invocation -> {
+                ((Collection<MouvementStock>) invocation.getArgument(0)).forEach(m -> m.setIdMouvementStock(42L));
+                throw new RuntimeException("Connection lost");
+            })
+            .thenReturn(new ArrayList<>());
+
+        recorder.record(1L, TypeMouvementStock.VENTE, -1, 4, "Vente");
+
+        verify(repository, times(2)).saveAll(any());
+        assertThat(captor.getValue()).allMatch(m -> m.getIdMouvementStock() == null);
+    }
+}
@@ -3,10 +3,13 @@ package com.code.backend.controller;
 import com.code.backend.entity.Product;
 import com.code.backend.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -15,11 +18,62 @@ public class ProductController {
     @Autowired
     private ProductRepository productRepository;
 
+    // Checked once: searchByName needs the pg_trgm extension
+    private volatile Boolean trigramAvailable;
+
     @GetMapping
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<Map<String, Object>> getProductPage(
+            @RequestParam(value = "after", defaultValue = "0") Long after,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        if (size <= 0 || size > 500) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Fetch one extra row to know whether another page follows
+        List<Product> products = productRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(size + 1));
+        boolean hasNext = products.size() > size;
+        List<Product> content = hasNext ? products.subList(0, size) : products;
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("content", content);
+        page.put("next", hasNext ? content.get(content.size() - 1).getId() : null);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<Product>> searchProducts(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) {
+        if (limit <= 0 || limit > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        String term = query.trim().toLowerCase();
+        if (term.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        if (term.length() < 3) {
+            return ResponseEntity.ok(productRepository.searchByNamePrefix(escaped + "%", limit));
+        }
+        if (!isTrigramAvailable()) {
+            return ResponseEntity.ok(productRepository.searchByNameSubstring("%" + escaped + "%", escaped + "%", limit));
+        }
+        return ResponseEntity.ok(productRepository.searchByName(term, "%" + escaped + "%", escaped + "%", limit));
+    }
+
+    private boolean isTrigramAvailable() {
+        if (trigramAvailable == null) {
+            trigramAvailable = productRepository.isTrigramAvailable();
+        }
+        return trigramAvailable;
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Product> getProductById(@PathVariable Long id) {
         return productRepository.findById(id)
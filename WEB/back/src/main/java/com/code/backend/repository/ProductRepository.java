@@ -1,7 +1,37 @@
 package com.code.backend.repository;
 
 import com.code.backend.entity.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    // Keyset page: seeks on the primary key index instead of skipping rows
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Served by the pg_trgm GIN index on lower(nom) created by the desktop schema upgrades;
+    // prefix matches first, then by similarity, so close spellings are found as well
+    @Query(value = "SELECT p.* FROM produit p " +
+            "WHERE lower(p.nom) LIKE :pattern OR :term <% lower(p.nom) " +
+            "ORDER BY (lower(p.nom) LIKE :prefix) DESC, word_similarity(:term, lower(p.nom)) DESC, " +
+            "lower(p.nom), p.id_produit LIMIT :limit", nativeQuery = true)
+    List<Product> searchByName(@Param("term") String term, @Param("pattern") String pattern,
+                               @Param("prefix") String prefix, @Param("limit") int limit);
+
+    // Fallback when pg_trgm is not installed: substring match, prefix matches first
+    @Query(value = "SELECT p.* FROM produit p WHERE lower(p.nom) LIKE :pattern " +
+            "ORDER BY (lower(p.nom) LIKE :prefix) DESC, lower(p.nom), p.id_produit LIMIT :limit", nativeQuery = true)
+    List<Product> searchByNameSubstring(@Param("pattern") String pattern, @Param("prefix") String prefix,
+                                       @Param("limit") int limit);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')", nativeQuery = true)
+    boolean isTrigramAvailable();
+
+    // Terms shorter than a trigram: name prefix only (text_pattern_ops index)
+    @Query(value = "SELECT p.* FROM produit p WHERE lower(p.nom) LIKE :prefix " +
+            "ORDER BY lower(p.nom), p.id_produit LIMIT :limit", nativeQuery = true)
+    List<Product> searchByNamePrefix(@Param("prefix") String prefix, @Param("limit") int limit);
 }